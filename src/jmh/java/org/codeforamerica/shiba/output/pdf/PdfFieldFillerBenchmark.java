@@ -0,0 +1,67 @@
+package org.codeforamerica.shiba.output.pdf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.form.PDCheckBox;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Compares filling the caseworker CAF with {@link PDFBoxFieldFiller} against the previous
+ * implementation, {@link PreviousPDFBoxFieldFiller}, which loaded every template and embedded the
+ * font on each fill.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PdfFieldFillerBenchmark {
+
+  private final Resource font = new ClassPathResource("LiberationSans-Regular.ttf");
+  private final List<Resource> pdfs = List.of(
+      new ClassPathResource("cover-pages.pdf"),
+      new ClassPathResource("caf-body.pdf"));
+
+  private PdfFieldFiller preparedTemplates;
+  private PdfFieldFiller previousFiller;
+  private List<PdfField> fields;
+
+  @Setup
+  public void setUp() throws IOException {
+    preparedTemplates = new PDFBoxFieldFiller(pdfs, font);
+    previousFiller = new PreviousPDFBoxFieldFiller(pdfs, font);
+    fields = new ArrayList<>();
+    for (Resource pdf : pdfs) {
+      try (PDDocument document = PDDocument.load(pdf.getInputStream())) {
+        for (PDField field : document.getDocumentCatalog().getAcroForm().getFieldTree()) {
+          if (field instanceof PDTextField) {
+            fields.add(new SimplePdfField(field.getFullyQualifiedName(), "X"));
+          } else if (field instanceof PDCheckBox checkBox) {
+            fields.add(new BinaryPdfField(field.getFullyQualifiedName(), checkBox.getOnValue()));
+          }
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public byte[] preparedTemplates() {
+    return preparedTemplates.fill(fields, "benchmark", "benchmark.pdf").getFileBytes();
+  }
+
+  @Benchmark
+  public byte[] previousFiller() {
+    return previousFiller.fill(fields, "benchmark", "benchmark.pdf").getFileBytes();
+  }
+}
@@ -0,0 +1,101 @@
+package org.codeforamerica.shiba.output.xml;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.codeforamerica.shiba.output.DocumentField;
+import org.codeforamerica.shiba.output.DocumentFieldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Compares rendering the XML for a 10-member household from the parsed template against the
+ * previous approach of one String.replaceAll over the whole document per entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class XmlGeneratorBenchmark {
+
+  private static final int HOUSEHOLD_SIZE = 10;
+  private static final Set<String> ITERATED_GROUPS = Set.of(
+      "householdMemberInfo", "employersName", "hoursAWeek", "payPeriod", "employee");
+
+  private final Resource xmlConfiguration = new ClassPathResource("XmlConfiguration.xml");
+
+  private XmlGenerator xmlGenerator;
+  private List<DocumentField> documentFields;
+  private String templateText;
+
+  @Setup
+  public void setUp() throws IOException {
+    Map<String, String> xmlConfigMap = load("xml.mappings.");
+    Map<String, String> xmlEnum = load("xml.enums.");
+    xmlGenerator = new XmlGenerator(xmlConfiguration, xmlConfigMap, xmlEnum, null, null, null);
+    try (InputStream inputStream = xmlConfiguration.getInputStream()) {
+      templateText = new String(inputStream.readAllBytes(), UTF_8);
+    }
+
+    documentFields = new ArrayList<>();
+    xmlConfigMap.keySet().stream()
+        .map(key -> key.split("\\."))
+        .filter(key -> key.length == 2)
+        .forEach(key -> {
+          if (ITERATED_GROUPS.contains(key[0])) {
+            for (int i = 0; i < HOUSEHOLD_SIZE; i++) {
+              documentFields.add(new DocumentField(key[0], key[1], "Value & " + i,
+                  DocumentFieldType.SINGLE_VALUE, i));
+            }
+          } else {
+            documentFields.add(new DocumentField(key[0], key[1], "Value & more",
+                DocumentFieldType.SINGLE_VALUE));
+          }
+        });
+  }
+
+  @Benchmark
+  public byte[] singlePassTemplate() {
+    return xmlGenerator.template().render(xmlGenerator.tokenValues(documentFields));
+  }
+
+  @Benchmark
+  public byte[] replaceAllPerEntry() {
+    String contents = templateText;
+    for (Map.Entry<String, String> entry : xmlGenerator.tokenValues(documentFields).entrySet()) {
+      contents = contents.replaceAll(Pattern.quote("{{" + entry.getKey() + "}}"),
+          entry.getValue());
+    }
+    return contents.replaceAll("\\s*<\\w+:\\w+>\\{\\{\\w+}}</\\w+:\\w+>", "").getBytes(UTF_8);
+  }
+
+  private static Map<String, String> load(String prefix) {
+    YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+    yaml.setResources(new ClassPathResource("xml-mappings.yaml"));
+    Properties properties = yaml.getObject();
+    Map<String, String> mappings = new HashMap<>();
+    if (properties != null) {
+      properties.stringPropertyNames().stream()
+          .filter(name -> name.startsWith(prefix))
+          .forEach(name -> mappings.put(name.substring(prefix.length()),
+              properties.getProperty(name)));
+    }
+    return mappings;
+  }
+}
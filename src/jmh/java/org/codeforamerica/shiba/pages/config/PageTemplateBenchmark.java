@@ -0,0 +1,77 @@
+package org.codeforamerica.shiba.pages.config;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.codeforamerica.shiba.pages.data.ApplicationData;
+import org.codeforamerica.shiba.pages.data.DatasourcePages;
+import org.codeforamerica.shiba.pages.data.InputData;
+import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.data.PagesData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Renders the unearned income sources page, which has a conditional header and a condition and a
+ * conditional validator on each of its inputs, with every source of unearned income selected.
+ * Also evaluates every skip condition in the workflow against the same answers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PageTemplateBenchmark {
+
+  private static final String HEAVY_PAGE = "unearnedIncomeSources";
+
+  private final FeatureFlagConfiguration featureFlags = new FeatureFlagConfiguration(Map.of());
+
+  private PageWorkflowConfiguration pageWorkflow;
+  private List<PageWorkflowConfiguration> pagesWithSkipConditions;
+  private ApplicationData applicationData;
+  private DatasourcePages datasourcePages;
+
+  @Setup
+  public void setUp() {
+    ApplicationConfigurationFactory factory = new ApplicationConfigurationFactory();
+    factory.configPath = "pages-config.yaml";
+    ApplicationConfiguration applicationConfiguration = factory.getObject();
+    pageWorkflow = applicationConfiguration.getPageWorkflow(HEAVY_PAGE);
+    pagesWithSkipConditions = applicationConfiguration.getWorkflow().values().stream()
+        .filter(workflow -> workflow.getSkipCondition() != null)
+        .toList();
+
+    PagesData pagesData = new PagesData();
+    pagesData.putPage("unearnedIncome", new PageData(Map.of("unearnedIncome", new InputData(
+        List.of("SOCIAL_SECURITY", "SSI", "VETERANS_BENEFITS", "UNEMPLOYMENT",
+            "WORKERS_COMPENSATION", "RETIREMENT", "CHILD_OR_SPOUSAL_SUPPORT",
+            "TRIBAL_PAYMENTS")))));
+    pagesData.putPage("addHouseholdMembers", new PageData(Map.of("addHouseholdMembers",
+        new InputData(List.of("false")))));
+    pagesData.putPage("choosePrograms", new PageData(Map.of("programs",
+        new InputData(List.of("SNAP", "CCAP")))));
+    applicationData = new ApplicationData();
+    applicationData.setPagesData(pagesData);
+    datasourcePages = new DatasourcePages(pagesData);
+  }
+
+  @Benchmark
+  public PageTemplate evaluateHeavyPage() {
+    return applicationData.getPagesData().evaluate(featureFlags, pageWorkflow, applicationData);
+  }
+
+  @Benchmark
+  public int evaluateSkipConditions() {
+    int skipped = 0;
+    for (PageWorkflowConfiguration workflow : pagesWithSkipConditions) {
+      if (datasourcePages.satisfies(workflow.getSkipCondition())) {
+        skipped++;
+      }
+    }
+    return skipped;
+  }
+}
@@ -0,0 +1,78 @@
+package org.codeforamerica.shiba.pages.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.SerializationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares copying the pages and subworkflows of a finished application (100 pages, a 6-member
+ * household with 2 jobs each) through Java serialization, as every page post used to, against a
+ * copy-on-write snapshot after one page has changed. Run with -Pjmh.profilers=gc to compare
+ * allocation per copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ApplicationDataSnapshotBenchmark {
+
+  private static final int PAGES = 100;
+  private static final int HOUSEHOLD_SIZE = 6;
+
+  private ApplicationData applicationData;
+  private int post;
+
+  @Setup
+  public void setUp() {
+    applicationData = new ApplicationData();
+    for (int i = 0; i < PAGES; i++) {
+      applicationData.getPagesData().putPage("page" + i, page(i));
+    }
+    for (int i = 0; i < HOUSEHOLD_SIZE; i++) {
+      applicationData.getSubworkflows().addIteration("household", pages(i));
+      applicationData.getSubworkflows().addIteration("jobs", pages(i));
+      applicationData.getSubworkflows().addIteration("jobs", pages(i + HOUSEHOLD_SIZE));
+    }
+    // The first snapshot copies everything
+    applicationData.snapshotPagesData();
+    applicationData.snapshotSubworkflows();
+  }
+
+  @Benchmark
+  public Object serializationClone() {
+    applicationData.getPagesData().putPage("page0", page(post++));
+    return List.of(SerializationUtils.clone(applicationData.getPagesData()),
+        SerializationUtils.clone(applicationData.getSubworkflows()));
+  }
+
+  @Benchmark
+  public Object copyOnWriteSnapshot() {
+    applicationData.getPagesData().putPage("page0", page(post++));
+    return List.of(applicationData.snapshotPagesData(), applicationData.snapshotSubworkflows());
+  }
+
+  private static PagesData pages(int seed) {
+    PagesData pagesData = new PagesData();
+    for (int i = 0; i < 8; i++) {
+      pagesData.putPage("iterationPage" + i, page(seed + i));
+    }
+    return pagesData;
+  }
+
+  private static PageData page(int seed) {
+    Map<String, InputData> inputs = new HashMap<>();
+    for (int i = 0; i < 5; i++) {
+      inputs.put("input" + i, new InputData(new ArrayList<>(List.of("value" + seed, "" + i))));
+    }
+    return new PageData(inputs);
+  }
+}
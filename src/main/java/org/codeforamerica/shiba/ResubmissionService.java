@@ -16,8 +16,13 @@ import org.codeforamerica.shiba.mnit.CountyRoutingDestination;
 import org.codeforamerica.shiba.mnit.RoutingDestination;
 import org.codeforamerica.shiba.output.ApplicationFile;
 import org.codeforamerica.shiba.output.Document;
+import org.codeforamerica.shiba.output.DocumentDeliveryExecutor;
+import org.codeforamerica.shiba.output.ScratchSpace;
+import org.codeforamerica.shiba.output.ScratchSpace.Session;
 import org.codeforamerica.shiba.output.pdf.PdfGenerator;
 import org.codeforamerica.shiba.pages.RoutingDecisionService;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.data.UploadedDocument;
 import org.codeforamerica.shiba.pages.emails.EmailClient;
 import org.slf4j.MDC;
@@ -33,17 +38,26 @@ public class ResubmissionService {
   private final CountyMap<CountyRoutingDestination> countyMap;
   private final PdfGenerator pdfGenerator;
   private final RoutingDecisionService routingDecisionService;
+  private final FeatureFlagConfiguration featureFlagConfiguration;
+  private final ScratchSpace scratchSpace;
+  private final DocumentDeliveryExecutor deliveryExecutor;
 
   @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
   public ResubmissionService(ApplicationRepository applicationRepository,
       EmailClient emailClient, CountyMap<CountyRoutingDestination> countyMap,
       PdfGenerator pdfGenerator,
-      RoutingDecisionService routingDecisionService) {
+      RoutingDecisionService routingDecisionService,
+      FeatureFlagConfiguration featureFlagConfiguration,
+      ScratchSpace scratchSpace,
+      DocumentDeliveryExecutor deliveryExecutor) {
     this.applicationRepository = applicationRepository;
     this.emailClient = emailClient;
     this.countyMap = countyMap;
     this.pdfGenerator = pdfGenerator;
     this.routingDecisionService = routingDecisionService;
+    this.featureFlagConfiguration = featureFlagConfiguration;
+    this.scratchSpace = scratchSpace;
+    this.deliveryExecutor = deliveryExecutor;
   }
 
   @Scheduled(fixedDelayString = "${resubmission.interval.milliseconds}")
@@ -94,18 +108,39 @@ public class ResubmissionService {
       List<String> recipientEmails) {
     var coverPage = pdfGenerator.generate(application, document, CASEWORKER).getFileBytes();
     var uploadedDocs = application.getApplicationData().getUploadedDocs();
-    for (int i = 0; i < uploadedDocs.size(); i++) {
-      UploadedDocument uploadedDocument = uploadedDocs.get(i);
-      ApplicationFile fileToSend = pdfGenerator
-          .generateForUploadedDocument(uploadedDocument, i, application, coverPage);
-      var esbFilename = fileToSend.getFileName();
-      var originalFilename = uploadedDocument.getFilename();
-
-      log.info("Resubmitting uploaded doc: %s original filename: %s"
-          .formatted(esbFilename, originalFilename));
-      recipientEmails.forEach(
-          eml -> emailClient.resubmitFailedEmail(eml, document, fileToSend, application));
-      log.info("Finished resubmitting document %s".formatted(esbFilename));
+    boolean streaming = featureFlagConfiguration.get("stream-uploaded-documents") == FeatureFlag.ON;
+    boolean pipelined =
+        featureFlagConfiguration.get("pipeline-uploaded-documents") == FeatureFlag.ON;
+    try (Session scratch = streaming ? scratchSpace.open() : null) {
+      if (pipelined) {
+        deliveryExecutor.runForEachFile(uploadedDocs.size(),
+            i -> resubmitUploadedDocument(document, application, recipientEmails,
+                uploadedDocs.get(i), i, coverPage, scratch));
+      } else {
+        for (int i = 0; i < uploadedDocs.size(); i++) {
+          resubmitUploadedDocument(document, application, recipientEmails, uploadedDocs.get(i), i,
+              coverPage, scratch);
+        }
+      }
     }
   }
+
+  private Void resubmitUploadedDocument(Document document, Application application,
+      List<String> recipientEmails, UploadedDocument uploadedDocument, int index,
+      byte[] coverPage, Session scratch) {
+    ApplicationFile fileToSend = scratch != null
+        ? pdfGenerator.generateForUploadedDocument(uploadedDocument, index, application,
+            coverPage, scratch)
+        : pdfGenerator.generateForUploadedDocument(uploadedDocument, index, application,
+            coverPage);
+    var esbFilename = fileToSend.getFileName();
+    var originalFilename = uploadedDocument.getFilename();
+
+    log.info("Resubmitting uploaded doc: %s original filename: %s"
+        .formatted(esbFilename, originalFilename));
+    recipientEmails.forEach(
+        eml -> emailClient.resubmitFailedEmail(eml, document, fileToSend, application));
+    log.info("Finished resubmitting document %s".formatted(esbFilename));
+    return null;
+  }
 }
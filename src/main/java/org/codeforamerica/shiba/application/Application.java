@@ -19,6 +19,8 @@ public class Application {
   private String id;
   private ZonedDateTime completedAt;
   private ZonedDateTime updatedAt;
+  // Bumped by every save of the application, but not by status updates
+  private Long dataVersion;
   private ApplicationData applicationData;
   private County county;
   private Duration timeToComplete;
@@ -39,6 +41,7 @@ public class Application {
         id,
         completedAt,
         updatedAt,
+        dataVersion,
         applicationData,
         county,
         timeToComplete,
@@ -1,15 +1,23 @@
 package org.codeforamerica.shiba.application;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.pages.data.InputData;
+import org.codeforamerica.shiba.pages.data.Iteration;
 import org.codeforamerica.shiba.pages.data.PageData;
 import org.codeforamerica.shiba.pages.data.PagesData;
+import org.codeforamerica.shiba.pages.data.Subworkflow;
+import org.codeforamerica.shiba.pages.data.Subworkflows;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -17,20 +25,39 @@ import org.springframework.stereotype.Component;
 public class ApplicationDataEncryptor implements Encryptor<ApplicationData> {
 
   private final ObjectMapper objectMapper;
+  private final ObjectMapper withoutPagesOrSubworkflows;
   private final Encryptor<String> stringEncryptor;
 
   public ApplicationDataEncryptor(
       ObjectMapper objectMapper,
       Encryptor<String> stringEncryptor) {
     this.objectMapper = objectMapper;
+    this.withoutPagesOrSubworkflows = objectMapper.copy()
+        .addMixIn(ApplicationData.class, PagesAndSubworkflowsIgnored.class);
     this.stringEncryptor = stringEncryptor;
   }
 
+  /**
+   * Encrypts copies of the pages and household that hold SSNs, so the application data itself is
+   * left alone. Its pages and groups can be shared with other snapshots, see {@link
+   * ApplicationData#snapshotPagesData()}.
+   */
   @Override
   public String encrypt(ApplicationData applicationData) {
     try {
-      runCryptographicFunctionOnData(stringEncryptor::encrypt, applicationData);
-      return objectMapper.writeValueAsString(applicationData);
+      PagesData pagesData = new PagesData(applicationData.getPagesData());
+      setEncryptedSSNValue(stringEncryptor::encrypt, pagesData, "personalInfo");
+      setEncryptedSSNValue(stringEncryptor::encrypt, pagesData, "matchInfo");
+      Subworkflows subworkflows = new Subworkflows(applicationData.getSubworkflows());
+      Subworkflow household = subworkflows.get("household");
+      if (household != null) {
+        subworkflows.put("household", encryptedHousehold(household));
+      }
+
+      ObjectNode json = withoutPagesOrSubworkflows.valueToTree(applicationData);
+      json.set("pagesData", objectMapper.valueToTree(pagesData));
+      json.set("subworkflows", objectMapper.valueToTree(subworkflows));
+      return objectMapper.writeValueAsString(json);
     } catch (JsonProcessingException e) {
       log.error("Unable to encrypt application data: applicationID=" + applicationData.getId());
       throw new RuntimeException(e);
@@ -42,7 +69,7 @@ public class ApplicationDataEncryptor implements Encryptor<ApplicationData> {
     try {
       ApplicationData applicationData = objectMapper
           .readValue(encryptedData, ApplicationData.class);
-      runCryptographicFunctionOnData(stringEncryptor::decrypt, applicationData);
+      decryptSSNs(applicationData);
       return applicationData;
     } catch (IOException e) {
       log.error("Error while deserializing application data");
@@ -50,18 +77,70 @@ public class ApplicationDataEncryptor implements Encryptor<ApplicationData> {
     }
   }
 
-  private void runCryptographicFunctionOnData(Function<String, String> encryptFunc,
-      ApplicationData applicationData) {
+  /**
+   * Encrypt only the given pages and subworkflow groups, along with every top-level field of the
+   * application data. Pages and groups that no longer exist are included with a null value.
+   */
+  public ApplicationDataPatch encryptChanges(ApplicationData applicationData,
+      Set<String> pageNames, Set<String> groupNames) {
+    try {
+      Map<String, String> pages = new HashMap<>();
+      for (String pageName : pageNames) {
+        PageData pageData = applicationData.getPagesData().get(pageName);
+        if (pageData == null) {
+          pages.put(pageName, null);
+        } else {
+          PagesData page = new PagesData(Map.of(pageName, pageData));
+          setEncryptedSSNValue(stringEncryptor::encrypt, page, "personalInfo");
+          setEncryptedSSNValue(stringEncryptor::encrypt, page, "matchInfo");
+          pages.put(pageName, objectMapper.writeValueAsString(page.get(pageName)));
+        }
+      }
+
+      Map<String, String> subworkflows = new HashMap<>();
+      for (String groupName : groupNames) {
+        Subworkflow subworkflow = applicationData.getSubworkflows().get(groupName);
+        if (subworkflow == null) {
+          subworkflows.put(groupName, null);
+        } else {
+          subworkflows.put(groupName, objectMapper.writeValueAsString(
+              groupName.equals("household") ? encryptedHousehold(subworkflow) : subworkflow));
+        }
+      }
+
+      return new ApplicationDataPatch(
+          withoutPagesOrSubworkflows.writeValueAsString(applicationData), pages, subworkflows);
+    } catch (JsonProcessingException e) {
+      log.error("Unable to encrypt application data: applicationID=" + applicationData.getId());
+      throw new RuntimeException(e);
+    }
+  }
+
+  private Subworkflow encryptedHousehold(Subworkflow household) {
+    Subworkflow encrypted = new Subworkflow();
+    household.forEach(iteration -> {
+      Iteration copy = new Iteration(new PagesData(iteration.getPagesData()));
+      copy.setId(iteration.getId());
+      setEncryptedSSNValue(stringEncryptor::encrypt, copy.getPagesData(), "householdMemberInfo");
+      encrypted.add(copy);
+    });
+    return encrypted;
+  }
+
+  /**
+   * Decrypt in place, the application data has just been read so nothing else holds on to it.
+   */
+  private void decryptSSNs(ApplicationData applicationData) {
     PagesData pagesData = applicationData.getPagesData();
 
-    setEncryptedSSNValue(encryptFunc, pagesData, "personalInfo");
-    setEncryptedSSNValue(encryptFunc, pagesData, "matchInfo");
+    setEncryptedSSNValue(stringEncryptor::decrypt, pagesData, "personalInfo");
+    setEncryptedSSNValue(stringEncryptor::decrypt, pagesData, "matchInfo");
 
     boolean hasHousehold = applicationData.getSubworkflows().containsKey("household");
     if (hasHousehold) {
       applicationData.getSubworkflows().get("household")
-          .forEach(iteration -> setEncryptedSSNValue(encryptFunc, iteration.getPagesData(),
-              "householdMemberInfo"));
+          .forEach(iteration -> setEncryptedSSNValue(stringEncryptor::decrypt,
+              iteration.getPagesData(), "householdMemberInfo"));
     }
   }
 
@@ -84,4 +163,8 @@ public class ApplicationDataEncryptor implements Encryptor<ApplicationData> {
     }
   }
 
+  @JsonIgnoreProperties({"pagesData", "subworkflows"})
+  private abstract static class PagesAndSubworkflowsIgnored {
+
+  }
 }
@@ -0,0 +1,15 @@
+package org.codeforamerica.shiba.application;
+
+import java.util.Map;
+
+/**
+ * Encrypted JSON for the parts of an application that changed since it was last saved.
+ *
+ * @param base         every top-level field except pagesData and subworkflows
+ * @param pages        page name to page JSON, or null when the page was removed
+ * @param subworkflows group name to group JSON, or null when the group was removed
+ */
+public record ApplicationDataPatch(String base, Map<String, String> pages,
+                                   Map<String, String> subworkflows) {
+
+}
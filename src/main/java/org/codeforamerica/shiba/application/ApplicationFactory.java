@@ -5,6 +5,8 @@ import java.time.ZonedDateTime;
 import org.apache.commons.lang3.SerializationUtils;
 import org.codeforamerica.shiba.MonitoringService;
 import org.codeforamerica.shiba.application.parsers.CountyParser;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.springframework.stereotype.Component;
 
@@ -14,19 +16,28 @@ public class ApplicationFactory {
   private final Clock clock;
   private final CountyParser countyParser;
   private final MonitoringService monitoringService;
+  private final FeatureFlagConfiguration featureFlagConfiguration;
 
   public ApplicationFactory(Clock clock, CountyParser countyParser,
-      MonitoringService monitoringService) {
+      MonitoringService monitoringService, FeatureFlagConfiguration featureFlagConfiguration) {
     this.clock = clock;
     this.countyParser = countyParser;
     this.monitoringService = monitoringService;
+    this.featureFlagConfiguration = featureFlagConfiguration;
   }
 
   public Application newApplication(ApplicationData applicationData) {
     ApplicationData copy = new ApplicationData();
+    // Snapshot before copying so that nothing changed in between is marked as saved
+    copy.setPendingChanges(applicationData.trackChanges().snapshot());
     copy.setId(applicationData.getId());
-    copy.setPagesData(SerializationUtils.clone(applicationData.getPagesData()));
-    copy.setSubworkflows(SerializationUtils.clone(applicationData.getSubworkflows()));
+    if (featureFlagConfiguration.get("copy-on-write-snapshots") == FeatureFlag.ON) {
+      copy.setPagesData(applicationData.snapshotPagesData());
+      copy.setSubworkflows(applicationData.snapshotSubworkflows());
+    } else {
+      copy.setPagesData(SerializationUtils.clone(applicationData.getPagesData()));
+      copy.setSubworkflows(SerializationUtils.clone(applicationData.getSubworkflows()));
+    }
     copy.setIncompleteIterations(applicationData.getIncompleteIterations());
     copy.setFlow(applicationData.getFlow());
     copy.setStartTimeOnce(applicationData.getStartTime());
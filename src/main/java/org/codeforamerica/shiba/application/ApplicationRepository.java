@@ -9,37 +9,110 @@ import static org.codeforamerica.shiba.output.Document.CERTAIN_POPS;
 import static org.codeforamerica.shiba.output.Document.UPLOADED_DOC;
 
 import java.security.SecureRandom;
+import java.sql.DatabaseMetaData;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.codeforamerica.shiba.County;
 import org.codeforamerica.shiba.Program;
 import org.codeforamerica.shiba.output.Document;
 import org.codeforamerica.shiba.pages.Sentiment;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
+import org.codeforamerica.shiba.pages.data.ChangeTracker.PendingChanges;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.stereotype.Repository;
 
 @Repository
 @Slf4j
 public class ApplicationRepository {
 
+  private static final String UPSERT_APPLICATION =
+      "INSERT INTO applications (id, completed_at, application_data, county, time_to_complete, sentiment, feedback, flow, doc_upload_email_status) "
+      +
+      "VALUES (:id, :completedAt, :applicationData ::jsonb, :county, :timeToComplete, :sentiment, :feedback, :flow, :docUploadEmailStatus) "
+      +
+      "ON CONFLICT (id) DO UPDATE SET " +
+      "data_version = applications.data_version + 1, " +
+      "completed_at = EXCLUDED.completed_at, " +
+      "application_data = EXCLUDED.application_data, " +
+      "county = EXCLUDED.county, " +
+      "time_to_complete = EXCLUDED.time_to_complete, " +
+      "sentiment = EXCLUDED.sentiment, " +
+      "feedback = EXCLUDED.feedback, " +
+      "doc_upload_email_status = EXCLUDED.doc_upload_email_status, " +
+      "caf_application_status = :cafStatus, " +
+      "ccap_application_status = :ccapStatus, " +
+      "certain_pops_application_status = :certainPopsStatus, " +
+      "flow = EXCLUDED.flow";
+
   private final JdbcTemplate jdbcTemplate;
-  private final Encryptor<ApplicationData> encryptor;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+  private final ApplicationDataEncryptor encryptor;
+  private final boolean incrementalSave;
+  private final boolean supportsUpsert;
+  private final Duration writeBehindWindow;
+  private final Map<String, Application> pendingSaves = new ConcurrentHashMap<>();
+  // Failed attempts at writing each pending save
+  private final Map<String, Integer> failedWrites = new ConcurrentHashMap<>();
+  private final int writeBehindMaxAttempts;
+  private final Object[] saveLocks = new Object[64];
+  private final ScheduledExecutorService writeBehindExecutor;
 
   public ApplicationRepository(JdbcTemplate jdbcTemplate,
-      Encryptor<ApplicationData> encryptor) {
+      ApplicationDataEncryptor encryptor,
+      @Value("${application-repository.incremental-save:false}") boolean incrementalSave,
+      @Value("${application-repository.write-behind-window:0s}") Duration writeBehindWindow,
+      @Value("${application-repository.write-behind-max-attempts:3}") int writeBehindMaxAttempts) {
     this.jdbcTemplate = jdbcTemplate;
+    // Shared so that the parsed SQL is cached across saves instead of re-parsed on every call
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
     this.encryptor = encryptor;
+    this.incrementalSave = incrementalSave;
+    this.supportsUpsert = isPostgres(jdbcTemplate);
+    this.writeBehindWindow = writeBehindWindow;
+    this.writeBehindMaxAttempts = writeBehindMaxAttempts;
+    for (int i = 0; i < saveLocks.length; i++) {
+      saveLocks[i] = new Object();
+    }
+    this.writeBehindExecutor = writeBehindWindow.isZero() ? null
+        : Executors.newSingleThreadScheduledExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "application-write-behind");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * H2, which the tests run against, can't do ON CONFLICT ... DO UPDATE.
+   */
+  private static boolean isPostgres(JdbcTemplate jdbcTemplate) {
+    try {
+      String databaseProductName = JdbcUtils.extractDatabaseMetaData(
+          jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+      return "PostgreSQL".equals(databaseProductName);
+    } catch (MetaDataAccessException e) {
+      log.warn("Unable to determine database product, saving without upsert", e);
+      return false;
+    }
   }
 
   @SuppressWarnings("ConstantConditions")
@@ -62,10 +135,109 @@ public class ApplicationRepository {
   }
 
   public void save(Application application, boolean isDocuments) {
+    synchronized (lockFor(application.getId())) {
+      // This save is newer than anything still waiting to be written
+      pendingSaves.remove(application.getId());
+      write(application, isDocuments);
+      failedWrites.remove(application.getId());
+    }
+  }
+
+  /**
+   * Save an application that is still being filled out. When a write-behind window is configured,
+   * saves of the same application within that window are coalesced and only the last one is
+   * written. Any other access to the application writes out a pending save first, and so does any
+   * query across applications.
+   * <p>
+   * A pending save that can't be written is retried up to write-behind-max-attempts times. Until
+   * one of its writes succeeds, saves of that application are written right away, so that the
+   * failure reaches the user instead of being lost in the log.
+   */
+  public void saveInProgress(Application application) {
+    if (writeBehindExecutor == null || failedWrites.containsKey(application.getId())) {
+      save(application);
+      return;
+    }
+    if (pendingSaves.put(application.getId(), application) == null) {
+      scheduleWrite(application.getId());
+    }
+  }
+
+  private void scheduleWrite(String id) {
+    writeBehindExecutor.schedule(() -> writePendingSave(id), writeBehindWindow.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void writePendingSave(String id) {
+    try {
+      flushPendingSave(id);
+    } catch (RuntimeException e) {
+      int attempts = failedWrites.getOrDefault(id, 0);
+      if (attempts < writeBehindMaxAttempts && !writeBehindExecutor.isShutdown()) {
+        log.warn("Unable to write pending save for application #%s, retrying (attempt %s)"
+            .formatted(id, attempts), e);
+        scheduleWrite(id);
+      } else {
+        log.error("Unable to write pending save for application #%s after %s attempts"
+            .formatted(id, attempts), e);
+      }
+    }
+  }
+
+  /**
+   * Write out the pending save of an application, if there is one. When that fails it stays
+   * pending, unless a newer save has replaced it in the meantime, and the failure is rethrown.
+   */
+  private void flushPendingSave(String id) {
+    if (writeBehindExecutor == null || id == null) {
+      return;
+    }
+    synchronized (lockFor(id)) {
+      Application pending = pendingSaves.remove(id);
+      if (pending != null) {
+        try {
+          write(pending, false);
+          failedWrites.remove(id);
+        } catch (RuntimeException e) {
+          pendingSaves.putIfAbsent(id, pending);
+          failedWrites.merge(id, 1, Integer::sum);
+          throw e;
+        }
+      }
+    }
+  }
+
+  @PreDestroy
+  public void flushPendingSaves() {
+    if (writeBehindExecutor != null) {
+      writeBehindExecutor.shutdownNow();
+      flushEveryPendingSave();
+    }
+  }
+
+  /**
+   * Before reading applications other than by id, so that none of them is read as it was before
+   * its last save. A pending save that can't be written stays pending and is only logged, since
+   * it shouldn't keep the other applications from being read.
+   */
+  private void flushEveryPendingSave() {
+    pendingSaves.keySet().forEach(id -> {
+      try {
+        flushPendingSave(id);
+      } catch (RuntimeException e) {
+        log.error("Unable to write pending save for application #" + id, e);
+      }
+    });
+  }
+
+  private Object lockFor(String id) {
+    return saveLocks[Math.floorMod(id.hashCode(), saveLocks.length)];
+  }
+
+  private void write(Application application, boolean isDocuments) {
     ApplicationData applicationData = application.getApplicationData();
     HashMap<String, Object> parameters = new HashMap<>(Map.of(
         "id", application.getId(),
-        "applicationData", encryptor.encrypt(applicationData),
         "county", application.getCounty().name()
     ));
     parameters.put("completedAt", convertToTimestamp(application.getCompletedAt()));
@@ -106,11 +278,76 @@ public class ApplicationRepository {
     parameters.put("ccapStatus", ccapStatus);
     parameters.put("certainPopsStatus", certainPopsStatus);
 
-    var namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
-    namedParameterJdbcTemplate.update(
+    PendingChanges pendingChanges = applicationData.getPendingChanges();
+    boolean canSaveChangesOnly = incrementalSave && !isDocuments
+                                 && pendingChanges != null && pendingChanges.isPersisted();
+    if (!canSaveChangesOnly || !saveChanges(applicationData, pendingChanges, parameters)) {
+      parameters.put("applicationData", encryptor.encrypt(applicationData));
+      if (supportsUpsert) {
+        namedParameterJdbcTemplate.update(UPSERT_APPLICATION, parameters);
+      } else {
+        namedParameterJdbcTemplate.update(
+            "UPDATE applications SET " +
+                "data_version = data_version + 1, " +
+                "completed_at = :completedAt, " +
+                "application_data = :applicationData ::jsonb, " +
+                "county = :county, " +
+                "time_to_complete = :timeToComplete, " +
+                "sentiment = :sentiment, " +
+                "feedback = :feedback, " +
+                "doc_upload_email_status = :docUploadEmailStatus, " +
+                "caf_application_status = :cafStatus, " +
+                "ccap_application_status = :ccapStatus, " +
+                "certain_pops_application_status = :certainPopsStatus, " +
+                "flow = :flow WHERE id = :id", parameters);
+        namedParameterJdbcTemplate.update(
+            "INSERT INTO applications (id, completed_at, application_data, county, time_to_complete, sentiment, feedback, flow, doc_upload_email_status) "
+                +
+                "VALUES (:id, :completedAt, :applicationData ::jsonb, :county, :timeToComplete, :sentiment, :feedback, :flow, :docUploadEmailStatus) "
+                +
+                "ON CONFLICT DO NOTHING", parameters);
+      }
+    }
+    if (pendingChanges != null) {
+      pendingChanges.flushed();
+    }
+
+    Map<Document, Status> statuses = new EnumMap<>(Document.class);
+    statuses.put(CAF, Status.valueFor(cafStatus));
+    statuses.put(CCAP, Status.valueFor(ccapStatus));
+    statuses.put(CERTAIN_POPS, Status.valueFor(certainPopsStatus));
+    logStatusUpdates(application.getId(), statuses);
+  }
+
+  /**
+   * Write only the pages and subworkflows that changed since the last save, in a single UPDATE.
+   * An application only has pending changes once it has been saved in full, so the row exists
+   * unless it was deleted out from under us; that case falls back to a full save.
+   */
+  private boolean saveChanges(ApplicationData applicationData, PendingChanges pendingChanges,
+      Map<String, Object> parameters) {
+    ApplicationDataPatch patch = encryptor.encryptChanges(applicationData,
+        pendingChanges.getChangedPages(), pendingChanges.getChangedSubworkflows());
+    Map<String, Object> patchParameters = new HashMap<>(parameters);
+    patchParameters.put("base", patch.base());
+
+    StringBuilder applicationDataExpression = new StringBuilder(
+        "application_data || :base ::jsonb");
+    int index = 0;
+    for (Map.Entry<String, String> page : patch.pages().entrySet()) {
+      appendPatch(applicationDataExpression, patchParameters, index++,
+          jsonPath("pagesData", page.getKey()), page.getValue());
+    }
+    for (Map.Entry<String, String> subworkflow : patch.subworkflows().entrySet()) {
+      appendPatch(applicationDataExpression, patchParameters, index++,
+          jsonPath("subworkflows", subworkflow.getKey()), subworkflow.getValue());
+    }
+
+    int updatedRows = namedParameterJdbcTemplate.update(
         "UPDATE applications SET " +
+            "data_version = data_version + 1, " +
             "completed_at = :completedAt, " +
-            "application_data = :applicationData ::jsonb, " +
+            "application_data = " + applicationDataExpression + ", " +
             "county = :county, " +
             "time_to_complete = :timeToComplete, " +
             "sentiment = :sentiment, " +
@@ -119,25 +356,48 @@ public class ApplicationRepository {
             "caf_application_status = :cafStatus, " +
             "ccap_application_status = :ccapStatus, " +
             "certain_pops_application_status = :certainPopsStatus, " +
-            "flow = :flow WHERE id = :id", parameters);
-    namedParameterJdbcTemplate.update(
-        "INSERT INTO applications (id, completed_at, application_data, county, time_to_complete, sentiment, feedback, flow, doc_upload_email_status) "
-            +
-            "VALUES (:id, :completedAt, :applicationData ::jsonb, :county, :timeToComplete, :sentiment, :feedback, :flow, :docUploadEmailStatus) "
-            +
-            "ON CONFLICT DO NOTHING", parameters);
-
-    logStatusUpdate(application.getId(), CAF, Status.valueFor(cafStatus));
-    logStatusUpdate(application.getId(), CCAP, Status.valueFor(ccapStatus));
-    logStatusUpdate(application.getId(), CERTAIN_POPS, Status.valueFor(certainPopsStatus));
+            "flow = :flow WHERE id = :id", patchParameters);
+    return updatedRows > 0;
+  }
+
+  private void appendPatch(StringBuilder expression, Map<String, Object> parameters, int index,
+      String path, String value) {
+    parameters.put("path" + index, path);
+    if (value == null) {
+      expression.insert(0, "(").append(") #- :path").append(index).append(" ::text[]");
+    } else {
+      parameters.put("value" + index, value);
+      expression.insert(0, "jsonb_set(")
+          .append(", :path").append(index).append(" ::text[], :value").append(index)
+          .append(" ::jsonb)");
+    }
+  }
+
+  private String jsonPath(String... keys) {
+    StringJoiner path = new StringJoiner(",", "{", "}");
+    for (String key : keys) {
+      path.add('"' + key.replace("\\", "\\\\").replace("\"", "\\\"") + '"');
+    }
+    return path.toString();
   }
 
   public Application find(String id) {
+    flushPendingSave(id);
     return jdbcTemplate
         .queryForObject("SELECT * FROM applications WHERE id = ?", applicationRowMapper(),
             id);
   }
 
+  /**
+   * The version of the application's data, without loading the application itself. Unlike
+   * updated_at, it only changes when the application is saved, not when its statuses are updated.
+   */
+  public Long findDataVersion(String id) {
+    flushPendingSave(id);
+    return jdbcTemplate.queryForObject(
+        "SELECT data_version FROM applications WHERE id = ?", Long.class, id);
+  }
+
   private ZonedDateTime convertToZonedDateTime(Timestamp timestamp) {
     return Optional.ofNullable(timestamp)
         .map(time -> ZonedDateTime.ofInstant(time.toInstant(), ZoneOffset.UTC))
@@ -151,12 +411,12 @@ public class ApplicationRepository {
   }
 
   public void updateStatus(String id, Document document, Status status) {
+    flushPendingSave(id);
     Map<String, Object> parameters = Map.of(
         "status", status.toString(),
         "id", id
     );
 
-    var namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
     String statement = switch (document) {
       case CAF -> "UPDATE applications SET caf_application_status = :status WHERE id = :id";
       case CCAP -> "UPDATE applications SET ccap_application_status = :status WHERE id = :id";
@@ -181,7 +441,21 @@ public class ApplicationRepository {
     }
   }
 
+  private void logStatusUpdates(String id, Map<Document, Status> statuses) {
+    StringJoiner updates = new StringJoiner(", ");
+    statuses.forEach((document, status) -> updates.add(document + " " + status));
+    final String msg = String.format("#%s application statuses have been updated to %s", id,
+        updates);
+    if (statuses.values().stream().anyMatch(
+        status -> status == Status.DELIVERY_FAILED || status == Status.RESUBMISSION_FAILED)) {
+      log.error(msg);
+    } else {
+      log.info(msg);
+    }
+  }
+
   public void updateStatusToNull(Document document, String id) {
+    flushPendingSave(id);
     Map<String, Object> parameters = Map.of(
         "id", id
     );
@@ -193,12 +467,12 @@ public class ApplicationRepository {
       case CERTAIN_POPS -> "UPDATE applications SET certain_pops_application_status = null WHERE id = :id";
     };
 
-    var namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
     namedParameterJdbcTemplate.update(statement, parameters);
     logStatusUpdate(id, document, null);
   }
 
   public Map<Document, List<String>> getApplicationIdsToResubmit() {
+    flushEveryPendingSave();
     Map<Document, List<String>> failedSubmissions = new HashMap<>();
     failedSubmissions.put(CCAP, getCCAPSubmissionsToResubmit());
     failedSubmissions.put(CAF, getCAFSubmissionsToResubmit());
@@ -207,18 +481,19 @@ public class ApplicationRepository {
   }
 
   public void setDocUploadEmailStatus(String applicationId, Status status) {
+    flushPendingSave(applicationId);
     Map<String, String> parameters = Map.of(
         "id", applicationId,
         "status", status.toString()
     );
 
-    var namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
     namedParameterJdbcTemplate.update(
         "UPDATE applications SET doc_upload_email_status = :status WHERE id = :id", parameters);
   }
 
   public List<Application> getApplicationsSubmittedBetweenTimestamps(Timestamp start,
       Timestamp end) {
+    flushEveryPendingSave();
     return jdbcTemplate.query(
         "SELECT * FROM applications WHERE completed_at >= ? AND completed_at <= ?",
         applicationRowMapper(),
@@ -251,6 +526,7 @@ public class ApplicationRepository {
             .id(resultSet.getString("id"))
             .completedAt(convertToZonedDateTime(resultSet.getTimestamp("completed_at")))
             .updatedAt(convertToZonedDateTime(resultSet.getTimestamp("updated_at")))
+            .dataVersion(resultSet.getLong("data_version"))
             .applicationData(encryptor.decrypt(resultSet.getString("application_data")))
             .county(County.getCountyForName(resultSet.getString("county")))
             .timeToComplete(Duration.ofSeconds(resultSet.getLong("time_to_complete")))
@@ -0,0 +1,140 @@
+package org.codeforamerica.shiba.configurations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.codeforamerica.shiba.pages.config.ApplicationConfiguration;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.codeforamerica.shiba.pages.config.PageConfiguration;
+import org.codeforamerica.shiba.pages.data.ApplicationData;
+import org.codeforamerica.shiba.pages.data.Iteration;
+import org.codeforamerica.shiba.pages.data.PagesData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Turns session attributes into the bytes Spring Session stores, and back.
+ * <p>
+ * With the compact-sessions feature flag on, the session's application data is written as JSON
+ * the way the application repository stores it, which leaves out the validators of every input.
+ * They're restored from the page configuration when the session is read. Any attribute larger
+ * than session-serialization.compression-threshold is gzipped. Everything else is written with
+ * Java serialization, like Spring Session does by default, and attributes written that way are
+ * always readable, so sessions carry over when the flag is turned on or off.
+ */
+@Component
+public class CompactSessionSerializer {
+
+  // Java serialization streams start with 0xACED, which neither of these can be mistaken for
+  private static final byte JAVA_SERIALIZED = 1;
+  private static final byte APPLICATION_DATA_JSON = 2;
+  private static final byte UNCOMPRESSED = 0;
+  private static final byte GZIPPED = 1;
+
+  private final ObjectMapper objectMapper;
+  private final ApplicationConfiguration applicationConfiguration;
+  private final FeatureFlagConfiguration featureFlagConfiguration;
+  private final int compressionThreshold;
+  private final DefaultSerializer serializer = new DefaultSerializer();
+  private final DefaultDeserializer deserializer = new DefaultDeserializer(
+      CompactSessionSerializer.class.getClassLoader());
+
+  public CompactSessionSerializer(ObjectMapper objectMapper,
+      ApplicationConfiguration applicationConfiguration,
+      FeatureFlagConfiguration featureFlagConfiguration,
+      @Value("${session-serialization.compression-threshold:1KB}") DataSize compressionThreshold) {
+    this.objectMapper = objectMapper;
+    this.applicationConfiguration = applicationConfiguration;
+    this.featureFlagConfiguration = featureFlagConfiguration;
+    this.compressionThreshold = (int) compressionThreshold.toBytes();
+  }
+
+  public byte[] serialize(Object attribute) {
+    try {
+      if (featureFlagConfiguration.get("compact-sessions") != FeatureFlag.ON) {
+        return serializer.serializeToByteArray(attribute);
+      }
+      byte format = JAVA_SERIALIZED;
+      byte[] payload;
+      if (attribute instanceof ApplicationData) {
+        format = APPLICATION_DATA_JSON;
+        payload = objectMapper.writeValueAsBytes(attribute);
+      } else {
+        payload = serializer.serializeToByteArray(attribute);
+        if (payload.length <= compressionThreshold) {
+          return payload;
+        }
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length / 2 + 2);
+      bytes.write(format);
+      if (payload.length > compressionThreshold) {
+        bytes.write(GZIPPED);
+        try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+          gzip.write(payload);
+        }
+      } else {
+        bytes.write(UNCOMPRESSED);
+        bytes.write(payload);
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to serialize session attribute", e);
+    }
+  }
+
+  public Object deserialize(byte[] bytes) {
+    try {
+      if (bytes.length < 2 || (bytes[0] != JAVA_SERIALIZED && bytes[0] != APPLICATION_DATA_JSON)) {
+        return deserializer.deserialize(new ByteArrayInputStream(bytes));
+      }
+      InputStream payload = new ByteArrayInputStream(bytes, 2, bytes.length - 2);
+      if (bytes[1] == GZIPPED) {
+        payload = new GZIPInputStream(payload);
+      }
+      try (InputStream in = payload) {
+        if (bytes[0] == JAVA_SERIALIZED) {
+          return deserializer.deserialize(in);
+        }
+        ApplicationData applicationData = objectMapper.readValue(in, ApplicationData.class);
+        restoreValidators(applicationData);
+        return applicationData;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to deserialize session attribute", e);
+    }
+  }
+
+  private void restoreValidators(ApplicationData applicationData) {
+    Stream.of(
+            Stream.of(applicationData.getPagesData()),
+            applicationData.getSubworkflows().values().stream()
+                .flatMap(subworkflow -> subworkflow.stream().map(Iteration::getPagesData)),
+            applicationData.getIncompleteIterations().values().stream())
+        .flatMap(pages -> pages)
+        .forEach(this::restoreValidators);
+  }
+
+  private void restoreValidators(PagesData pagesData) {
+    if (pagesData == null) {
+      return;
+    }
+    pagesData.forEach((pageName, pageData) -> {
+      PageConfiguration pageConfiguration = applicationConfiguration.getPageDefinition(pageName);
+      if (pageData != null && pageConfiguration != null) {
+        pageData.restoreValidators(pageConfiguration);
+      }
+    });
+  }
+}
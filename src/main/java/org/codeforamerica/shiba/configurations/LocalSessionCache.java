@@ -0,0 +1,142 @@
+package org.codeforamerica.shiba.configurations;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+/**
+ * Decoded sessions kept in memory in front of the JDBC session store, so that a request doesn't
+ * have to load and deserialize every attribute of its session again. The load balancer sends a
+ * session's requests to the same instance, so most sessions are found here.
+ * <p>
+ * A cached session is only used while its LAST_ACCESS_TIME in the database is still the one this
+ * instance wrote, which every request that touches the session changes. So a session that was
+ * used on another instance in between, or deleted, is loaded from the database again. A cached
+ * session is handed to one request at a time; a concurrent request of the same session loads its
+ * own copy, and whichever of them saves second drops the session from the cache.
+ */
+public class LocalSessionCache<S extends Session> {
+
+  private final SessionRepository<S> sessionRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final String lastAccessTimeQuery;
+  private final Map<String, Entry<S>> sessions;
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer cacheLoads;
+  private final Timer databaseLoads;
+
+  public LocalSessionCache(SessionRepository<S> sessionRepository, JdbcTemplate jdbcTemplate,
+      String tableName, int maxSessions, MeterRegistry meterRegistry) {
+    this.sessionRepository = sessionRepository;
+    this.jdbcTemplate = jdbcTemplate;
+    this.lastAccessTimeQuery =
+        "SELECT LAST_ACCESS_TIME FROM %s WHERE SESSION_ID = ?".formatted(tableName);
+    this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry<S>> eldest) {
+        return size() > maxSessions;
+      }
+    };
+    this.hits = meterRegistry.counter("session.cache", "result", "hit");
+    this.misses = meterRegistry.counter("session.cache", "result", "miss");
+    this.cacheLoads = meterRegistry.timer("session.load", "source", "cache");
+    this.databaseLoads = meterRegistry.timer("session.load", "source", "database");
+  }
+
+  public S createSession() {
+    S session = sessionRepository.createSession();
+    synchronized (sessions) {
+      sessions.put(session.getId(), new Entry<>(session));
+    }
+    return session;
+  }
+
+  public S findById(String id) {
+    long start = System.nanoTime();
+    Entry<S> cached = checkOut(id);
+    if (cached != null) {
+      List<Long> stored = jdbcTemplate.queryForList(lastAccessTimeQuery, Long.class, id);
+      if (stored.size() == 1 && stored.get(0) == cached.version && !cached.session.isExpired()) {
+        hits.increment();
+        cacheLoads.record(Duration.ofNanos(System.nanoTime() - start));
+        return cached.session;
+      }
+      synchronized (sessions) {
+        sessions.remove(id, cached);
+      }
+    }
+
+    misses.increment();
+    S session = sessionRepository.findById(id);
+    if (session != null) {
+      synchronized (sessions) {
+        sessions.putIfAbsent(id, new Entry<>(session));
+      }
+    }
+    databaseLoads.record(Duration.ofNanos(System.nanoTime() - start));
+    return session;
+  }
+
+  public void save(S session) {
+    try {
+      sessionRepository.save(session);
+    } catch (RuntimeException e) {
+      synchronized (sessions) {
+        sessions.values().removeIf(entry -> entry.session == session);
+      }
+      throw e;
+    }
+    synchronized (sessions) {
+      Entry<S> entry = sessions.get(session.getId());
+      if (entry != null && entry.session == session) {
+        entry.version = session.getLastAccessedTime().toEpochMilli();
+        entry.checkedOut = false;
+      } else if (entry != null) {
+        // Saved from a copy loaded while the cached session was in use; that one's out of date now
+        sessions.remove(session.getId());
+      } else {
+        // The session's id may have changed
+        sessions.values().removeIf(stale -> stale.session == session);
+      }
+    }
+  }
+
+  public void deleteById(String id) {
+    synchronized (sessions) {
+      sessions.remove(id);
+    }
+    sessionRepository.deleteById(id);
+  }
+
+  private Entry<S> checkOut(String id) {
+    synchronized (sessions) {
+      Entry<S> entry = sessions.get(id);
+      if (entry == null || entry.checkedOut) {
+        return null;
+      }
+      entry.checkedOut = true;
+      return entry;
+    }
+  }
+
+  private static class Entry<S extends Session> {
+
+    private final S session;
+    private long version;
+    // Handed to a request that hasn't saved it yet
+    private boolean checkedOut = true;
+
+    private Entry(S session) {
+      this.session = session;
+      this.version = session.getLastAccessedTime().toEpochMilli();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package org.codeforamerica.shiba.configurations;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.Session;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Puts a {@link LocalSessionCache} in front of the JDBC session repository while the session-cache
+ * feature flag is on. The repository is proxied rather than replaced, so that Spring Boot still
+ * configures it and everything that needs a {@link JdbcIndexedSessionRepository} still gets one.
+ */
+@Component
+public class LocalSessionCachePostProcessor implements BeanPostProcessor {
+
+  private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+  private final ObjectProvider<MeterRegistry> meterRegistry;
+  private final ObjectProvider<FeatureFlagConfiguration> featureFlagConfiguration;
+  private final String tableName;
+  private final int maxSessions;
+
+  // Looked up lazily, since post processors are created before the beans they process
+  public LocalSessionCachePostProcessor(ObjectProvider<JdbcTemplate> jdbcTemplate,
+      ObjectProvider<MeterRegistry> meterRegistry,
+      ObjectProvider<FeatureFlagConfiguration> featureFlagConfiguration,
+      @Value("${spring.session.jdbc.table-name:SPRING_SESSION}") String tableName,
+      @Value("${session-cache.max-sessions:1000}") int maxSessions) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.meterRegistry = meterRegistry;
+    this.featureFlagConfiguration = featureFlagConfiguration;
+    this.tableName = tableName;
+    this.maxSessions = maxSessions;
+  }
+
+  @Override
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (!(bean instanceof JdbcIndexedSessionRepository repository)) {
+      return bean;
+    }
+    LocalSessionCache cache = new LocalSessionCache<>(repository, jdbcTemplate.getObject(),
+        tableName, maxSessions, meterRegistry.getObject());
+    FeatureFlagConfiguration featureFlags = featureFlagConfiguration.getObject();
+
+    MethodInterceptor cached = invocation -> {
+      if (featureFlags.get("session-cache") != FeatureFlag.ON) {
+        return invocation.proceed();
+      }
+      Object[] arguments = invocation.getArguments();
+      return switch (invocation.getMethod().getName()) {
+        case "createSession" -> cache.createSession();
+        case "findById" -> cache.findById((String) arguments[0]);
+        case "save" -> {
+          cache.save((Session) arguments[0]);
+          yield null;
+        }
+        case "deleteById" -> {
+          cache.deleteById((String) arguments[0]);
+          yield null;
+        }
+        default -> invocation.proceed();
+      };
+    };
+
+    ProxyFactory proxyFactory = new ProxyFactory(repository);
+    proxyFactory.setProxyTargetClass(true);
+    proxyFactory.addAdvice(cached);
+    return proxyFactory.getProxy();
+  }
+}
@@ -7,6 +7,8 @@ import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
 
 @Configuration
 public class SessionConfiguration {
@@ -19,4 +21,18 @@ public class SessionConfiguration {
   public ApplicationData applicationData() {
     return new ApplicationData();
   }
+
+  /**
+   * Used by Spring Session JDBC to write session attributes to and read them from the database.
+   */
+  @Bean
+  public ConversionService springSessionConversionService(
+      CompactSessionSerializer compactSessionSerializer) {
+    GenericConversionService conversionService = new GenericConversionService();
+    conversionService.addConverter(Object.class, byte[].class,
+        compactSessionSerializer::serialize);
+    conversionService.addConverter(byte[].class, Object.class,
+        compactSessionSerializer::deserialize);
+    return conversionService;
+  }
 }
@@ -1,10 +1,98 @@
 package org.codeforamerica.shiba.configurations;
 
+import static org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME;
+import static org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+/**
+ * The @Async listeners run on Spring Boot's application task executor, sized by the
+ * spring.task.execution properties, except for the ones that generate or deliver documents. Those
+ * run on their own executor so that a burst of submissions can't take every async thread.
+ */
 @Configuration
 @EnableAsync
+@Slf4j
 public class SpringAsyncConfiguration {
 
+  public static final String DOCUMENT_TASK_EXECUTOR = "documentTaskExecutor";
+
+  /**
+   * Declared here because Spring Boot only creates it when no other executor is defined. Once the
+   * pool and its queue are full, tasks are rejected and counted, instead of being run on the
+   * submitting thread, which is usually a request thread. Code that submits to it directly falls
+   * back to doing the work itself.
+   */
+  @Lazy
+  @Bean(APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+  public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder,
+      MeterRegistry meterRegistry) {
+    ThreadPoolTaskExecutor executor = builder.build();
+    Counter rejected = meterRegistry.counter("async.tasks.rejected", "executor", "async");
+    executor.setRejectedExecutionHandler((task, pool) -> {
+      rejected.increment();
+      throw new RejectedExecutionException("Async task rejected, the application task executor"
+                                           + " is saturated");
+    });
+    return executor;
+  }
+
+  /**
+   * What @Async listeners run on by default: the application task executor, except that a
+   * listener it rejects is dropped instead of failing the request that published the event. The
+   * listeners are fire-and-forget, so nobody is waiting on them; the rejection is counted by the
+   * application task executor.
+   */
+  @Bean(DEFAULT_TASK_EXECUTOR_BEAN_NAME)
+  public TaskExecutor taskExecutor(@Lazy ThreadPoolTaskExecutor applicationTaskExecutor) {
+    return task -> {
+      try {
+        applicationTaskExecutor.execute(task);
+      } catch (RejectedExecutionException e) {
+        log.warn("Dropped an async listener, the application task executor is saturated");
+      }
+    };
+  }
+
+  /**
+   * For listeners that generate and deliver documents. Its queue is unbounded: a queued task only
+   * holds its event, which identifies the application, and the memory used for generating and
+   * sending files is bounded by {@link org.codeforamerica.shiba.output.DocumentDeliveryExecutor}.
+   */
+  @Bean(DOCUMENT_TASK_EXECUTOR)
+  public ThreadPoolTaskExecutor documentTaskExecutor(
+      @Value("${document-tasks.pool-size:4}") int poolSize) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setThreadNamePrefix("document-tasks-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(30);
+    return executor;
+  }
+
+  @Bean
+  MeterBinder asyncExecutorMetrics(ThreadPoolTaskExecutor applicationTaskExecutor,
+      ThreadPoolTaskExecutor documentTaskExecutor) {
+    return registry -> {
+      new ExecutorServiceMetrics(applicationTaskExecutor.getThreadPoolExecutor(), "async",
+          Tags.empty()).bindTo(registry);
+      new ExecutorServiceMetrics(documentTaskExecutor.getThreadPoolExecutor(), "document-tasks",
+          Tags.empty()).bindTo(registry);
+    };
+  }
 }
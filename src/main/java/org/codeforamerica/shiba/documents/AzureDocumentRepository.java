@@ -3,11 +3,15 @@ package org.codeforamerica.shiba.documents;
 import com.azure.storage.blob.BlobClient;
 import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.ListBlobsOptions;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -45,6 +49,28 @@ public class AzureDocumentRepository implements DocumentRepository {
     }
   }
 
+  public boolean exists(String filepath) {
+    try {
+      return containerClient.getBlobClient(filepath).exists();
+    } catch (Exception ex) {
+      log.warn("Could not check for filepath " + filepath + " in Azure.", ex);
+      return false;
+    }
+  }
+
+  public boolean download(String filepath, Path destination) {
+    BlobClient blobClient = containerClient.getBlobClient(filepath);
+
+    try {
+      log.info("Downloading filepath " + filepath + " from Azure.");
+      blobClient.downloadToFile(destination.toString(), true);
+      return true;
+    } catch (Exception ex) {
+      log.error("File at filepath " + filepath + " cannot be found in Azure.");
+      return false;
+    }
+  }
+
   public void upload(String filepath, MultipartFile file) throws IOException {
     log.info("Uploading file {} to Azure at filepath {}", file.getOriginalFilename(), filepath);
     try (var inputStream = file.getInputStream()) {
@@ -60,6 +86,13 @@ public class AzureDocumentRepository implements DocumentRepository {
     }
   }
 
+  public void upload(String filepath, byte[] fileBytes) throws IOException {
+    log.info("Uploading file to Azure at filepath {}", filepath);
+    try (var byteArrayInputStream = new ByteArrayInputStream(fileBytes)) {
+      uploadToAzure(filepath, fileBytes.length, byteArrayInputStream);
+    }
+  }
+
   private void uploadToAzure(String filepath, long size, InputStream inputStream) {
     BlobClient blobClient = containerClient.getBlobClient(filepath);
     blobClient.upload(inputStream, size);
@@ -72,4 +105,16 @@ public class AzureDocumentRepository implements DocumentRepository {
     blobClient.delete();
     log.info("Deleted file {}", filepath);
   }
+
+  public void deleteOlderThan(String prefix, Instant cutoff) {
+    int deleted = 0;
+    for (BlobItem blob : containerClient.listBlobs(new ListBlobsOptions().setPrefix(prefix),
+        null)) {
+      if (blob.getProperties().getLastModified().toInstant().isBefore(cutoff)) {
+        containerClient.getBlobClient(blob.getName()).delete();
+        deleted++;
+      }
+    }
+    log.info("Deleted {} files under {} from before {}", deleted, prefix, cutoff);
+  }
 }
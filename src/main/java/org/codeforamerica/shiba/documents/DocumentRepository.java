@@ -1,15 +1,37 @@
 package org.codeforamerica.shiba.documents;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface DocumentRepository {
 
   byte[] get(String filepath);
 
+  /**
+   * Whether there is a file at {@code filepath}, for callers that expect it may not be there yet
+   * and so shouldn't treat its absence as an error.
+   */
+  boolean exists(String filepath);
+
+  /**
+   * Download straight to a file instead of into memory.
+   *
+   * @return false if the file couldn't be downloaded
+   */
+  boolean download(String filepath, Path destination);
+
   void upload(String filepath, MultipartFile file) throws IOException, InterruptedException;
 
   void upload(String filepath, String fileContent) throws IOException, InterruptedException;
 
+  void upload(String filepath, byte[] fileBytes) throws IOException, InterruptedException;
+
   void delete(String filepath);
+
+  /**
+   * Delete the files under {@code prefix} that were last modified before {@code cutoff}.
+   */
+  void deleteOlderThan(String prefix, Instant cutoff);
 }
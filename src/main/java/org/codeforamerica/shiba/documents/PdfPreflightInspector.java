@@ -0,0 +1,107 @@
+package org.codeforamerica.shiba.documents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.codeforamerica.shiba.pages.data.PdfPreflight;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Checks an uploaded PDF without loading it. {@link PDFParser#parse()} resolves every object
+ * reachable from the catalog, so the inspector stops it after the cross-reference table, the
+ * trailer and the encryption dictionary, and then reads only the catalog, the root of the page
+ * tree and the catalog's AcroForm. A PDF whose cross-reference table is broken is still scanned
+ * in full by PDFBox to rebuild it.
+ */
+public final class PdfPreflightInspector {
+
+  private PdfPreflightInspector() {
+  }
+
+  public static PdfPreflight inspect(MultipartFile file) throws IOException {
+    try (InputStream inputStream = file.getInputStream()) {
+      return inspect(inputStream, file.getSize());
+    }
+  }
+
+  /**
+   * PDFBox needs random access to read the trailer at the end of the PDF, so the stream is copied
+   * to a temporary file first, rather than into memory.
+   */
+  public static PdfPreflight inspect(InputStream pdf, long size) throws IOException {
+    try (RandomAccessRead source = new RandomAccessBufferedFileInputStream(pdf)) {
+      PreflightParser parser = new PreflightParser(source);
+      try {
+        parser.parse();
+      } catch (InvalidPasswordException e) {
+        return new PdfPreflight(0, true, true, false, size);
+      }
+
+      try (var document = parser.getDocument()) {
+        return new PdfPreflight(parser.pageCount(), document.isEncrypted(), false,
+            parser.isDynamicXfa(), size);
+      }
+    }
+  }
+
+  /**
+   * Parses up to the catalog and resolves only the objects {@link PdfPreflight} needs.
+   */
+  private static class PreflightParser extends PDFParser {
+
+    private COSDictionary catalog;
+
+    PreflightParser(RandomAccessRead source) throws IOException {
+      super(source);
+    }
+
+    /**
+     * Reads the cross-reference table and the trailer, sets up decryption, which is where a
+     * password-protected PDF fails, and parses the catalog, but nothing it refers to.
+     */
+    @Override
+    protected void initialParse() throws IOException {
+      COSDictionary trailer = retrieveTrailer();
+      COSBase root = resolve(trailer.getItem(COSName.ROOT));
+      if (!(root instanceof COSDictionary rootDictionary)) {
+        throw new IOException("Expected root dictionary, but got this: " + root);
+      }
+      catalog = rootDictionary;
+      initialParseDone = true;
+    }
+
+    int pageCount() throws IOException {
+      if (resolve(catalog.getItem(COSName.PAGES)) instanceof COSDictionary pages
+          && resolve(pages.getItem(COSName.COUNT)) instanceof COSNumber count) {
+        return count.intValue();
+      }
+      return 0;
+    }
+
+    /**
+     * Same as {@link org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm#xfaIsDynamic()}: an
+     * XFA form without AcroForm fields.
+     */
+    boolean isDynamicXfa() throws IOException {
+      if (!(resolve(catalog.getItem(COSName.ACRO_FORM)) instanceof COSDictionary acroForm)
+          || resolve(acroForm.getItem(COSName.XFA)) == null) {
+        return false;
+      }
+      return !(resolve(acroForm.getItem(COSName.FIELDS)) instanceof COSArray fields)
+          || fields.size() == 0;
+    }
+
+    private COSBase resolve(COSBase base) throws IOException {
+      return base instanceof COSObject object ? parseObjectDynamically(object, false) : base;
+    }
+  }
+}
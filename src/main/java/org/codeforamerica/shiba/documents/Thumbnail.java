@@ -0,0 +1,88 @@
+package org.codeforamerica.shiba.documents;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The preview image shown next to an uploaded document. Thumbnails are stored as the image itself;
+ * ones uploaded before that were stored as the data URL the browser sent, and are still read.
+ * <p>
+ * The content type comes from the browser, so only the image types in {@link #CONTENT_TYPES} are
+ * accepted; anything else isn't a thumbnail.
+ */
+public record Thumbnail(byte[] bytes, String contentType) {
+
+  private static final byte[] DATA_URL_PREFIX = "data:".getBytes(US_ASCII);
+  private static final String DEFAULT_CONTENT_TYPE = "image/png";
+  private static final Set<String> CONTENT_TYPES = Set.of(
+      "image/png", "image/jpeg", "image/gif", "image/webp");
+
+  /**
+   * The image in a base64 data URL such as the browser generates, or null if it isn't one.
+   */
+  public static Thumbnail fromDataUrl(String dataUrl) {
+    if (dataUrl == null || !dataUrl.startsWith("data:")) {
+      return null;
+    }
+    int comma = dataUrl.indexOf(',');
+    if (comma < 0 || !dataUrl.substring(0, comma).endsWith(";base64")) {
+      return null;
+    }
+    String mediaType = dataUrl.substring("data:".length(), comma - ";base64".length());
+    // Drop any parameters, e.g. data:image/png;name=thumbnail.png;base64,...
+    String contentType = mediaType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+    if (contentType.isEmpty()) {
+      contentType = DEFAULT_CONTENT_TYPE;
+    } else if (!CONTENT_TYPES.contains(contentType)) {
+      return null;
+    }
+    try {
+      return new Thumbnail(Base64.getDecoder().decode(dataUrl.substring(comma + 1)),
+          contentType);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The thumbnail as it was read back from the document repository, or null if there's nothing
+   * usable.
+   */
+  public static Thumbnail fromStored(byte[] stored) {
+    if (stored == null || stored.length == 0) {
+      return null;
+    }
+    if (stored.length >= DATA_URL_PREFIX.length
+        && Arrays.equals(stored, 0, DATA_URL_PREFIX.length, DATA_URL_PREFIX, 0,
+        DATA_URL_PREFIX.length)) {
+      return fromDataUrl(new String(stored, US_ASCII));
+    }
+    String contentType = guessContentType(stored);
+    return CONTENT_TYPES.contains(contentType) ? new Thumbnail(stored, contentType) : null;
+  }
+
+  public int size() {
+    return bytes.length;
+  }
+
+  /**
+   * What the image looks like, or PNG if it's not recognized, e.g. WebP.
+   */
+  private static String guessContentType(byte[] image) {
+    try {
+      return Optional.ofNullable(
+              URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(image)))
+          .orElse(DEFAULT_CONTENT_TYPE);
+    } catch (IOException e) {
+      return DEFAULT_CONTENT_TYPE;
+    }
+  }
+}
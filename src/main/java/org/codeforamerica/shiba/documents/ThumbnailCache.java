@@ -0,0 +1,259 @@
+package org.codeforamerica.shiba.documents;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Thumbnails of uploaded documents, kept in memory per session so that rendering the upload page
+ * doesn't read every thumbnail from the document repository again.
+ * <p>
+ * Each session keeps at most max-size-per-session of thumbnails, least recently used evicted
+ * first, and only the max-sessions most recently active sessions are kept at all, fewer if their
+ * thumbnails add up to more than max-total-size. On a miss, every thumbnail the session is
+ * missing is fetched at once on a small pool rather than one after the other, and requests for a
+ * thumbnail that is already being fetched wait for that fetch instead of starting another.
+ * Thumbnails that couldn't be read aren't tried again for negative-ttl, and ones too big to keep
+ * are only fetched when they're asked for, not alongside every other miss.
+ */
+@Component
+@Slf4j
+public class ThumbnailCache {
+
+  private final DocumentRepository documentRepository;
+  private final long maxSizePerSessionInBytes;
+  private final long maxTotalSizeInBytes;
+  private final int maxSessions;
+  private final Duration negativeTtl;
+  private final Clock clock;
+  private final ExecutorService fetchExecutor;
+  private final Counter hits;
+  private final Counter misses;
+  private final LinkedHashMap<String, SessionThumbnails> sessions = new LinkedHashMap<>(16, 0.75f,
+      true);
+  private final Map<FetchKey, CompletableFuture<Thumbnail>> inFlight = new ConcurrentHashMap<>();
+  // Of every session's thumbnails, only touched while holding the cache's lock
+  private long totalSizeInBytes;
+
+  public ThumbnailCache(DocumentRepository documentRepository,
+      @Value("${thumbnail-cache.max-size-per-session:2MB}") DataSize maxSizePerSession,
+      @Value("${thumbnail-cache.max-total-size:256MB}") DataSize maxTotalSize,
+      @Value("${thumbnail-cache.max-sessions:500}") int maxSessions,
+      @Value("${thumbnail-cache.fetch-threads:8}") int fetchThreads,
+      @Value("${thumbnail-cache.negative-ttl:1m}") Duration negativeTtl,
+      Clock clock,
+      MeterRegistry meterRegistry) {
+    this.documentRepository = documentRepository;
+    this.maxSizePerSessionInBytes = maxSizePerSession.toBytes();
+    this.maxTotalSizeInBytes = maxTotalSize.toBytes();
+    this.maxSessions = maxSessions;
+    this.negativeTtl = negativeTtl;
+    this.clock = clock;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.fetchExecutor = Executors.newFixedThreadPool(fetchThreads, runnable -> {
+      Thread thread = new Thread(runnable, "thumbnail-fetch-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.hits = meterRegistry.counter("thumbnail.cache", "result", "hit");
+    this.misses = meterRegistry.counter("thumbnail.cache", "result", "miss");
+  }
+
+  /**
+   * The thumbnail stored at {@code thumbnailFilepath}, or null if it can't be read. If it isn't
+   * cached, the rest of {@code sessionThumbnailFilepaths} that aren't cached either are fetched
+   * alongside it, since the page asking for one thumbnail is about to ask for the others.
+   */
+  public Thumbnail get(String sessionId, String thumbnailFilepath,
+      Collection<String> sessionThumbnailFilepaths) {
+    Thumbnail cached = cached(sessionId, thumbnailFilepath);
+    if (cached != null || isUnreadable(sessionId, thumbnailFilepath)) {
+      hits.increment();
+      return cached;
+    }
+
+    misses.increment();
+    Map<String, CompletableFuture<Thumbnail>> fetches = new HashMap<>();
+    fetches.put(thumbnailFilepath, fetch(sessionId, thumbnailFilepath));
+    sessionThumbnailFilepaths.stream()
+        .filter(filepath -> !fetches.containsKey(filepath))
+        .filter(filepath -> shouldPrefetch(sessionId, filepath))
+        .forEach(filepath -> fetches.put(filepath, fetch(sessionId, filepath)));
+    return fetches.get(thumbnailFilepath).join();
+  }
+
+  public void put(String sessionId, String thumbnailFilepath, Thumbnail thumbnail) {
+    if (thumbnail == null) {
+      return;
+    }
+    synchronized (this) {
+      SessionThumbnails thumbnails = sessionThumbnails(sessionId);
+      if (thumbnail.size() > maxSizePerSessionInBytes) {
+        thumbnails.oversize.add(thumbnailFilepath);
+      } else {
+        thumbnails.put(thumbnailFilepath, thumbnail);
+        evictLeastRecentlyActive();
+      }
+    }
+  }
+
+  public synchronized void evict(String sessionId, String thumbnailFilepath) {
+    SessionThumbnails thumbnails = sessions.get(sessionId);
+    if (thumbnails != null) {
+      thumbnails.remove(thumbnailFilepath);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    fetchExecutor.shutdownNow();
+  }
+
+  private synchronized Thumbnail cached(String sessionId, String thumbnailFilepath) {
+    SessionThumbnails thumbnails = sessions.get(sessionId);
+    return thumbnails == null ? null : thumbnails.get(thumbnailFilepath);
+  }
+
+  private synchronized boolean isUnreadable(String sessionId, String thumbnailFilepath) {
+    SessionThumbnails thumbnails = sessions.get(sessionId);
+    return thumbnails != null && thumbnails.isUnreadable(thumbnailFilepath, clock.instant());
+  }
+
+  private synchronized boolean shouldPrefetch(String sessionId, String thumbnailFilepath) {
+    SessionThumbnails thumbnails = sessions.get(sessionId);
+    return thumbnails == null
+           || thumbnails.get(thumbnailFilepath) == null
+              && !thumbnails.oversize.contains(thumbnailFilepath)
+              && !thumbnails.isUnreadable(thumbnailFilepath, clock.instant());
+  }
+
+  private synchronized void unreadable(String sessionId, String thumbnailFilepath) {
+    sessionThumbnails(sessionId).unreadableUntil.put(thumbnailFilepath,
+        clock.instant().plus(negativeTtl));
+  }
+
+  /**
+   * Only called while holding the cache's lock.
+   */
+  private SessionThumbnails sessionThumbnails(String sessionId) {
+    SessionThumbnails thumbnails = sessions.computeIfAbsent(sessionId,
+        id -> new SessionThumbnails());
+    evictLeastRecentlyActive();
+    return thumbnails;
+  }
+
+  /**
+   * Drop whole sessions, least recently active first, until both limits are met. Only called while
+   * holding the cache's lock.
+   */
+  private void evictLeastRecentlyActive() {
+    Iterator<SessionThumbnails> leastRecentlyActive = sessions.values().iterator();
+    while ((sessions.size() > maxSessions || totalSizeInBytes > maxTotalSizeInBytes)
+           && leastRecentlyActive.hasNext()) {
+      totalSizeInBytes -= leastRecentlyActive.next().sizeInBytes;
+      leastRecentlyActive.remove();
+    }
+  }
+
+  private CompletableFuture<Thumbnail> fetch(String sessionId, String thumbnailFilepath) {
+    FetchKey key = new FetchKey(sessionId, thumbnailFilepath);
+    CompletableFuture<Thumbnail> fetch = inFlight.computeIfAbsent(key,
+        ignored -> CompletableFuture.supplyAsync(() -> read(sessionId, thumbnailFilepath),
+            fetchExecutor));
+    fetch.whenComplete((thumbnail, error) -> inFlight.remove(key, fetch));
+    return fetch;
+  }
+
+  private Thumbnail read(String sessionId, String thumbnailFilepath) {
+    Thumbnail thumbnail = null;
+    try {
+      thumbnail = Thumbnail.fromStored(documentRepository.get(thumbnailFilepath));
+    } catch (Exception e) {
+      log.warn("Could not read thumbnail " + thumbnailFilepath, e);
+    }
+    if (thumbnail == null) {
+      unreadable(sessionId, thumbnailFilepath);
+    } else {
+      put(sessionId, thumbnailFilepath, thumbnail);
+    }
+    return thumbnail;
+  }
+
+  private record FetchKey(String sessionId, String thumbnailFilepath) {
+
+  }
+
+  /**
+   * One session's thumbnails, least recently used first, along with the ones that couldn't be read
+   * and the ones too big to keep. Only touched while holding the cache's lock.
+   */
+  private class SessionThumbnails {
+
+    private final LinkedHashMap<String, Thumbnail> thumbnails = new LinkedHashMap<>(16, 0.75f,
+        true);
+    private final Map<String, Instant> unreadableUntil = new HashMap<>();
+    private final Set<String> oversize = new HashSet<>();
+    private long sizeInBytes;
+
+    Thumbnail get(String thumbnailFilepath) {
+      return thumbnails.get(thumbnailFilepath);
+    }
+
+    boolean isUnreadable(String thumbnailFilepath, Instant now) {
+      Instant until = unreadableUntil.get(thumbnailFilepath);
+      if (until != null && !now.isBefore(until)) {
+        unreadableUntil.remove(thumbnailFilepath);
+        return false;
+      }
+      return until != null;
+    }
+
+    void put(String thumbnailFilepath, Thumbnail thumbnail) {
+      unreadableUntil.remove(thumbnailFilepath);
+      oversize.remove(thumbnailFilepath);
+      Thumbnail previous = thumbnails.put(thumbnailFilepath, thumbnail);
+      if (previous != null) {
+        resize(-previous.size());
+      }
+      resize(thumbnail.size());
+      Iterator<Thumbnail> leastRecentlyUsed = thumbnails.values().iterator();
+      while (sizeInBytes > maxSizePerSessionInBytes && leastRecentlyUsed.hasNext()) {
+        resize(-leastRecentlyUsed.next().size());
+        leastRecentlyUsed.remove();
+      }
+    }
+
+    void remove(String thumbnailFilepath) {
+      unreadableUntil.remove(thumbnailFilepath);
+      oversize.remove(thumbnailFilepath);
+      Thumbnail removed = thumbnails.remove(thumbnailFilepath);
+      if (removed != null) {
+        resize(-removed.size());
+      }
+    }
+
+    private void resize(long change) {
+      sizeInBytes += change;
+      totalSizeInBytes += change;
+    }
+  }
+}
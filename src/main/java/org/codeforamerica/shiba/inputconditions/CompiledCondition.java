@@ -0,0 +1,99 @@
+package org.codeforamerica.shiba.inputconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.codeforamerica.shiba.output.LogicalOperator;
+import org.codeforamerica.shiba.pages.data.InputData;
+import org.codeforamerica.shiba.pages.data.PageData;
+
+/**
+ * A {@link Condition} tree flattened into arrays, so that evaluating it doesn't walk lists or
+ * allocate streams and predicates.
+ * <p>
+ * Nodes are laid out depth first: a composite's children directly follow it, and {@code end[i]}
+ * is the index just past node i's subtree, which is where its next sibling starts.
+ */
+final class CompiledCondition {
+
+  private final LogicalOperator[] operators; // null for a leaf
+  private final int[] end;
+  private final String[] pageNames;
+  private final String[] inputs;
+  private final String[] values;
+  private final ValueMatcher[] matchers;
+
+  private CompiledCondition(List<Condition> nodes, List<Integer> ends) {
+    int size = nodes.size();
+    operators = new LogicalOperator[size];
+    end = new int[size];
+    pageNames = new String[size];
+    inputs = new String[size];
+    values = new String[size];
+    matchers = new ValueMatcher[size];
+    for (int i = 0; i < size; i++) {
+      Condition node = nodes.get(i);
+      end[i] = ends.get(i);
+      if (node.getConditions() != null) {
+        operators[i] = Objects.requireNonNull(node.getLogicalOperator(),
+            "Composite conditions need a logical operator");
+      } else {
+        pageNames[i] = node.getPageName();
+        inputs[i] = node.getInput();
+        values[i] = node.getValue();
+        matchers[i] = node.getMatcher();
+      }
+    }
+  }
+
+  static CompiledCondition compile(Condition condition) {
+    List<Condition> nodes = new ArrayList<>();
+    List<Integer> ends = new ArrayList<>();
+    flatten(condition, nodes, ends);
+    return new CompiledCondition(nodes, ends);
+  }
+
+  private static void flatten(Condition condition, List<Condition> nodes, List<Integer> ends) {
+    int index = nodes.size();
+    nodes.add(condition);
+    ends.add(null);
+    if (condition.getConditions() != null) {
+      condition.getConditions().forEach(child -> flatten(child, nodes, ends));
+    }
+    ends.set(index, nodes.size());
+  }
+
+  /**
+   * @param pages       pages that conditions with a page name are checked against
+   * @param currentPage page that conditions without a page name are checked against, if any
+   */
+  boolean evaluate(Map<String, PageData> pages, PageData currentPage) {
+    return evaluate(0, pages, currentPage);
+  }
+
+  private boolean evaluate(int node, Map<String, PageData> pages, PageData currentPage) {
+    LogicalOperator operator = operators[node];
+    if (operator == null) {
+      return matches(node, pages, currentPage);
+    }
+    boolean isAnd = operator == LogicalOperator.AND;
+    for (int child = node + 1; child < end[node]; child = end[child]) {
+      if (evaluate(child, pages, currentPage) != isAnd) {
+        return !isAnd;
+      }
+    }
+    return isAnd;
+  }
+
+  private boolean matches(int leaf, Map<String, PageData> pages, PageData currentPage) {
+    PageData pageData = pageNames[leaf] != null ? pages.get(pageNames[leaf]) : currentPage;
+    if (pageData == null) {
+      return false;
+    }
+    // A page whose skip condition was satisfied has no answer for the input, so the condition
+    // can't be satisfied
+    InputData inputData = pageData.get(inputs[leaf]);
+    return inputData != null && matchers[leaf].matches(inputData.getValue(), values[leaf]);
+  }
+}
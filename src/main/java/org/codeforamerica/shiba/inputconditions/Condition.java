@@ -5,22 +5,18 @@ import java.io.Serial;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
-import lombok.With;
+import lombok.Setter;
+import lombok.ToString;
 import org.codeforamerica.shiba.output.LogicalOperator;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.pages.data.PageData;
-import org.codeforamerica.shiba.pages.data.PagesData;
-import org.jetbrains.annotations.NotNull;
 
-@With
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class Condition implements Serializable {
 
@@ -35,6 +31,27 @@ public class Condition implements Serializable {
   private List<Condition> conditions;
   @JsonIgnore
   private LogicalOperator logicalOperator = LogicalOperator.AND;
+  /**
+   * This condition flattened for evaluation. Conditions from the application configuration are
+   * compiled when it's loaded; any others are compiled the first time they're evaluated. Setting a
+   * field recompiles this condition, but not the composite conditions it belongs to.
+   */
+  @JsonIgnore
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private transient volatile CompiledCondition compiled;
+
+  public Condition(String pageName, String input, String value, ValueMatcher matcher,
+      List<Condition> conditions, LogicalOperator logicalOperator) {
+    this.pageName = pageName;
+    this.input = input;
+    this.value = value;
+    this.matcher = matcher;
+    this.conditions = conditions;
+    this.logicalOperator = logicalOperator;
+  }
 
   public Condition(List<Condition> conditions, LogicalOperator logicalOperator) {
     this.conditions = conditions;
@@ -49,30 +66,40 @@ public class Condition implements Serializable {
   }
 
   public boolean appliesTo(ApplicationData applicationData) {
-    Stream<Condition> conditionStream = conditions.stream();
-    Predicate<Condition> conditionPredicate = getConditionPredicate(applicationData);
-    return switch (logicalOperator) {
-      case AND -> conditionStream.allMatch(conditionPredicate);
-      case OR -> conditionStream.anyMatch(conditionPredicate);
-    };
+    return satisfiedBy(applicationData.getPagesData());
   }
 
-  @NotNull
-  private Predicate<Condition> getConditionPredicate(ApplicationData applicationData) {
-    return condition -> {
-      PagesData pagesData = applicationData.getPagesData();
-      return Optional.ofNullable(pagesData.getPage(condition.getPageName()))
-          .map(pageData -> condition.matches(pageData, pagesData))
-          .orElse(false);
-    };
+  /**
+   * Evaluates this condition, including any nested conditions, against the pages they name. A
+   * condition on an input the page doesn't have isn't satisfied.
+   */
+  public boolean satisfiedBy(Map<String, PageData> pagesData) {
+    return compiled().evaluate(pagesData, null);
   }
 
+  /**
+   * Like {@link #satisfiedBy(Map)}, but conditions without a page name are evaluated against
+   * {@code pageData}.
+   */
   public boolean matches(PageData pageData, Map<String, PageData> pagesData) {
-    if (pageName != null) {
-      return satisfies(pagesData.get(pageName));
-    } else {
-      return satisfies(pageData);
+    return compiled().evaluate(pagesData, pageData);
+  }
+
+  /**
+   * Compiles this condition ahead of its first evaluation.
+   */
+  public void compile() {
+    compiled();
+  }
+
+  private CompiledCondition compiled() {
+    CompiledCondition compiledCondition = compiled;
+    if (compiledCondition == null) {
+      // Two threads racing here just compile it twice
+      compiledCondition = CompiledCondition.compile(this);
+      compiled = compiledCondition;
     }
+    return compiledCondition;
   }
 
   public boolean satisfies(PageData pageData) {
@@ -83,26 +110,36 @@ public class Condition implements Serializable {
   public void setConditions(List<Condition> conditions) {
     assertCompositeCondition();
     this.conditions = conditions;
+    this.compiled = null;
   }
 
   public void setLogicalOperator(LogicalOperator logicalOperator) {
     assertCompositeCondition();
     this.logicalOperator = logicalOperator;
+    this.compiled = null;
   }
 
   public void setPageName(String pageName) {
     assertNotCompositeCondition();
     this.pageName = pageName;
+    this.compiled = null;
   }
 
   public void setInput(String input) {
     assertNotCompositeCondition();
     this.input = input;
+    this.compiled = null;
   }
 
   public void setValue(String value) {
     assertNotCompositeCondition();
     this.value = value;
+    this.compiled = null;
+  }
+
+  public void setMatcher(ValueMatcher matcher) {
+    this.matcher = matcher;
+    this.compiled = null;
   }
 
   private void assertCompositeCondition() {
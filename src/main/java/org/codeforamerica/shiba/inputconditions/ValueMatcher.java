@@ -1,55 +1,113 @@
 package org.codeforamerica.shiba.inputconditions;
 
+import static java.util.stream.Collectors.toUnmodifiableSet;
 import static org.codeforamerica.shiba.TribalNationRoutingDestination.COUNTIES_SERVICED_BY_WHITE_EARTH;
 import static org.codeforamerica.shiba.TribalNationRoutingDestination.MILLE_LACS_RURAL_COUNTIES;
 import static org.codeforamerica.shiba.TribalNationRoutingDestination.MILLE_LACS_SERVICED_TRIBES;
 import static org.codeforamerica.shiba.TribalNationRoutingDestination.URBAN_COUNTIES;
 
 import java.util.List;
-import java.util.function.BiFunction;
+import java.util.Set;
 import org.codeforamerica.shiba.County;
 
-/* Matcher used for Condition */
+/* Matcher used for Condition. Matchers loop over the values instead of streaming them, since
+ * they run for every condition on every page render and navigation. */
 public enum ValueMatcher {
-  EMPTY((testValue, ignoredTargetValue) -> testValue.stream().allMatch(String::isEmpty)),
+  EMPTY((testValue, ignoredTargetValue) -> {
+    for (String string : testValue) {
+      if (!string.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }),
 
   NONE_SELECTED((testValue, ignore) -> testValue.isEmpty()),
 
   CONTAINS(List::contains),
 
-  NOT_EMPTY((testValue, ignore) -> !String.join("", testValue).isBlank()),
-
-  CONTAINS_STRING_OTHER_THAN((testValue, targetValue) -> testValue.stream()
-      .anyMatch(string -> !string.equals(targetValue))),
+  NOT_EMPTY((testValue, ignore) -> {
+    for (String string : testValue) {
+      if (!string.isBlank()) {
+        return true;
+      }
+    }
+    return false;
+  }),
+
+  CONTAINS_STRING_OTHER_THAN((testValue, targetValue) -> {
+    for (String string : testValue) {
+      if (!string.equals(targetValue)) {
+        return true;
+      }
+    }
+    return false;
+  }),
 
   DOES_NOT_CONTAIN((testValue, targetValue) -> !testValue.contains(targetValue)),
 
-  CONTAINS_SUBSTRING((testValue, targetValue) ->
-      testValue.stream().anyMatch(string -> string.contains(targetValue))),
+  CONTAINS_SUBSTRING(ValueMatcher::anyContains),
 
   IS_URBAN_TRIBAL_NATION_MEMBER((testValue, ignore) ->
       MILLE_LACS_SERVICED_TRIBES.containsAll(testValue)),
 
   IS_URBAN_TRIBAL_NATION_COUNTY((testValue, ignoredTargetValue) ->
-      URBAN_COUNTIES.stream().map(County::displayName).anyMatch(testValue::contains)),
+      anyIn(testValue, CountyNames.URBAN)),
 
   IS_MILLE_LACS_RURAL_COUNTY((testValue, ignoredTargetValue) ->
-      MILLE_LACS_RURAL_COUNTIES.stream().map(County::displayName).anyMatch(testValue::contains)),
+      anyIn(testValue, CountyNames.MILLE_LACS_RURAL)),
 
-  IS_WHITE_EARTH_COUNTY((testValue, ignored) -> COUNTIES_SERVICED_BY_WHITE_EARTH.stream()
-      .map(County::displayName)
-      .anyMatch(testValue::contains)),
+  IS_WHITE_EARTH_COUNTY((testValue, ignored) ->
+      anyIn(testValue, CountyNames.SERVICED_BY_WHITE_EARTH)),
 
-  DOES_NOT_CONTAIN_SUBSTRING((testValue, targetValue) -> testValue.stream()
-      .noneMatch(string -> string.contains(targetValue)));
+  DOES_NOT_CONTAIN_SUBSTRING((testValue, targetValue) -> !anyContains(testValue, targetValue));
 
-  private final BiFunction<List<String>, String, Boolean> matcher;
+  private final Matcher matcher;
 
-  ValueMatcher(BiFunction<List<String>, String, Boolean> matcher) {
+  ValueMatcher(Matcher matcher) {
     this.matcher = matcher;
   }
 
-  public Boolean matches(List<String> testValue, String targetValue) {
-    return this.matcher.apply(testValue, targetValue);
+  public boolean matches(List<String> testValue, String targetValue) {
+    return this.matcher.matches(testValue, targetValue);
+  }
+
+  private static boolean anyContains(List<String> testValue, String targetValue) {
+    for (String string : testValue) {
+      if (string.contains(targetValue)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean anyIn(List<String> testValue, Set<String> targetValues) {
+    for (String string : testValue) {
+      if (targetValues.contains(string)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @FunctionalInterface
+  private interface Matcher {
+
+    boolean matches(List<String> testValue, String targetValue);
+  }
+
+  /**
+   * County display names, looked up once rather than on every match.
+   */
+  private static class CountyNames {
+
+    static final Set<String> URBAN = displayNames(URBAN_COUNTIES);
+    static final Set<String> MILLE_LACS_RURAL = displayNames(MILLE_LACS_RURAL_COUNTIES);
+    static final Set<String> SERVICED_BY_WHITE_EARTH = displayNames(
+        COUNTIES_SERVICED_BY_WHITE_EARTH);
+
+    private static Set<String> displayNames(List<County> counties) {
+      return counties.stream().map(County::displayName).collect(toUnmodifiableSet());
+    }
   }
 }
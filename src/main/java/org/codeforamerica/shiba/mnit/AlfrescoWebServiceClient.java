@@ -14,7 +14,6 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import javax.activation.DataHandler;
-import javax.mail.util.ByteArrayDataSource;
 import javax.xml.namespace.QName;
 import javax.xml.soap.*;
 import lombok.extern.slf4j.Slf4j;
@@ -73,6 +72,15 @@ public class AlfrescoWebServiceClient {
   )
   public void send(ApplicationFile applicationFile, RoutingDestination routingDestination,
       String applicationNumber, Document applicationDocument, FlowType flowType) {
+    sendOnce(applicationFile, routingDestination, applicationNumber, applicationDocument,
+        flowType);
+  }
+
+  /**
+   * A single attempt at sending, for callers that take care of retrying themselves.
+   */
+  public void sendOnce(ApplicationFile applicationFile, RoutingDestination routingDestination,
+      String applicationNumber, Document applicationDocument, FlowType flowType) {
     MDC.put("applicationId", applicationNumber);
     MDC.put("applicationFile", applicationFile.getFileName());
     CreateDocument createDocument = new CreateDocument();
@@ -185,7 +193,7 @@ public class AlfrescoWebServiceClient {
       CreateDocument createDocument) {
     CmisContentStreamType contentStream = new CmisContentStreamType();
     contentStream.setLength(BigInteger.ZERO);
-    contentStream.setStream(new DataHandler(new ByteArrayDataSource(applicationFile.getFileBytes(),
+    contentStream.setStream(new DataHandler(new ApplicationFileDataSource(applicationFile,
         MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE)));
     createDocument.setContentStream(contentStream);
   }
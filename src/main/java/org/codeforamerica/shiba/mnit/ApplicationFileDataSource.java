@@ -0,0 +1,42 @@
+package org.codeforamerica.shiba.mnit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.activation.DataSource;
+import org.codeforamerica.shiba.output.ApplicationFile;
+
+/**
+ * Streams an {@link ApplicationFile} into a SOAP attachment, so that files kept on disk aren't
+ * read into memory first.
+ */
+class ApplicationFileDataSource implements DataSource {
+
+  private final ApplicationFile applicationFile;
+  private final String contentType;
+
+  ApplicationFileDataSource(ApplicationFile applicationFile, String contentType) {
+    this.applicationFile = applicationFile;
+    this.contentType = contentType;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return applicationFile.getInputStream();
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    throw new IOException("Application files are read only");
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+
+  @Override
+  public String getName() {
+    return applicationFile.getFileName();
+  }
+}
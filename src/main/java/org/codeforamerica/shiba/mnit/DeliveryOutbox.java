@@ -0,0 +1,129 @@
+package org.codeforamerica.shiba.mnit;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.codeforamerica.shiba.application.FlowType;
+import org.codeforamerica.shiba.output.ApplicationFile;
+import org.codeforamerica.shiba.output.Document;
+import org.codeforamerica.shiba.output.LeasedOutbox;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Pending sends to the ESB/FileNet, stored in Postgres so that retries survive restarts and can be
+ * picked up by any instance. See {@link LeasedOutbox} for how deliveries are leased and retried.
+ */
+@Repository
+@Slf4j
+public class DeliveryOutbox {
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+  private final LeasedOutbox outbox;
+
+  // Retries back off like the ESB client's own, so both use the mnit-esb settings
+  public DeliveryOutbox(JdbcTemplate jdbcTemplate,
+      @Value("${delivery-outbox.lease:10m}") Duration lease,
+      @Value("${mnit-esb.max-attempts}") int maxAttempts,
+      @Value("${mnit-esb.delay}") long delayMillis,
+      @Value("${mnit-esb.multiplier}") double multiplier,
+      @Value("${mnit-esb.max-delay}") long maxDelayMillis) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    this.outbox = new LeasedOutbox(jdbcTemplate, "delivery_outbox", lease, maxAttempts,
+        Duration.ofMillis(delayMillis), multiplier, Duration.ofMillis(maxDelayMillis));
+  }
+
+  /**
+   * Store a delivery that this instance is about to attempt, already leased to it.
+   */
+  public OutboxDelivery enqueue(ApplicationFile applicationFile,
+      RoutingDestination routingDestination, String applicationId, Document document,
+      FlowType flow) {
+    MapSqlParameterSource parameters = new MapSqlParameterSource()
+        .addValue("applicationId", applicationId)
+        .addValue("document", document.name())
+        .addValue("flow", Optional.ofNullable(flow).map(FlowType::name).orElse(null))
+        .addValue("routingDestination", routingDestination.getName())
+        .addValue("fileName", applicationFile.getFileName())
+        .addValue("fileBytes", applicationFile.getFileBytes())
+        .addValue("owner", outbox.owner())
+        .addValue("leaseExpiresAt", outbox.leaseExpiry());
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    namedParameterJdbcTemplate.update(
+        "INSERT INTO delivery_outbox (application_id, document_type, flow, routing_destination, file_name, file_bytes, leased_by, lease_expires_at) "
+            +
+            "VALUES (:applicationId, :document, :flow, :routingDestination, :fileName, :fileBytes, :owner, :leaseExpiresAt)",
+        parameters, keyHolder, new String[]{"id"});
+    long id = Objects.requireNonNull(keyHolder.getKey()).longValue();
+    return new OutboxDelivery(id, applicationId, document, flow, routingDestination.getName(),
+        applicationFile, 0);
+  }
+
+  /**
+   * Lease up to {@code limit} deliveries that are due for another attempt and not leased by
+   * anyone else.
+   */
+  public List<OutboxDelivery> claimDue(int limit) {
+    return outbox.claimDue(limit, outboxDeliveryRowMapper());
+  }
+
+  /**
+   * Extend this instance's lease on a claimed delivery before sending it.
+   *
+   * @return false if the lease ran out and another instance has claimed the delivery since
+   */
+  public boolean renewLease(OutboxDelivery delivery) {
+    return outbox.renew(delivery.id());
+  }
+
+  public void delivered(OutboxDelivery delivery) {
+    outbox.complete(delivery.id());
+  }
+
+  /**
+   * Record a failed attempt and release the lease. Once a delivery has run out of attempts its file
+   * is dropped, since it holds client data that is no longer going to be sent.
+   *
+   * @return true if the delivery will be attempted again, false if it has run out of attempts
+   */
+  public boolean failed(OutboxDelivery delivery, Exception e) {
+    boolean willRetry = outbox.failed(delivery.id(), delivery.attempts(), e);
+    if (!willRetry) {
+      jdbcTemplate.update(
+          "UPDATE delivery_outbox SET file_bytes = NULL WHERE id = ? AND status = 'failed'",
+          delivery.id());
+    }
+    return willRetry;
+  }
+
+  Duration backoff(int attempts) {
+    return outbox.backoff(attempts);
+  }
+
+  private RowMapper<OutboxDelivery> outboxDeliveryRowMapper() {
+    return (resultSet, rowNum) -> new OutboxDelivery(
+        resultSet.getLong("id"),
+        resultSet.getString("application_id"),
+        Document.valueOf(resultSet.getString("document_type")),
+        Optional.ofNullable(resultSet.getString("flow")).map(FlowType::valueOf).orElse(null),
+        resultSet.getString("routing_destination"),
+        new ApplicationFile(resultSet.getBytes("file_bytes"), resultSet.getString("file_name")),
+        resultSet.getInt("attempts"));
+  }
+
+  public record OutboxDelivery(long id, String applicationId, Document document, FlowType flow,
+                               String routingDestination, ApplicationFile applicationFile,
+                               int attempts) {
+
+  }
+}
@@ -0,0 +1,181 @@
+package org.codeforamerica.shiba.mnit;
+
+import static org.codeforamerica.shiba.application.Status.DELIVERY_FAILED;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.codeforamerica.shiba.CountyMap;
+import org.codeforamerica.shiba.TribalNationRoutingDestination;
+import org.codeforamerica.shiba.application.ApplicationRepository;
+import org.codeforamerica.shiba.application.FlowType;
+import org.codeforamerica.shiba.mnit.DeliveryOutbox.OutboxDelivery;
+import org.codeforamerica.shiba.output.ApplicationFile;
+import org.codeforamerica.shiba.output.Document;
+import org.codeforamerica.shiba.output.DocumentDeliveryExecutor;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends deliveries from the {@link DeliveryOutbox}. Every instance polls the outbox; the leases
+ * keep two instances from sending the same delivery at once. The outbox is polled whether or not
+ * delivery-outbox is on, since deliveries whose first attempt failed are retried from it either
+ * way.
+ */
+@Component
+@Slf4j
+public class DeliveryOutboxWorker {
+
+  private final DeliveryOutbox deliveryOutbox;
+  private final AlfrescoWebServiceClient mnitClient;
+  private final FilenetWebServiceClient mnitFilenetClient;
+  private final ApplicationRepository applicationRepository;
+  private final FeatureFlagConfiguration featureFlagConfiguration;
+  private final DocumentDeliveryExecutor deliveryExecutor;
+  private final Map<String, RoutingDestination> routingDestinationsByName = new HashMap<>();
+  private final int batchSize;
+  private final AtomicInteger inProgress = new AtomicInteger();
+
+  @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
+  public DeliveryOutboxWorker(DeliveryOutbox deliveryOutbox,
+      AlfrescoWebServiceClient mnitClient,
+      FilenetWebServiceClient mnitFilenetClient,
+      ApplicationRepository applicationRepository,
+      FeatureFlagConfiguration featureFlagConfiguration,
+      CountyMap<CountyRoutingDestination> countyMap,
+      Map<String, TribalNationRoutingDestination> tribalNations,
+      DocumentDeliveryExecutor deliveryExecutor,
+      @Value("${delivery-outbox.batch-size:10}") int batchSize) {
+    this.deliveryOutbox = deliveryOutbox;
+    this.mnitClient = mnitClient;
+    this.mnitFilenetClient = mnitFilenetClient;
+    this.applicationRepository = applicationRepository;
+    this.featureFlagConfiguration = featureFlagConfiguration;
+    this.deliveryExecutor = deliveryExecutor;
+    this.batchSize = batchSize;
+    countyMap.getCounties().values()
+        .forEach(county -> routingDestinationsByName.put(county.getName(), county));
+    tribalNations.values()
+        .forEach(tribalNation -> routingDestinationsByName.put(tribalNation.getName(),
+            tribalNation));
+  }
+
+  public boolean isEnabled() {
+    return featureFlagConfiguration.get("delivery-outbox") == FeatureFlag.ON;
+  }
+
+  /**
+   * Hand the due deliveries to the {@link DocumentDeliveryExecutor}, so that slow sends don't hold
+   * up the scheduler thread. Only as many are claimed as batch-size allows besides the ones still
+   * being sent from earlier polls, and each one's lease is renewed right before it's sent.
+   */
+  @Scheduled(
+      fixedDelayString = "${delivery-outbox.poll-interval-milliseconds:60000}",
+      initialDelayString = "${delivery-outbox.poll-interval-milliseconds:60000}"
+  )
+  public void deliverDue() {
+    for (OutboxDelivery delivery : deliveryOutbox.claimDue(batchSize - inProgress.get())) {
+      inProgress.incrementAndGet();
+      try {
+        deliveryExecutor.submit(() -> {
+          try {
+            deliverClaimed(delivery);
+          } finally {
+            inProgress.decrementAndGet();
+          }
+        });
+      } catch (RuntimeException e) {
+        // Shutting down; the lease runs out and another instance sends it
+        inProgress.decrementAndGet();
+        log.warn("Could not hand delivery %s to the delivery pool".formatted(delivery.id()), e);
+      }
+    }
+  }
+
+  private void deliverClaimed(OutboxDelivery delivery) {
+    RoutingDestination routingDestination = routingDestinationsByName.get(
+        delivery.routingDestination());
+    Runnable send = () -> {
+      if (deliveryOutbox.renewLease(delivery)) {
+        deliver(delivery);
+      } else {
+        log.info("Lost the lease on delivery %s, another instance is sending it".formatted(
+            delivery.id()));
+      }
+    };
+    if (routingDestination == null) {
+      send.run();
+    } else {
+      // Retries count against the same per-destination limit as first attempts
+      deliveryExecutor.sendTo(routingDestination, delivery.document(), send);
+    }
+  }
+
+  /**
+   * Make the first attempt at a delivery. Callers limit the sends to a destination with
+   * {@link DocumentDeliveryExecutor#sendTo}, so a failed attempt isn't retried here: it's stored in
+   * the outbox and retried from there, instead of backing off for hours on the calling thread while
+   * it holds its delivery permits. With delivery-outbox on, the delivery is stored before the first
+   * attempt too, so that not even that is lost to a restart.
+   */
+  public void send(ApplicationFile applicationFile, RoutingDestination routingDestination,
+      String applicationId, Document document, FlowType flow) {
+    if (isEnabled()) {
+      deliver(deliveryOutbox.enqueue(applicationFile, routingDestination, applicationId, document,
+          flow));
+      return;
+    }
+    try {
+      sendOnce(applicationFile, routingDestination, applicationId, document, flow);
+    } catch (Exception e) {
+      recordFailure(deliveryOutbox.enqueue(applicationFile, routingDestination, applicationId,
+          document, flow), e);
+    }
+  }
+
+  /**
+   * Attempt a delivery this instance holds the lease on. Failures are scheduled for another
+   * attempt, until the delivery runs out of attempts and is marked as failed. Callers limit the
+   * sends to a destination with {@link DocumentDeliveryExecutor#sendTo}.
+   */
+  public void deliver(OutboxDelivery delivery) {
+    try {
+      RoutingDestination routingDestination = routingDestinationsByName.get(
+          delivery.routingDestination());
+      if (routingDestination == null) {
+        throw new IllegalStateException(
+            "Unknown routing destination " + delivery.routingDestination());
+      }
+      sendOnce(delivery.applicationFile(), routingDestination, delivery.applicationId(),
+          delivery.document(), delivery.flow());
+      deliveryOutbox.delivered(delivery);
+    } catch (Exception e) {
+      recordFailure(delivery, e);
+    }
+  }
+
+  private void sendOnce(ApplicationFile applicationFile, RoutingDestination routingDestination,
+      String applicationId, Document document, FlowType flow) {
+    if (featureFlagConfiguration.get("filenet") == FeatureFlag.ON) {
+      mnitFilenetClient.sendOnce(applicationFile, routingDestination, applicationId, document,
+          flow);
+    } else {
+      mnitClient.sendOnce(applicationFile, routingDestination, applicationId, document, flow);
+    }
+  }
+
+  private void recordFailure(OutboxDelivery delivery, Exception e) {
+    if (deliveryOutbox.failed(delivery, e)) {
+      log.warn("Failed to send %s for application %s, will try again later".formatted(
+          delivery.applicationFile().getFileName(), delivery.applicationId()), e);
+    } else {
+      applicationRepository.updateStatus(delivery.applicationId(), delivery.document(),
+          DELIVERY_FAILED);
+      log.error("Application failed to send: " + delivery.applicationFile().getFileName(), e);
+    }
+  }
+}
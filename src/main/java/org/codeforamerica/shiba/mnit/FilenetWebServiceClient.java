@@ -14,7 +14,6 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import javax.activation.DataHandler;
-import javax.mail.util.ByteArrayDataSource;
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 import javax.xml.soap.*;
@@ -77,6 +76,16 @@ public class FilenetWebServiceClient {
   public void send(ApplicationFile applicationFile, RoutingDestination routingDestination,
       String applicationNumber,
       Document applicationDocument, FlowType flowType) {
+    sendOnce(applicationFile, routingDestination, applicationNumber, applicationDocument,
+        flowType);
+  }
+
+  /**
+   * A single attempt at sending, for callers that take care of retrying themselves.
+   */
+  public void sendOnce(ApplicationFile applicationFile, RoutingDestination routingDestination,
+      String applicationNumber,
+      Document applicationDocument, FlowType flowType) {
     MDC.put("applicationFile", applicationFile.getFileName());
     CreateDocument createDocument = new CreateDocument();
     createDocument.setRepositoryId("Programs");
@@ -200,7 +209,7 @@ public class FilenetWebServiceClient {
 
     CmisContentStreamType contentStream = new CmisContentStreamType();
     contentStream.setLength(BigInteger.ZERO);
-    contentStream.setStream(new DataHandler(new ByteArrayDataSource(applicationFile.getFileBytes(),
+    contentStream.setStream(new DataHandler(new ApplicationFileDataSource(applicationFile,
         mimeType)));
 
     ObjectFactory ob = new ObjectFactory();
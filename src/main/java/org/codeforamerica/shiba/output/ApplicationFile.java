@@ -1,12 +1,71 @@
 package org.codeforamerica.shiba.output;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import lombok.ToString;
 import lombok.Value;
 
+/**
+ * A generated or uploaded file, held either in memory or, for large uploaded documents, in a
+ * scratch file on disk. Senders that can stream should use {@link #getInputStream()} and
+ * {@link #getSize()}; {@link #getFileBytes()} reads a file on disk into memory.
+ */
 @Value
 @ToString(exclude = {"fileBytes"})
 public class ApplicationFile {
 
   byte[] fileBytes;
   String fileName;
+  Path filePath;
+
+  public ApplicationFile(byte[] fileBytes, String fileName) {
+    this(fileBytes, fileName, null);
+  }
+
+  private ApplicationFile(byte[] fileBytes, String fileName, Path filePath) {
+    this.fileBytes = fileBytes;
+    this.fileName = fileName;
+    this.filePath = filePath;
+  }
+
+  /**
+   * A file whose contents stay on disk. The file has to outlive every sender it's handed to.
+   */
+  public static ApplicationFile onDisk(Path filePath, String fileName) {
+    return new ApplicationFile(null, fileName, filePath);
+  }
+
+  public boolean isOnDisk() {
+    return filePath != null;
+  }
+
+  public byte[] getFileBytes() {
+    if (!isOnDisk()) {
+      return fileBytes;
+    }
+    try {
+      return Files.readAllBytes(filePath);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public long getSize() {
+    if (!isOnDisk()) {
+      return fileBytes == null ? 0 : fileBytes.length;
+    }
+    try {
+      return Files.size(filePath);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public InputStream getInputStream() throws IOException {
+    return isOnDisk() ? Files.newInputStream(filePath) : new ByteArrayInputStream(fileBytes);
+  }
 }
@@ -0,0 +1,208 @@
+package org.codeforamerica.shiba.output;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.codeforamerica.shiba.mnit.RoutingDestination;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs document deliveries on a bounded pool.
+ * <p>
+ * At most {@code max-in-flight} deliveries are queued or running at once; submitting another one
+ * blocks the caller until one finishes, so a spike of submissions slows down intake instead of
+ * piling up generated PDFs in memory. Sends to any single routing destination are also limited so
+ * that one slow county can't tie up every thread.
+ */
+@Component
+@Slf4j
+public class DocumentDeliveryExecutor {
+
+  private final ExecutorService executor;
+  private final Semaphore inFlight;
+  private final int maxConcurrentSendsPerDestination;
+  private final int maxConcurrentFilesPerApplication;
+  private final Map<String, Semaphore> destinationPermits = new ConcurrentHashMap<>();
+  private final MeterRegistry meterRegistry;
+  private final Timer queuedTimer;
+
+  public DocumentDeliveryExecutor(
+      @Value("${document-delivery.pool-size:8}") int poolSize,
+      @Value("${document-delivery.max-in-flight:32}") int maxInFlight,
+      @Value("${document-delivery.max-concurrent-sends-per-destination:4}") int maxConcurrentSendsPerDestination,
+      @Value("${document-delivery.max-concurrent-files-per-application:4}") int maxConcurrentFilesPerApplication,
+      @Value("${document-delivery.virtual-threads:false}") boolean virtualThreads,
+      MeterRegistry meterRegistry) {
+    this.inFlight = new Semaphore(maxInFlight, true);
+    this.maxConcurrentSendsPerDestination = maxConcurrentSendsPerDestination;
+    this.maxConcurrentFilesPerApplication = maxConcurrentFilesPerApplication;
+    this.meterRegistry = meterRegistry;
+    this.executor = Optional.ofNullable(virtualThreads ? virtualThreadExecutor() : null)
+        .orElseGet(() -> platformThreadExecutor(poolSize, meterRegistry));
+
+    Gauge.builder("document.delivery.in.flight", inFlight,
+            permits -> maxInFlight - permits.availablePermits())
+        .description("Deliveries that are queued or running")
+        .register(meterRegistry);
+    this.queuedTimer = Timer.builder("document.delivery.queued")
+        .description("Time a delivery waits before it starts running")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Run a delivery on the pool, blocking while too many deliveries are already in flight.
+   */
+  public CompletableFuture<Void> submit(Runnable delivery) {
+    acquire(inFlight);
+    long queuedAt = System.nanoTime();
+    try {
+      return CompletableFuture.runAsync(() -> {
+        queuedTimer.record(System.nanoTime() - queuedAt, NANOSECONDS);
+        try {
+          delivery.run();
+        } finally {
+          inFlight.release();
+        }
+      }, executor);
+    } catch (RejectedExecutionException e) {
+      inFlight.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Run {@code task} for each file index from 0 to {@code count - 1} on the pool, at most
+   * {@code max-concurrent-files-per-application} at a time, and wait for all of them. Results are
+   * returned in index order. A failed task doesn't stop the others; once they're all done, the
+   * first failure is rethrown.
+   */
+  public <T> List<T> runForEachFile(int count, IntFunction<T> task) {
+    Semaphore filePermits = new Semaphore(maxConcurrentFilesPerApplication);
+    // Keep the application id on log lines from the pool
+    Map<String, String> mdc = MDC.getCopyOfContextMap();
+    List<CompletableFuture<T>> results = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int index = i;
+      CompletableFuture<T> result = new CompletableFuture<>();
+      acquire(filePermits);
+      try {
+        submit(() -> {
+          if (mdc != null) {
+            MDC.setContextMap(mdc);
+          }
+          try {
+            result.complete(task.apply(index));
+          } catch (Throwable t) {
+            result.completeExceptionally(t);
+          } finally {
+            filePermits.release();
+            MDC.clear();
+          }
+        });
+      } catch (RuntimeException e) {
+        filePermits.release();
+        throw e;
+      }
+      results.add(result);
+    }
+
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+        .handle((ignored, failure) -> null)
+        .join();
+    List<T> values = new ArrayList<>(count);
+    for (CompletableFuture<T> result : results) {
+      try {
+        values.add(result.join());
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException runtimeException
+            ? runtimeException : e;
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Run a single send to a routing destination, waiting if that destination already has the
+   * maximum number of sends in progress.
+   */
+  public void sendTo(RoutingDestination destination, Document document, Runnable send) {
+    Semaphore permits = destinationPermits.computeIfAbsent(destination.getName(),
+        name -> new Semaphore(maxConcurrentSendsPerDestination, true));
+    acquire(permits);
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "failure";
+    try {
+      send.run();
+      outcome = "success";
+    } finally {
+      permits.release();
+      sample.stop(Timer.builder("document.delivery.send")
+          .description("Time to send one file to a routing destination")
+          .tags("document", document.name(), "outcome", outcome)
+          .register(meterRegistry));
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    executor.shutdown();
+    if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+      log.warn("Document deliveries were still running at shutdown");
+    }
+  }
+
+  private void acquire(Semaphore semaphore) {
+    try {
+      semaphore.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting to deliver documents", e);
+    }
+  }
+
+  private static ExecutorService platformThreadExecutor(int poolSize,
+      MeterRegistry meterRegistry) {
+    AtomicInteger threadCount = new AtomicInteger();
+    // The queue is effectively bounded by the in-flight limit
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(poolSize, poolSize,
+        0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+        runnable -> new Thread(runnable, "document-delivery-" + threadCount.incrementAndGet()));
+    new ExecutorServiceMetrics(threadPoolExecutor, "document-delivery", Tags.empty())
+        .bindTo(meterRegistry);
+    return threadPoolExecutor;
+  }
+
+  private static ExecutorService virtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      log.warn("Virtual threads aren't available on this runtime, using a platform thread pool");
+      return null;
+    }
+  }
+}
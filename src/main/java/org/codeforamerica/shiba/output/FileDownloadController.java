@@ -7,11 +7,17 @@ import static org.codeforamerica.shiba.output.Document.UPLOADED_DOC;
 import static org.codeforamerica.shiba.output.Recipient.CASEWORKER;
 import static org.codeforamerica.shiba.output.Recipient.CLIENT;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -23,7 +29,11 @@ import org.codeforamerica.shiba.output.xml.XmlGenerator;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.pages.data.UploadedDocument;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -32,6 +42,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Controller
 @Slf4j
@@ -42,34 +53,37 @@ public class FileDownloadController {
   private final ApplicationEventPublisher applicationEventPublisher;
   private final ApplicationData applicationData;
   private final ApplicationRepository applicationRepository;
+  private final Executor taskExecutor;
 
   public FileDownloadController(
       XmlGenerator xmlGenerator,
       PdfGenerator pdfGenerator,
       ApplicationEventPublisher applicationEventPublisher,
       ApplicationData applicationData,
-      ApplicationRepository applicationRepository) {
+      ApplicationRepository applicationRepository,
+      @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
     this.xmlGenerator = xmlGenerator;
     this.pdfGenerator = pdfGenerator;
     this.applicationEventPublisher = applicationEventPublisher;
     this.applicationData = applicationData;
     this.applicationRepository = applicationRepository;
+    this.taskExecutor = taskExecutor;
   }
 
   @GetMapping("/download")
-  ResponseEntity<byte[]> downloadPdf() {
+  ResponseEntity<Resource> downloadPdf() {
     ApplicationFile applicationFile = pdfGenerator.generate(applicationData.getId(), CAF, CLIENT);
     return createResponse(applicationFile);
   }
 
   @GetMapping("/download-ccap")
-  ResponseEntity<byte[]> downloadCcapPdf() {
+  ResponseEntity<Resource> downloadCcapPdf() {
     ApplicationFile applicationFile = pdfGenerator.generate(applicationData.getId(), CCAP, CLIENT);
     return createResponse(applicationFile);
   }
 
   @GetMapping("/download-ccap/{applicationId}")
-  ResponseEntity<byte[]> downloadCcapPdfWithApplicationId(
+  ResponseEntity<Resource> downloadCcapPdfWithApplicationId(
       @PathVariable String applicationId,
       HttpServletRequest request) {
 
@@ -82,7 +96,7 @@ public class FileDownloadController {
   }
 
   @GetMapping("/download-certain-pops/{applicationId}")
-  ResponseEntity<byte[]> downloadCertainPopsWithApplicationId(
+  ResponseEntity<Resource> downloadCertainPopsWithApplicationId(
       @PathVariable String applicationId,
       HttpServletRequest request) {
     String requestIp = createRequestIp(request);
@@ -93,13 +107,13 @@ public class FileDownloadController {
   }
 
   @GetMapping("/download-xml")
-  ResponseEntity<byte[]> downloadXml() {
+  ResponseEntity<Resource> downloadXml() {
     ApplicationFile applicationFile = xmlGenerator.generate(applicationData.getId(), CAF, CLIENT);
     return createResponse(applicationFile);
   }
 
   @GetMapping("/download-caf/{applicationId}")
-  ResponseEntity<byte[]> downloadPdfWithApplicationId(
+  ResponseEntity<Resource> downloadPdfWithApplicationId(
       @PathVariable String applicationId,
       HttpServletRequest request
   ) {
@@ -112,10 +126,10 @@ public class FileDownloadController {
   }
 
   @GetMapping("/download-docs/{applicationId}")
-  ResponseEntity<byte[]> downloadDocsWithApplicationId(
+  ResponseEntity<StreamingResponseBody> downloadDocsWithApplicationId(
       @PathVariable String applicationId,
       HttpServletRequest request
-  ) throws IOException {
+  ) {
     String requestIp = createRequestIp(request);
 
     // TODO: Change this to a Doc download event
@@ -123,58 +137,73 @@ public class FileDownloadController {
 
     Application application = applicationRepository.find(applicationId);
     List<UploadedDocument> uploadedDocs = application.getApplicationData().getUploadedDocs();
-
-    List<ApplicationFile> applicationFiles = new ArrayList<>();
     byte[] coverPage = pdfGenerator.generate(application, UPLOADED_DOC, CASEWORKER).getFileBytes();
-    for (int i = 0; i < uploadedDocs.size(); i++) {
-      UploadedDocument uploadedDocument = uploadedDocs.get(i);
+    IntFunction<ApplicationFile> convert = i -> {
       ApplicationFile fileToSend = pdfGenerator
-          .generateForUploadedDocument(uploadedDocument, i, application, coverPage);
-
-      if (null != fileToSend && fileToSend.getFileBytes().length > 0) {
-        applicationFiles.add(fileToSend);
-      }
+          .generateForUploadedDocument(uploadedDocs.get(i), i, application, coverPage);
+      return null != fileToSend && fileToSend.getSize() > 0 ? fileToSend : null;
+    };
+
+    // Convert up to the first document that isn't empty before answering, so that an application
+    // without any documents is still a 404 rather than an empty zip
+    ApplicationFile firstFile = null;
+    int next = 0;
+    while (firstFile == null && next < uploadedDocs.size()) {
+      firstFile = convert.apply(next++);
+    }
+    if (firstFile == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND);
     }
 
-    try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ZipOutputStream zos = new ZipOutputStream(baos)) {
-
-      applicationFiles.forEach(file -> {
-        ZipEntry entry = new ZipEntry(file.getFileName());
-        entry.setSize(file.getFileBytes().length);
-        try {
-          zos.putNextEntry(entry);
-          zos.write(file.getFileBytes());
-          zos.closeEntry();
-        } catch (IOException e) {
-          log.error("Unable to write file, " + file.getFileName(), e);
+    ApplicationFile firstFileToZip = firstFile;
+    int remaining = next;
+    StreamingResponseBody zip = outputStream -> {
+      try (ZipOutputStream zos = new ZipOutputStream(outputStream)) {
+        // Fetch and convert the next document while the current one is being compressed
+        Prefetched<ApplicationFile> upcoming = prefetch(convert, remaining, uploadedDocs.size());
+        writeEntry(zos, firstFileToZip);
+        for (int i = remaining; i < uploadedDocs.size(); i++) {
+          ApplicationFile file = upcoming.get();
+          upcoming = prefetch(convert, i + 1, uploadedDocs.size());
+          if (file != null) {
+            writeEntry(zos, file);
+          }
         }
-      });
-
-      zos.close();
-      baos.close();
-
-      // The minimum size of a .ZIP file is 22 bytes even when empty because of metadata
-      if (baos.size() > 22) {
-        return createResponse(baos.toByteArray(), applicationId + ".zip");
-      } else {
-        throw new ResponseStatusException(
-            HttpStatus.NOT_FOUND);
       }
+    };
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+        .header(HttpHeaders.CONTENT_DISPOSITION,
+            String.format("filename=\"%s\"", applicationId + ".zip"))
+        .body(zip);
+  }
 
-
-    }
+  private Prefetched<ApplicationFile> prefetch(IntFunction<ApplicationFile> convert, int index,
+      int count) {
+    return index < count ? new Prefetched<>(() -> convert.apply(index), taskExecutor) : null;
   }
 
-  private ResponseEntity<byte[]> createResponse(ApplicationFile applicationFile) {
-    return createResponse(applicationFile.getFileBytes(), applicationFile.getFileName());
+  private void writeEntry(ZipOutputStream zos, ApplicationFile file) throws IOException {
+    zos.putNextEntry(new ZipEntry(file.getFileName()));
+    try (InputStream inputStream = file.getInputStream()) {
+      inputStream.transferTo(zos);
+    }
+    zos.closeEntry();
   }
 
-  private ResponseEntity<byte[]> createResponse(byte[] fileBytes, String fileName) {
+  /**
+   * Written straight from memory or disk to the response rather than copied into a byte[] body.
+   */
+  private ResponseEntity<Resource> createResponse(ApplicationFile applicationFile) {
+    Resource body = applicationFile.isOnDisk()
+        ? new FileSystemResource(applicationFile.getFilePath())
+        : new ByteArrayResource(
+            Optional.ofNullable(applicationFile.getFileBytes()).orElse(new byte[0]));
     return ResponseEntity.ok()
         .contentType(MediaType.APPLICATION_OCTET_STREAM)
-        .header(HttpHeaders.CONTENT_DISPOSITION, String.format("filename=\"%s\"", fileName))
-        .body(fileBytes);
+        .header(HttpHeaders.CONTENT_DISPOSITION,
+            String.format("filename=\"%s\"", applicationFile.getFileName()))
+        .body(body);
   }
 
   @NotNull
@@ -183,4 +212,44 @@ public class FileDownloadController {
     String[] ipAddresses = requestIpHeader.split(",");
     return ipAddresses.length > 1 ? ipAddresses[ipAddresses.length - 2].trim() : "<blank>";
   }
+
+  /**
+   * Work started ahead of time on the task executor. Whichever of the executor and the caller
+   * gets to it first runs it, so work that's still queued behind other tasks never holds up the
+   * caller, and work the saturated executor rejects is simply done by the caller.
+   */
+  private static class Prefetched<T> {
+
+    private final Supplier<T> supplier;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    Prefetched(Supplier<T> supplier, Executor executor) {
+      this.supplier = supplier;
+      try {
+        executor.execute(this::run);
+      } catch (RejectedExecutionException e) {
+        // The caller runs it when it gets to it
+      }
+    }
+
+    private void run() {
+      if (claimed.compareAndSet(false, true)) {
+        try {
+          result.complete(supplier.get());
+        } catch (Throwable t) {
+          result.completeExceptionally(t);
+        }
+      }
+    }
+
+    T get() {
+      run();
+      try {
+        return result.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+      }
+    }
+  }
 }
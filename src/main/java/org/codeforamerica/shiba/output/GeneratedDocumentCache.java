@@ -0,0 +1,247 @@
+package org.codeforamerica.shiba.output;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.codeforamerica.shiba.documents.DocumentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Generated documents, keyed by the application's data_version. Saving the application bumps its
+ * data_version, so a document is regenerated as soon as the application it came from changes,
+ * but not when only its delivery statuses do.
+ * <p>
+ * Documents are evicted least recently used first once the cache grows past max-size. With spill
+ * turned on, evicted documents are moved to the document repository and read back from there
+ * instead of being regenerated, until there are more than max-spilled-documents of them or they
+ * are older than spill-ttl. Spilled documents hold client data, so they are deleted at shutdown,
+ * and the ones left behind by an instance that didn't shut down cleanly are deleted once they are
+ * older than spill-ttl.
+ */
+@Component
+@Slf4j
+public class GeneratedDocumentCache {
+
+  private static final String SPILL_DIRECTORY = "generated-documents/";
+
+  private final DocumentRepository documentRepository;
+  private final long maxSizeInBytes;
+  private final boolean spill;
+  private final int maxSpilledDocuments;
+  private final Duration spillTtl;
+  private final Clock clock;
+  private final Counter hits;
+  private final Counter misses;
+  private final LinkedHashMap<Key, ApplicationFile> documents = new LinkedHashMap<>(16, 0.75f,
+      true);
+  private final LinkedHashMap<Key, Spilled> spilledDocuments = new LinkedHashMap<>(16, 0.75f,
+      true);
+  private long sizeInBytes;
+
+  public GeneratedDocumentCache(DocumentRepository documentRepository,
+      @Value("${generated-document-cache.max-size:64MB}") DataSize maxSize,
+      @Value("${generated-document-cache.spill:false}") boolean spill,
+      @Value("${generated-document-cache.max-spilled-documents:1000}") int maxSpilledDocuments,
+      @Value("${generated-document-cache.spill-ttl:1h}") Duration spillTtl,
+      Clock clock,
+      MeterRegistry meterRegistry) {
+    this.documentRepository = documentRepository;
+    this.maxSizeInBytes = maxSize.toBytes();
+    this.spill = spill;
+    this.maxSpilledDocuments = maxSpilledDocuments;
+    this.spillTtl = spillTtl;
+    this.clock = clock;
+    this.hits = meterRegistry.counter("generated.document.cache", "result", "hit");
+    this.misses = meterRegistry.counter("generated.document.cache", "result", "miss");
+  }
+
+  /**
+   * The cached document for this version of the application, generating it if there isn't one.
+   * Applications that haven't been saved have no version to key on, so their documents are always
+   * generated.
+   */
+  public ApplicationFile get(String applicationId, Document document, Recipient recipient,
+      Long dataVersion, Supplier<ApplicationFile> generator) {
+    if (dataVersion == null || maxSizeInBytes <= 0) {
+      return generator.get();
+    }
+    Key key = new Key(applicationId, document, recipient, dataVersion);
+
+    ApplicationFile cached = fromMemory(key);
+    if (cached == null && spill) {
+      cached = fromSpill(key);
+    }
+    if (cached != null) {
+      hits.increment();
+      return cached;
+    }
+
+    misses.increment();
+    ApplicationFile generated = generator.get();
+    put(key, generated);
+    return generated;
+  }
+
+  /**
+   * Delete spilled documents older than spill-ttl, including the ones other instances left behind.
+   * Also runs right after startup, for the ones this instance left behind the last time it ran.
+   */
+  @Scheduled(
+      fixedDelayString = "${generated-document-cache.spill-cleanup-interval-milliseconds:600000}"
+  )
+  public void deleteExpiredSpills() {
+    if (!spill) {
+      return;
+    }
+    Instant cutoff = clock.instant().minus(spillTtl);
+    List<Key> expired = new ArrayList<>();
+    synchronized (this) {
+      spilledDocuments.entrySet().removeIf(entry -> {
+        boolean isExpired = entry.getValue().spilledAt().isBefore(cutoff);
+        if (isExpired) {
+          expired.add(entry.getKey());
+        }
+        return isExpired;
+      });
+    }
+    expired.forEach(this::deleteSpilled);
+    try {
+      documentRepository.deleteOlderThan(SPILL_DIRECTORY, cutoff);
+    } catch (Exception e) {
+      log.warn("Could not delete expired spilled generated documents", e);
+    }
+  }
+
+  @PreDestroy
+  public void deleteSpills() {
+    if (!spill) {
+      return;
+    }
+    List<Key> spilled;
+    synchronized (this) {
+      spilled = new ArrayList<>(spilledDocuments.keySet());
+      spilledDocuments.clear();
+    }
+    spilled.forEach(this::deleteSpilled);
+  }
+
+  private synchronized ApplicationFile fromMemory(Key key) {
+    return documents.get(key);
+  }
+
+  private ApplicationFile fromSpill(Key key) {
+    Spilled spilled;
+    synchronized (this) {
+      spilled = spilledDocuments.remove(key);
+    }
+    if (spilled == null) {
+      return null;
+    }
+    byte[] fileBytes = documentRepository.get(key.spillPath());
+    if (fileBytes == null || fileBytes.length == 0) {
+      return null;
+    }
+    ApplicationFile applicationFile = new ApplicationFile(fileBytes, spilled.filename());
+    put(key, applicationFile);
+    deleteSpilled(key);
+    return applicationFile;
+  }
+
+  private void put(Key key, ApplicationFile applicationFile) {
+    long size = applicationFile.getFileBytes().length;
+    if (size > maxSizeInBytes) {
+      return;
+    }
+
+    List<Map.Entry<Key, ApplicationFile>> evicted = new ArrayList<>();
+    List<Key> unspilled = new ArrayList<>();
+    synchronized (this) {
+      ApplicationFile previous = documents.put(key, applicationFile);
+      if (previous != null) {
+        sizeInBytes -= previous.getFileBytes().length;
+      }
+      sizeInBytes += size;
+      Iterator<Map.Entry<Key, ApplicationFile>> leastRecentlyUsed = documents.entrySet()
+          .iterator();
+      while (sizeInBytes > maxSizeInBytes && leastRecentlyUsed.hasNext()) {
+        Map.Entry<Key, ApplicationFile> eldest = leastRecentlyUsed.next();
+        sizeInBytes -= eldest.getValue().getFileBytes().length;
+        evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+        leastRecentlyUsed.remove();
+      }
+      if (spill) {
+        Instant now = clock.instant();
+        evicted.forEach(entry -> spilledDocuments.put(entry.getKey(),
+            new Spilled(entry.getValue().getFileName(), now)));
+        Iterator<Key> leastRecentlySpilled = spilledDocuments.keySet().iterator();
+        while (spilledDocuments.size() > maxSpilledDocuments && leastRecentlySpilled.hasNext()) {
+          unspilled.add(leastRecentlySpilled.next());
+          leastRecentlySpilled.remove();
+        }
+      }
+    }
+
+    // Talk to the document repository outside the lock
+    if (spill) {
+      List<Key> evictedKeys = evicted.stream().map(Map.Entry::getKey).toList();
+      evicted.stream()
+          .filter(entry -> !unspilled.contains(entry.getKey()))
+          .forEach(this::writeSpilled);
+      unspilled.stream()
+          .filter(unspilledKey -> !evictedKeys.contains(unspilledKey))
+          .forEach(this::deleteSpilled);
+    }
+  }
+
+  private void writeSpilled(Map.Entry<Key, ApplicationFile> entry) {
+    try {
+      documentRepository.upload(entry.getKey().spillPath(), entry.getValue().getFileBytes());
+    } catch (Exception e) {
+      synchronized (this) {
+        spilledDocuments.remove(entry.getKey());
+      }
+      log.warn("Could not spill generated document " + entry.getValue().getFileName(), e);
+    }
+  }
+
+  private void deleteSpilled(Key key) {
+    try {
+      documentRepository.delete(key.spillPath());
+    } catch (Exception e) {
+      log.warn("Could not delete spilled generated document " + key.spillPath(), e);
+    }
+  }
+
+  private record Key(String applicationId, Document document, Recipient recipient,
+                     long dataVersion) {
+
+    /**
+     * Spilled documents are stored under a hash of the key, so the path doesn't reveal which
+     * application they belong to.
+     */
+    String spillPath() {
+      return SPILL_DIRECTORY + UUID.nameUUIDFromBytes(String.join(":", applicationId,
+          document.name(), recipient.name(), Long.toString(dataVersion)).getBytes(UTF_8));
+    }
+  }
+
+  private record Spilled(String filename, Instant spilledAt) {
+
+  }
+}
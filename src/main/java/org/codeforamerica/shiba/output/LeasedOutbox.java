@@ -0,0 +1,162 @@
+package org.codeforamerica.shiba.output;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * The leasing and retrying shared by the outboxes, tables of pending sends stored in Postgres so
+ * that retries survive restarts and can be picked up by any instance.
+ * <p>
+ * An instance works on a row only while it holds the lease on it. If it dies mid-send, the lease
+ * runs out and another instance picks the row up. Lease expiry and retry backoff are computed from
+ * the database clock, so instances don't have to agree on the time. The table needs the id, status,
+ * attempts, next_attempt_at, leased_by, lease_expires_at and last_error columns of the
+ * delivery_outbox table.
+ */
+public class LeasedOutbox {
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+  private final String table;
+  private final String owner;
+  private final Duration lease;
+  private final int maxAttempts;
+  private final Duration delay;
+  private final double multiplier;
+  private final Duration maxDelay;
+
+  public LeasedOutbox(JdbcTemplate jdbcTemplate, String table, Duration lease, int maxAttempts,
+      Duration delay, double multiplier, Duration maxDelay) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    this.table = table;
+    this.owner = hostname() + "-" + UUID.randomUUID();
+    this.lease = lease;
+    this.maxAttempts = maxAttempts;
+    this.delay = delay;
+    this.multiplier = multiplier;
+    this.maxDelay = maxDelay;
+  }
+
+  /**
+   * Who this instance's leases are held by.
+   */
+  public String owner() {
+    return owner;
+  }
+
+  /**
+   * When a lease taken now runs out.
+   */
+  public Timestamp leaseExpiry() {
+    return Timestamp.from(databaseNow().plus(lease));
+  }
+
+  /**
+   * Lease up to {@code limit} rows that are due for an attempt and not leased by anyone else. Rows
+   * another instance is claiming at the same time are skipped rather than waited on, so concurrent
+   * pollers each get their own rows.
+   */
+  public <T> List<T> claimDue(int limit, RowMapper<T> rowMapper) {
+    if (limit <= 0) {
+      return List.of();
+    }
+    return namedParameterJdbcTemplate.query(
+        ("UPDATE %1$s SET leased_by = :owner, lease_expires_at = :leaseExpiresAt " +
+            "WHERE id IN (SELECT id FROM %1$s WHERE status = 'pending' " +
+            "AND next_attempt_at <= CURRENT_TIMESTAMP " +
+            "AND (lease_expires_at IS NULL OR lease_expires_at < CURRENT_TIMESTAMP) " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *").formatted(table),
+        new MapSqlParameterSource()
+            .addValue("owner", owner)
+            .addValue("leaseExpiresAt", leaseExpiry())
+            .addValue("limit", limit),
+        rowMapper);
+  }
+
+  /**
+   * Extend the lease on a row this instance holds, by a full lease from now. Workers that claim a
+   * batch renew each row right before sending it, so that the rows waiting their turn can't be
+   * claimed by another instance while the ones ahead of them are slow to send.
+   *
+   * @return false if this instance no longer held the lease, and mustn't send the row
+   */
+  public boolean renew(long id) {
+    return namedParameterJdbcTemplate.update(
+        ("UPDATE %s SET lease_expires_at = :leaseExpiresAt WHERE id = :id AND leased_by = :owner " +
+            "AND status = 'pending'").formatted(table),
+        new MapSqlParameterSource()
+            .addValue("leaseExpiresAt", leaseExpiry())
+            .addValue("id", id)
+            .addValue("owner", owner)) == 1;
+  }
+
+  /**
+   * Remove a row this instance holds the lease on, once it's been sent.
+   *
+   * @return false if this instance no longer held the lease
+   */
+  public boolean complete(long id) {
+    return jdbcTemplate.update("DELETE FROM %s WHERE id = ? AND leased_by = ?".formatted(table),
+        id, owner) == 1;
+  }
+
+  /**
+   * Record a failed attempt and release the lease.
+   *
+   * @param attempts the attempts made before this one
+   * @return true if the row will be attempted again, false if it has run out of attempts and is
+   * marked as failed
+   */
+  public boolean failed(long id, int attempts, Throwable error) {
+    int attemptsMade = attempts + 1;
+    boolean willRetry = attemptsMade < maxAttempts;
+    namedParameterJdbcTemplate.update(
+        ("UPDATE %s SET attempts = :attempts, status = :status, " +
+            "next_attempt_at = :nextAttemptAt, last_error = :lastError, " +
+            "leased_by = NULL, lease_expires_at = NULL WHERE id = :id AND leased_by = :owner")
+            .formatted(table),
+        new MapSqlParameterSource()
+            .addValue("attempts", attemptsMade)
+            .addValue("status", willRetry ? "pending" : "failed")
+            .addValue("nextAttemptAt",
+                Timestamp.from(databaseNow().plus(backoff(attemptsMade))))
+            .addValue("lastError", String.valueOf(error))
+            .addValue("id", id)
+            .addValue("owner", owner));
+    return willRetry;
+  }
+
+  /**
+   * Exponential backoff after the given number of failed attempts, capped at max-delay.
+   */
+  public Duration backoff(int attempts) {
+    double delayMillis = delay.toMillis() * Math.pow(multiplier, attempts - 1);
+    return Duration.ofMillis((long) Math.min(delayMillis, maxDelay.toMillis()));
+  }
+
+  private Instant databaseNow() {
+    return Objects.requireNonNull(
+            jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP", Timestamp.class))
+        .toInstant();
+  }
+
+  private static String hostname() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      return "unknown-host";
+    }
+  }
+}
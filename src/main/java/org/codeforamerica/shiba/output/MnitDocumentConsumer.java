@@ -6,21 +6,30 @@ import static org.codeforamerica.shiba.application.Status.SENDING;
 import static org.codeforamerica.shiba.output.Document.CAF;
 import static org.codeforamerica.shiba.output.Document.UPLOADED_DOC;
 import static org.codeforamerica.shiba.output.Recipient.CASEWORKER;
+import static org.codeforamerica.shiba.output.pdf.PdfGenerator.IMAGE_TYPES_TO_CONVERT_TO_PDF;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
 import lombok.extern.slf4j.Slf4j;
 import org.codeforamerica.shiba.County;
 import org.codeforamerica.shiba.MonitoringService;
+import org.codeforamerica.shiba.Utils;
 import org.codeforamerica.shiba.application.Application;
 import org.codeforamerica.shiba.application.ApplicationRepository;
 import org.codeforamerica.shiba.application.parsers.DocumentListParser;
-import org.codeforamerica.shiba.mnit.AlfrescoWebServiceClient;
-import org.codeforamerica.shiba.mnit.FilenetWebServiceClient;
+import org.codeforamerica.shiba.mnit.DeliveryOutboxWorker;
 import org.codeforamerica.shiba.mnit.RoutingDestination;
+import org.codeforamerica.shiba.output.ScratchSpace.Session;
 import org.codeforamerica.shiba.output.pdf.PdfGenerator;
 import org.codeforamerica.shiba.output.xml.XmlGenerator;
 import org.codeforamerica.shiba.pages.RoutingDecisionService;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
 import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.data.UploadedDocument;
 import org.codeforamerica.shiba.pages.emails.EmailClient;
@@ -30,7 +39,6 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class MnitDocumentConsumer {
 
-  private final AlfrescoWebServiceClient mnitClient;
   private final EmailClient emailClient;
   private final XmlGenerator xmlGenerator;
   private final PdfGenerator pdfGenerator;
@@ -38,18 +46,22 @@ public class MnitDocumentConsumer {
   private final RoutingDecisionService routingDecisionService;
   private final ApplicationRepository applicationRepository;
   private final FeatureFlagConfiguration featureFlagConfiguration;
-  private final FilenetWebServiceClient mnitFilenetClient;
+  private final DocumentDeliveryExecutor deliveryExecutor;
+  private final DeliveryOutboxWorker deliveryOutboxWorker;
+  private final ScratchSpace scratchSpace;
+  private final DistributionSummary imageBytesSaved;
 
-  public MnitDocumentConsumer(AlfrescoWebServiceClient mnitClient,
-      EmailClient emailClient,
+  public MnitDocumentConsumer(EmailClient emailClient,
       XmlGenerator xmlGenerator,
       PdfGenerator pdfGenerator,
       MonitoringService monitoringService,
       RoutingDecisionService routingDecisionService,
       ApplicationRepository applicationRepository,
       FeatureFlagConfiguration featureFlagConfiguration,
-      FilenetWebServiceClient mnitFilenetClient) {
-    this.mnitClient = mnitClient;
+      DocumentDeliveryExecutor deliveryExecutor,
+      DeliveryOutboxWorker deliveryOutboxWorker,
+      ScratchSpace scratchSpace,
+      MeterRegistry meterRegistry) {
     this.xmlGenerator = xmlGenerator;
     this.pdfGenerator = pdfGenerator;
     this.monitoringService = monitoringService;
@@ -57,81 +69,153 @@ public class MnitDocumentConsumer {
     this.applicationRepository = applicationRepository;
     this.emailClient = emailClient;
     this.featureFlagConfiguration = featureFlagConfiguration;
-    this.mnitFilenetClient = mnitFilenetClient;
+    this.deliveryExecutor = deliveryExecutor;
+    this.deliveryOutboxWorker = deliveryOutboxWorker;
+    this.scratchSpace = scratchSpace;
+    this.imageBytesSaved = DistributionSummary.builder("uploaded.documents.image.bytes.saved")
+        .description("Bytes by which converting an application's uploaded images shrank them")
+        .baseUnit("bytes")
+        .register(meterRegistry);
   }
 
   public void processCafAndCcap(Application application) {
     String id = application.getId();
     monitoringService.setApplicationId(id);
 
-    List<Thread> threads = new ArrayList<>();
-
-    // Generate the CAF and CCAP PDFs to send in parallel so that one document isn't waiting on the
-    // other to finish sending. pdfGenerator may not be thread-safe
+    // Send the CAF and CCAP PDFs and the CAF XML in parallel so that one document isn't waiting on
+    // another to finish sending. Each file is generated on the delivery pool once the delivery has
+    // its in-flight permit, so that the in-flight limit also bounds the files held in memory
+    List<CompletableFuture<Void>> deliveries = new ArrayList<>();
     DocumentListParser.parse(application.getApplicationData()).forEach(
-        documentType -> threads.add(new Thread(new SendPDFRunnable(
-            documentType,
-            pdfGenerator.generate(id, documentType, CASEWORKER),
-            application)))
-    );
-
-    // Send the CAF and CCAP as PDFs in parallel
-    threads.forEach(Thread::start);
-
-    // Send the CAF as XML
-    sendFileToAllRoutingDestinations(application, CAF, xmlGenerator.generate(id, CAF, CASEWORKER));
+        documentType -> deliveries.add(deliveryExecutor.submit(
+            new SendPDFRunnable(documentType, application))));
+    deliveries.add(deliveryExecutor.submit(() -> sendFileToAllRoutingDestinations(application,
+        CAF, xmlGenerator.generate(id, CAF, CASEWORKER))));
 
     // Wait for everything to finish before returning
-    threads.forEach(t -> {
-      try {
-        t.join();
-      } catch (InterruptedException e) {
-        log.error("Thread interrupted", e);
-      }
-    });
+    try {
+      CompletableFuture.allOf(deliveries.toArray(CompletableFuture[]::new)).join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+    }
   }
 
   public void processUploadedDocuments(Application application) {
     applicationRepository.updateStatus(application.getId(), UPLOADED_DOC, SENDING);
     List<UploadedDocument> uploadedDocs = application.getApplicationData().getUploadedDocs();
-    List<ApplicationFile> applicationFiles = new ArrayList<>();
-
-    // General files to send
-    byte[] coverPage = pdfGenerator.generate(application, UPLOADED_DOC, CASEWORKER).getFileBytes();
-    for (int i = 0; i < uploadedDocs.size(); i++) {
-      UploadedDocument uploadedDocument = uploadedDocs.get(i);
-      ApplicationFile fileToSend = pdfGenerator.generateForUploadedDocument(uploadedDocument, i,
-          application, coverPage);
-      if (fileToSend != null && fileToSend.getFileBytes().length > 0) {
-        log.info("Now queueing file to send: %s".formatted(fileToSend.getFileName()));
-        applicationFiles.add(fileToSend);
-      } else {
-        // This should only happen in a dev environment
-        log.error(
-            "Skipped uploading file " + uploadedDocument.getFilename() + " because it was empty.");
-      }
-    }
+    boolean streaming = featureFlagConfiguration.get("stream-uploaded-documents") == FeatureFlag.ON;
+    boolean pipelined =
+        featureFlagConfiguration.get("pipeline-uploaded-documents") == FeatureFlag.ON;
+    LongAdder bytesSaved = new LongAdder();
 
-    // Send files
-    List<RoutingDestination> routingDestinations = routingDecisionService
-        .getRoutingDestinations(application.getApplicationData(), UPLOADED_DOC);
-    for (RoutingDestination rd : routingDestinations) {
-      boolean sendToHennepinViaEmail = featureFlagConfiguration.get(
-          "submit-docs-via-email-for-hennepin").isOn();
-      boolean isHennepin = rd.getName().equals(County.Hennepin.name());
-
-      if (sendToHennepinViaEmail && isHennepin) {
-        emailClient.sendHennepinDocUploadsEmails(application, applicationFiles);
+    // Files made in the scratch space are deleted once they've all been sent
+    try (Session scratch = streaming ? scratchSpace.open() : null) {
+      // General files to send
+      byte[] coverPage = pdfGenerator.generate(application, UPLOADED_DOC, CASEWORKER)
+          .getFileBytes();
+      List<RoutingDestination> routingDestinations = routingDecisionService
+          .getRoutingDestinations(application.getApplicationData(), UPLOADED_DOC);
+      if (pipelined) {
+        sendUploadedDocumentsPipelined(application, uploadedDocs, coverPage, scratch,
+            routingDestinations, bytesSaved);
       } else {
-        for (ApplicationFile fileToSend : applicationFiles) {
-          sendFileToRoutingDestination(application, UPLOADED_DOC, fileToSend, rd);
+        List<ApplicationFile> applicationFiles = new ArrayList<>();
+        for (int i = 0; i < uploadedDocs.size(); i++) {
+          ApplicationFile fileToSend = prepareUploadedDocument(application, uploadedDocs.get(i),
+              i, coverPage, scratch, bytesSaved);
+          if (fileToSend != null) {
+            applicationFiles.add(fileToSend);
+          }
+        }
+
+        // Send files
+        for (RoutingDestination rd : routingDestinations) {
+          if (sendsViaHennepinEmail(rd)) {
+            emailClient.sendHennepinDocUploadsEmails(application, applicationFiles);
+          } else {
+            for (ApplicationFile fileToSend : applicationFiles) {
+              sendFileToRoutingDestination(application, UPLOADED_DOC, fileToSend, rd);
+            }
+          }
         }
       }
     }
 
+    if (uploadedDocs.stream().anyMatch(MnitDocumentConsumer::isImage)) {
+      // Recorded once per application; growth from the lossless conversion counts as nothing saved
+      imageBytesSaved.record(Math.max(0, bytesSaved.sum()));
+    }
     applicationRepository.updateStatus(application.getId(), UPLOADED_DOC, DELIVERED);
   }
 
+  /**
+   * Fetch, convert and send each file on the delivery pool instead of one after the other, so one
+   * file can be sending while the next is still downloading. Each file is sent to the routing
+   * destinations as soon as it's ready; Hennepin's email still gets every file at once, in upload
+   * order, after they've all been prepared.
+   */
+  private void sendUploadedDocumentsPipelined(Application application,
+      List<UploadedDocument> uploadedDocs, byte[] coverPage, Session scratch,
+      List<RoutingDestination> routingDestinations, LongAdder bytesSaved) {
+    List<RoutingDestination> viaEmail = routingDestinations.stream()
+        .filter(this::sendsViaHennepinEmail)
+        .toList();
+    List<RoutingDestination> viaMnit = routingDestinations.stream()
+        .filter(rd -> !viaEmail.contains(rd))
+        .toList();
+
+    List<ApplicationFile> applicationFiles = deliveryExecutor.runForEachFile(uploadedDocs.size(),
+        i -> {
+          ApplicationFile fileToSend = prepareUploadedDocument(application, uploadedDocs.get(i),
+              i, coverPage, scratch, bytesSaved);
+          if (fileToSend != null) {
+            viaMnit.forEach(
+                rd -> sendFileToRoutingDestination(application, UPLOADED_DOC, fileToSend, rd));
+          }
+          return fileToSend;
+        }).stream()
+        .filter(Objects::nonNull)
+        .toList();
+
+    viaEmail.forEach(rd -> emailClient.sendHennepinDocUploadsEmails(application, applicationFiles));
+  }
+
+  /**
+   * The PDF to send for one uploaded document, or null if there's nothing to send. For images, how
+   * much smaller the PDF came out than the upload plus its cover page is added to
+   * {@code bytesSaved}.
+   */
+  private ApplicationFile prepareUploadedDocument(Application application,
+      UploadedDocument uploadedDocument, int index, byte[] coverPage, Session scratch,
+      LongAdder bytesSaved) {
+    ApplicationFile fileToSend = scratch != null
+        ? pdfGenerator.generateForUploadedDocument(uploadedDocument, index, application,
+            coverPage, scratch)
+        : pdfGenerator.generateForUploadedDocument(uploadedDocument, index, application,
+            coverPage);
+    if (fileToSend != null && fileToSend.getSize() > 0) {
+      log.info("Now queueing file to send: %s".formatted(fileToSend.getFileName()));
+      if (isImage(uploadedDocument)) {
+        bytesSaved.add(uploadedDocument.getSize() + coverPage.length - fileToSend.getSize());
+      }
+      return fileToSend;
+    }
+    // This should only happen in a dev environment
+    log.error(
+        "Skipped uploading file " + uploadedDocument.getFilename() + " because it was empty.");
+    return null;
+  }
+
+  private static boolean isImage(UploadedDocument uploadedDocument) {
+    return IMAGE_TYPES_TO_CONVERT_TO_PDF.contains(
+        Utils.getFileType(uploadedDocument.getFilename()));
+  }
+
+  private boolean sendsViaHennepinEmail(RoutingDestination rd) {
+    return featureFlagConfiguration.get("submit-docs-via-email-for-hennepin").isOn()
+        && rd.getName().equals(County.Hennepin.name());
+  }
+
   private void sendFileToAllRoutingDestinations(Application application, Document document,
       ApplicationFile file) {
     List<RoutingDestination> routingDestinations = routingDecisionService
@@ -153,24 +237,17 @@ public class MnitDocumentConsumer {
         documentName,
         rd.getName(),
         application.getId()));
-    if (featureFlagConfiguration.get("filenet").isOn()) {
-      mnitFilenetClient.send(file, rd, application.getId(), document, application.getFlow());
-    } else {
-      mnitClient.send(file, rd, application.getId(), document, application.getFlow());
-    }
-
+    deliveryExecutor.sendTo(rd, document, () -> deliveryOutboxWorker.send(file, rd,
+        application.getId(), document, application.getFlow()));
   }
 
   class SendPDFRunnable implements Runnable {
 
     private final Document documentType;
-    private final ApplicationFile applicationFile;
     private final Application application;
 
-    public SendPDFRunnable(Document documentType, ApplicationFile applicationFile,
-        Application application) {
+    public SendPDFRunnable(Document documentType, Application application) {
       this.documentType = documentType;
-      this.applicationFile = applicationFile;
       this.application = application;
     }
 
@@ -178,6 +255,8 @@ public class MnitDocumentConsumer {
     public void run() {
       try {
         applicationRepository.updateStatus(application.getId(), documentType, SENDING);
+        ApplicationFile applicationFile = pdfGenerator.generate(application.getId(), documentType,
+            CASEWORKER);
         sendFileToAllRoutingDestinations(application, documentType, applicationFile);
       } catch (Exception e) {
         applicationRepository.updateStatus(application.getId(), documentType, DELIVERY_FAILED);
@@ -185,4 +264,4 @@ public class MnitDocumentConsumer {
       }
     }
   }
-}
\ No newline at end of file
+}
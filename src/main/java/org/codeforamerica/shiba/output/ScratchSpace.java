@@ -0,0 +1,143 @@
+package org.codeforamerica.shiba.output;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * A bounded area on local disk for the temporary files made while processing uploaded documents,
+ * so that downloads, image conversions and cover page merges don't have to be held in the heap.
+ * <p>
+ * Space is reserved up front by each {@link Session}, given back as the session deletes its
+ * files, and the rest of it, along with every file the session made, when it's closed. A
+ * reservation that doesn't fit within {@code max-size} waits up to {@code reservation-timeout} for
+ * other sessions to close, then fails so that the caller can fall back to processing in memory.
+ */
+@Component
+@Slf4j
+public class ScratchSpace {
+
+  // Reservations are counted in KB so that a large max-size still fits in a Semaphore
+  private static final long BYTES_PER_PERMIT = 1024;
+
+  private final Path directory;
+  private final int maxPermits;
+  private final Duration reservationTimeout;
+  private final Semaphore permits;
+
+  public ScratchSpace(
+      @Value("${uploaded-document-scratch.directory:"
+             + "#{systemProperties['java.io.tmpdir']}/shiba-scratch}") Path directory,
+      @Value("${uploaded-document-scratch.max-size:1GB}") DataSize maxSize,
+      @Value("${uploaded-document-scratch.reservation-timeout:30s}") Duration reservationTimeout) {
+    this.directory = directory;
+    this.maxPermits = (int) Math.min(Integer.MAX_VALUE, maxSize.toBytes() / BYTES_PER_PERMIT);
+    this.reservationTimeout = reservationTimeout;
+    this.permits = new Semaphore(maxPermits, true);
+  }
+
+  public Session open() {
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new Session();
+  }
+
+  private static int permitsFor(long bytes) {
+    return (int) ((bytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT);
+  }
+
+  /**
+   * The scratch files for one unit of work, e.g. all the uploaded documents of one application.
+   */
+  public class Session implements AutoCloseable {
+
+    private final Set<Path> files = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger reservedPermits = new AtomicInteger();
+
+    private Session() {
+    }
+
+    public Path getDirectory() {
+      return directory;
+    }
+
+    /**
+     * Reserve room for {@code bytes} more of scratch files. Room held by this session only comes
+     * back as it deletes its files, so a reservation that wouldn't fit even once every other
+     * session has closed fails right away instead of waiting.
+     *
+     * @return false if there wasn't room before the reservation timeout
+     */
+    public boolean reserve(long bytes) {
+      int wanted = permitsFor(Math.min(bytes, maxPermits * BYTES_PER_PERMIT));
+      if ((long) reservedPermits.get() + wanted > maxPermits) {
+        log.warn("No room in the scratch space for another " + bytes
+                 + " bytes, this session already holds the rest");
+        return false;
+      }
+      try {
+        if (permits.tryAcquire(wanted, reservationTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+          reservedPermits.addAndGet(wanted);
+          return true;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      log.warn("No room in the scratch space for another " + bytes + " bytes");
+      return false;
+    }
+
+    public Path newFile(String suffix) {
+      try {
+        Path file = Files.createTempFile(directory, "upload-", suffix);
+        files.add(file);
+        return file;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Delete a file before the session closes, once nothing needs it anymore, and give back the
+     * room it took up.
+     */
+    public void delete(Path file) {
+      try {
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        Files.deleteIfExists(file);
+        if (files.remove(file)) {
+          release(permitsFor(size));
+        }
+      } catch (IOException e) {
+        log.warn("Could not delete scratch file " + file, e);
+      }
+    }
+
+    @Override
+    public void close() {
+      List.copyOf(files).forEach(this::delete);
+      permits.release(reservedPermits.getAndSet(0));
+    }
+
+    private void release(int permitsToRelease) {
+      int held = reservedPermits.getAndUpdate(
+          reserved -> Math.max(0, reserved - permitsToRelease));
+      permits.release(Math.min(held, permitsToRelease));
+    }
+  }
+}
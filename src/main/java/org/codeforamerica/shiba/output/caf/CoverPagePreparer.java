@@ -61,6 +61,11 @@ public class CoverPagePreparer implements DocumentFieldPreparer {
     this.routingDestinationMessageService = routingDestinationMessageService;
   }
 
+  @Override
+  public DependsOn dependsOn() {
+    return DependsOn.DOCUMENT_AND_RECIPIENT;
+  }
+
   @Override
   public List<DocumentField> prepareDocumentFields(Application application, Document document,
       Recipient recipient,
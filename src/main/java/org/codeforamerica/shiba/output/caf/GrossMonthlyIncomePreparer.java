@@ -32,6 +32,11 @@ public class GrossMonthlyIncomePreparer implements DocumentFieldPreparer {
     this.applicationConfiguration = applicationConfiguration;
   }
 
+  @Override
+  public DependsOn dependsOn() {
+    return DependsOn.DOCUMENT;
+  }
+
   @Override
   public List<DocumentField> prepareDocumentFields(Application application, Document document,
       Recipient recipient,
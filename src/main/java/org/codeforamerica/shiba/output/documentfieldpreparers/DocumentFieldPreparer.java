@@ -22,4 +22,25 @@ public interface DocumentFieldPreparer {
 
   List<DocumentField> prepareDocumentFields(Application application, Document document,
       Recipient recipient, SubworkflowIterationScopeTracker scopeTracker);
+
+  /**
+   * What the fields depend on besides the application. Fields that depend on nothing else are
+   * prepared once per application and shared by every document generated from it.
+   */
+  default DependsOn dependsOn() {
+    return DependsOn.APPLICATION;
+  }
+
+  enum DependsOn {
+    APPLICATION,
+    /**
+     * Also used by preparers that share the scope tracker, since the order in which iterations are
+     * tracked can depend on the document.
+     */
+    DOCUMENT,
+    /**
+     * Prepared separately for every document and recipient, with a scope tracker of their own.
+     */
+    DOCUMENT_AND_RECIPIENT
+  }
 }
@@ -1,47 +1,171 @@
 package org.codeforamerica.shiba.output.documentfieldpreparers;
 
-import static java.util.stream.Collectors.toList;
 import static org.codeforamerica.shiba.output.DocumentFieldType.SINGLE_VALUE;
 
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.codeforamerica.shiba.application.Application;
-import org.codeforamerica.shiba.output.DocumentField;
 import org.codeforamerica.shiba.output.Document;
+import org.codeforamerica.shiba.output.DocumentField;
 import org.codeforamerica.shiba.output.Recipient;
+import org.codeforamerica.shiba.output.documentfieldpreparers.DocumentFieldPreparer.DependsOn;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Prepares the fields of every document generated from an application.
+ * <p>
+ * Most preparers don't care which document is being generated or for whom, so their fields are
+ * prepared once per version of an application (its id and data_version) and reused for every PDF
+ * and the XML. Fields that depend on the document are prepared once per document, and only the ones
+ * that depend on the recipient as well are prepared every time. Personal data is masked for clients
+ * as the very last step.
+ */
 @Slf4j
 @Component
 public class DocumentFieldPreparers {
 
   private final List<DocumentFieldPreparer> preparers;
+  private final Map<String, String> personalDataMappings;
+  private final Map<PreparedFieldsKey, PreparedDocumentFields> preparedFields;
 
-  public DocumentFieldPreparers(List<DocumentFieldPreparer> preparers) {
+  public DocumentFieldPreparers(List<DocumentFieldPreparer> preparers,
+      Map<String, String> personalDataMappings,
+      @Value("${prepared-document-fields.cache-size:32}") int cacheSize) {
     this.preparers = preparers;
+    this.personalDataMappings = personalDataMappings;
+    this.preparedFields = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+          Map.Entry<PreparedFieldsKey, PreparedDocumentFields> eldest) {
+        return size() > cacheSize;
+      }
+    };
   }
 
   public List<DocumentField> prepareDocumentFields(Application application, Document document,
       Recipient recipient) {
+    List<DocumentField> documentFields = prepare(application).forDocument(document, recipient);
+    return Recipient.CLIENT.equals(recipient) ? maskPersonalData(documentFields) : documentFields;
+  }
+
+  /**
+   * The fields that are the same for every document, either from the last time they were prepared
+   * for this version of the application or freshly prepared. Applications that haven't been saved
+   * have no version to key on, so they are always prepared from scratch.
+   */
+  private PreparedDocumentFields prepare(Application application) {
+    if (application.getDataVersion() == null) {
+      return new PreparedDocumentFields(application);
+    }
+    PreparedFieldsKey key = new PreparedFieldsKey(application.getId(),
+        application.getDataVersion());
+    synchronized (preparedFields) {
+      PreparedDocumentFields cached = preparedFields.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    PreparedDocumentFields prepared = new PreparedDocumentFields(application);
+    synchronized (preparedFields) {
+      preparedFields.put(key, prepared);
+    }
+    return prepared;
+  }
 
-    SubworkflowIterationScopeTracker scopeTracker = new SubworkflowIterationScopeTracker();
-
-    Stream<DocumentField> inputs = this.preparers.stream()
-        .flatMap(preparer -> {
-          try {
-            return preparer.prepareDocumentFields(application, document, recipient, scopeTracker)
-                .stream();
-          } catch (Exception e) {
-            log.error("There was an issue preparing application data for " + preparer.getClass()
-                .getSimpleName(), e);
-            return Stream.empty();
+  private List<DocumentField> maskPersonalData(List<DocumentField> documentFields) {
+    return documentFields.stream()
+        .map(documentField -> {
+          String mask = personalDataMappings.get(documentField.getName());
+          if (mask == null) {
+            return documentField;
           }
+          List<String> maskedValues = documentField.getValue().stream()
+              .map(value -> value.isEmpty() ? value : mask)
+              .toList();
+          return new DocumentField(documentField.getGroupName(), documentField.getName(),
+              maskedValues, documentField.getType(), documentField.getIteration());
+        })
+        .toList();
+  }
+
+  private List<DocumentField> run(DocumentFieldPreparer preparer, Application application,
+      Document document, Recipient recipient, SubworkflowIterationScopeTracker scopeTracker) {
+    try {
+      return preparer.prepareDocumentFields(application, document, recipient, scopeTracker);
+    } catch (Exception e) {
+      log.error("There was an issue preparing application data for " + preparer.getClass()
+          .getSimpleName(), e);
+      return List.of();
+    }
+  }
+
+  private record PreparedFieldsKey(String applicationId, long dataVersion) {
+
+  }
+
+  /**
+   * The fields prepared so far for one version of an application. Fields that depend on the
+   * document are prepared the first time that document is generated; the preparers that share the
+   * scope tracker run together, in order, so the tracker sees the same iterations in the same order
+   * as it would if every preparer ran at once.
+   */
+  private class PreparedDocumentFields {
+
+    private final Application application;
+    private final List<DocumentField> defaultFields;
+    private final Map<DocumentFieldPreparer, List<DocumentField>> applicationFields =
+        new HashMap<>();
+    // HashMap, because the XML is generated without a document
+    private final Map<Document, Map<DocumentFieldPreparer, List<DocumentField>>> documentFields =
+        new HashMap<>();
+
+    PreparedDocumentFields(Application application) {
+      this.application = application;
+      this.defaultFields = defaultFields(application);
+      preparers.stream()
+          .filter(preparer -> preparer.dependsOn() == DependsOn.APPLICATION)
+          .forEach(preparer -> applicationFields.put(preparer,
+              run(preparer, application, null, Recipient.CASEWORKER,
+                  new SubworkflowIterationScopeTracker())));
+    }
+
+    List<DocumentField> forDocument(Document document, Recipient recipient) {
+      Map<DocumentFieldPreparer, List<DocumentField>> fieldsForDocument = fieldsFor(document);
+      List<DocumentField> fields = new ArrayList<>(defaultFields);
+      for (DocumentFieldPreparer preparer : preparers) {
+        fields.addAll(switch (preparer.dependsOn()) {
+          case APPLICATION -> applicationFields.get(preparer);
+          case DOCUMENT -> fieldsForDocument.get(preparer);
+          case DOCUMENT_AND_RECIPIENT -> run(preparer, application, document, recipient,
+              new SubworkflowIterationScopeTracker());
         });
+      }
+      return fields;
+    }
+
+    private synchronized Map<DocumentFieldPreparer, List<DocumentField>> fieldsFor(
+        Document document) {
+      return documentFields.computeIfAbsent(document, d -> {
+        SubworkflowIterationScopeTracker scopeTracker = new SubworkflowIterationScopeTracker();
+        Map<DocumentFieldPreparer, List<DocumentField>> fields = new HashMap<>();
+        preparers.stream()
+            .filter(preparer -> preparer.dependsOn() == DependsOn.DOCUMENT)
+            .forEach(preparer -> fields.put(preparer,
+                run(preparer, application, d, Recipient.CASEWORKER, scopeTracker)));
+        return fields;
+      });
+    }
+  }
 
-    Stream<DocumentField> defaultInputs = Stream.of(
+  private static List<DocumentField> defaultFields(Application application) {
+    return List.of(
         new DocumentField("nonPagesData", "applicationId", List.of(application.getId()),
             SINGLE_VALUE),
         new DocumentField("nonPagesData", "completedDate", List.of(
@@ -55,7 +179,5 @@ public class DocumentFieldPreparers {
             DateTimeFormatter.ofPattern("MM/dd/yyyy' at 'hh:mm a").format(
                 application.getCompletedAt().withZoneSameInstant(ZoneId.of("America/Chicago")))),
             SINGLE_VALUE));
-
-    return Stream.concat(defaultInputs, inputs).collect(toList());
   }
 }
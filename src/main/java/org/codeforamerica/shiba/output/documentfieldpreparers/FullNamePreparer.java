@@ -28,6 +28,11 @@ public class FullNamePreparer implements DocumentFieldPreparer {
     this.applicationConfiguration = applicationConfiguration;
   }
 
+  @Override
+  public DependsOn dependsOn() {
+    return DependsOn.DOCUMENT;
+  }
+
   @Override
   public List<DocumentField> prepareDocumentFields(Application application, Document document,
       Recipient recipient,
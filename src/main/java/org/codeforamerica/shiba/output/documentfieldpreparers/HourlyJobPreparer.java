@@ -31,6 +31,11 @@ public class HourlyJobPreparer implements DocumentFieldPreparer {
     this.applicationConfiguration = applicationConfiguration;
   }
 
+  @Override
+  public DependsOn dependsOn() {
+    return DependsOn.DOCUMENT;
+  }
+
   @Override
   public List<DocumentField> prepareDocumentFields(Application application, Document document,
       Recipient _recipient, SubworkflowIterationScopeTracker scopeTracker) {
@@ -6,7 +6,6 @@ import static org.codeforamerica.shiba.output.documentfieldpreparers.DocumentFie
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import org.codeforamerica.shiba.application.Application;
 import org.codeforamerica.shiba.output.DocumentField;
 import org.codeforamerica.shiba.output.Document;
@@ -21,12 +20,9 @@ import org.springframework.stereotype.Component;
 public class OneToOneDocumentFieldPreparer implements DocumentFieldPreparer {
 
   private final ApplicationConfiguration applicationConfiguration;
-  private final Map<String, String> personalDataMappings;
 
-  public OneToOneDocumentFieldPreparer(ApplicationConfiguration applicationConfiguration,
-      Map<String, String> personalDataMappings) {
+  public OneToOneDocumentFieldPreparer(ApplicationConfiguration applicationConfiguration) {
     this.applicationConfiguration = applicationConfiguration;
-    this.personalDataMappings = personalDataMappings;
   }
 
   @Override
@@ -34,31 +30,20 @@ public class OneToOneDocumentFieldPreparer implements DocumentFieldPreparer {
       Recipient recipient,
       SubworkflowIterationScopeTracker scopeTracker) {
     ApplicationData data = application.getApplicationData();
-    return applicationConfiguration.getPageDefinitions().stream()
-        .flatMap(pageConfiguration -> pageConfiguration.getFlattenedInputs().stream()
-            .map(input -> Map.entry(pageConfiguration.getName(), input)))
-        .filter(entry -> data.getPagesData().getPage(entry.getKey()) != null)
+    return applicationConfiguration.getFlattenedInputsByPageName().entrySet().stream()
+        .filter(inputsForPage -> data.getPagesData().getPage(inputsForPage.getKey()) != null)
+        .flatMap(inputsForPage -> inputsForPage.getValue().stream()
+            .map(input -> Map.entry(inputsForPage.getKey(), input)))
         .map(entry -> {
           FormInput formInput = entry.getValue();
           List<String> values = ofNullable(data.getPagesData().getPage(entry.getKey())
               .get(formInput.getName()))
               .map(InputData::getValue)
               .orElse(List.of());
-          List<String> valuesForInput = values.stream()
-              .map(value -> {
-                if (Recipient.CLIENT.equals(recipient) &&
-                    personalDataMappings.get(formInput.getName()) != null &&
-                    !value.isEmpty()) {
-                  return personalDataMappings.get(formInput.getName());
-                } else {
-                  return value;
-                }
-              })
-              .collect(Collectors.toList());
           return new DocumentField(
               entry.getKey(),
               formInput.getName(),
-              valuesForInput,
+              values,
               formInputTypeToApplicationInputType(formInput.getType()));
         })
         .collect(toList());
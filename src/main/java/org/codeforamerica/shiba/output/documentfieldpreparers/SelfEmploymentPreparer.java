@@ -26,6 +26,11 @@ import org.springframework.stereotype.Component;
 @Component
 public class SelfEmploymentPreparer implements DocumentFieldPreparer {
 
+  @Override
+  public DependsOn dependsOn() {
+    return DependsOn.DOCUMENT;
+  }
+
   @Override
   public List<DocumentField> prepareDocumentFields(Application application, Document document,
       Recipient _recipient, SubworkflowIterationScopeTracker _scopeTracker) {
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.codeforamerica.shiba.application.Application;
 import org.codeforamerica.shiba.output.DocumentField;
@@ -20,6 +21,7 @@ import org.codeforamerica.shiba.pages.config.FormInputType;
 import org.codeforamerica.shiba.pages.config.PageGroupConfiguration;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.pages.data.InputData;
+import org.codeforamerica.shiba.pages.data.Iteration;
 import org.codeforamerica.shiba.pages.data.PageData;
 import org.codeforamerica.shiba.pages.data.PagesData;
 import org.codeforamerica.shiba.pages.data.Subworkflow;
@@ -30,12 +32,14 @@ import org.springframework.stereotype.Component;
 public class SubworkflowPreparer implements DocumentFieldPreparer {
 
   private final ApplicationConfiguration applicationConfiguration;
-  private final Map<String, String> personalDataMappings;
 
-  public SubworkflowPreparer(ApplicationConfiguration applicationConfiguration,
-      Map<String, String> personalDataMappings) {
+  public SubworkflowPreparer(ApplicationConfiguration applicationConfiguration) {
     this.applicationConfiguration = applicationConfiguration;
-    this.personalDataMappings = personalDataMappings;
+  }
+
+  @Override
+  public DependsOn dependsOn() {
+    return DependsOn.DOCUMENT;
   }
 
   @Override
@@ -53,8 +57,10 @@ public class SubworkflowPreparer implements DocumentFieldPreparer {
           Subworkflow subworkflow = subworkflowsEntry.getValue();
           PageGroupConfiguration pageGroupConfiguration = pageGroups.get(groupName);
 
-          return subworkflow.stream()
-              .flatMap(iteration -> {
+          return IntStream.range(0, subworkflow.size())
+              .boxed()
+              .flatMap(iterationIndex -> {
+                Iteration iteration = subworkflow.get(iterationIndex);
                 PagesData pagesData = iteration.getPagesData();
 
                 return pagesData.entrySet().stream()
@@ -66,23 +72,15 @@ public class SubworkflowPreparer implements DocumentFieldPreparer {
                         return empty();
                       }
 
-                      List<FormInput> inputConfigurations = applicationConfiguration
-                          .getPageDefinitions().stream()
-                          .filter(pageConfig -> pageConfig.getName().equals(pageName)).findAny()
-                          .orElse(null).getInputs();
-
                       return pageData.entrySet().stream()
                           .flatMap(pageDataEntry -> {
                             String inputName = pageDataEntry.getKey();
                             InputData inputData = pageDataEntry.getValue();
 
-                            List<String> valuesForInput = getValuesForInput(recipient, inputName,
-                                inputData);
+                            List<String> valuesForInput = inputData.getValue();
 
-                            FormInputType inputType = inputConfigurations.stream()
-                                .filter(inputConfiguration -> inputConfiguration.getName()
-                                    .equals(inputName))
-                                .findAny()
+                            FormInputType inputType = ofNullable(
+                                applicationConfiguration.getFormInput(pageName, inputName))
                                 .map(FormInput::getType)
                                 .orElse(FormInputType.TEXT);
 
@@ -92,7 +90,7 @@ public class SubworkflowPreparer implements DocumentFieldPreparer {
                                 valuesForInput,
                                 DocumentFieldPreparer
                                     .formInputTypeToApplicationInputType(inputType),
-                                subworkflow.indexOf(iteration)));
+                                iterationIndex));
                             IterationScopeInfo scopeInfo = scopeTracker
                                 .getIterationScopeInfo(pageGroupConfiguration, iteration);
                             if (scopeInfo != null) {
@@ -113,22 +111,6 @@ public class SubworkflowPreparer implements DocumentFieldPreparer {
     return Stream.concat(subworkflowIterationCountInputs, pageInputs).collect(Collectors.toList());
   }
 
-  @NotNull
-  private List<String> getValuesForInput(Recipient recipient, String inputName,
-      InputData inputData) {
-    return inputData.getValue().stream()
-        .map(value -> {
-          if (Recipient.CLIENT.equals(recipient) &&
-              personalDataMappings.get(inputName) != null &&
-              !value.isEmpty()) {
-            return personalDataMappings.get(inputName);
-          } else {
-            return value;
-          }
-        })
-        .collect(Collectors.toList());
-  }
-
   @NotNull
   private Stream<DocumentField> getCount(ApplicationData data,
       Map<String, PageGroupConfiguration> pageGroups) {
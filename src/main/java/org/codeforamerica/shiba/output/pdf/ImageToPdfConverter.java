@@ -0,0 +1,183 @@
+package org.codeforamerica.shiba.output.pdf;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Puts an uploaded image on a letter page of its own PDF.
+ * <p>
+ * With the recompress-images flag on, images with more pixels than a letter page shows at
+ * image-conversion.dpi are scaled down to that and re-encoded as JPEG at
+ * image-conversion.jpeg-quality; JPEGs that are small enough already are embedded as they are.
+ * Otherwise the image is embedded at its full size as PDFBox reads it. Images ImageIO can't decode,
+ * such as CMYK and YCCK JPEGs, can't be scaled, so they're embedded as they are either way.
+ */
+@Component
+public class ImageToPdfConverter {
+
+  private final FeatureFlagConfiguration featureFlags;
+  private final int dpi;
+  private final float jpegQuality;
+
+  public ImageToPdfConverter(FeatureFlagConfiguration featureFlags,
+      @Value("${image-conversion.dpi:150}") int dpi,
+      @Value("${image-conversion.jpeg-quality:0.8}") float jpegQuality) {
+    this.featureFlags = featureFlags;
+    this.dpi = dpi;
+    this.jpegQuality = jpegQuality;
+  }
+
+  public byte[] convert(byte[] image, String filename) throws IOException {
+    try (PDDocument doc = new PDDocument();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+      drawOnLetterPage(doc, recompress()
+          ? fitToPage(doc, () -> new ByteArrayInputStream(image))
+          : PDImageXObject.createFromByteArray(doc, image, filename));
+      doc.save(outputStream);
+      return outputStream.toByteArray();
+    }
+  }
+
+  public void convert(Path image, Path destination, MemoryUsageSetting memoryUsageSetting)
+      throws IOException {
+    try (PDDocument doc = new PDDocument(memoryUsageSetting)) {
+      drawOnLetterPage(doc, recompress()
+          ? fitToPage(doc, () -> Files.newInputStream(image))
+          : PDImageXObject.createFromFileByContent(image.toFile(), doc));
+      doc.save(destination.toFile());
+    }
+  }
+
+  /**
+   * Like {@link #convert(byte[], String)} with recompression on, whatever the flag says.
+   */
+  public byte[] convertFittedToPage(byte[] image) throws IOException {
+    try (PDDocument doc = new PDDocument();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+      drawOnLetterPage(doc, fitToPage(doc, () -> new ByteArrayInputStream(image)));
+      doc.save(outputStream);
+      return outputStream.toByteArray();
+    }
+  }
+
+  private boolean recompress() {
+    return featureFlags.get("recompress-images") == FeatureFlag.ON;
+  }
+
+  private PDImageXObject fitToPage(PDDocument doc, InputStreamSource image) throws IOException {
+    BufferedImage decoded;
+    try (InputStream inputStream = image.getInputStream()) {
+      decoded = ImageIO.read(inputStream);
+    } catch (IIOException e) {
+      // ImageIO finds a reader for CMYK and YCCK JPEGs, but can't decode them
+      decoded = null;
+    }
+    if (decoded == null) {
+      return embedAsIs(doc, image);
+    }
+
+    BufferedImage scaled = scaleToFit(decoded);
+    if (scaled == decoded && isJpeg(image)) {
+      // Embed the original JPEG as is rather than re-encoding it
+      try (InputStream inputStream = image.getInputStream()) {
+        return JPEGFactory.createFromStream(doc, inputStream);
+      }
+    }
+    return scaled.getColorModel().hasAlpha()
+        ? LosslessFactory.createFromImage(doc, scaled)
+        : JPEGFactory.createFromImage(doc, scaled, jpegQuality);
+  }
+
+  private static PDImageXObject embedAsIs(PDDocument doc, InputStreamSource image)
+      throws IOException {
+    if (isJpeg(image)) {
+      try (InputStream inputStream = image.getInputStream()) {
+        return JPEGFactory.createFromStream(doc, inputStream);
+      }
+    }
+    try (InputStream inputStream = image.getInputStream()) {
+      return PDImageXObject.createFromByteArray(doc, inputStream.readAllBytes(), "image");
+    }
+  }
+
+  /**
+   * The image scaled down to the most pixels a letter page shows at the configured DPI, or the
+   * image itself if it's no bigger than that already.
+   */
+  private BufferedImage scaleToFit(BufferedImage image) {
+    float maxWidth = PDRectangle.LETTER.getWidth() / 72 * dpi;
+    float maxHeight = PDRectangle.LETTER.getHeight() / 72 * dpi;
+    double ratio = Math.min(maxWidth / image.getWidth(), maxHeight / image.getHeight());
+    if (ratio >= 1) {
+      return image;
+    }
+
+    int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+    int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+    BufferedImage scaled = new BufferedImage(width, height,
+        image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
+            : BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = scaled.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      graphics.drawImage(image, 0, 0, width, height, null);
+    } finally {
+      graphics.dispose();
+    }
+    return scaled;
+  }
+
+  private static boolean isJpeg(InputStreamSource image) throws IOException {
+    try (InputStream inputStream = image.getInputStream()) {
+      byte[] magic = inputStream.readNBytes(2);
+      return magic.length == 2 && (magic[0] & 0xff) == 0xff && (magic[1] & 0xff) == 0xd8;
+    }
+  }
+
+  private static void drawOnLetterPage(PDDocument doc, PDImageXObject image) throws IOException {
+    // Figure out page size
+    var pageSize = PDRectangle.LETTER;
+    var originalWidth = image.getWidth();
+    var originalHeight = image.getHeight();
+    var pageWidth = pageSize.getWidth();
+    var pageHeight = pageSize.getHeight();
+    var ratio = Math.min(pageWidth / originalWidth, pageHeight / originalHeight);
+    var scaledWidth = originalWidth * ratio;
+    var scaledHeight = originalHeight * ratio;
+    var x = (pageWidth - scaledWidth) / 2;
+    var y = (pageHeight - scaledHeight) / 2;
+
+    var imagePage = new PDPage(pageSize);
+    // Add a page of the right size to the PDF
+    doc.addPage(imagePage);
+
+    // Write the image into the PDF
+    try (PDPageContentStream pdfContents = new PDPageContentStream(doc, imagePage)) {
+      pdfContents.drawImage(image, x, y, scaledWidth, scaledHeight);
+    }
+  }
+}
@@ -7,37 +7,37 @@ import java.util.List;
 import java.util.Optional;
 import java.util.function.BinaryOperator;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType0Font;
-import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.form.PDCheckBox;
 import org.apache.pdfbox.pdmodel.interactive.form.PDField;
 import org.apache.pdfbox.pdmodel.interactive.form.PDVariableText;
 import org.codeforamerica.shiba.output.ApplicationFile;
+import org.codeforamerica.shiba.output.pdf.PdfTemplate.FillableDocument;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.core.io.Resource;
 
 @Slf4j
 public class PDFBoxFieldFiller implements PdfFieldFiller {
 
-  private final List<Resource> pdfs;
-  private final Resource fontResource;
+  private final List<PdfTemplate> templates;
 
   public PDFBoxFieldFiller(List<Resource> pdfs, Resource fontResource) {
-    this.pdfs = pdfs;
-    this.fontResource = fontResource;
+    this(pdfs, new PdfTemplateCache(fontResource));
+  }
+
+  public PDFBoxFieldFiller(List<Resource> pdfs, PdfTemplateCache templateCache) {
+    // Prepare the templates up front so that the first request doesn't pay for parsing them
+    this.templates = pdfs.stream().map(templateCache::get).toList();
   }
 
   @Override
   public ApplicationFile fill(Collection<PdfField> fields, String applicationId, String filename) {
-    PDFMergerUtility pdfMergerUtility = new PDFMergerUtility();/**/
+    PDFMergerUtility pdfMergerUtility = new PDFMergerUtility();
 
-    byte[] fileContents = pdfs.stream()
-        .map(pdfResource -> fillOutPdfs(fields, pdfResource))
+    byte[] fileContents = templates.stream()
+        .map(template -> fillOutPdfs(fields, template))
         .reduce(mergePdfs(pdfMergerUtility))
         .map(this::outputByteArray)
         .orElse(new byte[]{});
@@ -70,35 +70,30 @@ public class PDFBoxFieldFiller implements PdfFieldFiller {
   }
 
   @NotNull
-  private PDDocument fillOutPdfs(Collection<PdfField> fields, Resource pdfResource) {
+  private PDDocument fillOutPdfs(Collection<PdfField> fields, PdfTemplate template) {
     try {
-      PDDocument loadedDoc = PDDocument.load(pdfResource.getInputStream());
-      PDAcroForm acroForm = loadedDoc.getDocumentCatalog().getAcroForm();
-      PDFont font = PDType0Font.load(loadedDoc, fontResource.getInputStream(), false);
-      PDResources res = acroForm.getDefaultResources();
-      String fontName = res.add(font).getName();
-
-      fillAcroForm(fields, acroForm, fontName);
-      return loadedDoc;
+      FillableDocument fillableDocument = template.load();
+      fillAcroForm(fields, fillableDocument);
+      return fillableDocument.getDocument();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private void fillAcroForm(Collection<PdfField> fields, PDAcroForm acroForm, String fontName) {
+  private void fillAcroForm(Collection<PdfField> fields, FillableDocument fillableDocument) {
     fields.forEach(field ->
-        Optional.ofNullable(acroForm.getField(field.getName())).ifPresent(pdField -> {
+        Optional.ofNullable(fillableDocument.getField(field.getName())).ifPresent(pdField -> {
           try {
             if (pdField instanceof PDVariableText) {
-              ((PDVariableText) pdField).setDefaultAppearance("/" + fontName + " 10 Tf 0 g");
+              ((PDVariableText) pdField).setDefaultAppearance(
+                  fillableDocument.getDefaultAppearance());
             }
             String fieldValue = field.getValue();
             if (pdField instanceof PDCheckBox && field.getValue().equals("No")) {
               fieldValue = "Off";
             }
 
-            PDFont font = acroForm.getDefaultResources().getFont(COSName.getPDFName(fontName));
-            setPdfFieldWithoutUnsupportedUnicode(fieldValue, pdField, font);
+            setPdfFieldWithoutUnsupportedUnicode(fieldValue, pdField, fillableDocument.getFont());
           } catch (Exception e) {
             throw new RuntimeException("Error setting field: " + field.getName(), e);
           }
@@ -19,13 +19,19 @@ import org.springframework.core.io.Resource;
 @Configuration
 public class PdfFieldFillersConfiguration {
 
+  @Bean
+  public PdfTemplateCache pdfTemplateCache(
+      @Value("classpath:LiberationSans-Regular.ttf") Resource font) {
+    return new PdfTemplateCache(font);
+  }
+
   @Bean
   public PdfFieldFiller caseworkerCafFiller(
       @Value("classpath:cover-pages.pdf") Resource coverPages,
       @Value("classpath:caf-body.pdf") Resource cafBody,
-      @Value("classpath:LiberationSans-Regular.ttf") Resource font
+      PdfTemplateCache pdfTemplateCache
   ) {
-    return new PDFBoxFieldFiller(List.of(coverPages, cafBody), font);
+    return new PDFBoxFieldFiller(List.of(coverPages, cafBody), pdfTemplateCache);
   }
 
   @Bean
@@ -34,11 +40,11 @@ public class PdfFieldFillersConfiguration {
       @Value("classpath:caf-standard-headers.pdf") Resource standardHeaders,
       @Value("classpath:caf-body.pdf") Resource cafBody,
       @Value("classpath:caf-standard-footers.pdf") Resource standardFooters,
-      @Value("classpath:LiberationSans-Regular.ttf") Resource font
+      PdfTemplateCache pdfTemplateCache
   ) {
     return new PDFBoxFieldFiller(List.of(
         coverPages, standardHeaders, cafBody, standardFooters
-    ), font);
+    ), pdfTemplateCache);
   }
 
   @Bean
@@ -48,11 +54,11 @@ public class PdfFieldFillersConfiguration {
       @Value("classpath:ccap-body.pdf") Resource ccapBody,
       @Value("classpath:ccap-body-perjury-and-general-declarations.pdf") Resource ccapDeclarations,
       @Value("classpath:ccap-body-additional-room.pdf") Resource ccapAdditionalRoom,
-      @Value("classpath:LiberationSans-Regular.ttf") Resource font
+      PdfTemplateCache pdfTemplateCache
   ) {
     return new PDFBoxFieldFiller(List.of(
         coverPages, ccapPage1, ccapBody, ccapDeclarations, ccapAdditionalRoom
-    ), font);
+    ), pdfTemplateCache);
   }
 
   @Bean
@@ -65,38 +71,38 @@ public class PdfFieldFillersConfiguration {
       @Value("classpath:ccap-body-perjury-and-general-declarations.pdf") Resource ccapDeclarations,
       @Value("classpath:ccap-body-additional-room.pdf") Resource ccapAdditionalRoom,
       @Value("classpath:ccap-footers.pdf") Resource ccapFooters,
-      @Value("classpath:LiberationSans-Regular.ttf") Resource font
+      PdfTemplateCache pdfTemplateCache
   ) {
     return new PDFBoxFieldFiller(List.of(
         coverPages, ccapHeaders, ccapPage1, ccapBody, ccapInfoSharing, ccapDeclarations,
         ccapAdditionalRoom, ccapFooters
-    ), font);
+    ), pdfTemplateCache);
   }
 
   @Bean
   public PdfFieldFiller caseworkerCertainPopsFiller(
       @Value("classpath:cover-pages.pdf") Resource coverPages,
       @Value("classpath:certain-pops.pdf") Resource certainPops,
-      @Value("classpath:LiberationSans-Regular.ttf") Resource font
+      PdfTemplateCache pdfTemplateCache
   ) {
-    return new PDFBoxFieldFiller(List.of(coverPages, certainPops), font);
+    return new PDFBoxFieldFiller(List.of(coverPages, certainPops), pdfTemplateCache);
   }
 
   @Bean
   public PdfFieldFiller clientCertainPopsFiller(
       @Value("classpath:cover-pages.pdf") Resource coverPages,
       @Value("classpath:certain-pops.pdf") Resource certainPops,
-      @Value("classpath:LiberationSans-Regular.ttf") Resource font
+      PdfTemplateCache pdfTemplateCache
   ) {
-    return new PDFBoxFieldFiller(List.of(coverPages, certainPops), font);
+    return new PDFBoxFieldFiller(List.of(coverPages, certainPops), pdfTemplateCache);
   }
 
   @Bean
   public PdfFieldFiller uploadedDocCoverPageFilter(
       @Value("classpath:uploaded-document-cover-page.pdf") Resource coverPage,
-      @Value("classpath:LiberationSans-Regular.ttf") Resource font
+      PdfTemplateCache pdfTemplateCache
   ) {
-    return new PDFBoxFieldFiller(List.of(coverPage), font);
+    return new PDFBoxFieldFiller(List.of(coverPage), pdfTemplateCache);
   }
 
   @Bean
@@ -1,22 +1,23 @@
 package org.codeforamerica.shiba.output.pdf;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.codeforamerica.shiba.Utils;
 import org.codeforamerica.shiba.application.Application;
 import org.codeforamerica.shiba.application.ApplicationRepository;
 import org.codeforamerica.shiba.documents.DocumentRepository;
 import org.codeforamerica.shiba.output.ApplicationFile;
 import org.codeforamerica.shiba.output.DocumentField;
+import org.codeforamerica.shiba.output.GeneratedDocumentCache;
+import org.codeforamerica.shiba.output.ScratchSpace.Session;
 import org.codeforamerica.shiba.output.Document;
 import org.codeforamerica.shiba.output.Recipient;
 import org.codeforamerica.shiba.output.documentfieldpreparers.DocumentFieldPreparers;
@@ -29,7 +30,7 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class PdfGenerator implements FileGenerator {
 
-  private static final List<String> IMAGE_TYPES_TO_CONVERT_TO_PDF = List
+  public static final List<String> IMAGE_TYPES_TO_CONVERT_TO_PDF = List
       .of("jpg", "jpeg", "png", "gif");
   private final PdfFieldMapper pdfFieldMapper;
   private final Map<Recipient, Map<Document, PdfFieldFiller>> pdfFieldFillerMap;
@@ -37,13 +38,19 @@ public class PdfGenerator implements FileGenerator {
   private final DocumentRepository documentRepository;
   private final DocumentFieldPreparers preparers;
   private final FilenameGenerator fileNameGenerator;
+  private final GeneratedDocumentCache generatedDocumentCache;
+  private final UploadedDocumentNormalizer uploadedDocumentNormalizer;
+  private final ImageToPdfConverter imageToPdfConverter;
 
   public PdfGenerator(PdfFieldMapper pdfFieldMapper,
       Map<Recipient, Map<Document, PdfFieldFiller>> pdfFieldFillers,
       ApplicationRepository applicationRepository,
       DocumentRepository documentRepository,
       DocumentFieldPreparers preparers,
-      FilenameGenerator fileNameGenerator
+      FilenameGenerator fileNameGenerator,
+      GeneratedDocumentCache generatedDocumentCache,
+      UploadedDocumentNormalizer uploadedDocumentNormalizer,
+      ImageToPdfConverter imageToPdfConverter
   ) {
     this.pdfFieldMapper = pdfFieldMapper;
     this.pdfFieldFillerMap = pdfFieldFillers;
@@ -51,12 +58,20 @@ public class PdfGenerator implements FileGenerator {
     this.documentRepository = documentRepository;
     this.preparers = preparers;
     this.fileNameGenerator = fileNameGenerator;
+    this.generatedDocumentCache = generatedDocumentCache;
+    this.uploadedDocumentNormalizer = uploadedDocumentNormalizer;
+    this.imageToPdfConverter = imageToPdfConverter;
   }
 
+  /**
+   * Generate the document from the saved application, or reuse the one generated the last time if
+   * the application hasn't been saved since.
+   */
   @Override
   public ApplicationFile generate(String applicationId, Document document, Recipient recipient) {
-    Application application = applicationRepository.find(applicationId);
-    return generate(application, document, recipient);
+    return generatedDocumentCache.get(applicationId, document, recipient,
+        applicationRepository.findDataVersion(applicationId),
+        () -> generate(applicationRepository.find(applicationId), document, recipient));
   }
 
   public ApplicationFile generate(Application application, Document document, Recipient recipient) {
@@ -69,13 +84,18 @@ public class PdfGenerator implements FileGenerator {
 
   public ApplicationFile generateForUploadedDocument(UploadedDocument uploadedDocument,
       int documentIndex, Application application, byte[] coverPage) {
-    var fileBytes = documentRepository
-        .get(uploadedDocument.getS3Filepath());
+    var extension = Utils.getFileType(uploadedDocument.getFilename());
+    // Converted when it was uploaded
+    var fileBytes = uploadedDocumentNormalizer.getNormalized(uploadedDocument);
+    if (fileBytes != null) {
+      extension = "pdf";
+    } else {
+      fileBytes = documentRepository.get(uploadedDocument.getS3Filepath());
+    }
     if (fileBytes != null) {
-      var extension = Utils.getFileType(uploadedDocument.getFilename());
       if (IMAGE_TYPES_TO_CONVERT_TO_PDF.contains(extension)) {
         try {
-          fileBytes = convertImageToPdf(fileBytes, uploadedDocument.getFilename());
+          fileBytes = imageToPdfConverter.convert(fileBytes, uploadedDocument.getFilename());
           extension = "pdf";
         } catch (IOException e) {
           log.error("failed to convert document " + uploadedDocument.getFilename()
@@ -96,6 +116,71 @@ public class PdfGenerator implements FileGenerator {
     return null;
   }
 
+  /**
+   * Like {@link #generateForUploadedDocument(UploadedDocument, int, Application, byte[])}, but the
+   * upload is downloaded, converted and merged with its cover page through files in the scratch
+   * session rather than in memory. The returned file is on disk and goes away when the session is
+   * closed. Falls back to doing it in memory when there's no room in the scratch space.
+   */
+  public ApplicationFile generateForUploadedDocument(UploadedDocument uploadedDocument,
+      int documentIndex, Application application, byte[] coverPage, Session scratch) {
+    // Room for the download plus the converted or merged copy of it
+    if (!scratch.reserve(2 * uploadedDocument.getSize() + coverPage.length)) {
+      return generateForUploadedDocument(uploadedDocument, documentIndex, application, coverPage);
+    }
+
+    var extension = Utils.getFileType(uploadedDocument.getFilename());
+    Path file = scratch.newFile("." + extension);
+    if (uploadedDocumentNormalizer.downloadNormalized(uploadedDocument, file)) {
+      // Converted when it was uploaded
+      extension = "pdf";
+    } else if (!documentRepository.download(uploadedDocument.getS3Filepath(), file)) {
+      return null;
+    }
+    if (IMAGE_TYPES_TO_CONVERT_TO_PDF.contains(extension)) {
+      Path converted = scratch.newFile(".pdf");
+      try {
+        imageToPdfConverter.convert(file, converted, tempFileOnly(scratch));
+        scratch.delete(file);
+        file = converted;
+        extension = "pdf";
+      } catch (IOException e) {
+        log.error("failed to convert document " + uploadedDocument.getFilename()
+                  + " to pdf. Maintaining original type");
+      }
+    } else if (!extension.equals("pdf")) {
+      log.warn("Unsupported file-type: " + extension);
+    }
+
+    if (extension.equals("pdf")) {
+      Path merged = scratch.newFile(".pdf");
+      addCoverPageToPdf(coverPage, file, merged, scratch);
+      scratch.delete(file);
+      file = merged;
+    }
+
+    String filename = fileNameGenerator
+        .generateUploadedDocumentName(application, documentIndex, extension);
+    return ApplicationFile.onDisk(file, filename);
+  }
+
+  private void addCoverPageToPdf(byte[] coverPage, Path file, Path destination,
+      Session scratch) {
+    PDFMergerUtility merger = new PDFMergerUtility();
+    merger.addSource(new ByteArrayInputStream(coverPage));
+    try {
+      merger.addSource(file.toFile());
+      merger.setDestinationFileName(destination.toString());
+      merger.mergeDocuments(tempFileOnly(scratch));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static MemoryUsageSetting tempFileOnly(Session scratch) {
+    return MemoryUsageSetting.setupTempFileOnly().setTempDir(scratch.getDirectory().toFile());
+  }
+
   private byte[] addCoverPageToPdf(byte[] coverPage, byte[] fileBytes) {
     PDFMergerUtility merger = new PDFMergerUtility();
     try (PDDocument coverPageDoc = PDDocument.load(coverPage);
@@ -110,34 +195,4 @@ public class PdfGenerator implements FileGenerator {
     }
     return fileBytes;
   }
-
-  private byte[] convertImageToPdf(byte[] imageFileBytes, String filename) throws IOException {
-    try (PDDocument doc = new PDDocument(); ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-      var image = PDImageXObject.createFromByteArray(doc, imageFileBytes, filename);
-      // Figure out page size
-      var pageSize = PDRectangle.LETTER;
-      var originalWidth = image.getWidth();
-      var originalHeight = image.getHeight();
-      var pageWidth = pageSize.getWidth();
-      var pageHeight = pageSize.getHeight();
-      var ratio = Math.min(pageWidth / originalWidth, pageHeight / originalHeight);
-      var scaledWidth = originalWidth * ratio;
-      var scaledHeight = originalHeight * ratio;
-      var x = (pageWidth - scaledWidth) / 2;
-      var y = (pageHeight - scaledHeight) / 2;
-
-      var imagePage = new PDPage(pageSize);
-      // Add a page of the right size to the PDF
-      doc.addPage(imagePage);
-
-      // Write the image into the PDF
-      try (PDPageContentStream pdfContents = new PDPageContentStream(doc, imagePage)) {
-        pdfContents.drawImage(image, x, y, scaledWidth, scaledHeight);
-      }
-
-      // put the doc in a byte array
-      doc.save(outputStream);
-      return outputStream.toByteArray();
-    }
-  }
 }
@@ -0,0 +1,99 @@
+package org.codeforamerica.shiba.output.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.springframework.core.io.Resource;
+
+/**
+ * A PDF template that has been read from the classpath and had the form font embedded once, so
+ * that filling it only requires loading the prepared bytes into a fresh {@link PDDocument}.
+ */
+public class PdfTemplate {
+
+  private final byte[] preparedBytes;
+  private final String fontName;
+
+  private PdfTemplate(byte[] preparedBytes, String fontName) {
+    this.preparedBytes = preparedBytes;
+    this.fontName = fontName;
+  }
+
+  public static PdfTemplate prepare(Resource pdfResource, byte[] fontBytes) throws IOException {
+    try (InputStream inputStream = pdfResource.getInputStream();
+        PDDocument document = PDDocument.load(inputStream);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+      String fontName = null;
+      PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+      if (acroForm != null) {
+        PDResources resources = acroForm.getDefaultResources();
+        if (resources == null) {
+          resources = new PDResources();
+          acroForm.setDefaultResources(resources);
+        }
+        PDFont font = PDType0Font.load(document, new ByteArrayInputStream(fontBytes), false);
+        fontName = resources.add(font).getName();
+      }
+      document.save(outputStream);
+      return new PdfTemplate(outputStream.toByteArray(), fontName);
+    }
+  }
+
+  /**
+   * Load a copy of this template that can be filled out and modified independently of any other
+   * copy.
+   */
+  public FillableDocument load() throws IOException {
+    return new FillableDocument(PDDocument.load(preparedBytes), fontName);
+  }
+
+  public static class FillableDocument {
+
+    private final PDDocument document;
+    private final PDAcroForm acroForm;
+    private final String defaultAppearance;
+    private final PDFont font;
+    private final Map<String, PDField> fieldsByName = new HashMap<>();
+
+    FillableDocument(PDDocument document, String fontName) throws IOException {
+      this.document = document;
+      this.acroForm = document.getDocumentCatalog().getAcroForm();
+      if (acroForm != null && fontName != null) {
+        this.defaultAppearance = "/" + fontName + " 10 Tf 0 g";
+        this.font = acroForm.getDefaultResources().getFont(COSName.getPDFName(fontName));
+        // Index the field tree once instead of walking it for every field that gets filled
+        acroForm.getFieldTree()
+            .forEach(field -> fieldsByName.put(field.getFullyQualifiedName(), field));
+      } else {
+        this.defaultAppearance = null;
+        this.font = null;
+      }
+    }
+
+    public PDDocument getDocument() {
+      return document;
+    }
+
+    public PDField getField(String name) {
+      return fieldsByName.get(name);
+    }
+
+    public String getDefaultAppearance() {
+      return defaultAppearance;
+    }
+
+    public PDFont getFont() {
+      return font;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package org.codeforamerica.shiba.output.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+
+/**
+ * Prepares each PDF template at most once, so that templates shared between fillers (e.g. the
+ * cover pages) are only read and parsed a single time.
+ */
+@Slf4j
+public class PdfTemplateCache {
+
+  private final byte[] fontBytes;
+  private final Map<Resource, PdfTemplate> templates = new ConcurrentHashMap<>();
+
+  public PdfTemplateCache(Resource fontResource) {
+    try (InputStream inputStream = fontResource.getInputStream()) {
+      this.fontBytes = inputStream.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read font " + fontResource, e);
+    }
+  }
+
+  public PdfTemplate get(Resource pdfResource) {
+    return templates.computeIfAbsent(pdfResource, resource -> {
+      try {
+        log.info("Preparing PDF template " + resource.getFilename());
+        return PdfTemplate.prepare(resource, fontBytes);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to prepare PDF template " + resource, e);
+      }
+    });
+  }
+}
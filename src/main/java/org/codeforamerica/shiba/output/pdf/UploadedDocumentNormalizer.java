@@ -0,0 +1,124 @@
+package org.codeforamerica.shiba.output.pdf;
+
+import static org.codeforamerica.shiba.configurations.SpringAsyncConfiguration.DOCUMENT_TASK_EXECUTOR;
+import static org.codeforamerica.shiba.output.pdf.PdfGenerator.IMAGE_TYPES_TO_CONVERT_TO_PDF;
+
+import java.nio.file.Path;
+import lombok.extern.slf4j.Slf4j;
+import org.codeforamerica.shiba.Utils;
+import org.codeforamerica.shiba.documents.DocumentRepository;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.codeforamerica.shiba.pages.data.UploadedDocument;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts uploaded images to PDF right after they're uploaded, instead of every time they're
+ * sent or downloaded, and stores the PDF next to the original upload. Photos bigger than a letter
+ * page at image-conversion.dpi are scaled down on the way.
+ * <p>
+ * Nothing records whether an upload has been normalized; the PDF is looked for at a path derived
+ * from the upload's, and anyone who doesn't find it converts the original as before. Since the PDF
+ * is often not there yet, its existence is checked before it is read, so that reading it doesn't
+ * log a missing file.
+ */
+@Component
+@Slf4j
+public class UploadedDocumentNormalizer {
+
+  private static final String NORMALIZED_SUFFIX = ".normalized.pdf";
+
+  private final DocumentRepository documentRepository;
+  private final FeatureFlagConfiguration featureFlags;
+  private final ImageToPdfConverter imageToPdfConverter;
+
+  public UploadedDocumentNormalizer(DocumentRepository documentRepository,
+      FeatureFlagConfiguration featureFlags, ImageToPdfConverter imageToPdfConverter) {
+    this.documentRepository = documentRepository;
+    this.featureFlags = featureFlags;
+    this.imageToPdfConverter = imageToPdfConverter;
+  }
+
+  /**
+   * Convert the upload and store the PDF, on the document task executor so that it doesn't hold up
+   * or get run on a request thread.
+   * <p>
+   * The applicant may remove the upload while it's being converted. Removing it deletes the
+   * original before the PDF, so if the original is gone once the PDF is stored, the removal may
+   * already have missed the PDF, and it's deleted here instead of being left behind.
+   */
+  @Async(DOCUMENT_TASK_EXECUTOR)
+  public void normalize(UploadedDocument uploadedDocument) {
+    if (!appliesTo(uploadedDocument)) {
+      return;
+    }
+    try {
+      byte[] image = documentRepository.get(uploadedDocument.getS3Filepath());
+      if (image == null || image.length == 0) {
+        log.warn("Could not normalize " + uploadedDocument.getFilename() + " because it is empty");
+        return;
+      }
+      String normalizedFilepath = normalizedFilepath(uploadedDocument);
+      documentRepository.upload(normalizedFilepath,
+          imageToPdfConverter.convertFittedToPage(image));
+      if (!documentRepository.exists(uploadedDocument.getS3Filepath())) {
+        documentRepository.delete(normalizedFilepath);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      log.warn("Could not normalize " + uploadedDocument.getFilename()
+               + "; it will be converted when it's sent", e);
+    }
+  }
+
+  /**
+   * The stored PDF of the upload, or null if there isn't one (yet).
+   */
+  public byte[] getNormalized(UploadedDocument uploadedDocument) {
+    if (!isStored(uploadedDocument)) {
+      return null;
+    }
+    byte[] normalized = documentRepository.get(normalizedFilepath(uploadedDocument));
+    return normalized == null || normalized.length == 0 ? null : normalized;
+  }
+
+  /**
+   * Download the stored PDF of the upload to {@code destination}.
+   *
+   * @return false if there isn't one (yet)
+   */
+  public boolean downloadNormalized(UploadedDocument uploadedDocument, Path destination) {
+    return isStored(uploadedDocument)
+           && documentRepository.download(normalizedFilepath(uploadedDocument), destination);
+  }
+
+  public void delete(UploadedDocument uploadedDocument) {
+    if (!appliesTo(uploadedDocument)) {
+      return;
+    }
+    try {
+      documentRepository.delete(normalizedFilepath(uploadedDocument));
+    } catch (Exception e) {
+      // It may never have been stored
+      log.info("Could not delete normalized " + uploadedDocument.getFilename());
+    }
+  }
+
+  static String normalizedFilepath(UploadedDocument uploadedDocument) {
+    return uploadedDocument.getS3Filepath() + NORMALIZED_SUFFIX;
+  }
+
+  private boolean isStored(UploadedDocument uploadedDocument) {
+    return appliesTo(uploadedDocument)
+           && documentRepository.exists(normalizedFilepath(uploadedDocument));
+  }
+
+  private boolean appliesTo(UploadedDocument uploadedDocument) {
+    return featureFlags.get("normalize-uploads") == FeatureFlag.ON
+           && uploadedDocument.getS3Filepath() != null
+           && IMAGE_TYPES_TO_CONVERT_TO_PDF.contains(
+        Utils.getFileType(uploadedDocument.getFilename()));
+  }
+}
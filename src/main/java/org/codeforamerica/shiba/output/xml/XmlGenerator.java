@@ -1,16 +1,15 @@
 package org.codeforamerica.shiba.output.xml;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.text.StringEscapeUtils.escapeXml10;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.BinaryOperator;
-import java.util.function.Function;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.text.StringEscapeUtils;
@@ -36,9 +35,7 @@ public class XmlGenerator implements FileGenerator {
   private final ApplicationRepository applicationRepository;
   private final DocumentFieldPreparers preparers;
   private final FilenameGenerator fileNameGenerator;
-  private final BinaryOperator<String> UNUSED_IN_SEQUENTIAL_STREAM = (s1, s2) -> "";
-  private final Function<String, String> tokenFormatter = (token) -> Pattern
-      .quote(String.format("{{%s}}", token));
+  private volatile XmlTemplate template;
 
   public XmlGenerator(
       @Value("classpath:XmlConfiguration.xml") Resource xmlConfiguration,
@@ -60,40 +57,36 @@ public class XmlGenerator implements FileGenerator {
     Application application = applicationRepository.find(applicationId);
     List<DocumentField> documentFields = preparers.prepareDocumentFields(application, null,
         recipient);
+    byte[] fileContent = template().render(tokenValues(documentFields));
+    String filename = fileNameGenerator.generateXmlFilename(application);
+    return new ApplicationFile(fileContent, filename);
+  }
 
-    try {
-      List<DocumentField> nonEmptyDocumentFields = documentFields.stream()
-          .filter(input -> !input.getValue().isEmpty())
-          .toList();
-
-      List<XmlEntry> xmlEntries = new ArrayList<>();
-      for (DocumentField documentField : nonEmptyDocumentFields) {
-        List<XmlEntry> entriesForThisInput = convertApplicationInputToXmlEntries(
-            documentField);
-        xmlEntries.addAll(entriesForThisInput);
-      }
+  /**
+   * The escaped value for each token, in document field order. When more than one field maps to
+   * the same token, the first one wins.
+   */
+  Map<String, String> tokenValues(List<DocumentField> documentFields) {
+    Map<String, String> tokenValues = new LinkedHashMap<>();
+    documentFields.stream()
+        .filter(input -> !input.getValue().isEmpty())
+        .flatMap(documentField -> convertApplicationInputToXmlEntries(documentField).stream())
+        .forEach(entry -> tokenValues.putIfAbsent(entry.xmlToken(), entry.escapedInputValue()));
+    return tokenValues;
+  }
 
-      String contentsAfterReplacement;
+  XmlTemplate template() {
+    // Parsed on first use; two threads racing here just parse it twice
+    XmlTemplate parsed = template;
+    if (parsed == null) {
       try (InputStream xmlConfigInputStream = xmlConfiguration.getInputStream()) {
-        String partiallyReplacedContent = new String(xmlConfigInputStream.readAllBytes());
-        for (XmlEntry entry : xmlEntries) {
-          partiallyReplacedContent = partiallyReplacedContent.replaceAll(
-              tokenFormatter.apply(entry.xmlToken()),
-              entry.escapedInputValue()
-          );
-        }
-        contentsAfterReplacement = partiallyReplacedContent;
+        parsed = XmlTemplate.parse(new String(xmlConfigInputStream.readAllBytes(), UTF_8));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
-
-      String finishedXML = contentsAfterReplacement.replaceAll(
-          "\\s*<\\w+:\\w+>\\{\\{\\w+}}</\\w+:\\w+>", "");
-      byte[] fileContent = finishedXML.getBytes();
-      String filename = fileNameGenerator.generateXmlFilename(application);
-      return new ApplicationFile(fileContent, filename);
-    } catch (IOException e) {
-      // TODO never, ever, ever convert a checked exception to a runtime exception
-      throw new RuntimeException(e);
+      template = parsed;
     }
+    return parsed;
   }
 
   private String getXmlToken(DocumentField input, String xmlToken) {
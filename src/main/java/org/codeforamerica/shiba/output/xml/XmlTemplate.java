@@ -0,0 +1,118 @@
+package org.codeforamerica.shiba.output.xml;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * XmlConfiguration.xml split up once into literal text and {{TOKEN}} slots, so that a document can
+ * be rendered in a single pass over the template.
+ * <p>
+ * An element holding nothing but a token, e.g. {@code <ns4:SSN>{{PERSONALINFO_SSN}}</ns4:SSN>}, is
+ * left out along with the whitespace before it when the token has no value. A token anywhere else
+ * is written out as-is when it has no value.
+ */
+class XmlTemplate {
+
+  private static final Pattern OPTIONAL_ELEMENT = Pattern.compile(
+      "\\s*<\\w+:\\w+>\\{\\{(\\w+)}}</\\w+:\\w+>");
+  private static final Pattern TOKEN = Pattern.compile("\\{\\{(\\w+)}}");
+
+  private final List<Segment> segments;
+  private final int initialCapacity;
+  private final ThreadLocal<StringBuilder> buffer;
+
+  private XmlTemplate(List<Segment> segments, int templateLength) {
+    this.segments = segments;
+    // Room for the values, which are mostly longer than their tokens
+    this.initialCapacity = templateLength + templateLength / 4;
+    this.buffer = ThreadLocal.withInitial(() -> new StringBuilder(initialCapacity));
+  }
+
+  static XmlTemplate parse(String template) {
+    List<Segment> segments = new ArrayList<>();
+    Matcher optionalElement = OPTIONAL_ELEMENT.matcher(template);
+    int literalStart = 0;
+    while (optionalElement.find()) {
+      addLiteralAndTokens(template.substring(literalStart, optionalElement.start()), segments);
+      segments.add(new OptionalElement(
+          template.substring(optionalElement.start(), optionalElement.start(1) - 2),
+          optionalElement.group(1),
+          template.substring(optionalElement.end(1) + 2, optionalElement.end())));
+      literalStart = optionalElement.end();
+    }
+    addLiteralAndTokens(template.substring(literalStart), segments);
+    return new XmlTemplate(List.copyOf(segments), template.length());
+  }
+
+  /**
+   * Render the template with the given token values. Values are written as they are, so they
+   * should already be escaped.
+   */
+  byte[] render(Map<String, String> values) {
+    StringBuilder out = buffer.get();
+    out.setLength(0);
+    for (Segment segment : segments) {
+      segment.appendTo(out, values);
+    }
+    return out.toString().getBytes(UTF_8);
+  }
+
+  private static void addLiteralAndTokens(String text, List<Segment> segments) {
+    Matcher token = TOKEN.matcher(text);
+    int literalStart = 0;
+    while (token.find()) {
+      addLiteral(text.substring(literalStart, token.start()), segments);
+      segments.add(new Slot(token.group(1)));
+      literalStart = token.end();
+    }
+    addLiteral(text.substring(literalStart), segments);
+  }
+
+  private static void addLiteral(String text, List<Segment> segments) {
+    if (!text.isEmpty()) {
+      segments.add(new Literal(text));
+    }
+  }
+
+  private interface Segment {
+
+    void appendTo(StringBuilder out, Map<String, String> values);
+  }
+
+  private record Literal(String text) implements Segment {
+
+    @Override
+    public void appendTo(StringBuilder out, Map<String, String> values) {
+      out.append(text);
+    }
+  }
+
+  private record Slot(String token) implements Segment {
+
+    @Override
+    public void appendTo(StringBuilder out, Map<String, String> values) {
+      String value = values.get(token);
+      if (value != null) {
+        out.append(value);
+      } else {
+        out.append("{{").append(token).append("}}");
+      }
+    }
+  }
+
+  private record OptionalElement(String start, String token, String end) implements Segment {
+
+    @Override
+    public void appendTo(StringBuilder out, Map<String, String> values) {
+      String value = values.get(token);
+      if (value != null) {
+        out.append(start).append(value).append(end);
+      }
+    }
+  }
+}
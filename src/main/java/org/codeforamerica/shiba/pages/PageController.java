@@ -1,5 +1,6 @@
 package org.codeforamerica.shiba.pages;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Optional.ofNullable;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.codeforamerica.shiba.application.FlowType.LATER_DOCS;
@@ -7,14 +8,13 @@ import static org.codeforamerica.shiba.application.Status.IN_PROGRESS;
 import static org.codeforamerica.shiba.output.Document.UPLOADED_DOC;
 
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.time.Clock;
 import java.time.ZoneId;
 import java.util.*;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
 import org.codeforamerica.shiba.Program;
 import org.codeforamerica.shiba.RoutingDestinationMessageService;
 import org.codeforamerica.shiba.UploadDocumentConfiguration;
@@ -25,22 +25,32 @@ import org.codeforamerica.shiba.application.parsers.CountyParser;
 import org.codeforamerica.shiba.application.parsers.DocumentListParser;
 import org.codeforamerica.shiba.configurations.CityInfoConfiguration;
 import org.codeforamerica.shiba.documents.DocumentRepository;
+import org.codeforamerica.shiba.documents.PdfPreflightInspector;
+import org.codeforamerica.shiba.documents.Thumbnail;
+import org.codeforamerica.shiba.documents.ThumbnailCache;
 import org.codeforamerica.shiba.inputconditions.Condition;
 import org.codeforamerica.shiba.mnit.RoutingDestination;
 import org.codeforamerica.shiba.output.caf.CcapExpeditedEligibilityDecider;
 import org.codeforamerica.shiba.output.caf.SnapExpeditedEligibilityDecider;
+import org.codeforamerica.shiba.output.pdf.UploadedDocumentNormalizer;
 import org.codeforamerica.shiba.pages.config.*;
 import org.codeforamerica.shiba.pages.data.*;
 import org.codeforamerica.shiba.pages.enrichment.ApplicationEnrichment;
+import org.codeforamerica.shiba.pages.enrichment.DeferrableEnrichment;
+import org.codeforamerica.shiba.pages.enrichment.Enrichment;
+import org.codeforamerica.shiba.pages.enrichment.PendingEnrichments;
 import org.codeforamerica.shiba.pages.events.*;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
@@ -52,6 +62,8 @@ public class PageController {
 
   private static final ZoneId CENTRAL_TIMEZONE = ZoneId.of("America/Chicago");
   private static final int MAX_FILES_UPLOADED = 20;
+  // Page name to enrichment name of the pages being enriched in the background
+  private static final String PENDING_ENRICHMENTS = "pendingEnrichments";
   private final ApplicationData applicationData;
   private final ApplicationConfiguration applicationConfiguration;
   private final Clock clock;
@@ -60,6 +72,7 @@ public class PageController {
   private final MessageSource messageSource;
   private final PageEventPublisher pageEventPublisher;
   private final ApplicationEnrichment applicationEnrichment;
+  private final PendingEnrichments pendingEnrichments;
   private final FeatureFlagConfiguration featureFlags;
   private final UploadDocumentConfiguration uploadDocumentConfiguration;
   private final CountyParser countyParser;
@@ -70,6 +83,8 @@ public class PageController {
   private final DocRecommendationMessageService docRecommendationMessageService;
   private final RoutingDecisionService routingDecisionService;
   private final DocumentRepository documentRepository;
+  private final ThumbnailCache thumbnailCache;
+  private final UploadedDocumentNormalizer uploadedDocumentNormalizer;
   private final RoutingDestinationMessageService routingDestinationMessageService;
 
   public PageController(
@@ -80,6 +95,7 @@ public class PageController {
       MessageSource messageSource,
       PageEventPublisher pageEventPublisher,
       ApplicationEnrichment applicationEnrichment,
+      PendingEnrichments pendingEnrichments,
       FeatureFlagConfiguration featureFlags,
       UploadDocumentConfiguration uploadDocumentConfiguration,
       CountyParser countyParser,
@@ -90,6 +106,8 @@ public class PageController {
       DocRecommendationMessageService docRecommendationMessageService,
       RoutingDecisionService routingDecisionService,
       DocumentRepository documentRepository,
+      ThumbnailCache thumbnailCache,
+      UploadedDocumentNormalizer uploadedDocumentNormalizer,
       ApplicationRepository applicationRepository,
       RoutingDestinationMessageService routingDestinationMessageService) {
     this.applicationData = applicationData;
@@ -99,6 +117,7 @@ public class PageController {
     this.messageSource = messageSource;
     this.pageEventPublisher = pageEventPublisher;
     this.applicationEnrichment = applicationEnrichment;
+    this.pendingEnrichments = pendingEnrichments;
     this.featureFlags = featureFlags;
     this.uploadDocumentConfiguration = uploadDocumentConfiguration;
     this.countyParser = countyParser;
@@ -109,6 +128,8 @@ public class PageController {
     this.docRecommendationMessageService = docRecommendationMessageService;
     this.routingDecisionService = routingDecisionService;
     this.documentRepository = documentRepository;
+    this.thumbnailCache = thumbnailCache;
+    this.uploadedDocumentNormalizer = uploadedDocumentNormalizer;
     this.applicationRepository = applicationRepository;
     this.routingDestinationMessageService = routingDestinationMessageService;
   }
@@ -205,6 +226,15 @@ public class PageController {
           "redirect:/pages/" + pageWorkflowConfig.getDataMissingRedirect());
     }
 
+    // Pages that collect an address don't show the enriched address of any other page. Landing
+    // pages have just invalidated the session
+    if (pageWorkflowConfig.getEnrichment() == null
+        && !landmarkPagesConfiguration.isLandingPage(pageName)) {
+      awaitEnrichments(httpSession, pageWorkflowConfig.getDatasources().stream()
+          .map(PageDatasource::getPageName)
+          .toList());
+    }
+
     // Update pagesData with data for incomplete subworkflows
     var pagesData = applicationData.getPagesData();
     if (pageWorkflowConfig.getGroupName() != null) { // If page is part of a group
@@ -370,9 +400,12 @@ public class PageController {
       record DocWithThumbnail(UploadedDocument doc, String thumbnail) {
 
       }
+      // The browser loads each thumbnail from /document-thumbnail once the page is showing. It's
+      // looked up by its path, since filenames needn't be unique
       var uploadedDocsWithThumbnails = applicationData.getUploadedDocs().stream()
-          .parallel()
-          .map(doc -> new DocWithThumbnail(doc, doc.getThumbnail(documentRepository)))
+          .map(doc -> new DocWithThumbnail(doc, doc.getThumbnailFilepath() == null ? null
+              : "/document-thumbnail?path=" + URLEncoder.encode(doc.getThumbnailFilepath(),
+                  UTF_8)))
           .toList();
       model.put("uploadedDocs", uploadedDocsWithThumbnails);
       model.put("uploadDocMaxFileSize", uploadDocumentConfiguration.getMaxFilesize());
@@ -452,12 +485,11 @@ public class PageController {
       HttpSession httpSession
   ) {
     String nextPage;
-    applicationData.getSubworkflows().get(groupName).remove(iteration);
+    applicationData.getSubworkflows().removeIteration(groupName, iteration);
     pageEventPublisher
         .publish(new SubworkflowIterationDeletedEvent(httpSession.getId(), groupName));
 
-    if (applicationData.getSubworkflows().get(groupName).isEmpty()) {
-      applicationData.getSubworkflows().remove(groupName);
+    if (!applicationData.getSubworkflows().containsKey(groupName)) {
       nextPage = applicationConfiguration.getPageGroups().get(groupName).getRestartPage();
     } else {
       nextPage = applicationConfiguration.getPageGroups().get(groupName).getReviewPage();
@@ -527,19 +559,69 @@ public class PageController {
         applicationData.setId(applicationRepository.getNextId());
       }
 
-      ofNullable(pageWorkflow.getEnrichment())
+      // Whatever is still being enriched is saved along with this page
+      awaitEnrichments(httpSession, pendingEnrichmentPages(httpSession).keySet().stream()
+          .filter(pendingPage -> !pendingPage.equals(page.getName()))
+          .toList());
+      Enrichment enrichment = ofNullable(pageWorkflow.getEnrichment())
           .map(applicationEnrichment::getEnrichment)
-          .map(enrichment -> enrichment.process(pagesData))
-          .ifPresent(pageData::putAll);
+          .orElse(null);
+      if (enrichment instanceof DeferrableEnrichment deferrable
+          && pageWorkflow.getGroupName() == null
+          && featureFlags.get("async-address-enrichment") == FeatureFlag.ON) {
+        pendingEnrichments.start(httpSession.getId(), page.getName(), deferrable, pagesData);
+        HashMap<String, String> pending = pendingEnrichmentPages(httpSession);
+        pending.put(page.getName(), pageWorkflow.getEnrichment());
+        httpSession.setAttribute(PENDING_ENRICHMENTS, pending);
+      } else if (enrichment != null) {
+        pageData.putAll(enrichment.process(pagesData));
+      }
 
       Application application = applicationFactory.newApplication(applicationData);
-      applicationRepository.save(application);
+      applicationRepository.saveInProgress(application);
       return new ModelAndView(String.format("redirect:/pages/%s/navigation", pageName));
     } else {
       return new ModelAndView("redirect:/pages/" + pageName);
     }
   }
 
+  /**
+   * Wait for the enrichments of the pages that were started in the background, and add them to the
+   * pages.
+   */
+  private void awaitEnrichments(HttpSession httpSession, List<String> pageNames) {
+    if (pageNames.isEmpty()) {
+      return;
+    }
+    HashMap<String, String> pending = pendingEnrichmentPages(httpSession);
+    if (pending.isEmpty()) {
+      return;
+    }
+    PagesData pagesData = applicationData.getPagesData();
+    for (String pageName : pageNames) {
+      String enrichmentName = pending.remove(pageName);
+      PageData pageData = pagesData.get(pageName);
+      if (enrichmentName == null || pageData == null) {
+        continue;
+      }
+      PageData enriched = pendingEnrichments.await(httpSession.getId(), pageName);
+      if (enriched == null) {
+        // Started on another instance
+        enriched = applicationEnrichment.getEnrichment(enrichmentName).process(pagesData);
+      }
+      pageData.putAll(enriched);
+      // Tell the incremental save the page changed
+      pagesData.putPage(pageName, pageData);
+    }
+    httpSession.setAttribute(PENDING_ENRICHMENTS, pending);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static HashMap<String, String> pendingEnrichmentPages(HttpSession httpSession) {
+    Object pending = httpSession.getAttribute(PENDING_ENRICHMENTS);
+    return pending == null ? new HashMap<>() : (HashMap<String, String>) pending;
+  }
+
   @PostMapping("/submit")
   ModelAndView submitApplication(
       @RequestBody(required = false) MultiValueMap<String, String> model,
@@ -560,6 +642,8 @@ public class PageController {
         // only happens in framework tests now we think, left in out of an abundance of caution
         applicationData.setId(applicationRepository.getNextId());
       }
+      awaitEnrichments(httpSession, pendingEnrichmentPages(httpSession).keySet().stream()
+          .toList());
       Application application = applicationFactory.newApplication(applicationData);
       application.setCompletedAtTime(clock);
       applicationRepository.save(application);
@@ -601,27 +685,36 @@ public class PageController {
   @ResponseStatus(HttpStatus.OK)
   public ResponseEntity<?> upload(@RequestParam("file") MultipartFile file,
       @RequestParam("dataURL") String dataURL,
-      @RequestParam("type") String type) throws IOException, InterruptedException {
+      @RequestParam("type") String type,
+      HttpSession httpSession) throws IOException, InterruptedException {
     applicationRepository.updateStatus(applicationData.getId(), UPLOADED_DOC, IN_PROGRESS);
     if (applicationData.getUploadedDocs().size() <= MAX_FILES_UPLOADED &&
         file.getSize() <= uploadDocumentConfiguration.getMaxFilesizeInBytes()) {
+      PdfPreflight preflight = null;
       if (type.contains("pdf")) {
-        try (var pdfFile = PDDocument.load(file.getBytes())) {
-          var acroForm = pdfFile.getDocumentCatalog().getAcroForm();
-          if (acroForm != null && acroForm.xfaIsDynamic()) {
-            return new ResponseEntity<>("An XFA formatted PDF was uploaded.",
-                HttpStatus.UNPROCESSABLE_ENTITY);
-          }
-        } catch (InvalidPasswordException e) {
+        preflight = PdfPreflightInspector.inspect(file);
+        if (preflight.passwordProtected()) {
           return new ResponseEntity<>("A password protected PDF was uploaded.",
               HttpStatus.UNPROCESSABLE_ENTITY);
         }
+        if (preflight.dynamicXfa()) {
+          return new ResponseEntity<>("An XFA formatted PDF was uploaded.",
+              HttpStatus.UNPROCESSABLE_ENTITY);
+        }
       }
       var filePath = applicationData.getId() + "/" + UUID.randomUUID();
       var thumbnailFilePath = applicationData.getId() + "/" + UUID.randomUUID();
       documentRepository.upload(filePath, file);
-      documentRepository.upload(thumbnailFilePath, dataURL);
-      applicationData.addUploadedDoc(file, filePath, thumbnailFilePath, type);
+      Thumbnail thumbnail = Thumbnail.fromDataUrl(dataURL);
+      if (thumbnail != null) {
+        documentRepository.upload(thumbnailFilePath, thumbnail.bytes());
+        thumbnailCache.put(httpSession.getId(), thumbnailFilePath, thumbnail);
+      } else {
+        documentRepository.upload(thumbnailFilePath, dataURL);
+      }
+      UploadedDocument uploadedDocument = applicationData.addUploadedDoc(file, filePath,
+          thumbnailFilePath, type, preflight);
+      uploadedDocumentNormalizer.normalize(uploadedDocument);
     }
 
     return new ResponseEntity<>(HttpStatus.OK);
@@ -650,14 +743,46 @@ public class PageController {
     return new ModelAndView(String.format("redirect:/pages/%s", nextPage));
   }
 
+  @GetMapping("/document-thumbnail")
+  ResponseEntity<byte[]> getThumbnail(@RequestParam String path, HttpSession httpSession,
+      WebRequest webRequest) {
+    // Only thumbnails of this session's own uploads can be read
+    List<String> thumbnailFilepaths = applicationData.getUploadedDocs().stream()
+        .map(UploadedDocument::getThumbnailFilepath)
+        .filter(Objects::nonNull)
+        .toList();
+    if (!thumbnailFilepaths.contains(path)) {
+      return ResponseEntity.notFound().build();
+    }
+    // A thumbnail never changes once it's stored, so its path identifies its contents
+    String eTag = "\"" + UUID.nameUUIDFromBytes(path.getBytes(UTF_8)) + "\"";
+    if (webRequest.checkNotModified(eTag)) {
+      return null;
+    }
+
+    Thumbnail thumbnail = thumbnailCache.get(httpSession.getId(), path, thumbnailFilepaths);
+    if (thumbnail == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(thumbnail.contentType()))
+        .header("X-Content-Type-Options", "nosniff")
+        .cacheControl(CacheControl.noCache().cachePrivate())
+        .eTag(eTag)
+        .body(thumbnail.bytes());
+  }
+
   @SuppressWarnings("SpringMVCViewInspection")
   @PostMapping("/remove-upload/{filename}")
-  ModelAndView removeUpload(@PathVariable String filename) {
+  ModelAndView removeUpload(@PathVariable String filename, HttpSession httpSession) {
     applicationData.getUploadedDocs().stream()
         .filter(uploadedDocument -> uploadedDocument.getFilename().equals(filename))
-        .map(UploadedDocument::getS3Filepath)
         .findFirst()
-        .ifPresent(documentRepository::delete);
+        .ifPresent(uploadedDocument -> {
+          documentRepository.delete(uploadedDocument.getS3Filepath());
+          uploadedDocumentNormalizer.delete(uploadedDocument);
+          thumbnailCache.evict(httpSession.getId(), uploadedDocument.getThumbnailFilepath());
+        });
     applicationData.removeUploadedDoc(filename);
 
     return new ModelAndView("redirect:/pages/uploadDocuments");
@@ -1,8 +1,21 @@
 package org.codeforamerica.shiba.pages.config;
 
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Optional.ofNullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.codeforamerica.shiba.inputconditions.Condition;
 
 @Data
@@ -33,7 +46,105 @@ public class ApplicationConfiguration {
    */
   private Map<String, PageGroupConfiguration> pageGroups;
 
+  /**
+   * Indexes over {@link #pageDefinitions}, rebuilt whenever the page definitions are set.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private Map<String, PageConfiguration> pageDefinitionsByName = Map.of();
+
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private Map<String, Map<String, FormInput>> inputsByPageName = Map.of();
+
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private Map<String, List<FormInput>> flattenedInputsByPageName = Map.of();
+
   public PageWorkflowConfiguration getPageWorkflow(String pageName) {
     return this.workflow.get(pageName);
   }
+
+  public void setPageDefinitions(List<PageConfiguration> pageDefinitions) {
+    this.pageDefinitions = pageDefinitions;
+
+    // The first definition of a page wins, as it did when pages were looked up with findAny()
+    Map<String, PageConfiguration> byName = new LinkedHashMap<>();
+    if (pageDefinitions != null) {
+      pageDefinitions.forEach(page -> byName.putIfAbsent(page.getName(), page));
+    }
+    Map<String, Map<String, FormInput>> inputs = new LinkedHashMap<>();
+    Map<String, List<FormInput>> flattenedInputs = new LinkedHashMap<>();
+    byName.forEach((name, page) -> {
+      Map<String, FormInput> inputsByName = new LinkedHashMap<>();
+      page.getInputs().forEach(input -> inputsByName.putIfAbsent(input.getName(), input));
+      inputs.put(name, unmodifiableMap(inputsByName));
+      flattenedInputs.put(name, unmodifiableList(page.getFlattenedInputs()));
+    });
+
+    this.pageDefinitionsByName = unmodifiableMap(byName);
+    this.inputsByPageName = unmodifiableMap(inputs);
+    this.flattenedInputsByPageName = unmodifiableMap(flattenedInputs);
+  }
+
+  /**
+   * Compiles every {@link Condition} in the configuration, so none of them is compiled on a
+   * request.
+   */
+  public void compileConditions() {
+    List<Condition> conditions = new ArrayList<>();
+    ofNullable(conditionDefinitions).ifPresent(conditions::addAll);
+    ofNullable(pageGroups).ifPresent(groups -> groups.values().stream()
+        .map(PageGroupConfiguration::getAddedScope)
+        .filter(Objects::nonNull)
+        .forEach(addedScope -> conditions.addAll(addedScope.values())));
+    ofNullable(workflow).ifPresent(pageWorkflows -> pageWorkflows.values().forEach(
+        pageWorkflow -> {
+          conditions.add(pageWorkflow.getSkipCondition());
+          ofNullable(pageWorkflow.getNextPages()).ifPresent(nextPages -> nextPages
+              .forEach(nextPage -> conditions.add(nextPage.getCondition())));
+        }));
+    ofNullable(pageDefinitions).ifPresent(pages -> pages.forEach(page -> {
+      Stream.of(page.getPageTitle(), page.getHeaderKey(), page.getHeaderHelpMessageKey(),
+              page.getSubtleLinkTextKey(), page.getCardFooterTextKey())
+          .filter(Objects::nonNull)
+          .flatMap(value -> value.getConditionalValues().stream())
+          .forEach(conditionalValue -> conditions.add(conditionalValue.getCondition()));
+      page.getFlattenedInputs().forEach(input -> {
+        conditions.add(input.getCondition());
+        input.getValidators().forEach(validator -> conditions.add(validator.getCondition()));
+      });
+    }));
+    conditions.stream().filter(Objects::nonNull).forEach(Condition::compile);
+  }
+
+  /**
+   * @return the definition of the page with this name, or null if there isn't one
+   */
+  public PageConfiguration getPageDefinition(String pageName) {
+    return pageDefinitionsByName.get(pageName);
+  }
+
+  /**
+   * @return the top-level input with this name on the page, or null if there isn't one. Follow-ups
+   * aren't included.
+   */
+  public FormInput getFormInput(String pageName, String inputName) {
+    Map<String, FormInput> inputs = inputsByPageName.get(pageName);
+    return inputs == null ? null : inputs.get(inputName);
+  }
+
+  /**
+   * Every page's inputs, follow-ups included, keyed by page name in the order the pages are
+   * defined.
+   */
+  public Map<String, List<FormInput>> getFlattenedInputsByPageName() {
+    return flattenedInputsByPageName;
+  }
 }
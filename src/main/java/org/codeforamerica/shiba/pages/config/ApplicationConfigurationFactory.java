@@ -29,6 +29,7 @@ public class ApplicationConfigurationFactory implements FactoryBean<ApplicationC
     ApplicationConfiguration appConfig = null;
     try {
       appConfig = yaml.load(classPathResource.getInputStream());
+      appConfig.compileConditions();
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -9,6 +9,7 @@ import static org.codeforamerica.shiba.application.parsers.ApplicationDataParser
 import static org.codeforamerica.shiba.application.parsers.ApplicationDataParser.getBooleanValue;
 import static org.codeforamerica.shiba.application.parsers.ApplicationDataParser.getValues;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.io.Serial;
 import java.io.Serializable;
 import java.time.Instant;
@@ -22,10 +23,13 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.codeforamerica.shiba.application.FlowType;
 import org.codeforamerica.shiba.inputconditions.Condition;
+import org.codeforamerica.shiba.pages.data.ChangeTracker.PendingChanges;
 import org.codeforamerica.shiba.pages.config.FeatureFlag;
 import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.config.NextPage;
@@ -53,6 +57,72 @@ public class ApplicationData implements Serializable {
   private Map<String, PagesData> incompleteIterations = new HashMap<>();
   private List<UploadedDocument> uploadedDocs = new ArrayList<>();
   private List<String> routingDestinationNames = new ArrayList<>(); // just informational, not used by application
+  @JsonIgnore
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private transient ChangeTracker changeTracker;
+  // Set on the copy that gets saved, see ApplicationFactory
+  @JsonIgnore
+  @ToString.Exclude
+  private transient PendingChanges pendingChanges;
+  @JsonIgnore
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private transient SnapshotCopies snapshotCopies;
+
+  /**
+   * Start (or keep) recording which pages and subworkflows change from here on. Tracking is lost
+   * when the session is deserialized, which just means the next save writes everything.
+   */
+  public ChangeTracker trackChanges() {
+    if (changeTracker == null) {
+      changeTracker = new ChangeTracker();
+      pagesData.trackChangesWith(changeTracker);
+      subworkflows.trackChangesWith(changeTracker);
+    }
+    return changeTracker;
+  }
+
+  /**
+   * A copy of the pages data that later changes to this application data don't affect. Pages that
+   * haven't changed since the last copy are shared with it, see {@link SnapshotCopies}, so the copy
+   * mustn't be changed either.
+   */
+  public PagesData snapshotPagesData() {
+    return snapshotCopies().copyOf(pagesData, trackChanges());
+  }
+
+  /**
+   * A copy of the subworkflows, shared with the last copy like {@link #snapshotPagesData()}.
+   */
+  public Subworkflows snapshotSubworkflows() {
+    return snapshotCopies().copyOf(subworkflows, trackChanges());
+  }
+
+  private SnapshotCopies snapshotCopies() {
+    if (snapshotCopies == null) {
+      snapshotCopies = new SnapshotCopies();
+    }
+    return snapshotCopies;
+  }
+
+  public void setPagesData(PagesData pagesData) {
+    this.pagesData = pagesData;
+    if (changeTracker != null) {
+      pagesData.trackChangesWith(changeTracker);
+      changeTracker.invalidate();
+    }
+  }
+
+  public void setSubworkflows(Subworkflows subworkflows) {
+    this.subworkflows = subworkflows;
+    if (changeTracker != null) {
+      subworkflows.trackChangesWith(changeTracker);
+      changeTracker.invalidate();
+    }
+  }
 
   public void setStartTimeOnce(Instant instant) {
     if (startTime == null) {
@@ -143,10 +213,16 @@ public class ApplicationData implements Serializable {
 
   public void addUploadedDoc(MultipartFile file, String s3Filepath, String thumbnailFilepath,
       String type) {
+    addUploadedDoc(file, s3Filepath, thumbnailFilepath, type, null);
+  }
+
+  public UploadedDocument addUploadedDoc(MultipartFile file, String s3Filepath,
+      String thumbnailFilepath, String type, PdfPreflight preflight) {
     UploadedDocument uploadedDocument = new UploadedDocument(file.getOriginalFilename(),
         s3Filepath,
-        thumbnailFilepath, type, file.getSize());
+        thumbnailFilepath, type, file.getSize(), preflight);
     uploadedDocs.add(uploadedDocument);
+    return uploadedDocument;
   }
 
   public void removeUploadedDoc(String fileToDelete) {
@@ -0,0 +1,119 @@
+package org.codeforamerica.shiba.pages.data;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records which pages and subworkflow groups of an {@link ApplicationData} have changed since it
+ * was last written to the database, so that a save can patch only those paths.
+ * <p>
+ * Subworkflow groups are tracked as a whole because removing an iteration shifts the position of
+ * every iteration after it.
+ */
+public class ChangeTracker {
+
+  private static final AtomicLong VERSIONS = new AtomicLong();
+
+  private final Map<String, Long> changedPages = new ConcurrentHashMap<>();
+  private final Map<String, Long> changedSubworkflows = new ConcurrentHashMap<>();
+  // Unlike the changes above, kept after a save; see SnapshotCopies
+  private final Map<String, Long> pageVersions = new ConcurrentHashMap<>();
+  private final Map<String, Long> subworkflowVersions = new ConcurrentHashMap<>();
+  private final AtomicLong generation = new AtomicLong();
+  private volatile long persistedGeneration = -1;
+
+  void pageChanged(Object pageName) {
+    if (pageName instanceof String name) {
+      long version = VERSIONS.incrementAndGet();
+      pageVersions.put(name, version);
+      changedPages.put(name, version);
+    }
+  }
+
+  void subworkflowChanged(Object groupName) {
+    if (groupName instanceof String name) {
+      long version = VERSIONS.incrementAndGet();
+      subworkflowVersions.put(name, version);
+      changedSubworkflows.put(name, version);
+    }
+  }
+
+  /**
+   * When the page last changed, or 0 if it hasn't changed since tracking began.
+   */
+  long pageVersion(String pageName) {
+    return pageVersions.getOrDefault(pageName, 0L);
+  }
+
+  long subworkflowVersion(String groupName) {
+    return subworkflowVersions.getOrDefault(groupName, 0L);
+  }
+
+  long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Called when pages data or subworkflows are replaced wholesale; the next save has to write the
+   * entire application.
+   */
+  void invalidate() {
+    generation.incrementAndGet();
+  }
+
+  /**
+   * Take a snapshot of the changes made so far. It should be taken together with the copy of the
+   * application data that is going to be saved.
+   */
+  public PendingChanges snapshot() {
+    long currentGeneration = generation.get();
+    return new PendingChanges(this, currentGeneration, currentGeneration == persistedGeneration,
+        Map.copyOf(changedPages), Map.copyOf(changedSubworkflows));
+  }
+
+  public static class PendingChanges {
+
+    private final ChangeTracker tracker;
+    private final long generation;
+    private final boolean persisted;
+    private final Map<String, Long> pages;
+    private final Map<String, Long> subworkflows;
+
+    private PendingChanges(ChangeTracker tracker, long generation, boolean persisted,
+        Map<String, Long> pages, Map<String, Long> subworkflows) {
+      this.tracker = tracker;
+      this.generation = generation;
+      this.persisted = persisted;
+      this.pages = pages;
+      this.subworkflows = subworkflows;
+    }
+
+    /**
+     * Whether the application has been written in full since tracking began, i.e. whether a patch
+     * of just the changed paths is enough to bring the stored row up to date.
+     */
+    public boolean isPersisted() {
+      return persisted;
+    }
+
+    public Set<String> getChangedPages() {
+      return pages.keySet();
+    }
+
+    public Set<String> getChangedSubworkflows() {
+      return subworkflows.keySet();
+    }
+
+    /**
+     * Mark the changes in this snapshot as written. Anything that changed again after the snapshot
+     * was taken stays pending.
+     */
+    public void flushed() {
+      pages.forEach(tracker.changedPages::remove);
+      subworkflows.forEach(tracker.changedSubworkflows::remove);
+      tracker.persistedGeneration = generation;
+    }
+  }
+}
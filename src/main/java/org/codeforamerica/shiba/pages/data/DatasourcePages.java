@@ -3,7 +3,6 @@ package org.codeforamerica.shiba.pages.data;
 import java.io.Serial;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Stream;
 import org.codeforamerica.shiba.inputconditions.Condition;
 
 // Very similar to PagesData, with some subtle differences. Used for
@@ -25,21 +24,7 @@ public class DatasourcePages extends HashMap<String, PageData> {
   }
 
   public Boolean satisfies(Condition condition) {
-    if (condition.getConditions() != null) {
-      Stream<Condition> conditionStream = condition.getConditions().stream();
-      return switch (condition.getLogicalOperator()) {
-        case AND -> conditionStream.allMatch(this::satisfies);
-        case OR -> conditionStream.anyMatch(this::satisfies);
-      };
-    }
-
-    PageData pageData = this.get(condition.getPageName());
-    if (pageData == null || !pageData.containsKey(condition.getInput())) {
-      // This page's skipCondition was satisfied, so the client didn't provide an answer, so this condition can't be satisfied
-      return false;
-    } else {
-      return condition.matches(pageData, this);
-    }
+    return condition.satisfiedBy(this);
   }
 
   public DatasourcePages mergeDatasourcePages(DatasourcePages datasourcePages) {
@@ -50,6 +50,13 @@ public class InputData implements Serializable {
         .map(Validator::getErrorMessageKey).collect(Collectors.toList());
   }
 
+  /**
+   * A copy whose values can be changed without affecting this one. Validators are shared.
+   */
+  InputData copy() {
+    return new InputData(new ArrayList<>(value), validators);
+  }
+
   public String getValue(int i) {
     return this.getValue().get(i);
   }
@@ -55,6 +55,18 @@ public class PageData extends HashMap<String, InputData> {
             )));
   }
 
+  /**
+   * Give the inputs back the validators the page configures for them, for page data that was stored
+   * without them.
+   */
+  public void restoreValidators(PageConfiguration pageConfiguration) {
+    Map<String, List<Validator>> validators = new HashMap<>();
+    pageConfiguration.getFlattenedInputs()
+        .forEach(input -> validators.putIfAbsent(input.getName(), input.getValidators()));
+    replaceAll((inputName, inputData) -> inputData == null || !validators.containsKey(inputName)
+        ? inputData : new InputData(inputData.getValue(), validators.get(inputName)));
+  }
+
   public Boolean isValid() {
     Predicate<Validator> validatorForThisInputShouldRun = validator -> ofNullable(
         validator.getCondition()).map(
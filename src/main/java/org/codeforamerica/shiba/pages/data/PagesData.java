@@ -4,15 +4,23 @@ import static java.util.stream.Collectors.toMap;
 import static org.codeforamerica.shiba.pages.config.OptionsWithDataSourceTemplate.createOptionsWithDataSourceTemplate;
 
 import java.io.Serial;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.codeforamerica.shiba.inputconditions.Condition;
 import org.codeforamerica.shiba.pages.config.ConditionalValue;
 import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
@@ -31,6 +39,11 @@ public class PagesData extends HashMap<String, PageData> {
   @Serial
   private static final long serialVersionUID = 5350174349257543992L;
 
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private transient ChangeTracker changeTracker;
+
   public PagesData() {
     super();
   }
@@ -39,6 +52,154 @@ public class PagesData extends HashMap<String, PageData> {
     super(map);
   }
 
+  void trackChangesWith(ChangeTracker changeTracker) {
+    this.changeTracker = changeTracker;
+  }
+
+  private void pageChanged(Object pageName) {
+    if (changeTracker != null) {
+      changeTracker.pageChanged(pageName);
+    }
+  }
+
+  @Override
+  public PageData put(String pageName, PageData pageData) {
+    PageData previous = super.put(pageName, pageData);
+    pageChanged(pageName);
+    return previous;
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ? extends PageData> pages) {
+    super.putAll(pages);
+    pages.keySet().forEach(this::pageChanged);
+  }
+
+  @Override
+  public PageData putIfAbsent(String pageName, PageData pageData) {
+    PageData previous = super.putIfAbsent(pageName, pageData);
+    if (previous == null) {
+      pageChanged(pageName);
+    }
+    return previous;
+  }
+
+  @Override
+  public PageData remove(Object pageName) {
+    PageData previous = super.remove(pageName);
+    pageChanged(pageName);
+    return previous;
+  }
+
+  @Override
+  public boolean remove(Object pageName, Object pageData) {
+    boolean removed = super.remove(pageName, pageData);
+    if (removed) {
+      pageChanged(pageName);
+    }
+    return removed;
+  }
+
+  @Override
+  public PageData replace(String pageName, PageData pageData) {
+    boolean present = containsKey(pageName);
+    PageData previous = super.replace(pageName, pageData);
+    if (present) {
+      pageChanged(pageName);
+    }
+    return previous;
+  }
+
+  @Override
+  public boolean replace(String pageName, PageData oldPageData, PageData newPageData) {
+    boolean replaced = super.replace(pageName, oldPageData, newPageData);
+    if (replaced) {
+      pageChanged(pageName);
+    }
+    return replaced;
+  }
+
+  @Override
+  public void replaceAll(
+      BiFunction<? super String, ? super PageData, ? extends PageData> function) {
+    super.replaceAll(function);
+    keySet().forEach(this::pageChanged);
+  }
+
+  @Override
+  public PageData computeIfAbsent(String pageName,
+      Function<? super String, ? extends PageData> mappingFunction) {
+    boolean absent = get(pageName) == null;
+    PageData pageData = super.computeIfAbsent(pageName, mappingFunction);
+    if (absent && pageData != null) {
+      pageChanged(pageName);
+    }
+    return pageData;
+  }
+
+  @Override
+  public PageData computeIfPresent(String pageName,
+      BiFunction<? super String, ? super PageData, ? extends PageData> remappingFunction) {
+    boolean present = get(pageName) != null;
+    PageData pageData = super.computeIfPresent(pageName, remappingFunction);
+    if (present) {
+      pageChanged(pageName);
+    }
+    return pageData;
+  }
+
+  @Override
+  public PageData compute(String pageName,
+      BiFunction<? super String, ? super PageData, ? extends PageData> remappingFunction) {
+    PageData pageData = super.compute(pageName, remappingFunction);
+    pageChanged(pageName);
+    return pageData;
+  }
+
+  @Override
+  public PageData merge(String pageName, PageData pageData,
+      BiFunction<? super PageData, ? super PageData, ? extends PageData> remappingFunction) {
+    PageData merged = super.merge(pageName, pageData, remappingFunction);
+    pageChanged(pageName);
+    return merged;
+  }
+
+  @Override
+  public void clear() {
+    if (changeTracker != null) {
+      keySet().forEach(changeTracker::pageChanged);
+    }
+    super.clear();
+  }
+
+  /**
+   * The views are read-only, since changes made through them couldn't be tracked.
+   */
+  @Override
+  public Set<String> keySet() {
+    return Collections.unmodifiableSet(super.keySet());
+  }
+
+  @Override
+  public Collection<PageData> values() {
+    return Collections.unmodifiableCollection(super.values());
+  }
+
+  @Override
+  public Set<Entry<String, PageData>> entrySet() {
+    return Collections.unmodifiableSet(super.entrySet());
+  }
+
+  /**
+   * Copies are not tracked; changes made to them never reach the database through this instance.
+   */
+  @Override
+  public Object clone() {
+    PagesData clone = (PagesData) super.clone();
+    clone.changeTracker = null;
+    return clone;
+  }
+
   public PageData getPage(String pageName) {
     return get(pageName);
   }
@@ -54,16 +215,7 @@ public class PagesData extends HashMap<String, PageData> {
   }
 
   public boolean satisfies(Condition condition) {
-    if (condition.getConditions() != null) {
-      Stream<Condition> conditionStream = condition.getConditions().stream();
-      return switch (condition.getLogicalOperator()) {
-        case AND -> conditionStream.allMatch(this::satisfies);
-        case OR -> conditionStream.anyMatch(this::satisfies);
-      };
-    }
-
-    PageData pageData = get(condition.getPageName()); // this can't handle groups
-    return condition.matches(pageData, this);
+    return condition.satisfiedBy(this); // this can't handle groups
   }
 
   public DatasourcePages getDatasourcePagesBy(List<PageDatasource> datasources) {
@@ -124,7 +276,7 @@ public class PagesData extends HashMap<String, PageData> {
    * flags evaluate to "false".
    */
   private String resolve(FeatureFlagConfiguration featureFlags,
-      PageWorkflowConfiguration pageWorkflowConfiguration,
+      PageWorkflowConfiguration pageWorkflowConfiguration, DatasourcePages datasourcePages,
       Value value) {
     if (value == null) {
       return "";
@@ -144,8 +296,6 @@ public class PagesData extends HashMap<String, PageData> {
           }
           Objects.requireNonNull(pageWorkflowConfiguration.getDatasources(),
               "Configuration mismatch! Conditional value cannot be evaluated without a datasource.");
-          DatasourcePages datasourcePages = this
-              .getDatasourcePagesBy(pageWorkflowConfiguration.getDatasources());
           return datasourcePages.satisfies(condition);
         })
         .findFirst()
@@ -156,6 +306,7 @@ public class PagesData extends HashMap<String, PageData> {
   public PageTemplate evaluate(FeatureFlagConfiguration featureFlags,
       PageWorkflowConfiguration pageWorkflowConfiguration, ApplicationData applicationData) {
     PageConfiguration pageConfiguration = pageWorkflowConfiguration.getPageConfiguration();
+    // Materialized once and shared by the inputs and every conditional value on the page
     DatasourcePages datasourcePages = this
         .getDatasourcePagesBy(pageWorkflowConfiguration.getDatasources());
 
@@ -167,14 +318,18 @@ public class PagesData extends HashMap<String, PageData> {
     return new PageTemplate(
         inputs,
         pageConfiguration.getName(),
-        resolve(featureFlags, pageWorkflowConfiguration, pageConfiguration.getPageTitle()),
-        resolve(featureFlags, pageWorkflowConfiguration, pageConfiguration.getHeaderKey()),
-        resolve(featureFlags, pageWorkflowConfiguration,
+        resolve(featureFlags, pageWorkflowConfiguration, datasourcePages,
+            pageConfiguration.getPageTitle()),
+        resolve(featureFlags, pageWorkflowConfiguration, datasourcePages,
+            pageConfiguration.getHeaderKey()),
+        resolve(featureFlags, pageWorkflowConfiguration, datasourcePages,
             pageConfiguration.getHeaderHelpMessageKey()),
         pageConfiguration.getPrimaryButtonTextKey(),
-        resolve(featureFlags, pageWorkflowConfiguration, pageConfiguration.getSubtleLinkTextKey()),
+        resolve(featureFlags, pageWorkflowConfiguration, datasourcePages,
+            pageConfiguration.getSubtleLinkTextKey()),
         pageWorkflowConfiguration.getSubtleLinkTargetPage(),
-        resolve(featureFlags, pageWorkflowConfiguration, pageConfiguration.getCardFooterTextKey()),
+        resolve(featureFlags, pageWorkflowConfiguration, datasourcePages,
+            pageConfiguration.getCardFooterTextKey()),
         pageConfiguration.getHasPrimaryButton(),
         pageConfiguration.getContextFragment(),
         pageConfiguration.getAlertBox()
@@ -0,0 +1,22 @@
+package org.codeforamerica.shiba.pages.data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * What was learned about an uploaded PDF when it was uploaded, so later stages don't have to parse
+ * it again to find out.
+ *
+ * @param pageCount         0 if the PDF couldn't be opened
+ * @param encrypted         whether the PDF has an encryption dictionary, even one that only
+ *                          restricts permissions
+ * @param passwordProtected whether the PDF can't be opened without a password
+ * @param dynamicXfa        whether the PDF is a dynamic XFA form, which we can't convert
+ * @param size              in bytes
+ */
+public record PdfPreflight(int pageCount, boolean encrypted, boolean passwordProtected,
+                           boolean dynamicXfa, long size) implements Serializable {
+
+  @Serial
+  private static final long serialVersionUID = -2286418806297316412L;
+}
@@ -0,0 +1,89 @@
+package org.codeforamerica.shiba.pages.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * The copies of pages and subworkflow groups handed out by the last snapshot of an {@link
+ * ApplicationData}. A page or group that hasn't changed since it was copied is shared with the next
+ * snapshot instead of being copied again, so taking a snapshot costs as much as the changes since
+ * the previous one.
+ * <p>
+ * This relies on the same thing as the incremental save: pages and groups are only changed by
+ * putting them (back) into their {@link PagesData} or {@link Subworkflows}. Snapshots are never
+ * changed once they've been handed out.
+ */
+class SnapshotCopies {
+
+  private long generation = -1;
+  private final Map<String, Copy<PageData>> pages = new HashMap<>();
+  private final Map<String, Copy<Subworkflow>> subworkflows = new HashMap<>();
+
+  synchronized PagesData copyOf(PagesData pagesData, ChangeTracker changeTracker) {
+    discardIfReplaced(changeTracker);
+    return new PagesData(copyChanged(pagesData, pages, changeTracker::pageVersion,
+        SnapshotCopies::copyPage));
+  }
+
+  synchronized Subworkflows copyOf(Subworkflows subworkflows, ChangeTracker changeTracker) {
+    discardIfReplaced(changeTracker);
+    return new Subworkflows(copyChanged(subworkflows, this.subworkflows,
+        changeTracker::subworkflowVersion, SnapshotCopies::copyGroup));
+  }
+
+  private void discardIfReplaced(ChangeTracker changeTracker) {
+    if (changeTracker.generation() != generation) {
+      pages.clear();
+      subworkflows.clear();
+      generation = changeTracker.generation();
+    }
+  }
+
+  private static <T> Map<String, T> copyChanged(Map<String, T> current,
+      Map<String, Copy<T>> copies, ToLongFunction<String> versionOf, Function<T, T> copy) {
+    copies.keySet().retainAll(current.keySet());
+    Map<String, T> snapshot = new HashMap<>(current.size());
+    current.forEach((name, value) -> {
+      // Read before copying, so that a change made while copying makes the copy stale
+      long version = versionOf.applyAsLong(name);
+      Copy<T> previous = copies.get(name);
+      if (previous == null || previous.version() != version) {
+        previous = new Copy<>(value == null ? null : copy.apply(value), version);
+        copies.put(name, previous);
+      }
+      snapshot.put(name, previous.value());
+    });
+    return snapshot;
+  }
+
+  static PageData copyPage(PageData pageData) {
+    PageData copy = new PageData();
+    pageData.forEach((inputName, inputData) ->
+        copy.put(inputName, inputData == null ? null : inputData.copy()));
+    return copy;
+  }
+
+  static PagesData copyPages(PagesData pagesData) {
+    PagesData copy = new PagesData();
+    pagesData.forEach((pageName, pageData) ->
+        copy.put(pageName, pageData == null ? null : copyPage(pageData)));
+    return copy;
+  }
+
+  static Subworkflow copyGroup(Subworkflow subworkflow) {
+    Subworkflow copy = new Subworkflow();
+    subworkflow.forEach(iteration -> {
+      Iteration iterationCopy = new Iteration(
+          iteration.getPagesData() == null ? null : copyPages(iteration.getPagesData()));
+      iterationCopy.setId(iteration.getId());
+      copy.add(iterationCopy);
+    });
+    return copy;
+  }
+
+  private record Copy<T>(T value, long version) {
+
+  }
+}
@@ -1,8 +1,13 @@
 package org.codeforamerica.shiba.pages.data;
 
 import java.io.Serial;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public class Subworkflows extends HashMap<String, Subworkflow> {
 
@@ -13,13 +18,175 @@ public class Subworkflows extends HashMap<String, Subworkflow> {
     super();
   }
 
+  private transient ChangeTracker changeTracker;
+
   public Subworkflows(Map<String, Subworkflow> subworkflows) {
     super(subworkflows);
   }
 
+  void trackChangesWith(ChangeTracker changeTracker) {
+    this.changeTracker = changeTracker;
+  }
+
+  private void subworkflowChanged(Object groupName) {
+    if (changeTracker != null) {
+      changeTracker.subworkflowChanged(groupName);
+    }
+  }
+
+  @Override
+  public Subworkflow put(String groupName, Subworkflow subworkflow) {
+    Subworkflow previous = super.put(groupName, subworkflow);
+    subworkflowChanged(groupName);
+    return previous;
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ? extends Subworkflow> subworkflows) {
+    super.putAll(subworkflows);
+    subworkflows.keySet().forEach(this::subworkflowChanged);
+  }
+
+  @Override
+  public Subworkflow putIfAbsent(String groupName, Subworkflow subworkflow) {
+    Subworkflow previous = super.putIfAbsent(groupName, subworkflow);
+    if (previous == null) {
+      subworkflowChanged(groupName);
+    }
+    return previous;
+  }
+
+  @Override
+  public Subworkflow remove(Object groupName) {
+    Subworkflow previous = super.remove(groupName);
+    subworkflowChanged(groupName);
+    return previous;
+  }
+
+  @Override
+  public boolean remove(Object groupName, Object subworkflow) {
+    boolean removed = super.remove(groupName, subworkflow);
+    if (removed) {
+      subworkflowChanged(groupName);
+    }
+    return removed;
+  }
+
+  @Override
+  public Subworkflow replace(String groupName, Subworkflow subworkflow) {
+    boolean present = containsKey(groupName);
+    Subworkflow previous = super.replace(groupName, subworkflow);
+    if (present) {
+      subworkflowChanged(groupName);
+    }
+    return previous;
+  }
+
+  @Override
+  public boolean replace(String groupName, Subworkflow oldSubworkflow,
+      Subworkflow newSubworkflow) {
+    boolean replaced = super.replace(groupName, oldSubworkflow, newSubworkflow);
+    if (replaced) {
+      subworkflowChanged(groupName);
+    }
+    return replaced;
+  }
+
+  @Override
+  public void replaceAll(
+      BiFunction<? super String, ? super Subworkflow, ? extends Subworkflow> function) {
+    super.replaceAll(function);
+    keySet().forEach(this::subworkflowChanged);
+  }
+
+  @Override
+  public Subworkflow computeIfAbsent(String groupName,
+      Function<? super String, ? extends Subworkflow> mappingFunction) {
+    boolean absent = get(groupName) == null;
+    Subworkflow subworkflow = super.computeIfAbsent(groupName, mappingFunction);
+    if (absent && subworkflow != null) {
+      subworkflowChanged(groupName);
+    }
+    return subworkflow;
+  }
+
+  @Override
+  public Subworkflow computeIfPresent(String groupName,
+      BiFunction<? super String, ? super Subworkflow, ? extends Subworkflow> remappingFunction) {
+    boolean present = get(groupName) != null;
+    Subworkflow subworkflow = super.computeIfPresent(groupName, remappingFunction);
+    if (present) {
+      subworkflowChanged(groupName);
+    }
+    return subworkflow;
+  }
+
+  @Override
+  public Subworkflow compute(String groupName,
+      BiFunction<? super String, ? super Subworkflow, ? extends Subworkflow> remappingFunction) {
+    Subworkflow subworkflow = super.compute(groupName, remappingFunction);
+    subworkflowChanged(groupName);
+    return subworkflow;
+  }
+
+  @Override
+  public Subworkflow merge(String groupName, Subworkflow subworkflow,
+      BiFunction<? super Subworkflow, ? super Subworkflow, ? extends Subworkflow>
+          remappingFunction) {
+    Subworkflow merged = super.merge(groupName, subworkflow, remappingFunction);
+    subworkflowChanged(groupName);
+    return merged;
+  }
+
+  @Override
+  public void clear() {
+    if (changeTracker != null) {
+      keySet().forEach(changeTracker::subworkflowChanged);
+    }
+    super.clear();
+  }
+
+  /**
+   * The views are read-only, since changes made through them couldn't be tracked.
+   */
+  @Override
+  public Set<String> keySet() {
+    return Collections.unmodifiableSet(super.keySet());
+  }
+
+  @Override
+  public Collection<Subworkflow> values() {
+    return Collections.unmodifiableCollection(super.values());
+  }
+
+  @Override
+  public Set<Entry<String, Subworkflow>> entrySet() {
+    return Collections.unmodifiableSet(super.entrySet());
+  }
+
+  @Override
+  public Object clone() {
+    Subworkflows clone = (Subworkflows) super.clone();
+    clone.changeTracker = null;
+    return clone;
+  }
+
   public void addIteration(String groupName, PagesData subflowIteration) {
     Subworkflow subworkflow = this.getOrDefault(groupName, new Subworkflow());
     subworkflow.add(subflowIteration);
     this.put(groupName, subworkflow);
   }
+
+  /**
+   * Remove a single iteration from a group, dropping the group once it has no iterations left.
+   */
+  public void removeIteration(String groupName, int iteration) {
+    Subworkflow subworkflow = get(groupName);
+    subworkflow.remove(iteration);
+    if (subworkflow.isEmpty()) {
+      remove(groupName);
+    } else {
+      subworkflowChanged(groupName);
+    }
+  }
 }
@@ -1,13 +1,10 @@
 package org.codeforamerica.shiba.pages.data;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.Serial;
 import java.io.Serializable;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.codeforamerica.shiba.documents.DocumentRepository;
 
 @AllArgsConstructor
 @NoArgsConstructor
@@ -22,13 +19,10 @@ public class UploadedDocument implements Serializable {
   private String thumbnailFilepath;
   private String type;
   private long size; // bytes
+  private PdfPreflight preflight; // null for anything but a PDF
 
-  public String getThumbnail(DocumentRepository documentRepository) {
-    try {
-      var thumbnailBytes = documentRepository.get(thumbnailFilepath);
-      return new String(thumbnailBytes, UTF_8);
-    } catch (Exception e) {
-      return "";
-    }
+  public UploadedDocument(String filename, String s3Filepath, String thumbnailFilepath,
+      String type, long size) {
+    this(filename, s3Filepath, thumbnailFilepath, type, size, null);
   }
 }
@@ -0,0 +1,57 @@
+package org.codeforamerica.shiba.pages.emails;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import org.codeforamerica.shiba.output.ApplicationFile;
+
+/**
+ * Groups attachments into as few emails as possible, each under the attachment size limit.
+ * <p>
+ * Files are placed largest first into the first email they fit in (first-fit decreasing), which
+ * stays within 11/9 of the fewest emails possible. A file that's at or over the limit on its own
+ * gets an email to itself. Emails come back ordered by their first file, and files keep the order
+ * they were given in within each email.
+ */
+final class AttachmentPacker {
+
+  private AttachmentPacker() {
+  }
+
+  static List<List<ApplicationFile>> pack(List<ApplicationFile> files, long maxAttachmentSize) {
+    // Sizes of files on disk are read from the filesystem; only ask once
+    long[] sizes = files.stream().mapToLong(ApplicationFile::getSize).toArray();
+    List<Integer> largestFirst = IntStream.range(0, files.size()).boxed()
+        .sorted(Comparator.comparingLong((Integer i) -> sizes[i]).reversed())
+        .toList();
+
+    List<Email> emails = new ArrayList<>();
+    for (int i : largestFirst) {
+      Email email = emails.stream()
+          .filter(candidate -> candidate.size + sizes[i] < maxAttachmentSize)
+          .findFirst()
+          .orElseGet(() -> {
+            Email newEmail = new Email();
+            emails.add(newEmail);
+            return newEmail;
+          });
+      email.files.put(i, files.get(i));
+      email.size += sizes[i];
+    }
+
+    return emails.stream()
+        .sorted(Comparator.comparingInt(email -> email.files.firstKey()))
+        .map(email -> List.copyOf(email.files.values()))
+        .toList();
+  }
+
+  private static class Email {
+
+    // By index in the list given
+    private final SortedMap<Integer, ApplicationFile> files = new TreeMap<>();
+    private long size;
+  }
+}
@@ -0,0 +1,188 @@
+package org.codeforamerica.shiba.pages.emails;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.codeforamerica.shiba.output.ApplicationFile;
+import org.codeforamerica.shiba.output.LeasedOutbox;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Emails waiting to be sent through Mailgun, stored in Postgres so that they survive restarts and
+ * can be sent by any instance. See {@link LeasedOutbox} for how emails are leased and retried.
+ * <p>
+ * The emails sent about an application attach the same PDFs, so each attached file is stored once
+ * per application in email_outbox_files and referenced from every email that attaches it. Files
+ * are deleted once no email attaches them anymore, whether the emails were sent or failed.
+ */
+@Repository
+public class EmailOutbox {
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+  private final LeasedOutbox outbox;
+
+  public EmailOutbox(JdbcTemplate jdbcTemplate,
+      @Value("${email-outbox.lease:5m}") Duration lease,
+      @Value("${email-outbox.max-attempts:6}") int maxAttempts,
+      @Value("${email-outbox.delay:1m}") Duration delay,
+      @Value("${email-outbox.multiplier:3}") double multiplier,
+      @Value("${email-outbox.max-delay:2h}") Duration maxDelay) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    this.outbox = new LeasedOutbox(jdbcTemplate, "email_outbox", lease, maxAttempts, delay,
+        multiplier, maxDelay);
+  }
+
+  /**
+   * Store an email to be sent as soon as a worker gets to it. Its attachments are shared with the
+   * other emails about the same application that attach the same files.
+   */
+  @Transactional
+  public long enqueue(String applicationId, String subject, String senderEmail,
+      String recipientEmail, String emailBody, List<ApplicationFile> attachments) {
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    namedParameterJdbcTemplate.update(
+        "INSERT INTO email_outbox (subject, sender, recipient, html) " +
+            "VALUES (:subject, :sender, :recipient, :html)",
+        new MapSqlParameterSource()
+            .addValue("subject", subject)
+            .addValue("sender", senderEmail)
+            .addValue("recipient", recipientEmail)
+            .addValue("html", emailBody),
+        keyHolder, new String[]{"id"});
+    long id = Objects.requireNonNull(keyHolder.getKey()).longValue();
+    for (int i = 0; i < attachments.size(); i++) {
+      namedParameterJdbcTemplate.update(
+          "INSERT INTO email_outbox_attachments (email_id, position, file_name, file_id) " +
+              "VALUES (:id, :position, :fileName, :fileId)",
+          new MapSqlParameterSource()
+              .addValue("id", id)
+              .addValue("position", i)
+              .addValue("fileName", attachments.get(i).getFileName())
+              .addValue("fileId", storeFile(applicationId, attachments.get(i))));
+    }
+    return id;
+  }
+
+  /**
+   * Lease up to {@code limit} emails that are due to be sent and not leased by anyone else.
+   */
+  public List<OutboxEmail> claimDue(int limit) {
+    List<OutboxEmail> claimed = outbox.claimDue(limit, (resultSet, rowNum) -> new OutboxEmail(
+        resultSet.getLong("id"),
+        resultSet.getString("subject"),
+        resultSet.getString("sender"),
+        resultSet.getString("recipient"),
+        resultSet.getString("html"),
+        List.of(),
+        resultSet.getInt("attempts")));
+    if (claimed.isEmpty()) {
+      return List.of();
+    }
+
+    Map<Long, List<ApplicationFile>> attachments = new HashMap<>();
+    namedParameterJdbcTemplate.query(
+        "SELECT a.email_id, a.file_name, f.file_bytes FROM email_outbox_attachments a " +
+            "JOIN email_outbox_files f ON f.id = a.file_id " +
+            "WHERE a.email_id IN (:ids) ORDER BY a.email_id, a.position",
+        Map.of("ids", claimed.stream().map(OutboxEmail::id).toList()),
+        resultSet -> {
+          attachments.computeIfAbsent(resultSet.getLong("email_id"), id -> new ArrayList<>())
+              .add(new ApplicationFile(resultSet.getBytes("file_bytes"),
+                  resultSet.getString("file_name")));
+        });
+    return claimed.stream()
+        .map(email -> new OutboxEmail(email.id(), email.subject(), email.senderEmail(),
+            email.recipientEmail(), email.emailBody(),
+            attachments.getOrDefault(email.id(), List.of()), email.attempts()))
+        .toList();
+  }
+
+  public void sent(OutboxEmail email) {
+    List<Long> fileIds = attachedFileIds(email.id());
+    // The email's attachments go with it
+    if (outbox.complete(email.id())) {
+      deleteUnattachedFiles(fileIds);
+    }
+  }
+
+  /**
+   * Record a failed attempt and release the lease. Once an email has run out of attempts its
+   * attachments are dropped, since they hold client data that is no longer going to be sent.
+   *
+   * @return true if the email will be attempted again, false if it has run out of attempts
+   */
+  public boolean failed(OutboxEmail email, Throwable error) {
+    boolean willRetry = outbox.failed(email.id(), email.attempts(), error);
+    if (!willRetry) {
+      List<Long> fileIds = attachedFileIds(email.id());
+      jdbcTemplate.update("DELETE FROM email_outbox_attachments WHERE email_id IN " +
+          "(SELECT id FROM email_outbox WHERE id = ? AND status = 'failed')", email.id());
+      deleteUnattachedFiles(fileIds);
+    }
+    return willRetry;
+  }
+
+  Duration backoff(int attempts) {
+    return outbox.backoff(attempts);
+  }
+
+  private long storeFile(String applicationId, ApplicationFile file) {
+    return Objects.requireNonNull(namedParameterJdbcTemplate.queryForObject(
+        "INSERT INTO email_outbox_files (application_id, digest, file_bytes) " +
+            "VALUES (:applicationId, :digest, :fileBytes) " +
+            "ON CONFLICT (application_id, digest) " +
+            "DO UPDATE SET application_id = EXCLUDED.application_id RETURNING id",
+        new MapSqlParameterSource()
+            .addValue("applicationId", applicationId)
+            .addValue("digest", sha256(file.getFileBytes()))
+            .addValue("fileBytes", file.getFileBytes()),
+        Long.class));
+  }
+
+  private List<Long> attachedFileIds(long emailId) {
+    return jdbcTemplate.queryForList(
+        "SELECT file_id FROM email_outbox_attachments WHERE email_id = ?", Long.class, emailId);
+  }
+
+  private void deleteUnattachedFiles(List<Long> fileIds) {
+    if (fileIds.isEmpty()) {
+      return;
+    }
+    try {
+      namedParameterJdbcTemplate.update(
+          "DELETE FROM email_outbox_files f WHERE f.id IN (:ids) " +
+              "AND NOT EXISTS (SELECT 1 FROM email_outbox_attachments a WHERE a.file_id = f.id)",
+          Map.of("ids", fileIds));
+    } catch (DataIntegrityViolationException e) {
+      // An email queued meanwhile attached one of them; it's deleted along with that email
+    }
+  }
+
+  private static byte[] sha256(byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public record OutboxEmail(long id, String subject, String senderEmail, String recipientEmail,
+                            String emailBody, List<ApplicationFile> attachments, int attempts) {
+
+  }
+}
@@ -0,0 +1,121 @@
+package org.codeforamerica.shiba.pages.emails;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.codeforamerica.shiba.pages.emails.EmailOutbox.OutboxEmail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends emails from the {@link EmailOutbox}, a few at a time and no more than
+ * email-outbox.max-per-minute from each instance, so a burst of submissions doesn't run into
+ * Mailgun's rate limits.
+ */
+@Component
+@Slf4j
+public class EmailOutboxWorker {
+
+  private final EmailOutbox emailOutbox;
+  private final MailGunEmailClient mailGunEmailClient;
+  private final FeatureFlagConfiguration featureFlagConfiguration;
+  private final Clock clock;
+  private final int batchSize;
+  private final int maxConcurrentSends;
+  private final int maxPerMinute;
+  private final Counter sent;
+  private final Counter retried;
+  private final Counter failed;
+  private Instant windowStart = Instant.MIN;
+  private int sentInWindow;
+
+  public EmailOutboxWorker(EmailOutbox emailOutbox,
+      MailGunEmailClient mailGunEmailClient,
+      FeatureFlagConfiguration featureFlagConfiguration,
+      Clock clock,
+      @Value("${email-outbox.batch-size:20}") int batchSize,
+      @Value("${email-outbox.max-concurrent-sends:4}") int maxConcurrentSends,
+      @Value("${email-outbox.max-per-minute:120}") int maxPerMinute,
+      MeterRegistry meterRegistry) {
+    this.emailOutbox = emailOutbox;
+    this.mailGunEmailClient = mailGunEmailClient;
+    this.featureFlagConfiguration = featureFlagConfiguration;
+    this.clock = clock;
+    this.batchSize = batchSize;
+    this.maxConcurrentSends = maxConcurrentSends;
+    this.maxPerMinute = maxPerMinute;
+    this.sent = meterRegistry.counter("email.outbox", "result", "sent");
+    this.retried = meterRegistry.counter("email.outbox", "result", "retry");
+    this.failed = meterRegistry.counter("email.outbox", "result", "failed");
+  }
+
+  public boolean isEnabled() {
+    return featureFlagConfiguration.get("email-outbox") == FeatureFlag.ON;
+  }
+
+  @Scheduled(
+      fixedDelayString = "${email-outbox.poll-interval-milliseconds:5000}",
+      initialDelayString = "${email-outbox.poll-interval-milliseconds:5000}"
+  )
+  public void sendDue() {
+    if (!isEnabled()) {
+      return;
+    }
+    Instant now = clock.instant();
+    if (!now.isBefore(windowStart.plus(Duration.ofMinutes(1)))) {
+      windowStart = now;
+      sentInWindow = 0;
+    }
+    int remaining = Math.min(batchSize, maxPerMinute - sentInWindow);
+    while (remaining > 0) {
+      // Only claim what's sent at once, so that each lease only has to outlast one round of sends
+      List<OutboxEmail> due = emailOutbox.claimDue(Math.min(maxConcurrentSends, remaining));
+      if (due.isEmpty()) {
+        return;
+      }
+      sentInWindow += due.size();
+      remaining -= due.size();
+      send(due);
+    }
+  }
+
+  private void send(List<OutboxEmail> due) {
+    // Only the sends happen on the client's threads; the outbox is updated here, once they're done
+    List<Result> results = Flux.fromIterable(due)
+        .flatMap(email -> mailGunEmailClient.sendQueued(email)
+            .thenReturn(new Result(email, null))
+            .onErrorResume(e -> Mono.just(new Result(email, e))), maxConcurrentSends)
+        .collectList()
+        .block();
+    Objects.requireNonNull(results).forEach(this::record);
+  }
+
+  private void record(Result result) {
+    OutboxEmail email = result.email();
+    if (result.error() == null) {
+      emailOutbox.sent(email);
+      sent.increment();
+    } else if (emailOutbox.failed(email, result.error())) {
+      retried.increment();
+      log.warn("Failed to send email %s, will try again later".formatted(email.id()),
+          result.error());
+    } else {
+      failed.increment();
+      log.error("Email %s failed to send".formatted(email.id()), result.error());
+    }
+  }
+
+  private record Result(OutboxEmail email, Throwable error) {
+
+  }
+}
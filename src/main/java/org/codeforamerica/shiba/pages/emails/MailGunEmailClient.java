@@ -7,6 +7,10 @@ import static org.codeforamerica.shiba.output.Document.UPLOADED_DOC;
 import static org.springframework.web.reactive.function.BodyInserters.fromFormData;
 import static org.springframework.web.reactive.function.BodyInserters.fromMultipartData;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -21,19 +25,35 @@ import org.codeforamerica.shiba.output.ApplicationFile;
 import org.codeforamerica.shiba.output.Document;
 import org.codeforamerica.shiba.output.caf.CcapExpeditedEligibility;
 import org.codeforamerica.shiba.output.caf.SnapExpeditedEligibility;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.emails.EmailOutbox.OutboxEmail;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.security.util.InMemoryResource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+/**
+ * Sends emails through the Mailgun API on one pooled client.
+ * <p>
+ * With the email-outbox feature flag on, emails to clients are stored in the {@link EmailOutbox}
+ * and sent by the {@link EmailOutboxWorker}, so that submitting an application doesn't wait on
+ * Mailgun. Emails to counties are still sent right away.
+ */
 @Component
 @Slf4j
 public class MailGunEmailClient implements EmailClient {
@@ -46,10 +66,15 @@ public class MailGunEmailClient implements EmailClient {
   private final EmailContentCreator emailContentCreator;
   private final boolean shouldCC;
   private final int maxAttachmentSize;
+  private final int maxConcurrentSends;
   private final WebClient webClient;
   private final String activeProfile;
   private final ApplicationRepository applicationRepository;
   private final MessageSource messageSource;
+  private final FeatureFlagConfiguration featureFlagConfiguration;
+  private final EmailOutbox emailOutbox;
+  private final Timer sentRequests;
+  private final Timer failedRequests;
 
   public MailGunEmailClient(@Value("${sender-email}") String senderEmail,
       @Value("${security-email}") String securityEmail,
@@ -60,9 +85,16 @@ public class MailGunEmailClient implements EmailClient {
       EmailContentCreator emailContentCreator,
       @Value("${mail-gun.shouldCC}") boolean shouldCC,
       @Value("${mail-gun.max-attachment-size}") int maxAttachmentSize,
+      @Value("${mail-gun.max-concurrent-sends:4}") int maxConcurrentSends,
+      @Value("${mail-gun.connect-timeout:5s}") Duration connectTimeout,
+      @Value("${mail-gun.response-timeout:60s}") Duration responseTimeout,
+      @Value("${mail-gun.max-connections:16}") int maxConnections,
       @Value("${spring.profiles.active:Unknown}") String activeProfile,
       ApplicationRepository applicationRepository,
-      MessageSource messageSource
+      MessageSource messageSource,
+      FeatureFlagConfiguration featureFlagConfiguration,
+      EmailOutbox emailOutbox,
+      MeterRegistry meterRegistry
   ) {
     this.senderEmail = senderEmail;
     this.securityEmail = securityEmail;
@@ -72,10 +104,26 @@ public class MailGunEmailClient implements EmailClient {
     this.emailContentCreator = emailContentCreator;
     this.shouldCC = shouldCC;
     this.maxAttachmentSize = maxAttachmentSize;
-    this.webClient = WebClient.builder().baseUrl(mailGunUrl).build();
+    this.maxConcurrentSends = maxConcurrentSends;
+    ConnectionProvider connectionProvider = ConnectionProvider.builder("mail-gun")
+        .maxConnections(maxConnections)
+        .pendingAcquireTimeout(responseTimeout)
+        .maxIdleTime(Duration.ofSeconds(30))
+        .build();
+    HttpClient httpClient = HttpClient.create(connectionProvider)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+        .responseTimeout(responseTimeout);
+    this.webClient = WebClient.builder()
+        .baseUrl(mailGunUrl)
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        .build();
     this.activeProfile = activeProfile;
     this.applicationRepository = applicationRepository;
     this.messageSource = messageSource;
+    this.featureFlagConfiguration = featureFlagConfiguration;
+    this.emailOutbox = emailOutbox;
+    this.sentRequests = meterRegistry.timer("mailgun.send", "outcome", "sent");
+    this.failedRequests = meterRegistry.timer("mailgun.send", "outcome", "failed");
   }
 
   @Override
@@ -96,8 +144,9 @@ public class MailGunEmailClient implements EmailClient {
         snapExpeditedEligibility,
         ccapExpeditedEligibility,
         locale);
-    sendEmail(subject, senderEmail, recipientEmail, emailBody, applicationFiles);
-    log.info("Confirmation email sent for " + applicationId);
+    boolean queued = sendToClient(applicationId, subject, recipientEmail, emailBody,
+        applicationFiles);
+    log.info("Confirmation email " + sentOrQueued(queued) + " for " + applicationId);
   }
 
   @Override
@@ -112,8 +161,9 @@ public class MailGunEmailClient implements EmailClient {
     var lms = new LocaleSpecificMessageSource(locale, messageSource);
     var subject = getEmailSubject("email.subject", lms);
     var emailBody = emailContentCreator.createShortClientConfirmationEmail(applicationId, locale);
-    sendEmail(subject, senderEmail, recipientEmail, emailBody, applicationFiles);
-    log.info("Short confirmation email sent for " + applicationId);
+    boolean queued = sendToClient(applicationId, subject, recipientEmail, emailBody,
+        applicationFiles);
+    log.info("Short confirmation email " + sentOrQueued(queued) + " for " + applicationId);
   }
 
   @Override
@@ -132,8 +182,9 @@ public class MailGunEmailClient implements EmailClient {
         snapExpeditedEligibility,
         ccapExpeditedEligibility,
         locale);
-    sendEmail(subject, senderEmail, recipientEmail, emailContent, emptyList());
-    log.info("Next steps email sent for " + applicationId);
+    boolean queued = sendToClient(applicationId, subject, recipientEmail, emailContent,
+        emptyList());
+    log.info("Next steps email " + sentOrQueued(queued) + " for " + applicationId);
   }
 
   @Override
@@ -162,24 +213,25 @@ public class MailGunEmailClient implements EmailClient {
     String emailBody = emailContentCreator.createHennepinDocUploadsHTML(
         getEmailContentArgsForHennepinDocUploads(personalInfo, contactInfo, fullName));
 
-    // Check total filesize
-    long totalAttachmentSize = filesToSend.stream()
-        .mapToLong(fileToSend -> fileToSend.getFileBytes().length).sum();
-
-    if (totalAttachmentSize >= maxAttachmentSize) {
-      log.info("Exceeded max attachment size. Sending separately.");
-      for (ApplicationFile fileToSend : filesToSend) {
-        if (fileToSend.getFileBytes().length >= maxAttachmentSize) {
-          // Let's see how often this happens
-          log.warn("File might be too big to send.");
-        }
-        sendEmail(subject, senderEmail, hennepinEmail, emptyList(), emailBody,
-            List.of(fileToSend), true);
-      }
-    } else if (!filesToSend.isEmpty()) {
-      sendEmail(subject, senderEmail, hennepinEmail, emptyList(), emailBody,
-          filesToSend, true);
+    // As few emails as fit under the attachment size limit, sent a few at a time
+    List<List<ApplicationFile>> emails = AttachmentPacker.pack(filesToSend, maxAttachmentSize);
+    if (emails.size() > 1) {
+      log.info("Exceeded max attachment size. Sending %s files in %s emails."
+          .formatted(filesToSend.size(), emails.size()));
     }
+    Flux.range(0, emails.size())
+        .flatMap(i -> {
+          List<ApplicationFile> attachments = emails.get(i);
+          if (attachments.size() == 1 && attachments.get(0).getSize() >= maxAttachmentSize) {
+            // Let's see how often this happens
+            log.warn("File might be too big to send.");
+          }
+          String partSubject = emails.size() == 1 ? subject
+              : "%s (part %s of %s)".formatted(subject, i + 1, emails.size());
+          return send(partSubject, senderEmail, hennepinEmail, emptyList(), emailBody,
+              attachments, true);
+        }, maxConcurrentSends)
+        .blockLast();
 
     applicationRepository.updateStatus(application.getId(), UPLOADED_DOC, Status.DELIVERED);
   }
@@ -211,8 +263,8 @@ public class MailGunEmailClient implements EmailClient {
   public void sendLaterDocsConfirmationEmail(String recipientEmail, Locale locale) {
     String subject = emailContentCreator.createClientLaterDocsConfirmationEmailSubject(locale);
     String body = emailContentCreator.createClientLaterDocsConfirmationEmailBody(locale);
-    sendEmail(subject, senderEmail, recipientEmail, body, emptyList());
-    log.info("later docs confirmation email sent");
+    boolean queued = sendToClient(null, subject, recipientEmail, body, emptyList());
+    log.info("later docs confirmation email " + sentOrQueued(queued));
   }
 
   @Override
@@ -246,6 +298,44 @@ public class MailGunEmailClient implements EmailClient {
       String emailBody,
       List<ApplicationFile> attachments,
       boolean requireTls) {
+    send(subject, senderEmail, recipientEmail, emailsToCC, emailBody, attachments, requireTls)
+        .block();
+  }
+
+  /**
+   * Send an email that was stored in the outbox.
+   */
+  Mono<Void> sendQueued(OutboxEmail email) {
+    return send(email.subject(), email.senderEmail(), email.recipientEmail(), emptyList(),
+        email.emailBody(), email.attachments(), false);
+  }
+
+  /**
+   * @return true if the email was queued in the outbox rather than sent
+   */
+  private boolean sendToClient(String applicationId, String subject, String recipientEmail,
+      String emailBody, List<ApplicationFile> attachments) {
+    if (featureFlagConfiguration.get("email-outbox") == FeatureFlag.ON) {
+      emailOutbox.enqueue(applicationId, subject, senderEmail, recipientEmail, emailBody,
+          attachments);
+      return true;
+    }
+    sendEmail(subject, senderEmail, recipientEmail, emailBody, attachments);
+    return false;
+  }
+
+  private static String sentOrQueued(boolean queued) {
+    return queued ? "queued" : "sent";
+  }
+
+  private Mono<Void> send(
+      String subject,
+      String senderEmail,
+      String recipientEmail,
+      List<String> emailsToCC,
+      String emailBody,
+      List<ApplicationFile> attachments,
+      boolean requireTls) {
     MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
     form.put("from", List.of(senderEmail));
     form.put("to", List.of(recipientEmail));
@@ -261,12 +351,16 @@ public class MailGunEmailClient implements EmailClient {
       form.put("o:require-tls", List.of("true"));
     }
 
-    webClient.post()
-        .headers(httpHeaders -> httpHeaders.setBasicAuth("api", mailGunApiKey))
-        .body(fromMultipartData(form))
-        .retrieve()
-        .bodyToMono(Void.class)
-        .block();
+    return Mono.defer(() -> {
+      long start = System.nanoTime();
+      return webClient.post()
+          .headers(httpHeaders -> httpHeaders.setBasicAuth("api", mailGunApiKey))
+          .body(fromMultipartData(form))
+          .retrieve()
+          .bodyToMono(Void.class)
+          .doOnSuccess(nothing -> sentRequests.record(Duration.ofNanos(System.nanoTime() - start)))
+          .doOnError(e -> failedRequests.record(Duration.ofNanos(System.nanoTime() - start)));
+    });
   }
 
   private void sendEmailFromFormData(
@@ -298,6 +392,15 @@ public class MailGunEmailClient implements EmailClient {
 
   @NotNull
   private Resource asResource(ApplicationFile applicationFile) {
+    if (applicationFile.isOnDisk()) {
+      // Streamed from disk into the request instead of read into memory
+      return new FileSystemResource(applicationFile.getFilePath()) {
+        @Override
+        public String getFilename() {
+          return applicationFile.getFileName();
+        }
+      };
+    }
     return new InMemoryResource(applicationFile.getFileBytes()) {
       @Override
       public String getFilename() {
@@ -3,12 +3,14 @@ package org.codeforamerica.shiba.pages.enrichment;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import org.codeforamerica.shiba.County;
 import org.codeforamerica.shiba.pages.data.InputData;
 import org.codeforamerica.shiba.pages.data.PageData;
 import org.codeforamerica.shiba.pages.data.PagesData;
 
-public abstract class AddressEnrichment implements Enrichment {
+public abstract class AddressEnrichment implements DeferrableEnrichment {
 
   LocationClient locationClient;
   Map<String, County> countyZipCodeMap;
@@ -21,6 +23,31 @@ public abstract class AddressEnrichment implements Enrichment {
     if (address.getStreet() == null) {
       return new PageData();
     }
+    return validate(address);
+  }
+
+  @Override
+  public CompletableFuture<PageData> processAsync(PagesData pagesData, Executor executor) {
+    Address address = parseAddress(pagesData);
+    if (address.getStreet() == null) {
+      return CompletableFuture.completedFuture(new PageData());
+    }
+    return CompletableFuture.supplyAsync(() -> validate(address), executor);
+  }
+
+  /**
+   * The county the zip code is in, without validating the address.
+   */
+  @Override
+  public PageData fallback(PagesData pagesData) {
+    Address address = parseAddress(pagesData);
+    if (address.getStreet() == null) {
+      return new PageData();
+    }
+    return countyFromZipCode(address);
+  }
+
+  private PageData validate(Address address) {
     return locationClient.validateAddress(address)
         .map(validatedAddress -> Map.of(
             "enrichedStreetAddress", new InputData(List.of(validatedAddress.getStreet())),
@@ -32,9 +59,13 @@ public abstract class AddressEnrichment implements Enrichment {
             "enrichedCounty", new InputData(List.of(validatedAddress.getCounty()))
         ))
         .map(PageData::new)
-        .orElseGet(() -> Optional.ofNullable(countyZipCodeMap.get(address.getZipcode()))
-            .map(county -> Map.of("enrichedCounty", new InputData(List.of(county.name()))))
-            .map(PageData::new)
-            .orElse(new PageData()));
+        .orElseGet(() -> countyFromZipCode(address));
+  }
+
+  private PageData countyFromZipCode(Address address) {
+    return Optional.ofNullable(countyZipCodeMap.get(address.getZipcode()))
+        .map(county -> Map.of("enrichedCounty", new InputData(List.of(county.name()))))
+        .map(PageData::new)
+        .orElse(new PageData());
   }
 }
@@ -0,0 +1,23 @@
+package org.codeforamerica.shiba.pages.enrichment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.data.PagesData;
+
+/**
+ * An enrichment slow enough that it's worth doing off the request thread, such as one that calls a
+ * third party. See {@link PendingEnrichments}.
+ */
+public interface DeferrableEnrichment extends Enrichment {
+
+  /**
+   * Start the enrichment on {@code executor}. {@code pagesData} is only read before this returns.
+   */
+  CompletableFuture<PageData> processAsync(PagesData pagesData, Executor executor);
+
+  /**
+   * What to use instead if the enrichment doesn't finish in time. Must be quick.
+   */
+  PageData fallback(PagesData pagesData);
+}
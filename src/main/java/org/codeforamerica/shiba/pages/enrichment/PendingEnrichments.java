@@ -0,0 +1,122 @@
+package org.codeforamerica.shiba.pages.enrichment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.data.PagesData;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Enrichments started when a page is posted and waited for when their result is needed, so that
+ * posting an address doesn't wait on SmartyStreets.
+ * <p>
+ * Nothing waits longer than enrichment.deadline after an enrichment was started; past that, its
+ * {@link DeferrableEnrichment#fallback} is used instead. Enrichments are only held in memory, on the
+ * instance that started them, and ones nobody waited for are dropped after enrichment.max-age.
+ */
+@Component
+@Slf4j
+public class PendingEnrichments {
+
+  private final Executor executor;
+  private final Clock clock;
+  private final Duration deadline;
+  private final Duration maxAge;
+  private final Counter completed;
+  private final Counter timedOut;
+  private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+
+  public PendingEnrichments(@Qualifier("applicationTaskExecutor") Executor executor,
+      Clock clock,
+      @Value("${enrichment.deadline:2s}") Duration deadline,
+      @Value("${enrichment.max-age:30m}") Duration maxAge,
+      MeterRegistry meterRegistry) {
+    this.executor = executor;
+    this.clock = clock;
+    this.deadline = deadline;
+    this.maxAge = maxAge;
+    this.completed = meterRegistry.counter("enrichment.deferred", "result", "completed");
+    this.timedOut = meterRegistry.counter("enrichment.deferred", "result", "fallback");
+  }
+
+  /**
+   * Start enriching the page, replacing any enrichment of it that's still pending.
+   */
+  public void start(String sessionId, String pageName, DeferrableEnrichment enrichment,
+      PagesData pagesData) {
+    Instant now = clock.instant();
+    pending.values().removeIf(stale -> {
+      boolean expired = stale.startedAt().plus(maxAge).isBefore(now);
+      if (expired) {
+        stale.result().cancel(true);
+      }
+      return expired;
+    });
+
+    Key key = new Key(sessionId, pageName);
+    Pending started;
+    try {
+      started = new Pending(enrichment.processAsync(pagesData, executor),
+          enrichment.fallback(pagesData), now);
+    } catch (RejectedExecutionException e) {
+      // Nothing pending here means the page is enriched when it's awaited
+      log.info("Executor is saturated, enriching %s when it's awaited".formatted(pageName));
+      started = null;
+    }
+    Pending replaced = started == null ? pending.remove(key) : pending.put(key, started);
+    if (replaced != null) {
+      replaced.result().cancel(true);
+    }
+  }
+
+  /**
+   * Wait for the page's enrichment until its deadline and return the result, or the fallback if it
+   * didn't finish in time or failed. Null if this instance has nothing pending for the page.
+   */
+  public PageData await(String sessionId, String pageName) {
+    Pending awaited = pending.remove(new Key(sessionId, pageName));
+    if (awaited == null) {
+      return null;
+    }
+
+    Duration remaining = Duration.between(clock.instant(), awaited.startedAt().plus(deadline));
+    try {
+      PageData result = awaited.result().get(Math.max(0, remaining.toMillis()),
+          TimeUnit.MILLISECONDS);
+      completed.increment();
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (TimeoutException e) {
+      log.info("Enrichment of %s did not finish in time, using fallback".formatted(pageName));
+    } catch (ExecutionException e) {
+      log.warn("Enrichment of %s failed, using fallback".formatted(pageName), e.getCause());
+    }
+    awaited.result().cancel(true);
+    timedOut.increment();
+    return awaited.fallback();
+  }
+
+  private record Key(String sessionId, String pageName) {
+
+  }
+
+  private record Pending(CompletableFuture<PageData> result, PageData fallback,
+                         Instant startedAt) {
+
+  }
+}
@@ -1,50 +1,116 @@
 package org.codeforamerica.shiba.pages.enrichment.smartystreets;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
 import org.codeforamerica.shiba.pages.enrichment.Address;
 import org.codeforamerica.shiba.pages.enrichment.LocationClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+/**
+ * Validates addresses with the SmartyStreets US Street API.
+ * <p>
+ * One pooled client is shared by every request, and a lookup that takes longer than
+ * smarty-street.timeout is given up on as if nothing was found. Results are cached, see {@link
+ * ValidatedAddressCache}; failed lookups aren't, so they're tried again the next time.
+ */
 @Component
+@Slf4j
 public class SmartyStreetClient implements LocationClient {
 
   private final String authId;
   private final String authToken;
-  private final String smartyStreetUrl;
+  private final Duration timeout;
+  private final WebClient webClient;
+  private final ValidatedAddressCache cache;
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer foundRequests;
+  private final Timer notFoundRequests;
+  private final Timer failedRequests;
 
   public SmartyStreetClient(
       @Value("${smarty-street-auth-id}") String authId,
       @Value("${smarty-street-auth-token}") String authToken,
-      @Value("${smarty-street-url}") String smartyStreetUrl) {
+      @Value("${smarty-street-url}") String smartyStreetUrl,
+      @Value("${smarty-street.connect-timeout:1s}") Duration connectTimeout,
+      @Value("${smarty-street.timeout:3s}") Duration timeout,
+      @Value("${smarty-street.max-connections:20}") int maxConnections,
+      @Value("${smarty-street.cache.ttl:24h}") Duration cacheTtl,
+      @Value("${smarty-street.cache.negative-ttl:10m}") Duration cacheNegativeTtl,
+      @Value("${smarty-street.cache.max-entries:10000}") int cacheMaxEntries,
+      Clock clock,
+      MeterRegistry meterRegistry) {
     this.authId = authId;
     this.authToken = authToken;
-    this.smartyStreetUrl = smartyStreetUrl;
+    this.timeout = timeout;
+    ConnectionProvider connectionProvider = ConnectionProvider.builder("smarty-street")
+        .maxConnections(maxConnections)
+        .pendingAcquireTimeout(timeout)
+        .maxIdleTime(Duration.ofSeconds(30))
+        .build();
+    HttpClient httpClient = HttpClient.create(connectionProvider)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+        .responseTimeout(timeout);
+    this.webClient = WebClient.builder()
+        .baseUrl(smartyStreetUrl)
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        .build();
+    this.cache = new ValidatedAddressCache(clock, cacheTtl, cacheNegativeTtl, cacheMaxEntries);
+    this.hits = meterRegistry.counter("address.validation.cache", "result", "hit");
+    this.misses = meterRegistry.counter("address.validation.cache", "result", "miss");
+    this.foundRequests = meterRegistry.timer("address.validation.request", "outcome", "found");
+    this.notFoundRequests = meterRegistry.timer("address.validation.request", "outcome",
+        "not-found");
+    this.failedRequests = meterRegistry.timer("address.validation.request", "outcome", "failed");
   }
 
   @Override
   public Optional<Address> validateAddress(Address address) {
-    WebClient webClient = WebClient.builder().baseUrl(smartyStreetUrl).build();
-    Optional<SmartyStreetVerifyStreetResponse> response = webClient.get()
-        .uri(uriBuilder -> uriBuilder
-            .queryParam("auth-id", authId)
-            .queryParam("auth-token", authToken)
-            .queryParam("street", address.getStreet())
-            .queryParam("city", address.getCity())
-            .queryParam("state", address.getState())
-            .queryParam("zipcode", address.getZipcode())
-            .queryParam("secondary", address.getApartmentNumber())
-            .queryParam("candidates", 1).build())
-        .retrieve()
-        .bodyToMono(SmartyStreetVerifyStreetResponse.class)
-        .onErrorResume(error -> Mono.empty())
-        .blockOptional();
-    return response
+    Optional<Address> cached = cache.get(address);
+    if (cached != null) {
+      hits.increment();
+      return cached;
+    }
+    misses.increment();
+
+    long start = System.nanoTime();
+    Optional<SmartyStreetVerifyStreetResponse> response;
+    try {
+      response = webClient.get()
+          .uri(uriBuilder -> uriBuilder
+              .queryParam("auth-id", authId)
+              .queryParam("auth-token", authToken)
+              .queryParam("street", address.getStreet())
+              .queryParam("city", address.getCity())
+              .queryParam("state", address.getState())
+              .queryParam("zipcode", address.getZipcode())
+              .queryParam("secondary", address.getApartmentNumber())
+              .queryParam("candidates", 1).build())
+          .retrieve()
+          .bodyToMono(SmartyStreetVerifyStreetResponse.class)
+          .timeout(timeout)
+          .blockOptional();
+    } catch (Exception e) {
+      failedRequests.record(Duration.ofNanos(System.nanoTime() - start));
+      log.warn("Could not validate address", e);
+      return Optional.empty();
+    }
+
+    Optional<Address> validated = response
         .flatMap(verifyStreetResponse -> verifyStreetResponse.stream().findFirst())
         .map(addressCandidate -> {
           Components components = addressCandidate.getComponents();
@@ -58,5 +124,9 @@ public class SmartyStreetClient implements LocationClient {
                   .collect(Collectors.joining(" ")),
               addressCandidate.getMetadata().getCountyName());
         });
+    (validated.isPresent() ? foundRequests : notFoundRequests)
+        .record(Duration.ofNanos(System.nanoTime() - start));
+    cache.put(address, validated);
+    return validated;
   }
 }
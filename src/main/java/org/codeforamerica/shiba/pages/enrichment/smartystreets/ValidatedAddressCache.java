@@ -0,0 +1,78 @@
+package org.codeforamerica.shiba.pages.enrichment.smartystreets;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.codeforamerica.shiba.pages.enrichment.Address;
+
+/**
+ * Validation results keyed by the address as it was entered, ignoring case and extra whitespace.
+ * Addresses SmartyStreets found are kept for ttl and addresses it found nothing for for
+ * negative-ttl; at most max-entries of them, least recently used evicted first.
+ */
+class ValidatedAddressCache {
+
+  private final Clock clock;
+  private final Duration ttl;
+  private final Duration negativeTtl;
+  private final int maxEntries;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  ValidatedAddressCache(Clock clock, Duration ttl, Duration negativeTtl, int maxEntries) {
+    this.clock = clock;
+    this.ttl = ttl;
+    this.negativeTtl = negativeTtl;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * The cached result for the address, or null if there's none that hasn't expired. An empty
+   * optional means the address was looked up and not found.
+   */
+  synchronized Optional<Address> get(Address address) {
+    String key = key(address);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (!clock.instant().isBefore(entry.expiresAt())) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.result();
+  }
+
+  synchronized void put(Address address, Optional<Address> result) {
+    if (maxEntries <= 0) {
+      return;
+    }
+    Instant expiresAt = clock.instant().plus(result.isPresent() ? ttl : negativeTtl);
+    entries.put(key(address), new Entry(result, expiresAt));
+    Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+    while (entries.size() > maxEntries && leastRecentlyUsed.hasNext()) {
+      leastRecentlyUsed.next();
+      leastRecentlyUsed.remove();
+    }
+  }
+
+  static String key(Address address) {
+    return Stream.of(address.getStreet(), address.getApartmentNumber(), address.getCity(),
+            address.getState(), address.getZipcode())
+        .map(ValidatedAddressCache::normalize)
+        .collect(Collectors.joining("|"));
+  }
+
+  private static String normalize(String value) {
+    return value == null ? "" : value.strip().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+  }
+
+  private record Entry(Optional<Address> result, Instant expiresAt) {
+
+  }
+}
@@ -1,5 +1,6 @@
 package org.codeforamerica.shiba.pages.events;
 
+import static org.codeforamerica.shiba.configurations.SpringAsyncConfiguration.DOCUMENT_TASK_EXECUTOR;
 import static org.codeforamerica.shiba.output.Recipient.CLIENT;
 
 import java.util.ArrayList;
@@ -59,7 +60,7 @@ public class ApplicationSubmittedListener extends ApplicationEventListener {
     this.featureFlags = featureFlagConfiguration;
   }
 
-  @Async
+  @Async(DOCUMENT_TASK_EXECUTOR)
   @EventListener
   public void sendViaApi(ApplicationSubmittedEvent event) {
     if (featureFlags.get("submit-via-api").isOn()) {
@@ -69,7 +70,7 @@ public class ApplicationSubmittedListener extends ApplicationEventListener {
     MDC.clear();
   }
 
-  @Async
+  @Async(DOCUMENT_TASK_EXECUTOR)
   @EventListener
   public void sendConfirmationEmail(ApplicationSubmittedEvent event) {
     Application application = getApplicationFromEvent(event);
@@ -0,0 +1,57 @@
+package org.codeforamerica.shiba.pages.events;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes interactions to a local file, one JSON object per line, for running without Mixpanel.
+ */
+@Component
+@ConditionalOnProperty(
+    value = "interaction-tracker.type",
+    havingValue = "file"
+)
+@Slf4j
+public class FileInteractionTracker implements InteractionTracker {
+
+  private final Path file;
+
+  public FileInteractionTracker(
+      @Value("${interaction-tracker.file:interactions.jsonl}") Path file) {
+    this.file = file;
+  }
+
+  @Override
+  public void track(String sessionId, String eventName, Map<String, Object> properties) {
+    write(sessionId, eventName, properties, false);
+  }
+
+  @Override
+  public void trackWithProfile(String sessionId, String eventName, Map<String, Object> properties) {
+    write(sessionId, eventName, properties, true);
+  }
+
+  private synchronized void write(String sessionId, String eventName,
+      Map<String, Object> properties, boolean withProfile) {
+    JSONObject line = new JSONObject()
+        .put("sessionId", sessionId)
+        .put("event", eventName)
+        .put("properties", new JSONObject(properties))
+        .put("withProfile", withProfile);
+    try {
+      Files.writeString(file, line + System.lineSeparator(), CREATE, APPEND);
+    } catch (IOException e) {
+      log.warn("Unable to write interaction to " + file, e);
+    }
+  }
+}
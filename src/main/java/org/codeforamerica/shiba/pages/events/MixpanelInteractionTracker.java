@@ -3,43 +3,123 @@ package org.codeforamerica.shiba.pages.events;
 import com.mixpanel.mixpanelapi.ClientDelivery;
 import com.mixpanel.mixpanelapi.MessageBuilder;
 import com.mixpanel.mixpanelapi.MixpanelAPI;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+/**
+ * Sends interactions to Mixpanel in batches. Events are buffered and sent once flush-size of them
+ * have been tracked or flush-interval has passed, whichever comes first. When Mixpanel can't keep
+ * up and the buffer is full, new events are dropped rather than held on to.
+ */
 @Component
+@ConditionalOnProperty(
+    value = "interaction-tracker.type",
+    havingValue = "mixpanel",
+    matchIfMissing = true
+)
+@Slf4j
 public class MixpanelInteractionTracker implements InteractionTracker {
 
   private final MessageBuilder messageBuilder;
+  private final MixpanelAPI mixpanelAPI;
+  private final BlockingQueue<JSONObject> buffer;
+  private final int flushSize;
+  private final ScheduledExecutorService flushExecutor;
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final Counter flushed;
+  private final Counter dropped;
+  private final Counter failed;
 
-  public MixpanelInteractionTracker(@Value("${mixpanel.api-key}") String apiToken) {
-    messageBuilder = new MessageBuilder(apiToken);
+  public MixpanelInteractionTracker(@Value("${mixpanel.api-key}") String apiToken,
+      @Value("${interaction-tracker.buffer-size:10000}") int bufferSize,
+      @Value("${interaction-tracker.flush-size:50}") int flushSize,
+      @Value("${interaction-tracker.flush-interval:10s}") Duration flushInterval,
+      MeterRegistry meterRegistry) {
+    this(new MessageBuilder(apiToken), new MixpanelAPI(), bufferSize, flushSize, flushInterval,
+        meterRegistry);
+  }
+
+  MixpanelInteractionTracker(MessageBuilder messageBuilder, MixpanelAPI mixpanelAPI,
+      int bufferSize, int flushSize, Duration flushInterval, MeterRegistry meterRegistry) {
+    this.messageBuilder = messageBuilder;
+    this.mixpanelAPI = mixpanelAPI;
+    this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    this.flushSize = flushSize;
+    this.flushed = meterRegistry.counter("interaction.tracker.events", "result", "flushed");
+    this.dropped = meterRegistry.counter("interaction.tracker.events", "result", "dropped");
+    this.failed = meterRegistry.counter("interaction.tracker.events", "result", "failed");
+    this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mixpanel-flush");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flushExecutor.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(),
+        flushInterval.toMillis(), TimeUnit.MILLISECONDS);
   }
 
   @Override
   public void track(String sessionId, String eventName, Map<String, Object> properties) {
-    try {
-      new MixpanelAPI()
-          .sendMessage(messageBuilder.event(sessionId, eventName, new JSONObject(properties)));
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
+    add(messageBuilder.event(sessionId, eventName, new JSONObject(properties)));
   }
 
   @Override
   public void trackWithProfile(String sessionId, String eventName, Map<String, Object> properties) {
-    try {
-      JSONObject event = messageBuilder.event(sessionId, eventName, new JSONObject(properties));
-      JSONObject userProfile = messageBuilder.set(sessionId, new JSONObject(properties));
+    add(messageBuilder.event(sessionId, eventName, new JSONObject(properties)));
+    add(messageBuilder.set(sessionId, new JSONObject(properties)));
+  }
+
+  private void add(JSONObject message) {
+    if (!buffer.offer(message)) {
+      dropped.increment();
+      return;
+    }
+    if (buffer.size() >= flushSize && flushScheduled.compareAndSet(false, true)) {
+      flushExecutor.execute(() -> {
+        flushScheduled.set(false);
+        flush();
+      });
+    }
+  }
 
+  /**
+   * Send everything buffered so far, flush-size messages to a request.
+   */
+  synchronized void flush() {
+    List<JSONObject> batch = new ArrayList<>(flushSize);
+    while (buffer.drainTo(batch, flushSize) > 0) {
       ClientDelivery delivery = new ClientDelivery();
-      delivery.addMessage(event);
-      delivery.addMessage(userProfile);
-      new MixpanelAPI().deliver(delivery);
-    } catch (IOException e) {
-      e.printStackTrace();
+      batch.forEach(delivery::addMessage);
+      try {
+        mixpanelAPI.deliver(delivery);
+        flushed.increment(batch.size());
+      } catch (IOException | RuntimeException e) {
+        failed.increment(batch.size());
+        log.warn("Unable to send %s interactions to Mixpanel".formatted(batch.size()), e);
+      }
+      batch.clear();
     }
   }
+
+  @PreDestroy
+  public void shutdown() {
+    flushExecutor.shutdownNow();
+    flush();
+  }
 }
@@ -1,5 +1,7 @@
 package org.codeforamerica.shiba.pages.events;
 
+import static org.codeforamerica.shiba.configurations.SpringAsyncConfiguration.DOCUMENT_TASK_EXECUTOR;
+
 import java.util.Locale;
 import lombok.extern.slf4j.Slf4j;
 import org.codeforamerica.shiba.MonitoringService;
@@ -35,7 +37,7 @@ public class UploadedDocumentsSubmittedListener extends ApplicationEventListener
     this.emailClient = emailClient;
   }
 
-  @Async
+  @Async(DOCUMENT_TASK_EXECUTOR)
   @EventListener
   public void send(UploadedDocumentsSubmittedEvent event) {
     Application application = getApplicationFromEvent(event);
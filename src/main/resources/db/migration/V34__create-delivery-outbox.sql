@@ -0,0 +1,22 @@
+CREATE TABLE delivery_outbox
+(
+    id                  BIGSERIAL PRIMARY KEY,
+    application_id      VARCHAR                  NOT NULL,
+    document_type       VARCHAR                  NOT NULL,
+    flow                VARCHAR,
+    routing_destination VARCHAR                  NOT NULL,
+    file_name           VARCHAR                  NOT NULL,
+    -- Dropped once a delivery runs out of attempts; the row is kept for its error
+    file_bytes          BYTEA,
+    status              VARCHAR                  NOT NULL DEFAULT 'pending',
+    attempts            INTEGER                  NOT NULL DEFAULT 0,
+    next_attempt_at     TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    leased_by           VARCHAR,
+    lease_expires_at    TIMESTAMP WITH TIME ZONE,
+    last_error          TEXT,
+    created_at          TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- Workers poll for pending deliveries whose next attempt is due
+CREATE INDEX delivery_outbox_due_index
+    ON delivery_outbox (status, next_attempt_at);
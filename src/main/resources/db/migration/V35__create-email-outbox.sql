@@ -0,0 +1,43 @@
+CREATE TABLE email_outbox
+(
+    id               BIGSERIAL PRIMARY KEY,
+    subject          VARCHAR                  NOT NULL,
+    sender           VARCHAR                  NOT NULL,
+    recipient        VARCHAR                  NOT NULL,
+    html             TEXT                     NOT NULL,
+    status           VARCHAR                  NOT NULL DEFAULT 'pending',
+    attempts         INTEGER                  NOT NULL DEFAULT 0,
+    next_attempt_at  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    leased_by        VARCHAR,
+    lease_expires_at TIMESTAMP WITH TIME ZONE,
+    last_error       TEXT,
+    created_at       TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- Workers poll for pending emails whose next attempt is due
+CREATE INDEX email_outbox_due_index
+    ON email_outbox (status, next_attempt_at);
+
+-- Emails about the same application attach the same files, so each file is stored once per
+-- application and the attachments refer to it
+CREATE TABLE email_outbox_files
+(
+    id             BIGSERIAL PRIMARY KEY,
+    application_id VARCHAR,
+    digest         BYTEA NOT NULL,
+    file_bytes     BYTEA NOT NULL,
+    UNIQUE (application_id, digest)
+);
+
+CREATE TABLE email_outbox_attachments
+(
+    email_id  BIGINT  NOT NULL REFERENCES email_outbox (id) ON DELETE CASCADE,
+    position  INTEGER NOT NULL,
+    file_name VARCHAR NOT NULL,
+    file_id   BIGINT  NOT NULL REFERENCES email_outbox_files (id),
+    PRIMARY KEY (email_id, position)
+);
+
+-- For finding the files no email attaches anymore
+CREATE INDEX email_outbox_attachments_file_index
+    ON email_outbox_attachments (file_id);
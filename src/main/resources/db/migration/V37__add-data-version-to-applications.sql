@@ -0,0 +1,4 @@
+-- Bumped by saves of the application, so that documents generated from it can be cached until it
+-- changes; updated_at also changes whenever a status is updated
+ALTER TABLE applications
+    ADD COLUMN data_version BIGINT NOT NULL DEFAULT 0;
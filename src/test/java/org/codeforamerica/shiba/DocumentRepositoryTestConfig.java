@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import org.apache.commons.io.FileUtils;
 import org.codeforamerica.shiba.documents.DocumentRepository;
 import org.springframework.boot.test.context.TestConfiguration;
@@ -42,6 +43,21 @@ public class DocumentRepositoryTestConfig {
       }
     }
 
+    @Override
+    public boolean exists(String filepath) {
+      return new File(tempDirectory.toFile(), filepath).exists();
+    }
+
+    @Override
+    public boolean download(String filepath, Path destination) {
+      try {
+        Files.write(destination, get(filepath));
+        return true;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
     @Override
     public void upload(String filepath, MultipartFile sourceFile)
         throws IOException, InterruptedException {
@@ -56,6 +72,12 @@ public class DocumentRepositoryTestConfig {
       FileUtils.write(targetFile, fileContent, StandardCharsets.UTF_8);
     }
 
+    @Override
+    public void upload(String filepath, byte[] fileBytes) throws IOException {
+      File targetFile = new File(tempDirectory.toFile(), filepath);
+      FileUtils.writeByteArrayToFile(targetFile, fileBytes);
+    }
+
     @Override
     public void delete(String filepath) {
       File fileToDelete = new File(tempDirectory.toFile(), filepath);
@@ -63,5 +85,13 @@ public class DocumentRepositoryTestConfig {
         throw new RuntimeException("could not delete file " + fileToDelete);
       }
     }
+
+    @Override
+    public void deleteOlderThan(String prefix, Instant cutoff) {
+      File directory = new File(tempDirectory.toFile(), prefix);
+      FileUtils.listFiles(directory, null, true).stream()
+          .filter(file -> file.lastModified() < cutoff.toEpochMilli())
+          .forEach(File::delete);
+    }
   }
 }
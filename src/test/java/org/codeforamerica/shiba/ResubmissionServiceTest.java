@@ -11,9 +11,11 @@ import static org.codeforamerica.shiba.output.Document.UPLOADED_DOC;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.codeforamerica.shiba.application.Application;
 import org.codeforamerica.shiba.application.ApplicationRepository;
 import org.codeforamerica.shiba.application.Status;
@@ -23,9 +25,13 @@ import org.codeforamerica.shiba.mnit.RoutingDestination;
 import org.codeforamerica.shiba.mnit.TribalNationConfiguration;
 import org.codeforamerica.shiba.output.ApplicationFile;
 import org.codeforamerica.shiba.output.Document;
+import org.codeforamerica.shiba.output.DocumentDeliveryExecutor;
 import org.codeforamerica.shiba.output.Recipient;
+import org.codeforamerica.shiba.output.ScratchSpace;
 import org.codeforamerica.shiba.output.pdf.PdfGenerator;
 import org.codeforamerica.shiba.pages.RoutingDecisionService;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.pages.emails.MailGunEmailClient;
 import org.junit.jupiter.api.BeforeEach;
@@ -56,6 +62,12 @@ class ResubmissionServiceTest {
   private DocumentRepository documentRepository;
   @Mock
   private RoutingDecisionService routingDecisionService;
+  @Mock
+  private FeatureFlagConfiguration featureFlagConfiguration;
+  @Mock
+  private ScratchSpace scratchSpace;
+  @Mock
+  private DocumentDeliveryExecutor deliveryExecutor;
   private Map<String, TribalNationRoutingDestination> tribalNations;
   private ResubmissionService resubmissionService;
   private List<RoutingDestination> routingDestinations;
@@ -72,7 +84,8 @@ class ResubmissionServiceTest {
     ));
     tribalNations = new TribalNationConfiguration().localTribalNations();
     resubmissionService = new ResubmissionService(applicationRepository, emailClient, countyMap,
-        pdfGenerator, routingDecisionService);
+        pdfGenerator, routingDecisionService, featureFlagConfiguration, scratchSpace,
+        deliveryExecutor);
 
     routingDestinations = new ArrayList<>();
     routingDestinations.add(CountyRoutingDestination.builder().email(OLMSTED_EMAIL).build());
@@ -270,4 +283,97 @@ class ResubmissionServiceTest {
             application);
     verify(applicationRepository).updateStatus(APP_ID, UPLOADED_DOC, RESUBMISSION_FAILED);
   }
+
+  @Test
+  void itResubmitsUploadedDocumentsConcurrentlyWhenPipelined() throws InterruptedException {
+    DocumentDeliveryExecutor realDeliveryExecutor = new DocumentDeliveryExecutor(4, 8, 4, 2,
+        false, new SimpleMeterRegistry());
+    resubmissionService = new ResubmissionService(applicationRepository, emailClient, countyMap,
+        pdfGenerator, routingDecisionService, featureFlagConfiguration, scratchSpace,
+        realDeliveryExecutor);
+    when(featureFlagConfiguration.get("stream-uploaded-documents")).thenReturn(FeatureFlag.OFF);
+    when(featureFlagConfiguration.get("pipeline-uploaded-documents")).thenReturn(FeatureFlag.ON);
+
+    ApplicationData applicationData = new ApplicationData();
+    MockMultipartFile image = new MockMultipartFile("image", "test".getBytes());
+    for (int i = 0; i < 3; i++) {
+      applicationData.addUploadedDoc(image, "someS3FilePath" + i, "someDataUrl", "image/jpeg");
+    }
+    Application application = Application.builder().id(APP_ID).county(Olmsted)
+        .applicationData(applicationData).build();
+    when(applicationRepository.getApplicationIdsToResubmit())
+        .thenReturn(Map.of(UPLOADED_DOC, List.of(APP_ID)));
+    when(applicationRepository.find(APP_ID)).thenReturn(application);
+    var coverPage = "someCoverPageText".getBytes();
+    when(pdfGenerator.generate(application, UPLOADED_DOC, Recipient.CASEWORKER))
+        .thenReturn(new ApplicationFile(coverPage, "coverPage"));
+    List<String> generatingThreads = new CopyOnWriteArrayList<>();
+    List<ApplicationFile> applicationFiles = new ArrayList<>();
+    var uploadedDocs = applicationData.getUploadedDocs();
+    for (int i = 0; i < uploadedDocs.size(); i++) {
+      ApplicationFile applicationFile = new ApplicationFile("test".getBytes(), "file" + i + ".pdf");
+      applicationFiles.add(applicationFile);
+      when(pdfGenerator.generateForUploadedDocument(uploadedDocs.get(i), i, application,
+          coverPage)).thenAnswer(invocation -> {
+        generatingThreads.add(Thread.currentThread().getName());
+        return applicationFile;
+      });
+    }
+
+    try {
+      resubmissionService.resubmitFailedApplications();
+    } finally {
+      realDeliveryExecutor.shutdown();
+    }
+
+    ArgumentCaptor<ApplicationFile> captor = ArgumentCaptor.forClass(ApplicationFile.class);
+    verify(emailClient, times(3))
+        .resubmitFailedEmail(eq(DEFAULT_EMAIL), eq(UPLOADED_DOC), captor.capture(),
+            eq(application));
+    assertThat(captor.getAllValues()).containsExactlyInAnyOrderElementsOf(applicationFiles);
+    assertThat(generatingThreads).hasSize(3)
+        .allMatch(name -> name.startsWith("document-delivery-"));
+    verify(applicationRepository).updateStatus(APP_ID, UPLOADED_DOC, Status.DELIVERED);
+  }
+
+  @Test
+  void itFinishesTheOtherUploadedDocumentsWhenOneFailsToResubmitWhilePipelined()
+      throws InterruptedException {
+    DocumentDeliveryExecutor realDeliveryExecutor = new DocumentDeliveryExecutor(4, 8, 4, 2,
+        false, new SimpleMeterRegistry());
+    resubmissionService = new ResubmissionService(applicationRepository, emailClient, countyMap,
+        pdfGenerator, routingDecisionService, featureFlagConfiguration, scratchSpace,
+        realDeliveryExecutor);
+    when(featureFlagConfiguration.get("stream-uploaded-documents")).thenReturn(FeatureFlag.OFF);
+    when(featureFlagConfiguration.get("pipeline-uploaded-documents")).thenReturn(FeatureFlag.ON);
+
+    ApplicationData applicationData = new ApplicationData();
+    MockMultipartFile image = new MockMultipartFile("image", "test".getBytes());
+    applicationData.addUploadedDoc(image, "someS3FilePath", "someDataUrl", "image/jpeg");
+    applicationData.addUploadedDoc(image, "someS3FilePath2", "someDataUrl2", "image/jpeg");
+    Application application = Application.builder().id(APP_ID).county(Olmsted)
+        .applicationData(applicationData).build();
+    when(applicationRepository.getApplicationIdsToResubmit())
+        .thenReturn(Map.of(UPLOADED_DOC, List.of(APP_ID)));
+    when(applicationRepository.find(APP_ID)).thenReturn(application);
+    var coverPage = "someCoverPageText".getBytes();
+    when(pdfGenerator.generate(application, UPLOADED_DOC, Recipient.CASEWORKER))
+        .thenReturn(new ApplicationFile(coverPage, "coverPage"));
+    var uploadedDocs = applicationData.getUploadedDocs();
+    when(pdfGenerator.generateForUploadedDocument(uploadedDocs.get(0), 0, application, coverPage))
+        .thenThrow(RuntimeException.class);
+    ApplicationFile applicationFile = new ApplicationFile("test".getBytes(), "fileName.pdf");
+    when(pdfGenerator.generateForUploadedDocument(uploadedDocs.get(1), 1, application, coverPage))
+        .thenReturn(applicationFile);
+
+    try {
+      resubmissionService.resubmitFailedApplications();
+    } finally {
+      realDeliveryExecutor.shutdown();
+    }
+
+    verify(emailClient).resubmitFailedEmail(DEFAULT_EMAIL, UPLOADED_DOC, applicationFile,
+        application);
+    verify(applicationRepository).updateStatus(APP_ID, UPLOADED_DOC, RESUBMISSION_FAILED);
+  }
 }
@@ -7,6 +7,7 @@ import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.util.Set;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.testutilities.PagesDataBuilder;
 import org.codeforamerica.shiba.testutilities.TestApplicationDataBuilder;
@@ -56,6 +57,25 @@ class ApplicationDataEncryptorTest {
         .contains("\"pagesData\":{\"personalInfo\":{\"ssn\":{\"value\":[\"encryptedSsn\"]}}}");
   }
 
+  @Test
+  void encryptsApplicantSsnInChangedPages() {
+    ApplicationData applicationData = new TestApplicationDataBuilder()
+        .withPageData("personalInfo", "ssn", "123-45-6789")
+        .withPageData("contactInfo", "phoneNumber", "7234567890")
+        .build();
+
+    ApplicationDataPatch patch = applicationDataEncryptor.encryptChanges(applicationData,
+        Set.of("personalInfo", "removedPage"), Set.of());
+
+    assertThat(patch.pages().get("personalInfo"))
+        .isEqualTo("{\"ssn\":{\"value\":[\"encryptedSsn\"]}}");
+    assertThat(patch.pages().containsKey("removedPage")).isTrue();
+    assertThat(patch.pages().get("removedPage")).isNull();
+    assertThat(patch.base()).doesNotContain("pagesData").doesNotContain("7234567890");
+    assertThat(applicationData.getPagesData().getPageInputFirstValue("personalInfo", "ssn"))
+        .isEqualTo("123-45-6789");
+  }
+
   @Test
   void encryptsApplicantSsnInLaterDocs() {
     ApplicationData applicationData = new TestApplicationDataBuilder()
@@ -11,7 +11,11 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 import org.codeforamerica.shiba.MonitoringService;
 import org.codeforamerica.shiba.application.parsers.CountyParser;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
+import org.codeforamerica.shiba.pages.data.ChangeTracker.PendingChanges;
+import org.codeforamerica.shiba.pages.data.PagesData;
 import org.codeforamerica.shiba.testutilities.PagesDataBuilder;
 import org.codeforamerica.shiba.testutilities.TestApplicationDataBuilder;
 import org.junit.jupiter.api.BeforeEach;
@@ -23,8 +27,9 @@ class ApplicationFactoryTest {
 
   CountyParser countyParser = mock(CountyParser.class);
   MonitoringService monitoringService = mock(MonitoringService.class);
+  FeatureFlagConfiguration featureFlagConfiguration = mock(FeatureFlagConfiguration.class);
   ApplicationFactory applicationFactory = new ApplicationFactory(clock, countyParser,
-      monitoringService);
+      monitoringService, featureFlagConfiguration);
   ApplicationData applicationData = new ApplicationData();
   ZoneOffset zoneOffset = ZoneOffset.UTC;
 
@@ -75,4 +80,73 @@ class ApplicationFactoryTest {
 
     verify(monitoringService).setApplicationId("appId");
   }
+
+  @Test
+  void shouldOnlyReportChangedPagesOnceTheApplicationHasBeenSavedInFull() {
+    PendingChanges firstSave = applicationFactory.newApplication(applicationData)
+        .getApplicationData().getPendingChanges();
+    assertThat(firstSave.isPersisted()).isFalse();
+    firstSave.flushed();
+
+    applicationData.getPagesData().putPage("homeAddress", new PagesDataBuilder()
+        .withPageData("homeAddress", "zipCode", "somethingElse").build().get("homeAddress"));
+    applicationData.getSubworkflows().removeIteration("someGroup", 0);
+
+    PendingChanges secondSave = applicationFactory.newApplication(applicationData)
+        .getApplicationData().getPendingChanges();
+    assertThat(secondSave.isPersisted()).isTrue();
+    assertThat(secondSave.getChangedPages()).containsExactly("homeAddress");
+    assertThat(secondSave.getChangedSubworkflows()).containsExactly("someGroup");
+  }
+
+  @Test
+  void shouldRequireAFullSaveWhenPagesDataIsReplaced() {
+    applicationFactory.newApplication(applicationData).getApplicationData().getPendingChanges()
+        .flushed();
+
+    applicationData.setPagesData(new PagesData());
+
+    assertThat(applicationFactory.newApplication(applicationData).getApplicationData()
+        .getPendingChanges().isPersisted()).isFalse();
+  }
+
+  @Test
+  void shouldShareUnchangedPagesWithThePreviousSnapshot() {
+    when(featureFlagConfiguration.get("copy-on-write-snapshots")).thenReturn(FeatureFlag.ON);
+    ApplicationData first = applicationFactory.newApplication(applicationData)
+        .getApplicationData();
+    assertThat(first).isEqualTo(applicationData);
+
+    applicationData.getPagesData().putPage("homeAddress", new PagesDataBuilder()
+        .withPageData("homeAddress", "zipCode", "somethingElse").build().get("homeAddress"));
+    applicationData.getPagesData().putPage("otherPage", new PagesDataBuilder()
+        .withPageData("otherPage", "someInput", "someValue").build().get("otherPage"));
+    ApplicationData second = applicationFactory.newApplication(applicationData)
+        .getApplicationData();
+
+    assertThat(first.getPagesData().getPageInputFirstValue("homeAddress", "zipCode"))
+        .isEqualTo("something");
+    assertThat(first.getPagesData()).doesNotContainKey("otherPage");
+    assertThat(second).isEqualTo(applicationData);
+    assertThat(second.getPagesData().getPage("homeAddress"))
+        .isNotSameAs(applicationData.getPagesData().getPage("homeAddress"));
+    assertThat(second.getSubworkflows().get("someGroup"))
+        .isSameAs(first.getSubworkflows().get("someGroup"));
+  }
+
+  @Test
+  void shouldCopyEverythingAgainWhenPagesDataIsReplaced() {
+    when(featureFlagConfiguration.get("copy-on-write-snapshots")).thenReturn(FeatureFlag.ON);
+    ApplicationData first = applicationFactory.newApplication(applicationData)
+        .getApplicationData();
+
+    applicationData.setPagesData(new PagesDataBuilder()
+        .withPageData("homeAddress", "zipCode", "something").build());
+    ApplicationData second = applicationFactory.newApplication(applicationData)
+        .getApplicationData();
+
+    assertThat(second.getPagesData()).isEqualTo(first.getPagesData());
+    assertThat(second.getPagesData().getPage("homeAddress"))
+        .isNotSameAs(first.getPagesData().getPage("homeAddress"));
+  }
 }
@@ -0,0 +1,147 @@
+package org.codeforamerica.shiba.application;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.codeforamerica.shiba.County.Hennepin;
+import static org.codeforamerica.shiba.County.Olmsted;
+import static org.codeforamerica.shiba.application.Status.DELIVERED;
+import static org.codeforamerica.shiba.application.Status.IN_PROGRESS;
+import static org.codeforamerica.shiba.output.Document.UPLOADED_DOC;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import org.codeforamerica.shiba.pages.Sentiment;
+import org.codeforamerica.shiba.pages.data.ApplicationData;
+import org.codeforamerica.shiba.pages.data.ChangeTracker.PendingChanges;
+import org.codeforamerica.shiba.pages.data.InputData;
+import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.data.Subworkflow;
+import org.codeforamerica.shiba.testutilities.AbstractPostgresRepositoryTest;
+import org.codeforamerica.shiba.testutilities.PagesDataBuilder;
+import org.codeforamerica.shiba.testutilities.TestApplicationDataBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class ApplicationRepositoryPostgresTest extends AbstractPostgresRepositoryTest {
+
+  @Autowired
+  private ApplicationRepository applicationRepository;
+
+  @Autowired
+  private ApplicationDataEncryptor applicationDataEncryptor;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void shouldInsertAndThenUpdateAnApplicationWithTheUpsert() {
+    ApplicationData applicationData = new TestApplicationDataBuilder()
+        .withPageData("somePage", "someInput", "someValue")
+        .withApplicantPrograms(List.of("SNAP"))
+        .build();
+    applicationRepository.save(Application.builder()
+        .id("someid")
+        .applicationData(applicationData)
+        .county(Olmsted)
+        .timeToComplete(Duration.ofSeconds(12))
+        .flow(FlowType.FULL)
+        .build());
+
+    ApplicationData updatedApplicationData = new TestApplicationDataBuilder()
+        .withPageData("someUpdatedPage", "someUpdatedInput", "someUpdatedValue")
+        .withApplicantPrograms(List.of("SNAP"))
+        .build();
+    Application updatedApplication = Application.builder()
+        .id("someid")
+        .completedAt(ZonedDateTime.now(UTC).truncatedTo(ChronoUnit.MILLIS))
+        .applicationData(updatedApplicationData)
+        .county(Hennepin)
+        .timeToComplete(Duration.ofSeconds(421))
+        .sentiment(Sentiment.HAPPY)
+        .feedback("someFeedback")
+        .flow(FlowType.EXPEDITED)
+        .build();
+    applicationRepository.save(updatedApplication);
+
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM applications", Integer.class))
+        .isEqualTo(1);
+    Application retrievedApplication = applicationRepository.find("someid");
+    assertThat(retrievedApplication).usingRecursiveComparison()
+        .ignoringFields("fileName", "updatedAt", "dataVersion", "cafApplicationStatus")
+        .isEqualTo(updatedApplication);
+    assertThat(retrievedApplication.getCafApplicationStatus()).isEqualTo(IN_PROGRESS);
+    assertThat(retrievedApplication.getUpdatedAt()).isNotNull();
+    assertThat(retrievedApplication.getDataVersion()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldLeaveTheUploadedDocumentsStatusAloneWhenUpserting() {
+    Application application = Application.builder()
+        .id("someid")
+        .applicationData(new TestApplicationDataBuilder().build())
+        .county(Olmsted)
+        .timeToComplete(Duration.ofSeconds(12))
+        .build();
+    applicationRepository.save(application);
+    applicationRepository.updateStatus("someid", UPLOADED_DOC, DELIVERED);
+
+    applicationRepository.save(application);
+
+    assertThat(applicationRepository.find("someid").getUploadedDocumentApplicationStatus())
+        .isEqualTo(DELIVERED);
+  }
+
+  @Test
+  void shouldStoreTheSameApplicationDataWhenSavingOnlyTheChanges() {
+    ApplicationRepository incrementalRepository = new ApplicationRepository(jdbcTemplate,
+        applicationDataEncryptor, true, Duration.ZERO, 3);
+    ApplicationData applicationData = new TestApplicationDataBuilder()
+        .withPersonalInfo()
+        .withPageData("somePage", "someInput", "someValue")
+        .withPageData("removedPage", "someInput", "someValue")
+        .withApplicantPrograms(List.of("SNAP"))
+        .withJobs()
+        .withHouseholdMember()
+        .build();
+    Application application = Application.builder()
+        .id("someid")
+        .applicationData(applicationData)
+        .county(Olmsted)
+        .flow(FlowType.FULL)
+        .build();
+    applicationData.setPendingChanges(applicationData.trackChanges().snapshot());
+    incrementalRepository.save(application);
+
+    applicationData.getPagesData().putPage("somePage",
+        new PageData(Map.of("someInput", new InputData(List.of("someUpdatedValue")))));
+    applicationData.getPagesData().remove("removedPage");
+    applicationData.getSubworkflows().remove("jobs");
+    applicationData.getSubworkflows().put("household", new Subworkflow(List.of(
+        new PagesDataBuilder().withPageData("householdMemberInfo",
+            Map.of("firstName", "Daria", "ssn", "987654321")).build())));
+    PendingChanges pendingChanges = applicationData.trackChanges().snapshot();
+    assertThat(pendingChanges.isPersisted()).isTrue();
+    applicationData.setPendingChanges(pendingChanges);
+    incrementalRepository.save(application);
+
+    applicationData.setPendingChanges(null);
+    applicationRepository.save(Application.builder()
+        .id("fullsaveid")
+        .applicationData(applicationData)
+        .county(Olmsted)
+        .flow(FlowType.FULL)
+        .build());
+
+    ApplicationData savedChanges = applicationRepository.find("someid").getApplicationData();
+    assertThat(savedChanges.getPagesData()).containsKey("somePage")
+        .doesNotContainKey("removedPage");
+    assertThat(savedChanges.getSubworkflows()).containsKey("household")
+        .doesNotContainKey("jobs");
+    assertThat(savedChanges).usingRecursiveComparison()
+        .isEqualTo(applicationRepository.find("fullsaveid").getApplicationData());
+  }
+}
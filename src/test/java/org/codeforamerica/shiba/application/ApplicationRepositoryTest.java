@@ -3,6 +3,7 @@ package org.codeforamerica.shiba.application;
 import static java.time.ZoneOffset.UTC;
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.codeforamerica.shiba.County.Anoka;
 import static org.codeforamerica.shiba.County.Hennepin;
 import static org.codeforamerica.shiba.County.Olmsted;
@@ -14,18 +15,24 @@ import static org.codeforamerica.shiba.application.Status.SENDING;
 import static org.codeforamerica.shiba.output.Document.CAF;
 import static org.codeforamerica.shiba.output.Document.CCAP;
 import static org.codeforamerica.shiba.output.Document.UPLOADED_DOC;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.Timestamp;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
+import org.codeforamerica.shiba.MonitoringService;
+import org.codeforamerica.shiba.application.parsers.CountyParser;
 import org.codeforamerica.shiba.output.Document;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.Sentiment;
 import org.codeforamerica.shiba.pages.data.*;
 import org.codeforamerica.shiba.testutilities.AbstractRepositoryTest;
@@ -47,6 +54,9 @@ class ApplicationRepositoryTest extends AbstractRepositoryTest {
   @Autowired
   private JdbcTemplate jdbcTemplate;
 
+  @Autowired
+  private ApplicationDataEncryptor applicationDataEncryptor;
+
   @MockBean
   private Clock clock;
 
@@ -80,6 +90,92 @@ class ApplicationRepositoryTest extends AbstractRepositoryTest {
     assertThat(nextId.substring(3, 8)).isEqualTo("00000");
   }
 
+  @Test
+  void shouldCoalesceSavesOfAnApplicationInProgressWithinTheWriteBehindWindow() {
+    ApplicationRepository writeBehindRepository = new ApplicationRepository(jdbcTemplate,
+        applicationDataEncryptor, false, Duration.ofMinutes(1), 3);
+    ApplicationData applicationData = new TestApplicationDataBuilder()
+        .withPageData("somePage", "someInput", "someValue")
+        .build();
+    Application.ApplicationBuilder applicationBuilder = Application.builder()
+        .id("someid")
+        .applicationData(applicationData)
+        .timeToComplete(Duration.ofSeconds(1));
+
+    writeBehindRepository.saveInProgress(applicationBuilder.county(Olmsted).build());
+    writeBehindRepository.saveInProgress(applicationBuilder.county(Hennepin).build());
+
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM applications", Integer.class))
+        .isZero();
+    assertThat(writeBehindRepository.find("someid").getCounty()).isEqualTo(Hennepin);
+    writeBehindRepository.flushPendingSaves();
+  }
+
+  @Test
+  void shouldWritePendingSavesBeforeQueryingAcrossApplications() {
+    ApplicationRepository writeBehindRepository = new ApplicationRepository(jdbcTemplate,
+        applicationDataEncryptor, false, Duration.ofMinutes(1), 3);
+    ZonedDateTime completedAt = ZonedDateTime.now(UTC).truncatedTo(ChronoUnit.MILLIS);
+    writeBehindRepository.saveInProgress(Application.builder()
+        .id("someid")
+        .completedAt(completedAt)
+        .applicationData(new TestApplicationDataBuilder().build())
+        .county(Olmsted)
+        .timeToComplete(Duration.ofSeconds(1))
+        .build());
+
+    List<Application> applications = writeBehindRepository
+        .getApplicationsSubmittedBetweenTimestamps(
+            Timestamp.from(completedAt.minusMinutes(1).toInstant()),
+            Timestamp.from(completedAt.plusMinutes(1).toInstant()));
+
+    assertThat(applications).extracting(Application::getId).containsExactly("someid");
+    writeBehindRepository.flushPendingSaves();
+  }
+
+  @Test
+  void shouldRetryAPendingSaveThatCouldNotBeWritten() {
+    ApplicationDataEncryptor flakyEncryptor = mock(ApplicationDataEncryptor.class);
+    when(flakyEncryptor.encrypt(any()))
+        .thenThrow(new IllegalStateException("Connection refused"))
+        .thenAnswer(invocation -> applicationDataEncryptor.encrypt(invocation.getArgument(0)));
+    ApplicationRepository writeBehindRepository = new ApplicationRepository(jdbcTemplate,
+        flakyEncryptor, false, Duration.ofMillis(10), 3);
+
+    writeBehindRepository.saveInProgress(Application.builder()
+        .id("someid")
+        .applicationData(new TestApplicationDataBuilder().build())
+        .county(Olmsted)
+        .timeToComplete(Duration.ofSeconds(1))
+        .build());
+
+    await().atMost(Duration.ofSeconds(5)).until(() -> jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM applications", Integer.class) == 1);
+    writeBehindRepository.flushPendingSaves();
+  }
+
+  @Test
+  void shouldWriteTheNextSaveRightAwayOnceAPendingSaveFailed() {
+    ApplicationDataEncryptor failingEncryptor = mock(ApplicationDataEncryptor.class);
+    when(failingEncryptor.encrypt(any()))
+        .thenThrow(new IllegalStateException("Connection refused"));
+    ApplicationRepository writeBehindRepository = new ApplicationRepository(jdbcTemplate,
+        failingEncryptor, false, Duration.ofMillis(10), 1);
+    Application application = Application.builder()
+        .id("someid")
+        .applicationData(new TestApplicationDataBuilder().build())
+        .county(Olmsted)
+        .timeToComplete(Duration.ofSeconds(1))
+        .build();
+
+    writeBehindRepository.saveInProgress(application);
+
+    await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+        assertThatThrownBy(() -> writeBehindRepository.saveInProgress(application))
+            .hasMessage("Connection refused"));
+    writeBehindRepository.flushPendingSaves();
+  }
+
   @Test
   void shouldSaveApplication() {
     ApplicationData applicationData = new TestApplicationDataBuilder()
@@ -126,6 +222,37 @@ class ApplicationRepositoryTest extends AbstractRepositoryTest {
         "White Earth", "Olmsted");
   }
 
+  @Test
+  void shouldLeaveTheSsnsOfTheSnapshotItSavedUnencrypted() {
+    CountyParser countyParser = mock(CountyParser.class);
+    when(countyParser.parse(any())).thenReturn(Olmsted);
+    FeatureFlagConfiguration featureFlagConfiguration = mock(FeatureFlagConfiguration.class);
+    when(featureFlagConfiguration.get("copy-on-write-snapshots")).thenReturn(FeatureFlag.ON);
+    ApplicationFactory applicationFactory = new ApplicationFactory(Clock.systemUTC(),
+        countyParser, mock(MonitoringService.class), featureFlagConfiguration);
+    ApplicationData applicationData = new TestApplicationDataBuilder()
+        .withPersonalInfo()
+        .withSubworkflow("household", new PagesDataBuilder()
+            .withPageData("householdMemberInfo", "ssn", "987-65-4321"))
+        .build();
+    applicationData.setId("someid");
+
+    Application fullSave = applicationFactory.newApplication(applicationData);
+    applicationRepository.save(fullSave);
+    Application snapshot = applicationFactory.newApplication(applicationData);
+
+    for (ApplicationData data : List.of(applicationData, fullSave.getApplicationData(),
+        snapshot.getApplicationData(), applicationRepository.find("someid").getApplicationData())) {
+      assertThat(data.getPagesData().getPageInputFirstValue("personalInfo", "ssn"))
+          .isEqualTo("123-45-6789");
+      assertThat(data.getSubworkflows().get("household").get(0).getPagesData()
+          .getPageInputFirstValue("householdMemberInfo", "ssn")).isEqualTo("987-65-4321");
+    }
+    assertThat(jdbcTemplate.queryForObject(
+        "SELECT application_data FROM applications WHERE id = 'someid'", String.class))
+        .doesNotContain("123-45-6789", "987-65-4321");
+  }
+
   @Test
   void shouldSaveApplicationWithOptionalFieldsPopulated() {
     ApplicationData applicationData = new TestApplicationDataBuilder()
@@ -187,7 +314,27 @@ class ApplicationRepositoryTest extends AbstractRepositoryTest {
     Application retrievedApplication = applicationRepository.find(applicationId);
 
     assertThat(retrievedApplication).usingRecursiveComparison()
-        .ignoringFields("fileName", "updatedAt").isEqualTo(updatedApplication);
+        .ignoringFields("fileName", "updatedAt", "dataVersion").isEqualTo(updatedApplication);
+  }
+
+  @Test
+  void shouldBumpTheDataVersionWhenSavingButNotWhenUpdatingAStatus() {
+    Application application = Application.builder()
+        .id("someid")
+        .applicationData(new TestApplicationDataBuilder().build())
+        .county(Olmsted)
+        .timeToComplete(Duration.ofSeconds(12))
+        .build();
+    applicationRepository.save(application);
+    Long firstVersion = applicationRepository.findDataVersion("someid");
+
+    applicationRepository.updateStatus("someid", CAF, DELIVERED);
+    assertThat(applicationRepository.findDataVersion("someid")).isEqualTo(firstVersion);
+
+    applicationRepository.save(application);
+    assertThat(applicationRepository.findDataVersion("someid")).isGreaterThan(firstVersion);
+    assertThat(applicationRepository.find("someid").getDataVersion())
+        .isEqualTo(applicationRepository.findDataVersion("someid"));
   }
 
   @Test
@@ -311,14 +458,13 @@ class ApplicationRepositoryTest extends AbstractRepositoryTest {
   class EncryptionAndDecryption extends AbstractRepositoryTest {
 
     ApplicationRepository applicationRepositoryWithMockEncryptor;
-    @SuppressWarnings("unchecked")
-    Encryptor<ApplicationData> mockEncryptor = mock(Encryptor.class);
+    ApplicationDataEncryptor mockEncryptor = mock(ApplicationDataEncryptor.class);
     String jsonData = "\"{here: 'is the encrypted data'}\"";
 
     @BeforeEach
     void setUp() {
       applicationRepositoryWithMockEncryptor = new ApplicationRepository(jdbcTemplate,
-          mockEncryptor);
+          mockEncryptor, false, Duration.ZERO, 3);
       when(mockEncryptor.encrypt(any())).thenReturn(jsonData);
     }
 
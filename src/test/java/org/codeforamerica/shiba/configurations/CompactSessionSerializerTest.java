@@ -0,0 +1,103 @@
+package org.codeforamerica.shiba.configurations;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.codeforamerica.shiba.pages.config.ApplicationConfiguration;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.codeforamerica.shiba.pages.config.FormInput;
+import org.codeforamerica.shiba.pages.config.PageConfiguration;
+import org.codeforamerica.shiba.pages.config.Validation;
+import org.codeforamerica.shiba.pages.config.Validator;
+import org.codeforamerica.shiba.pages.data.ApplicationData;
+import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.data.PagesData;
+import org.codeforamerica.shiba.testutilities.PagesDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.unit.DataSize;
+
+class CompactSessionSerializerTest {
+
+  private final FeatureFlagConfiguration featureFlags = mock(FeatureFlagConfiguration.class);
+  private final Validator notBlank = new Validator();
+  private final PageConfiguration personalInfo = new PageConfiguration();
+  private CompactSessionSerializer serializer;
+  private ApplicationData applicationData;
+
+  @BeforeEach
+  void setUp() {
+    notBlank.setValidation(Validation.NOT_BLANK);
+    notBlank.setErrorMessageKey("general.validation.make-sure-to-provide-a-first-name");
+    FormInput firstName = new FormInput();
+    firstName.setName("firstName");
+    firstName.setValidators(List.of(notBlank));
+    personalInfo.setName("personalInfo");
+    personalInfo.setInputs(List.of(firstName));
+    ApplicationConfiguration applicationConfiguration = new ApplicationConfiguration();
+    applicationConfiguration.setPageDefinitions(List.of(personalInfo));
+
+    serializer = new CompactSessionSerializer(new ObjectMapper().findAndRegisterModules(),
+        applicationConfiguration, featureFlags, DataSize.ofBytes(512));
+
+    LinkedMultiValueMap<String, String> model = new LinkedMultiValueMap<>();
+    model.put("firstName[]", List.of(""));
+    applicationData = new ApplicationData();
+    applicationData.setId("someId");
+    applicationData.setStartTimeOnce(Instant.EPOCH);
+    applicationData.getPagesData().putPage("personalInfo", PageData.fillOut(personalInfo, model));
+    applicationData.getSubworkflows().addIteration("jobs", new PagesDataBuilder()
+        .withPageData("employersName", "employersName", "someEmployer").build());
+    applicationData.getIncompleteIterations().put("jobs", new PagesData(Map.of("personalInfo",
+        PageData.fillOut(personalInfo, model))));
+  }
+
+  @Test
+  void writesApplicationDataWithoutValidatorsAndRestoresThem() throws IOException {
+    when(featureFlags.get("compact-sessions")).thenReturn(FeatureFlag.ON);
+
+    byte[] bytes = serializer.serialize(applicationData);
+    ApplicationData deserialized = (ApplicationData) serializer.deserialize(bytes);
+
+    assertThat(deserialized).isEqualTo(applicationData);
+    assertThat(deserialized.getPageData("personalInfo").get("firstName").getValidators())
+        .containsExactly(notBlank);
+    assertThat(deserialized.getIncompleteIterations().get("jobs").getPage("personalInfo")
+        .isValid()).isFalse();
+    assertThat(bytes.length)
+        .isLessThan(new DefaultSerializer().serializeToByteArray(applicationData).length);
+  }
+
+  @Test
+  void compressesLargeAttributes() throws IOException {
+    when(featureFlags.get("compact-sessions")).thenReturn(FeatureFlag.ON);
+    String small = "small";
+    String large = "large".repeat(1000);
+
+    assertThat(serializer.serialize(small))
+        .isEqualTo(new DefaultSerializer().serializeToByteArray(small));
+    byte[] compressed = serializer.serialize(large);
+    assertThat(compressed.length).isLessThan(512);
+    assertThat(serializer.deserialize(compressed)).isEqualTo(large);
+  }
+
+  @Test
+  void readsAttributesWrittenEitherWay() {
+    byte[] javaSerialized = serializer.serialize(applicationData);
+    when(featureFlags.get("compact-sessions")).thenReturn(FeatureFlag.ON);
+    byte[] compact = serializer.serialize(applicationData);
+    when(featureFlags.get("compact-sessions")).thenReturn(FeatureFlag.OFF);
+
+    assertThat(serializer.deserialize(javaSerialized)).isEqualTo(applicationData);
+    assertThat(serializer.deserialize(compact)).isEqualTo(applicationData);
+  }
+}
@@ -0,0 +1,88 @@
+package org.codeforamerica.shiba.configurations;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.MapSession;
+import org.springframework.session.SessionRepository;
+
+class LocalSessionCacheTest {
+
+  @SuppressWarnings("unchecked")
+  private final SessionRepository<MapSession> sessionRepository = mock(SessionRepository.class);
+  private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final LocalSessionCache<MapSession> cache = new LocalSessionCache<>(sessionRepository,
+      jdbcTemplate, "SPRING_SESSION", 10, meterRegistry);
+  private MapSession stored;
+
+  @BeforeEach
+  void setUp() {
+    stored = new MapSession("someId");
+    stored.setLastAccessedTime(Instant.now());
+    when(sessionRepository.findById("someId")).thenAnswer(invocation -> new MapSession(stored));
+  }
+
+  @Test
+  void reusesSessionsThisInstanceSavedLast() {
+    MapSession session = cache.findById("someId");
+    session.setLastAccessedTime(Instant.now().plusSeconds(1));
+    cache.save(session);
+    storedLastAccessTime(session.getLastAccessedTime().toEpochMilli());
+
+    assertThat(cache.findById("someId")).isSameAs(session);
+    verify(sessionRepository).findById("someId");
+    assertThat(meterRegistry.counter("session.cache", "result", "hit").count()).isEqualTo(1);
+    assertThat(meterRegistry.counter("session.cache", "result", "miss").count()).isEqualTo(1);
+    assertThat(meterRegistry.timer("session.load", "source", "cache").count()).isEqualTo(1);
+  }
+
+  @Test
+  void reloadsSessionsSavedByAnotherInstance() {
+    MapSession session = cache.findById("someId");
+    cache.save(session);
+    storedLastAccessTime(session.getLastAccessedTime().toEpochMilli() + 1);
+
+    assertThat(cache.findById("someId")).isNotSameAs(session);
+    verify(sessionRepository, times(2)).findById("someId");
+  }
+
+  @Test
+  void reloadsSessionsThatWereDeleted() {
+    cache.save(cache.findById("someId"));
+    when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("someId")))
+        .thenReturn(List.of());
+    when(sessionRepository.findById("someId")).thenReturn(null);
+
+    assertThat(cache.findById("someId")).isNull();
+  }
+
+  @Test
+  void givesConcurrentRequestsTheirOwnCopy() {
+    MapSession first = cache.findById("someId");
+    MapSession second = cache.findById("someId");
+    storedLastAccessTime(first.getLastAccessedTime().toEpochMilli());
+
+    assertThat(second).isNotSameAs(first);
+    cache.save(first);
+    cache.save(second);
+    assertThat(cache.findById("someId")).isNotSameAs(first).isNotSameAs(second);
+    verify(sessionRepository, times(3)).findById("someId");
+  }
+
+  private void storedLastAccessTime(long lastAccessTime) {
+    when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("someId")))
+        .thenReturn(List.of(lastAccessTime));
+  }
+}
@@ -0,0 +1,48 @@
+package org.codeforamerica.shiba.documents;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.codeforamerica.shiba.testutilities.TestUtils.getFileContentsAsByteArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.codeforamerica.shiba.pages.data.PdfPreflight;
+import org.junit.jupiter.api.Test;
+
+class PdfPreflightInspectorTest {
+
+  @Test
+  void countsThePagesOfAnOrdinaryPdf() throws IOException {
+    byte[] pdf = getFileContentsAsByteArray("test-uploaded-pdf.pdf");
+
+    PdfPreflight preflight = inspect(pdf);
+
+    try (PDDocument document = PDDocument.load(pdf)) {
+      assertThat(preflight.pageCount()).isEqualTo(document.getNumberOfPages());
+    }
+    assertThat(preflight.encrypted()).isFalse();
+    assertThat(preflight.passwordProtected()).isFalse();
+    assertThat(preflight.dynamicXfa()).isFalse();
+    assertThat(preflight.size()).isEqualTo(pdf.length);
+  }
+
+  @Test
+  void detectsPasswordProtectedPdfs() throws IOException {
+    PdfPreflight preflight = inspect(getFileContentsAsByteArray("password-protected.pdf"));
+
+    assertThat(preflight.passwordProtected()).isTrue();
+    assertThat(preflight.encrypted()).isTrue();
+  }
+
+  @Test
+  void detectsDynamicXfaForms() throws IOException {
+    PdfPreflight preflight = inspect(getFileContentsAsByteArray("xfa-invoice-example.pdf"));
+
+    assertThat(preflight.dynamicXfa()).isTrue();
+    assertThat(preflight.passwordProtected()).isFalse();
+  }
+
+  private PdfPreflight inspect(byte[] pdf) throws IOException {
+    return PdfPreflightInspector.inspect(new ByteArrayInputStream(pdf), pdf.length);
+  }
+}
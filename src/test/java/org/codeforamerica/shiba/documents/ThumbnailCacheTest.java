@@ -0,0 +1,167 @@
+package org.codeforamerica.shiba.documents;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+class ThumbnailCacheTest {
+
+  private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0};
+
+  private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+  private final Clock clock = mock(Clock.class);
+  private final Instant now = Instant.now();
+  private final ThumbnailCache cache = new ThumbnailCache(documentRepository,
+      DataSize.ofBytes(25), DataSize.ofBytes(35), 2, 4, Duration.ofMinutes(1), clock,
+      new SimpleMeterRegistry());
+
+  @BeforeEach
+  void setUp() {
+    when(clock.instant()).thenReturn(now);
+  }
+
+  @AfterEach
+  void tearDown() {
+    cache.shutdown();
+  }
+
+  @Test
+  void fetchesEveryMissingThumbnailOfTheSessionOnTheFirstMiss() {
+    when(documentRepository.get(anyString())).thenReturn(PNG);
+
+    Thumbnail thumbnail = cache.get("session", "first", List.of("first", "second"));
+    cache.get("session", "second", List.of("first", "second"));
+
+    assertThat(thumbnail.contentType()).isEqualTo("image/png");
+    assertThat(thumbnail.bytes()).isEqualTo(PNG);
+    verify(documentRepository, times(1)).get("first");
+    verify(documentRepository, times(1)).get("second");
+  }
+
+  @Test
+  void readsThumbnailsStoredAsDataUrls() {
+    when(documentRepository.get("legacy")).thenReturn(
+        "data:image/jpeg;base64,AAEC".getBytes(UTF_8));
+
+    Thumbnail thumbnail = cache.get("session", "legacy", List.of("legacy"));
+
+    assertThat(thumbnail.contentType()).isEqualTo("image/jpeg");
+    assertThat(thumbnail.bytes()).containsExactly(0, 1, 2);
+  }
+
+  @Test
+  void onlyReadsImages() {
+    when(documentRepository.get("html")).thenReturn(
+        "<html><script>alert(1)</script></html>".getBytes(UTF_8));
+    when(documentRepository.get("legacyHtml")).thenReturn(
+        "data:text/html;base64,PGh0bWw+".getBytes(UTF_8));
+
+    assertThat(cache.get("session", "html", List.of())).isNull();
+    assertThat(cache.get("session", "legacyHtml", List.of())).isNull();
+  }
+
+  @Test
+  void remembersThumbnailsThatCouldNotBeReadForAWhile() {
+    when(documentRepository.get("missing")).thenThrow(new RuntimeException("not found"));
+
+    assertThat(cache.get("session", "missing", List.of("missing"))).isNull();
+    assertThat(cache.get("session", "missing", List.of("missing"))).isNull();
+    verify(documentRepository, times(1)).get("missing");
+
+    when(clock.instant()).thenReturn(now.plus(Duration.ofMinutes(2)));
+    assertThat(cache.get("session", "missing", List.of("missing"))).isNull();
+    verify(documentRepository, times(2)).get("missing");
+  }
+
+  @Test
+  void readsAThumbnailOnceWhenItIsAskedForWhileBeingFetched() throws Exception {
+    CountDownLatch fetching = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(documentRepository.get("first")).thenAnswer(invocation -> {
+      fetching.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return PNG;
+    });
+
+    CompletableFuture<Thumbnail> first = CompletableFuture.supplyAsync(
+        () -> cache.get("session", "first", List.of("first")));
+    assertThat(fetching.await(5, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<Thumbnail> second = CompletableFuture.supplyAsync(
+        () -> cache.get("session", "first", List.of("first")));
+    release.countDown();
+
+    assertThat(first.get(5, TimeUnit.SECONDS).bytes()).isEqualTo(PNG);
+    assertThat(second.get(5, TimeUnit.SECONDS).bytes()).isEqualTo(PNG);
+    verify(documentRepository, times(1)).get("first");
+  }
+
+  @Test
+  void onlyFetchesThumbnailsTooBigToKeepWhenTheyAreAskedFor() {
+    cache.put("session", "big", new Thumbnail(new byte[30], "image/png"));
+    when(documentRepository.get(anyString())).thenReturn(PNG);
+
+    cache.get("session", "small", List.of("small", "big"));
+    verify(documentRepository, never()).get("big");
+
+    cache.get("session", "big", List.of("small", "big"));
+    verify(documentRepository).get("big");
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedThumbnailsOnceASessionIsFull() {
+    cache.put("session", "first", new Thumbnail(new byte[10], "image/png"));
+    cache.put("session", "second", new Thumbnail(new byte[10], "image/png"));
+    cache.get("session", "first", List.of());
+    cache.put("session", "third", new Thumbnail(new byte[10], "image/png"));
+
+    cache.get("session", "first", List.of());
+    verify(documentRepository, never()).get("first");
+    when(documentRepository.get("second")).thenReturn(PNG);
+    cache.get("session", "second", List.of());
+    verify(documentRepository).get("second");
+  }
+
+  @Test
+  void dropsTheLeastRecentlyActiveSessions() {
+    cache.put("first", "thumbnail", new Thumbnail(new byte[1], "image/png"));
+    cache.put("second", "thumbnail", new Thumbnail(new byte[1], "image/png"));
+    cache.put("third", "thumbnail", new Thumbnail(new byte[1], "image/png"));
+
+    when(documentRepository.get("thumbnail")).thenReturn(PNG);
+    cache.get("third", "thumbnail", List.of());
+    cache.get("second", "thumbnail", List.of());
+    verify(documentRepository, never()).get("thumbnail");
+    cache.get("first", "thumbnail", List.of());
+    verify(documentRepository).get("thumbnail");
+  }
+
+  @Test
+  void dropsTheLeastRecentlyActiveSessionsOnceAllOfThemAreFull() {
+    cache.put("first", "thumbnail", new Thumbnail(new byte[20], "image/png"));
+    cache.put("second", "thumbnail", new Thumbnail(new byte[20], "image/png"));
+
+    when(documentRepository.get("thumbnail")).thenReturn(PNG);
+    cache.get("second", "thumbnail", List.of());
+    verify(documentRepository, never()).get("thumbnail");
+    cache.get("first", "thumbnail", List.of());
+    verify(documentRepository).get("thumbnail");
+  }
+}
@@ -0,0 +1,70 @@
+package org.codeforamerica.shiba.inputconditions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import org.codeforamerica.shiba.output.LogicalOperator;
+import org.codeforamerica.shiba.pages.data.DatasourcePages;
+import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.data.PagesData;
+import org.codeforamerica.shiba.testutilities.PagesDataBuilder;
+import org.junit.jupiter.api.Test;
+
+class ConditionTest {
+
+  private final PagesData pagesData = new PagesDataBuilder()
+      .withPageData("choosePrograms", "programs", List.of("SNAP", "CCAP"))
+      .withPageData("homeAddress", Map.of(
+          "isHomeless", List.of("false"),
+          "county", List.of("Hennepin")))
+      .build();
+
+  @Test
+  void evaluatesNestedConditions() {
+    Condition choseSnapAndIsHomeless = new Condition(List.of(
+        new Condition("choosePrograms", "programs", "SNAP", ValueMatcher.CONTAINS),
+        new Condition("homeAddress", "isHomeless", "true", ValueMatcher.CONTAINS)),
+        LogicalOperator.AND);
+    Condition choseCcap = new Condition("choosePrograms", "programs", "CCAP",
+        ValueMatcher.CONTAINS);
+
+    assertThat(pagesData.satisfies(choseSnapAndIsHomeless)).isFalse();
+    assertThat(pagesData.satisfies(new Condition(List.of(choseSnapAndIsHomeless, choseCcap),
+        LogicalOperator.OR))).isTrue();
+    assertThat(pagesData.satisfies(new Condition(List.of(choseSnapAndIsHomeless, choseCcap),
+        LogicalOperator.AND))).isFalse();
+  }
+
+  @Test
+  void isNotSatisfiedByPagesOrInputsThatWereNotAnswered() {
+    DatasourcePages datasourcePages = new DatasourcePages(pagesData);
+
+    assertThat(datasourcePages.satisfies(
+        new Condition("homeAddress", "isHomeless", "false", ValueMatcher.NOT_EMPTY))).isTrue();
+    assertThat(datasourcePages.satisfies(
+        new Condition("homeAddress", "zipCode", null, ValueMatcher.EMPTY))).isFalse();
+    assertThat(datasourcePages.satisfies(
+        new Condition("mailingAddress", "zipCode", null, ValueMatcher.EMPTY))).isFalse();
+  }
+
+  @Test
+  void evaluatesConditionsWithoutAPageNameAgainstTheGivenPage() {
+    Condition condition = new Condition();
+    condition.setInput("county");
+    condition.setMatcher(ValueMatcher.IS_URBAN_TRIBAL_NATION_COUNTY);
+
+    assertThat(condition.matches(pagesData.getPage("homeAddress"), pagesData)).isTrue();
+    assertThat(condition.matches(new PageData(), pagesData)).isFalse();
+  }
+
+  @Test
+  void recompilesWhenChanged() {
+    Condition condition = new Condition("choosePrograms", "programs", "SNAP",
+        ValueMatcher.CONTAINS);
+    assertThat(pagesData.satisfies(condition)).isTrue();
+
+    condition.setValue("EA");
+    assertThat(pagesData.satisfies(condition)).isFalse();
+  }
+}
@@ -0,0 +1,118 @@
+package org.codeforamerica.shiba.mnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.codeforamerica.shiba.County.Olmsted;
+import static org.codeforamerica.shiba.application.FlowType.FULL;
+import static org.codeforamerica.shiba.output.Document.CAF;
+
+import java.time.Duration;
+import org.codeforamerica.shiba.mnit.DeliveryOutbox.OutboxDelivery;
+import org.codeforamerica.shiba.output.ApplicationFile;
+import org.codeforamerica.shiba.testutilities.AbstractPostgresRepositoryTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+@ContextConfiguration(classes = DeliveryOutbox.class)
+@TestPropertySource(properties = {
+    "mnit-esb.delay=5400000",
+    "mnit-esb.multiplier=2",
+    "mnit-esb.max-delay=10800000"})
+@Sql(statements = "TRUNCATE TABLE delivery_outbox")
+class DeliveryOutboxTest extends AbstractPostgresRepositoryTest {
+
+  @Autowired
+  private DeliveryOutbox deliveryOutbox;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private final CountyRoutingDestination olmsted = CountyRoutingDestination.builder()
+      .county(Olmsted).build();
+  private final ApplicationFile applicationFile = new ApplicationFile("content".getBytes(),
+      "someFile.pdf");
+
+  private OutboxDelivery delivery;
+
+  @BeforeEach
+  void setUp() {
+    delivery = deliveryOutbox.enqueue(applicationFile, olmsted, "someId", CAF, FULL);
+  }
+
+  @Test
+  void doesNotHandOutDeliveriesThatAreLeased() {
+    assertThat(deliveryOutbox.claimDue(10)).isEmpty();
+  }
+
+  @Test
+  void handsOutEachDueDeliveryOnce() {
+    deliveryOutbox.enqueue(applicationFile, olmsted, "otherId", CAF, FULL);
+    jdbcTemplate.update("UPDATE delivery_outbox SET lease_expires_at = NULL");
+
+    assertThat(deliveryOutbox.claimDue(1)).hasSize(1);
+    assertThat(deliveryOutbox.claimDue(10)).hasSize(1);
+    assertThat(deliveryOutbox.claimDue(10)).isEmpty();
+    assertThat(jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM delivery_outbox WHERE lease_expires_at > CURRENT_TIMESTAMP",
+        Integer.class)).isEqualTo(2);
+  }
+
+  @Test
+  void renewsTheLeaseOnlyWhileThisInstanceStillHoldsIt() {
+    jdbcTemplate.update("UPDATE delivery_outbox SET lease_expires_at = CURRENT_TIMESTAMP - INTERVAL '1' MINUTE");
+
+    assertThat(deliveryOutbox.renewLease(delivery)).isTrue();
+    assertThat(deliveryOutbox.claimDue(10)).isEmpty();
+
+    jdbcTemplate.update("UPDATE delivery_outbox SET leased_by = 'someOtherInstance'");
+    assertThat(deliveryOutbox.renewLease(delivery)).isFalse();
+  }
+
+  @Test
+  void handsOutFailedDeliveriesOnceTheirNextAttemptIsDue() {
+    assertThat(deliveryOutbox.failed(delivery, new RuntimeException("timed out"))).isTrue();
+    assertThat(deliveryOutbox.claimDue(10)).isEmpty();
+
+    jdbcTemplate.update("UPDATE delivery_outbox SET next_attempt_at = next_attempt_at - INTERVAL '1' DAY");
+
+    assertThat(deliveryOutbox.claimDue(10)).singleElement().satisfies(claimed -> {
+      assertThat(claimed.id()).isEqualTo(delivery.id());
+      assertThat(claimed.attempts()).isEqualTo(1);
+      assertThat(claimed.routingDestination()).isEqualTo(olmsted.getName());
+      assertThat(claimed.applicationFile()).isEqualTo(applicationFile);
+    });
+    assertThat(deliveryOutbox.claimDue(10)).isEmpty();
+  }
+
+  @Test
+  void stopsRetryingAfterMaxAttempts() {
+    OutboxDelivery lastAttempt = new OutboxDelivery(delivery.id(), delivery.applicationId(),
+        delivery.document(), delivery.flow(), delivery.routingDestination(),
+        delivery.applicationFile(), 3);
+
+    assertThat(deliveryOutbox.failed(lastAttempt, new RuntimeException("timed out"))).isFalse();
+    assertThat(jdbcTemplate.queryForObject("SELECT status FROM delivery_outbox", String.class))
+        .isEqualTo("failed");
+    assertThat(jdbcTemplate.queryForObject("SELECT file_bytes FROM delivery_outbox", byte[].class))
+        .isNull();
+  }
+
+  @Test
+  void removesDeliveredDeliveries() {
+    deliveryOutbox.delivered(delivery);
+
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM delivery_outbox", Integer.class))
+        .isZero();
+  }
+
+  @Test
+  void backsOffExponentiallyUpToTheMaxDelay() {
+    assertThat(deliveryOutbox.backoff(1)).isEqualTo(Duration.ofMinutes(90));
+    assertThat(deliveryOutbox.backoff(2)).isEqualTo(Duration.ofHours(3));
+    assertThat(deliveryOutbox.backoff(3)).isEqualTo(Duration.ofHours(3));
+  }
+}
@@ -0,0 +1,128 @@
+package org.codeforamerica.shiba.output;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.codeforamerica.shiba.County.Hennepin;
+import static org.codeforamerica.shiba.output.Document.CAF;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.codeforamerica.shiba.mnit.CountyRoutingDestination;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DocumentDeliveryExecutorTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private DocumentDeliveryExecutor deliveryExecutor;
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    deliveryExecutor.shutdown();
+  }
+
+  @Test
+  void blocksSubmissionsOnceTooManyDeliveriesAreInFlight() throws Exception {
+    deliveryExecutor = new DocumentDeliveryExecutor(2, 1, 1, 1, false, meterRegistry);
+    CountDownLatch firstDeliveryCanFinish = new CountDownLatch(1);
+    deliveryExecutor.submit(() -> awaitLatch(firstDeliveryCanFinish));
+
+    CompletableFuture<Void> secondSubmission = CompletableFuture.runAsync(
+        () -> deliveryExecutor.submit(() -> {
+        }));
+
+    Thread.sleep(100);
+    assertThat(secondSubmission).isNotDone();
+    assertThat(meterRegistry.get("document.delivery.in.flight").gauge().value()).isEqualTo(1);
+
+    firstDeliveryCanFinish.countDown();
+    secondSubmission.join();
+  }
+
+  @Test
+  void limitsConcurrentSendsToTheSameDestination() {
+    deliveryExecutor = new DocumentDeliveryExecutor(4, 4, 1, 1, false, meterRegistry);
+    CountyRoutingDestination hennepin = CountyRoutingDestination.builder().county(Hennepin)
+        .build();
+    AtomicInteger concurrentSends = new AtomicInteger();
+    AtomicInteger maxConcurrentSends = new AtomicInteger();
+
+    CompletableFuture<?>[] deliveries = new CompletableFuture<?>[4];
+    for (int i = 0; i < deliveries.length; i++) {
+      deliveries[i] = deliveryExecutor.submit(() -> deliveryExecutor.sendTo(hennepin, CAF, () -> {
+        maxConcurrentSends.accumulateAndGet(concurrentSends.incrementAndGet(), Math::max);
+        sleep();
+        concurrentSends.decrementAndGet();
+      }));
+    }
+    CompletableFuture.allOf(deliveries).join();
+
+    assertThat(maxConcurrentSends.get()).isEqualTo(1);
+    assertThat(meterRegistry.get("document.delivery.send").tag("outcome", "success").timer()
+        .count()).isEqualTo(4);
+  }
+
+  @Test
+  void recordsFailedSends() {
+    deliveryExecutor = new DocumentDeliveryExecutor(1, 1, 1, 1, false, meterRegistry);
+    CountyRoutingDestination hennepin = CountyRoutingDestination.builder().county(Hennepin)
+        .build();
+
+    assertThatThrownBy(() -> deliveryExecutor.sendTo(hennepin, CAF, () -> {
+      throw new IllegalStateException("send failed");
+    })).isInstanceOf(IllegalStateException.class);
+
+    assertThat(meterRegistry.get("document.delivery.send").tag("outcome", "failure").timer()
+        .count()).isEqualTo(1);
+  }
+
+  @Test
+  void runsFilesConcurrentlyUpToTheLimitAndReturnsResultsInOrder() {
+    deliveryExecutor = new DocumentDeliveryExecutor(4, 8, 1, 2, false, meterRegistry);
+    AtomicInteger concurrentFiles = new AtomicInteger();
+    AtomicInteger maxConcurrentFiles = new AtomicInteger();
+
+    List<String> results = deliveryExecutor.runForEachFile(5, index -> {
+      maxConcurrentFiles.accumulateAndGet(concurrentFiles.incrementAndGet(), Math::max);
+      sleep();
+      concurrentFiles.decrementAndGet();
+      return "file" + index;
+    });
+
+    assertThat(results).containsExactly("file0", "file1", "file2", "file3", "file4");
+    assertThat(maxConcurrentFiles.get()).isEqualTo(2);
+  }
+
+  @Test
+  void runsEveryFileBeforeRethrowingTheFirstFailure() {
+    deliveryExecutor = new DocumentDeliveryExecutor(2, 4, 1, 2, false, meterRegistry);
+    AtomicInteger finished = new AtomicInteger();
+
+    assertThatThrownBy(() -> deliveryExecutor.runForEachFile(4, index -> {
+      if (index == 1) {
+        throw new IllegalStateException("file failed");
+      }
+      return finished.incrementAndGet();
+    })).isInstanceOf(IllegalStateException.class).hasMessage("file failed");
+    assertThat(finished).hasValue(3);
+  }
+
+  private static void awaitLatch(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(20);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -9,12 +9,19 @@ import static org.codeforamerica.shiba.output.Recipient.CLIENT;
 import static org.codeforamerica.shiba.testutilities.TestUtils.getFileContentsAsByteArray;
 import static org.mockito.Mockito.*;
 import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import org.codeforamerica.shiba.application.Application;
 import org.codeforamerica.shiba.application.ApplicationRepository;
 import org.codeforamerica.shiba.application.FlowType;
@@ -62,7 +69,8 @@ class FileDownloadControllerTest {
                 pdfGenerator,
                 applicationEventPublisher,
                 applicationData,
-                applicationRepository))
+                applicationRepository,
+                Runnable::run))
         .setViewResolvers(new InternalResourceViewResolver("", "suffix"))
         .build();
 
@@ -201,10 +209,11 @@ class FileDownloadControllerTest {
             any())).thenReturn(imageFile);
     MvcResult result = mockMvc.perform(
         get("/download-docs/9870000123"))
+        .andExpect(request().asyncStarted())
         .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
             String.format("filename=\"%s\"", applicationId + ".zip")))
-        .andExpect(status().is2xxSuccessful())
         .andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().is2xxSuccessful());
 
     verify(pdfGenerator).generate(application, UPLOADED_DOC, CASEWORKER);
     verify(pdfGenerator)
@@ -215,6 +224,33 @@ class FileDownloadControllerTest {
     assertThat(actualBytes).hasSizeGreaterThan(22);
   }
 
+  @Test
+  void shouldZipDocumentsInUploadOrderSkippingEmptyOnes() throws Exception {
+    stubUploadedDocuments("9870000123");
+
+    assertThat(zipEntries(mockMvc, "9870000123")).containsExactly(
+        "doc2of3.pdf: first", "doc3of3.pdf: second");
+  }
+
+  @Test
+  void shouldConvertDocumentsWhileZippingWhenTheExecutorIsSaturated() throws Exception {
+    MockMvc saturatedMockMvc = MockMvcBuilders.standaloneSetup(
+            new FileDownloadController(
+                xmlGenerator,
+                pdfGenerator,
+                applicationEventPublisher,
+                applicationData,
+                applicationRepository,
+                task -> {
+                  throw new RejectedExecutionException("saturated");
+                }))
+        .build();
+    stubUploadedDocuments("9870000123");
+
+    assertThat(zipEntries(saturatedMockMvc, "9870000123")).containsExactly(
+        "doc2of3.pdf: first", "doc3of3.pdf: second");
+  }
+
   @Test
   void shouldReturn404StatusForApplicationIdWithoutDocuments() throws Exception {
     var applicationId = "9870000123";
@@ -242,4 +278,44 @@ class FileDownloadControllerTest {
 
     assertThat(actualBytes).hasSizeLessThanOrEqualTo(22);
   }
+
+  private void stubUploadedDocuments(String applicationId) {
+    List<UploadedDocument> uploadedDocs = List.of(
+        new UploadedDocument("empty.jpg", "", "", "", 0),
+        new UploadedDocument("first.jpg", "", "", "", 5),
+        new UploadedDocument("second.pdf", "", "", "", 6));
+    ApplicationData applicationData = new ApplicationData();
+    applicationData.setId(applicationId);
+    applicationData.setUploadedDocs(uploadedDocs);
+    Application application = Application.builder()
+        .applicationData(applicationData)
+        .flow(FlowType.LATER_DOCS)
+        .build();
+    when(applicationRepository.find(applicationId)).thenReturn(application);
+    when(pdfGenerator.generate(any(Application.class), eq(UPLOADED_DOC), eq(CASEWORKER)))
+        .thenReturn(new ApplicationFile("cover".getBytes(), "cover.pdf"));
+    when(pdfGenerator.generateForUploadedDocument(any(), eq(0), any(), any()))
+        .thenReturn(new ApplicationFile(new byte[0], "doc1of3.pdf"));
+    when(pdfGenerator.generateForUploadedDocument(any(), eq(1), any(), any()))
+        .thenReturn(new ApplicationFile("first".getBytes(), "doc2of3.pdf"));
+    when(pdfGenerator.generateForUploadedDocument(any(), eq(2), any(), any()))
+        .thenReturn(new ApplicationFile("second".getBytes(), "doc3of3.pdf"));
+  }
+
+  private static List<String> zipEntries(MockMvc mockMvc, String applicationId)
+      throws Exception {
+    MvcResult result = mockMvc.perform(get("/download-docs/" + applicationId))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().is2xxSuccessful());
+
+    List<String> entries = new ArrayList<>();
+    try (ZipInputStream zip = new ZipInputStream(
+        new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        entries.add(entry.getName() + ": " + new String(zip.readAllBytes()));
+      }
+    }
+    return entries;
+  }
 }
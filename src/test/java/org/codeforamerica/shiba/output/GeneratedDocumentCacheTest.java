@@ -0,0 +1,132 @@
+package org.codeforamerica.shiba.output;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.codeforamerica.shiba.output.Document.CAF;
+import static org.codeforamerica.shiba.output.Document.CCAP;
+import static org.codeforamerica.shiba.output.Recipient.CLIENT;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.codeforamerica.shiba.DocumentRepositoryTestConfig.LocalFilesystemDocumentRepository;
+import org.codeforamerica.shiba.documents.DocumentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+class GeneratedDocumentCacheTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final Clock clock = Clock.fixed(Instant.now(), ZoneOffset.UTC);
+  private final AtomicInteger generated = new AtomicInteger();
+  private final Supplier<ApplicationFile> generator = () -> new ApplicationFile(
+      new byte[10], "document-" + generated.incrementAndGet() + ".pdf");
+
+  @Test
+  void generatesDocumentsForApplicationsThatHaveNotBeenSaved() {
+    GeneratedDocumentCache cache = cache(null, DataSize.ofBytes(100), false, clock);
+
+    cache.get("someId", CAF, CLIENT, null, generator);
+    cache.get("someId", CAF, CLIENT, null, generator);
+
+    assertThat(generated).hasValue(2);
+  }
+
+  @Test
+  void regeneratesDocumentsOnceTheApplicationIsSavedAgain() {
+    GeneratedDocumentCache cache = cache(null, DataSize.ofBytes(100), false, clock);
+
+    cache.get("someId", CAF, CLIENT, 1L, generator);
+    cache.get("someId", CAF, CLIENT, 1L, generator);
+    assertThat(generated).hasValue(1);
+
+    cache.get("someId", CAF, CLIENT, 2L, generator);
+    assertThat(generated).hasValue(2);
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedDocumentOnceFull() {
+    GeneratedDocumentCache cache = cache(null, DataSize.ofBytes(20), false, clock);
+
+    cache.get("firstId", CAF, CLIENT, 1L, generator);
+    cache.get("secondId", CAF, CLIENT, 1L, generator);
+    cache.get("firstId", CAF, CLIENT, 1L, generator);
+    cache.get("thirdId", CAF, CLIENT, 1L, generator);
+    assertThat(generated).hasValue(3);
+
+    assertThat(cache.get("firstId", CAF, CLIENT, 1L, generator).getFileName())
+        .isEqualTo("document-1.pdf");
+    cache.get("secondId", CAF, CLIENT, 1L, generator);
+    assertThat(generated).hasValue(4);
+    assertThat(meterRegistry.get("generated.document.cache").tag("result", "hit").counter()
+        .count()).isEqualTo(2);
+  }
+
+  @Test
+  void readsEvictedDocumentsBackFromTheDocumentRepositoryWhenSpilling() throws IOException {
+    GeneratedDocumentCache cache = cache(new LocalFilesystemDocumentRepository(),
+        DataSize.ofBytes(10), true, clock);
+
+    cache.get("someId", CAF, CLIENT, 1L, generator);
+    cache.get("someId", CCAP, CLIENT, 1L, generator);
+
+    ApplicationFile spilled = cache.get("someId", CAF, CLIENT, 1L, generator);
+    assertThat(spilled.getFileName()).isEqualTo("document-1.pdf");
+    assertThat(spilled.getFileBytes()).hasSize(10);
+    assertThat(generated).hasValue(2);
+  }
+
+  @Test
+  void deletesSpilledDocumentsAtShutdown() throws Exception {
+    DocumentRepository documentRepository = mock(DocumentRepository.class);
+    GeneratedDocumentCache cache = cache(documentRepository, DataSize.ofBytes(10), true, clock);
+    cache.get("someId", CAF, CLIENT, 1L, generator);
+    cache.get("someId", CCAP, CLIENT, 1L, generator);
+    verify(documentRepository).upload(anyString(), any(byte[].class));
+
+    cache.deleteSpills();
+
+    verify(documentRepository).delete(anyString());
+  }
+
+  @Test
+  void deletesSpilledDocumentsOnceTheyExpire() {
+    DocumentRepository documentRepository = mock(DocumentRepository.class);
+    Clock movingClock = mock(Clock.class);
+    Instant spilledAt = clock.instant();
+    when(movingClock.instant()).thenReturn(spilledAt);
+    GeneratedDocumentCache cache = cache(documentRepository, DataSize.ofBytes(10), true,
+        movingClock);
+    cache.get("someId", CAF, CLIENT, 1L, generator);
+    cache.get("someId", CCAP, CLIENT, 1L, generator);
+
+    cache.deleteExpiredSpills();
+    verify(documentRepository, never()).delete(anyString());
+
+    Instant later = spilledAt.plus(Duration.ofHours(2));
+    when(movingClock.instant()).thenReturn(later);
+    cache.deleteExpiredSpills();
+    verify(documentRepository).delete(anyString());
+    verify(documentRepository).deleteOlderThan("generated-documents/",
+        later.minus(Duration.ofHours(1)));
+
+    cache.get("someId", CAF, CLIENT, 1L, generator);
+    assertThat(generated).hasValue(3);
+  }
+
+  private GeneratedDocumentCache cache(DocumentRepository documentRepository, DataSize maxSize,
+      boolean spill, Clock clock) {
+    return new GeneratedDocumentCache(documentRepository, maxSize, spill, 10, Duration.ofHours(1),
+        clock, meterRegistry);
+  }
+}
@@ -6,6 +6,7 @@ import static org.codeforamerica.shiba.County.Olmsted;
 import static org.codeforamerica.shiba.TribalNationRoutingDestination.MILLE_LACS_BAND_OF_OJIBWE;
 import static org.codeforamerica.shiba.TribalNationRoutingDestination.UPPER_SIOUX;
 import static org.codeforamerica.shiba.application.FlowType.FULL;
+import static org.codeforamerica.shiba.application.Status.DELIVERED;
 import static org.codeforamerica.shiba.application.Status.DELIVERY_FAILED;
 import static org.codeforamerica.shiba.application.Status.SENDING;
 import static org.codeforamerica.shiba.output.Document.CAF;
@@ -19,14 +20,23 @@ import static org.mockito.Mockito.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
 
 import de.redsix.pdfcompare.PdfComparator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.imageio.ImageIO;
 import org.codeforamerica.shiba.County;
 import org.codeforamerica.shiba.CountyMap;
 import org.codeforamerica.shiba.MonitoringService;
@@ -59,6 +69,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.context.MessageSource;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.test.context.ActiveProfiles;
@@ -106,6 +117,10 @@ class MnitDocumentConsumerTest {
   private ApplicationData applicationData;
   @Autowired
   private MnitDocumentConsumer documentConsumer;
+  @Autowired
+  private MeterRegistry meterRegistry;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
 
   private Application application;
 
@@ -158,11 +173,30 @@ class MnitDocumentConsumerTest {
 
     verify(pdfGenerator).generate(application.getId(), CAF, CASEWORKER);
     verify(xmlGenerator).generate(application.getId(), CAF, CASEWORKER);
-    verify(mnitClient, times(2)).send(any(), any(), any(), any(), any());
-    verify(mnitClient).send(pdfApplicationFile, countyMap.get(Olmsted), application.getId(), CAF,
-        FULL);
-    verify(mnitClient).send(xmlApplicationFile, countyMap.get(Olmsted), application.getId(), CAF,
-        FULL);
+    verify(mnitClient, times(2)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitClient).sendOnce(pdfApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CAF, FULL);
+    verify(mnitClient).sendOnce(xmlApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CAF, FULL);
+  }
+
+  @Test
+  void generatesTheXmlAndPdfOnTheDeliveryThreads() {
+    List<String> generatingThreads = new CopyOnWriteArrayList<>();
+    ApplicationFile pdfApplicationFile = new ApplicationFile("my pdf".getBytes(), "someFile.pdf");
+    doAnswer(invocation -> {
+      generatingThreads.add(Thread.currentThread().getName());
+      return pdfApplicationFile;
+    }).when(pdfGenerator).generate(anyString(), any(), any());
+    when(xmlGenerator.generate(any(), any(), any())).thenAnswer(invocation -> {
+      generatingThreads.add(Thread.currentThread().getName());
+      return new ApplicationFile("my xml".getBytes(), "someFile.xml");
+    });
+
+    documentConsumer.processCafAndCcap(application);
+
+    assertThat(generatingThreads).hasSize(2)
+        .allMatch(name -> name.startsWith("document-delivery-"));
   }
 
   @ParameterizedTest
@@ -189,13 +223,11 @@ class MnitDocumentConsumerTest {
 
     verify(pdfGenerator).generate(application.getId(), CAF, CASEWORKER);
     verify(xmlGenerator).generate(application.getId(), CAF, CASEWORKER);
-    verify(mnitClient, times(2)).send(any(), any(), any(), any(), any());
-    verify(mnitClient).send(pdfApplicationFile, countyMap.get(expectedCounty), application.getId(),
-        CAF,
-        FULL);
-    verify(mnitClient).send(xmlApplicationFile, countyMap.get(expectedCounty), application.getId(),
-        CAF,
-        FULL);
+    verify(mnitClient, times(2)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitClient).sendOnce(pdfApplicationFile, countyMap.get(expectedCounty),
+        application.getId(), CAF, FULL);
+    verify(mnitClient).sendOnce(xmlApplicationFile, countyMap.get(expectedCounty),
+        application.getId(), CAF, FULL);
   }
 
   @Test
@@ -215,10 +247,10 @@ class MnitDocumentConsumerTest {
 
     verify(pdfGenerator).generate(application.getId(), CAF, CASEWORKER);
     verify(xmlGenerator).generate(application.getId(), CAF, CASEWORKER);
-    verify(mnitClient, times(2)).send(any(), any(), any(), any(), any());
-    verify(mnitClient).send(pdfApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
+    verify(mnitClient, times(2)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitClient).sendOnce(pdfApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
         application.getId(), CAF, FULL);
-    verify(mnitClient).send(xmlApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
+    verify(mnitClient).sendOnce(xmlApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
         application.getId(), CAF, FULL);
   }
 
@@ -242,11 +274,11 @@ class MnitDocumentConsumerTest {
 
     verify(pdfGenerator).generate(application.getId(), CAF, CASEWORKER);
     verify(xmlGenerator).generate(application.getId(), CAF, CASEWORKER);
-    verify(mnitClient, times(2)).send(any(), any(), any(), any(), any());
-    verify(mnitClient).send(pdfApplicationFile, countyMap.get(Olmsted), application.getId(), CAF,
-        FULL);
-    verify(mnitClient).send(xmlApplicationFile, countyMap.get(Olmsted), application.getId(), CAF,
-        FULL);
+    verify(mnitClient, times(2)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitClient).sendOnce(pdfApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CAF, FULL);
+    verify(mnitClient).sendOnce(xmlApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CAF, FULL);
   }
 
   @Test
@@ -269,18 +301,18 @@ class MnitDocumentConsumerTest {
 
     verify(pdfGenerator).generate(application.getId(), CAF, CASEWORKER);
     verify(xmlGenerator).generate(application.getId(), CAF, CASEWORKER);
-    verify(mnitClient, times(5)).send(any(), any(), any(), any(), any());
-    verify(mnitClient).send(pdfApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
+    verify(mnitClient, times(5)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitClient).sendOnce(pdfApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
         application.getId(), CAF, FULL);
-    verify(mnitClient).send(xmlApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
+    verify(mnitClient).sendOnce(xmlApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
         application.getId(), CAF, FULL);
-    verify(mnitClient).send(pdfApplicationFile, countyMap.get(Olmsted), application.getId(), CAF,
-        FULL);
-    verify(mnitClient).send(xmlApplicationFile, countyMap.get(Olmsted), application.getId(), CAF,
-        FULL);
+    verify(mnitClient).sendOnce(pdfApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CAF, FULL);
+    verify(mnitClient).sendOnce(xmlApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CAF, FULL);
     // CCAP never goes to Mille Lacs
-    verify(mnitClient).send(pdfApplicationFile, countyMap.get(Olmsted), application.getId(), CCAP,
-        FULL);
+    verify(mnitClient).sendOnce(pdfApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CCAP, FULL);
   }
 
   @Test
@@ -302,11 +334,11 @@ class MnitDocumentConsumerTest {
     documentConsumer.processCafAndCcap(application);
 
     // Send CCAP and XML (but not CAF)
-    verify(mnitClient, times(2)).send(any(), any(), any(), any(), any());
-    verify(mnitClient).send(pdfApplicationFile, countyMap.get(Olmsted), application.getId(), CCAP,
-        FULL);
-    verify(mnitClient).send(xmlApplicationFile, countyMap.get(Olmsted), application.getId(), CAF,
-        FULL);
+    verify(mnitClient, times(2)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitClient).sendOnce(pdfApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CCAP, FULL);
+    verify(mnitClient).sendOnce(xmlApplicationFile, countyMap.get(Olmsted), application.getId(),
+        CAF, FULL);
   }
 
   @Test
@@ -326,13 +358,8 @@ class MnitDocumentConsumerTest {
   }
 
   @Test
-  void updatesStatusToDeliveryFailedForDocuments() {
-    ApplicationFile pdfApplicationFile = new ApplicationFile("my pdf".getBytes(), "someFile.pdf");
-    doReturn(pdfApplicationFile).when(pdfGenerator).generate(anyString(), eq(CCAP), any());
-
-    doThrow(new RuntimeException()).when(mnitClient)
-        .send(any(), any(), any(), eq(CCAP), any());
-    doNothing().when(mnitClient).send(any(), any(), any(), eq(CAF), any());
+  void updatesStatusToDeliveryFailedForDocumentsThatCannotBeGenerated() {
+    doThrow(new RuntimeException()).when(pdfGenerator).generate(anyString(), eq(CCAP), any());
 
     application.setApplicationData(new TestApplicationDataBuilder()
         .withApplicantPrograms(List.of("CCAP", "SNAP"))
@@ -348,6 +375,33 @@ class MnitDocumentConsumerTest {
         CCAP, DELIVERY_FAILED);
   }
 
+  @Test
+  void queuesDocumentsThatFailToSendForAnotherAttempt() {
+    jdbcTemplate.update("DELETE FROM delivery_outbox");
+    ApplicationFile pdfApplicationFile = new ApplicationFile("my pdf".getBytes(), "someFile.pdf");
+    doReturn(pdfApplicationFile).when(pdfGenerator).generate(anyString(), eq(CCAP), any());
+
+    doThrow(new RuntimeException()).when(mnitClient)
+        .sendOnce(any(), any(), any(), eq(CCAP), any());
+    doNothing().when(mnitClient).sendOnce(any(), any(), any(), eq(CAF), any());
+
+    application.setApplicationData(new TestApplicationDataBuilder()
+        .withApplicantPrograms(List.of("CCAP", "SNAP"))
+        .withPageData("homeAddress", "county", List.of("Olmsted"))
+        .build());
+
+    documentConsumer.processCafAndCcap(application);
+
+    verify(mnitClient, times(1)).sendOnce(any(), any(), any(), eq(CCAP), any());
+    verify(applicationRepository, never()).updateStatus(application.getId(), CCAP,
+        DELIVERY_FAILED);
+    assertThat(jdbcTemplate.queryForMap(
+        "SELECT document_type, attempts, leased_by FROM delivery_outbox"))
+        .containsEntry("document_type", "CCAP")
+        .containsEntry("attempts", 1)
+        .containsEntry("leased_by", null);
+  }
+
   @Test
   void sendsApplicationIdToMonitoringService() {
     documentConsumer.processCafAndCcap(application);
@@ -368,7 +422,7 @@ class MnitDocumentConsumerTest {
 
     ArgumentCaptor<ApplicationFile> captor = ArgumentCaptor.forClass(ApplicationFile.class);
     verify(mnitClient, times(2))
-        .send(captor.capture(), eq(countyMap.get(Olmsted)), eq(application.getId()),
+        .sendOnce(captor.capture(), eq(countyMap.get(Olmsted)), eq(application.getId()),
             eq(UPLOADED_DOC), any());
 
     // Uncomment the following line to regenerate the test files (useful if the files or cover page have changed)
@@ -380,6 +434,74 @@ class MnitDocumentConsumerTest {
         "test-uploaded-pdf-with-coverpage.pdf");
   }
 
+  @Test
+  void streamsUploadedDocumentsThroughScratchFilesWhenEnabled() throws IOException {
+    when(featureFlagConfig.get("stream-uploaded-documents")).thenReturn(FeatureFlag.ON);
+    mockDocUpload("shiba+file.jpg", "someS3FilePath", MediaType.IMAGE_JPEG_VALUE, "jpg");
+    mockDocUpload("test-uploaded-pdf.pdf", "pdfS3FilePath", MediaType.APPLICATION_PDF_VALUE, "pdf");
+    when(documentRepository.download(anyString(), any())).thenAnswer(invocation -> {
+      Files.write(invocation.getArgument(1), documentRepository.get(invocation.getArgument(0)));
+      return true;
+    });
+    when(fileNameGenerator.generateUploadedDocumentName(application, 0, "pdf"))
+        .thenReturn("pdf1of2.pdf");
+    when(fileNameGenerator.generateUploadedDocumentName(application, 1, "pdf"))
+        .thenReturn("pdf2of2.pdf");
+
+    // The scratch files are gone once processing is done, so read them while they're being sent
+    List<Path> sentPaths = new ArrayList<>();
+    List<byte[]> sentBytes = new ArrayList<>();
+    doAnswer(invocation -> {
+      ApplicationFile applicationFile = invocation.getArgument(0);
+      sentPaths.add(applicationFile.getFilePath());
+      sentBytes.add(applicationFile.getFileBytes());
+      return null;
+    }).when(mnitClient).sendOnce(any(), eq(countyMap.get(Olmsted)), eq(application.getId()),
+        eq(UPLOADED_DOC), any());
+
+    documentConsumer.processUploadedDocuments(application);
+
+    assertThat(sentPaths).hasSize(2).doesNotContainNull().noneMatch(Files::exists);
+    verifyGeneratedPdf(sentBytes.get(0), "shiba+file.pdf");
+    verifyGeneratedPdf(sentBytes.get(1), "test-uploaded-pdf-with-coverpage.pdf");
+  }
+
+  @Test
+  void recordsTheBytesSavedByConvertingUploadedImagesOncePerApplication() throws IOException {
+    when(featureFlagConfig.get("recompress-images")).thenReturn(FeatureFlag.ON);
+    byte[] photo = noisyPng(1700, 2200);
+    when(documentRepository.get("photoS3FilePath")).thenReturn(photo);
+    applicationData.addUploadedDoc(
+        new MockMultipartFile("someName", "photo.png", MediaType.IMAGE_PNG_VALUE, photo),
+        "photoS3FilePath", "someDataUrl", MediaType.IMAGE_PNG_VALUE);
+    mockDocUpload("test-uploaded-pdf.pdf", "pdfS3FilePath", MediaType.APPLICATION_PDF_VALUE, "pdf");
+    when(fileNameGenerator.generateUploadedDocumentName(eq(application), anyInt(), eq("pdf")))
+        .thenReturn("some-upload.pdf");
+    DistributionSummary bytesSaved = meterRegistry.get("uploaded.documents.image.bytes.saved")
+        .summary();
+    long countBefore = bytesSaved.count();
+    double totalBefore = bytesSaved.totalAmount();
+
+    documentConsumer.processUploadedDocuments(application);
+
+    assertThat(bytesSaved.count()).isEqualTo(countBefore + 1);
+    assertThat(bytesSaved.totalAmount() - totalBefore).isPositive();
+  }
+
+  @Test
+  void doesNotRecordBytesSavedWithoutUploadedImages() throws IOException {
+    mockDocUpload("test-uploaded-pdf.pdf", "pdfS3FilePath", MediaType.APPLICATION_PDF_VALUE, "pdf");
+    when(fileNameGenerator.generateUploadedDocumentName(application, 0, "pdf"))
+        .thenReturn("pdf1of1.pdf");
+    DistributionSummary bytesSaved = meterRegistry.get("uploaded.documents.image.bytes.saved")
+        .summary();
+    long countBefore = bytesSaved.count();
+
+    documentConsumer.processUploadedDocuments(application);
+
+    assertThat(bytesSaved.count()).isEqualTo(countBefore);
+  }
+
   @Test
   void uploadedDocumentDoesNotSendToMnitIfNull() {
     String uploadedDocFilename = "someName";
@@ -399,7 +521,7 @@ class MnitDocumentConsumerTest {
 
     documentConsumer.processUploadedDocuments(application);
 
-    verify(mnitClient, never()).send(any(), any(), any(), any(), any());
+    verify(mnitClient, never()).sendOnce(any(), any(), any(), any(), any());
   }
 
   @Test
@@ -425,14 +547,46 @@ class MnitDocumentConsumerTest {
     documentConsumer.processUploadedDocuments(application);
 
     // Assert that only email is sent for Hennepin and api for Mille Lacs
-    verify(mnitClient, times(1)).send(any(), any(), any(), any(), any());
-    verify(mnitClient, never()).send(any(), eq(countyMap.get(Hennepin)),
+    verify(mnitClient, times(1)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitClient, never()).sendOnce(any(), eq(countyMap.get(Hennepin)),
         eq(application.getId()), eq(UPLOADED_DOC), eq(FULL));
-    verify(mnitClient).send(any(), eq(tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE)),
+    verify(mnitClient).sendOnce(any(), eq(tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE)),
         eq(application.getId()), eq(UPLOADED_DOC), eq(FULL));
     verify(emailClient, times(1)).sendHennepinDocUploadsEmails(eq(application), any());
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  void pipelinedUploadedDocumentsAreSentToEveryDestinationInUploadOrder() throws IOException {
+    when(featureFlagConfig.get("pipeline-uploaded-documents")).thenReturn(FeatureFlag.ON);
+    application.setCounty(Hennepin);
+    new TestApplicationDataBuilder(application.getApplicationData())
+        .withApplicantPrograms(List.of("EA", "SNAP", "CCAP"))
+        .withPageData("identifyCounty", "county", Hennepin.name())
+        .withPageData("selectTheTribe", "selectedTribe", "Bois Forte")
+        .withPageData("homeAddress", "enrichedCounty", "Hennepin")
+        .withPageData("homeAddress", "county", "Hennepin");
+
+    mockDocUpload("shiba+file.jpg", "someS3FilePath", MediaType.IMAGE_JPEG_VALUE, "jpg");
+    mockDocUpload("test-uploaded-pdf.pdf", "pdfS3FilePath", MediaType.APPLICATION_PDF_VALUE, "pdf");
+    when(fileNameGenerator.generateUploadedDocumentName(application, 0, "pdf"))
+        .thenReturn("pdf1of2.pdf");
+    when(fileNameGenerator.generateUploadedDocumentName(application, 1, "pdf"))
+        .thenReturn("pdf2of2.pdf");
+
+    documentConsumer.processUploadedDocuments(application);
+
+    verify(mnitClient, times(2)).sendOnce(any(), eq(tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE)),
+        eq(application.getId()), eq(UPLOADED_DOC), eq(FULL));
+    verify(mnitClient, never()).sendOnce(any(), eq(countyMap.get(Hennepin)),
+        eq(application.getId()), eq(UPLOADED_DOC), eq(FULL));
+    ArgumentCaptor<List<ApplicationFile>> captor = ArgumentCaptor.forClass(List.class);
+    verify(emailClient).sendHennepinDocUploadsEmails(eq(application), captor.capture());
+    assertThat(captor.getValue()).extracting(ApplicationFile::getFileName)
+        .containsExactly("pdf1of2.pdf", "pdf2of2.pdf");
+    verify(applicationRepository).updateStatus(application.getId(), UPLOADED_DOC, DELIVERED);
+  }
+
   @Test
   void uploadedDocumentsAreSentToHennepinViaApiWhenFlagIsOff() throws IOException {
     application.setCounty(Hennepin);
@@ -449,8 +603,8 @@ class MnitDocumentConsumerTest {
     documentConsumer.processUploadedDocuments(application);
 
     // Assert that only api is sent for Hennepin
-    verify(mnitClient, times(1)).send(any(), any(), any(), any(), any());
-    verify(mnitClient).send(any(), eq(countyMap.get(Hennepin)), eq(application.getId()),
+    verify(mnitClient, times(1)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitClient).sendOnce(any(), eq(countyMap.get(Hennepin)), eq(application.getId()),
         eq(UPLOADED_DOC), eq(FULL));
     verify(emailClient, never()).sendHennepinDocUploadsEmails(eq(application), any());
   }
@@ -492,21 +646,18 @@ class MnitDocumentConsumerTest {
 
     documentConsumer.processCafAndCcap(application);
 
-    verify(mnitFilenetClient, times(5)).send(any(), any(), any(), any(), any());
-    verify(mnitFilenetClient).send(pdfApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
+    verify(mnitFilenetClient, times(5)).sendOnce(any(), any(), any(), any(), any());
+    verify(mnitFilenetClient).sendOnce(pdfApplicationFile,
+        tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE), application.getId(), CAF, FULL);
+    verify(mnitFilenetClient).sendOnce(xmlApplicationFile,
+        tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE), application.getId(), CAF, FULL);
+    verify(mnitFilenetClient).sendOnce(pdfApplicationFile, countyMap.get(Olmsted),
         application.getId(), CAF, FULL);
-    verify(mnitFilenetClient).send(xmlApplicationFile, tribalNations.get(MILLE_LACS_BAND_OF_OJIBWE),
+    verify(mnitFilenetClient).sendOnce(xmlApplicationFile, countyMap.get(Olmsted),
         application.getId(), CAF, FULL);
-    verify(mnitFilenetClient).send(pdfApplicationFile, countyMap.get(Olmsted), application.getId(),
-        CAF,
-        FULL);
-    verify(mnitFilenetClient).send(xmlApplicationFile, countyMap.get(Olmsted), application.getId(),
-        CAF,
-        FULL);
     // CCAP never goes to Mille Lacs
-    verify(mnitFilenetClient).send(pdfApplicationFile, countyMap.get(Olmsted), application.getId(),
-        CCAP,
-        FULL);
+    verify(mnitFilenetClient).sendOnce(pdfApplicationFile, countyMap.get(Olmsted),
+        application.getId(), CCAP, FULL);
     verifyNoInteractions(mnitClient);
   }
 
@@ -521,6 +672,19 @@ class MnitDocumentConsumerTest {
         contentType);
   }
 
+  private static byte[] noisyPng(int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(0);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt(0xffffff));
+      }
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", outputStream);
+    return outputStream.toByteArray();
+  }
+
   private void verifyGeneratedPdf(byte[] actualFileBytes, String expectedFile) throws IOException {
     try (var actual = new ByteArrayInputStream(actualFileBytes);
         var expected = Files.newInputStream(getAbsoluteFilepath(expectedFile))) {
@@ -0,0 +1,71 @@
+package org.codeforamerica.shiba.output;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.codeforamerica.shiba.output.ScratchSpace.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class ScratchSpaceTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void deletesFilesAndGivesBackTheirRoomWhenTheSessionCloses() throws IOException {
+    ScratchSpace scratchSpace = new ScratchSpace(directory, DataSize.ofKilobytes(10),
+        Duration.ZERO);
+
+    Path file;
+    try (Session session = scratchSpace.open()) {
+      assertThat(session.reserve(8 * 1024)).isTrue();
+      file = session.newFile(".pdf");
+      Files.write(file, new byte[8 * 1024]);
+
+      try (Session other = scratchSpace.open()) {
+        assertThat(other.reserve(4 * 1024)).isFalse();
+      }
+    }
+
+    assertThat(file).doesNotExist();
+    try (Session session = scratchSpace.open()) {
+      assertThat(session.reserve(10 * 1024)).isTrue();
+    }
+  }
+
+  @Test
+  void givesBackTheRoomOfFilesDeletedBeforeTheSessionCloses() throws IOException {
+    ScratchSpace scratchSpace = new ScratchSpace(directory, DataSize.ofKilobytes(10),
+        Duration.ZERO);
+
+    try (Session session = scratchSpace.open()) {
+      assertThat(session.reserve(8 * 1024)).isTrue();
+      Path file = session.newFile(".pdf");
+      Files.write(file, new byte[8 * 1024]);
+      session.delete(file);
+
+      try (Session other = scratchSpace.open()) {
+        assertThat(other.reserve(8 * 1024)).isTrue();
+      }
+      assertThat(session.reserve(8 * 1024)).isTrue();
+    }
+  }
+
+  @Test
+  void doesNotWaitForRoomTheSessionItselfHolds() {
+    ScratchSpace scratchSpace = new ScratchSpace(directory, DataSize.ofKilobytes(10),
+        Duration.ofMinutes(1));
+
+    try (Session session = scratchSpace.open()) {
+      assertThat(session.reserve(8 * 1024)).isTrue();
+      assertTimeoutPreemptively(Duration.ofSeconds(5),
+          () -> assertThat(session.reserve(4 * 1024)).isFalse());
+    }
+  }
+}
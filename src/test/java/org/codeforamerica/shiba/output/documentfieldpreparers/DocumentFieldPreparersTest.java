@@ -7,6 +7,7 @@ import static org.codeforamerica.shiba.output.Recipient.CLIENT;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -15,16 +16,19 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
 import org.codeforamerica.shiba.County;
 import org.codeforamerica.shiba.application.Application;
 import org.codeforamerica.shiba.output.DocumentField;
 import org.codeforamerica.shiba.output.Document;
+import org.codeforamerica.shiba.output.documentfieldpreparers.DocumentFieldPreparer.DependsOn;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.junit.jupiter.api.Test;
 
 class DocumentFieldPreparersTest {
 
-  private final DocumentFieldPreparers preparers = new DocumentFieldPreparers(List.of());
+  private final DocumentFieldPreparers preparers = new DocumentFieldPreparers(List.of(), Map.of(),
+      0);
 
   @Test
   void shouldIncludeApplicationIdInput() {
@@ -107,9 +111,10 @@ class DocumentFieldPreparersTest {
   @Test
   void shouldUseMatchingRecipientAndDocumentForPreparers() {
     DocumentFieldPreparer preparer = mock(DocumentFieldPreparer.class);
+    when(preparer.dependsOn()).thenReturn(DependsOn.DOCUMENT_AND_RECIPIENT);
 
     DocumentFieldPreparers documentFieldPreparers = new DocumentFieldPreparers(
-        List.of(preparer));
+        List.of(preparer), Map.of(), 0);
 
     Application application = Application.builder()
         .id("someId")
@@ -128,8 +133,10 @@ class DocumentFieldPreparersTest {
   void shouldStillSuccessfullyMapEvenWithExceptionsInIndividualPreparers() {
     DocumentFieldPreparer successfulPreparer = mock(DocumentFieldPreparer.class);
     DocumentFieldPreparer failingPreparer = mock(DocumentFieldPreparer.class);
+    when(successfulPreparer.dependsOn()).thenReturn(DependsOn.DOCUMENT_AND_RECIPIENT);
+    when(failingPreparer.dependsOn()).thenReturn(DependsOn.DOCUMENT_AND_RECIPIENT);
     DocumentFieldPreparers documentFieldPreparers = new DocumentFieldPreparers(
-        List.of(failingPreparer, successfulPreparer));
+        List.of(failingPreparer, successfulPreparer), Map.of(), 0);
     Application application = Application.builder()
         .id("someId")
         .completedAt(ZonedDateTime.now())
@@ -155,4 +162,50 @@ class DocumentFieldPreparersTest {
     verify(failingPreparer).prepareDocumentFields(eq(application), eq(Document.CAF), eq(CASEWORKER),
         any());
   }
+
+  @Test
+  void shouldPrepareFieldsOncePerVersionOfAnApplication() {
+    DocumentFieldPreparer applicationPreparer = mock(DocumentFieldPreparer.class);
+    DocumentFieldPreparer documentPreparer = mock(DocumentFieldPreparer.class);
+    when(applicationPreparer.dependsOn()).thenReturn(DependsOn.APPLICATION);
+    when(documentPreparer.dependsOn()).thenReturn(DependsOn.DOCUMENT);
+    when(applicationPreparer.prepareDocumentFields(any(), any(), any(), any())).thenReturn(
+        List.of(new DocumentField("group", "ssn", List.of("123-45-6789"), SINGLE_VALUE)));
+    when(documentPreparer.prepareDocumentFields(any(), any(), any(), any())).thenReturn(
+        List.of(new DocumentField("group", "name", List.of("value"), SINGLE_VALUE)));
+    DocumentFieldPreparers documentFieldPreparers = new DocumentFieldPreparers(
+        List.of(applicationPreparer, documentPreparer), Map.of("ssn", "XXX-XX-XXXX"), 10);
+    Application application = Application.builder()
+        .id("someId")
+        .completedAt(ZonedDateTime.now())
+        .updatedAt(ZonedDateTime.now())
+        .dataVersion(1L)
+        .applicationData(new ApplicationData())
+        .county(County.Olmsted)
+        .timeToComplete(null)
+        .build();
+
+    documentFieldPreparers.prepareDocumentFields(application, Document.CAF, CASEWORKER);
+    documentFieldPreparers.prepareDocumentFields(application, Document.CCAP, CASEWORKER);
+    List<DocumentField> clientFields = documentFieldPreparers
+        .prepareDocumentFields(application, Document.CAF, CLIENT);
+
+    verify(applicationPreparer, times(1)).prepareDocumentFields(any(), any(), any(), any());
+    verify(documentPreparer).prepareDocumentFields(eq(application), eq(Document.CAF), any(),
+        any());
+    verify(documentPreparer).prepareDocumentFields(eq(application), eq(Document.CCAP), any(),
+        any());
+    assertThat(clientFields).contains(
+        new DocumentField("group", "ssn", List.of("XXX-XX-XXXX"), SINGLE_VALUE),
+        new DocumentField("group", "name", List.of("value"), SINGLE_VALUE));
+
+    // A status update changes updated_at but not the data
+    application.setUpdatedAt(application.getUpdatedAt().plusSeconds(1));
+    documentFieldPreparers.prepareDocumentFields(application, Document.CAF, CASEWORKER);
+    verify(applicationPreparer, times(1)).prepareDocumentFields(any(), any(), any(), any());
+
+    application.setDataVersion(2L);
+    documentFieldPreparers.prepareDocumentFields(application, Document.CAF, CASEWORKER);
+    verify(applicationPreparer, times(2)).prepareDocumentFields(any(), any(), any(), any());
+  }
 }
@@ -22,7 +22,7 @@ class OneToOneDocumentFieldPreparerTest {
 
   ApplicationConfiguration applicationConfiguration = new ApplicationConfiguration();
   OneToOneDocumentFieldPreparer preparer = new OneToOneDocumentFieldPreparer(
-      applicationConfiguration, Map.of());
+      applicationConfiguration);
 
   @Test
   void shouldProduceAnApplicationInputForAFormInput() {
@@ -61,9 +61,10 @@ class OneToOneDocumentFieldPreparerTest {
     String input1Name = "input 1";
     String maskedValue = "not-for-your-eyes";
 
-    OneToOneDocumentFieldPreparer preparer =
-        new OneToOneDocumentFieldPreparer(applicationConfiguration,
-            Map.of(input1Name, maskedValue));
+    // Personal data is masked once every preparer has run
+    DocumentFieldPreparers preparers = new DocumentFieldPreparers(
+        List.of(new OneToOneDocumentFieldPreparer(applicationConfiguration)),
+        Map.of(input1Name, maskedValue), 0);
 
     FormInput input1 = new FormInput();
     input1.setName(input1Name);
@@ -86,8 +87,8 @@ class OneToOneDocumentFieldPreparerTest {
         .timeToComplete(null)
         .build();
 
-    List<DocumentField> documentFields = preparer
-        .prepareDocumentFields(application, null, Recipient.CLIENT, null);
+    List<DocumentField> documentFields = preparers
+        .prepareDocumentFields(application, null, Recipient.CLIENT);
 
     assertThat(documentFields)
         .contains(new DocumentField(pageName, input1Name, List.of(maskedValue),
@@ -99,9 +100,10 @@ class OneToOneDocumentFieldPreparerTest {
     String input1Name = "input 1";
     String maskedValue = "not-for-your-eyes";
 
-    OneToOneDocumentFieldPreparer preparer =
-        new OneToOneDocumentFieldPreparer(applicationConfiguration,
-            Map.of(input1Name, maskedValue));
+    // Personal data is masked once every preparer has run
+    DocumentFieldPreparers preparers = new DocumentFieldPreparers(
+        List.of(new OneToOneDocumentFieldPreparer(applicationConfiguration)),
+        Map.of(input1Name, maskedValue), 0);
 
     FormInput input1 = new FormInput();
     input1.setName(input1Name);
@@ -124,8 +126,8 @@ class OneToOneDocumentFieldPreparerTest {
         .timeToComplete(null)
         .build();
 
-    List<DocumentField> documentFields = preparer
-        .prepareDocumentFields(application, null, Recipient.CLIENT, null);
+    List<DocumentField> documentFields = preparers
+        .prepareDocumentFields(application, null, Recipient.CLIENT);
 
     assertThat(documentFields)
         .contains(new DocumentField(pageName, input1Name, List.of(""),
@@ -136,9 +138,10 @@ class OneToOneDocumentFieldPreparerTest {
   void shouldProduceAnApplicationInput_withUnmaskedValueForAFormInputWithPersonalData_whenRecipientIsCaseworker() {
     String input1Name = "input 1";
 
-    OneToOneDocumentFieldPreparer preparer =
-        new OneToOneDocumentFieldPreparer(applicationConfiguration,
-            Map.of(input1Name, "not-for-your-eyes"));
+    // Personal data is masked once every preparer has run
+    DocumentFieldPreparers preparers = new DocumentFieldPreparers(
+        List.of(new OneToOneDocumentFieldPreparer(applicationConfiguration)),
+        Map.of(input1Name, "not-for-your-eyes"), 0);
 
     FormInput input1 = new FormInput();
     input1.setName(input1Name);
@@ -162,8 +165,8 @@ class OneToOneDocumentFieldPreparerTest {
         .timeToComplete(null)
         .build();
 
-    List<DocumentField> documentFields = preparer
-        .prepareDocumentFields(application, null, Recipient.CASEWORKER, null);
+    List<DocumentField> documentFields = preparers
+        .prepareDocumentFields(application, null, Recipient.CASEWORKER);
 
     assertThat(documentFields).contains(
         new DocumentField(pageName, input1Name, input1Value, DocumentFieldType.SINGLE_VALUE)
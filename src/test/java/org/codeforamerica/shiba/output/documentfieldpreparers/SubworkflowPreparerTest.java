@@ -30,7 +30,7 @@ class SubworkflowPreparerTest {
   private final Subworkflows subworkflows = new Subworkflows();
   private final ApplicationConfiguration applicationConfiguration = new ApplicationConfiguration();
   SubworkflowPreparer subworkflowPreparer = new SubworkflowPreparer(
-      applicationConfiguration, Map.of());
+      applicationConfiguration);
 
   @Test
   void shouldNameSpaceValuesFromEachIteration() {
@@ -0,0 +1,136 @@
+package org.codeforamerica.shiba.output.pdf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageToPdfConverterTest {
+
+  private final FeatureFlagConfiguration featureFlags = mock(FeatureFlagConfiguration.class);
+  private final ImageToPdfConverter converter = new ImageToPdfConverter(featureFlags, 100, 0.8f);
+
+  @Test
+  void keepsImagesAtFullSizeWhenRecompressionIsOff() throws Exception {
+    byte[] pdf = converter.convert(image(1700, 2200, "png"), "photo.png");
+
+    assertThat(imageSize(pdf)).isEqualTo(new Dimension(1700, 2200));
+  }
+
+  @Test
+  void scalesImagesDownToTheConfiguredResolutionWhenRecompressionIsOn() throws Exception {
+    byte[] photo = noisyImage(1700, 2200);
+    byte[] lossless = converter.convert(photo, "photo.png");
+    when(featureFlags.get("recompress-images")).thenReturn(FeatureFlag.ON);
+
+    byte[] pdf = converter.convert(photo, "photo.png");
+
+    // A letter page at 100 DPI is 850 by 1100 pixels
+    assertThat(imageSize(pdf)).isEqualTo(new Dimension(850, 1100));
+    assertThat(pdf.length).isLessThan(lossless.length);
+  }
+
+  @Test
+  void convertsImagesOnDisk(@TempDir Path tempDir) throws Exception {
+    when(featureFlags.get("recompress-images")).thenReturn(FeatureFlag.ON);
+    Path photo = tempDir.resolve("photo.jpg");
+    Files.write(photo, image(3000, 4000, "jpg"));
+    Path destination = tempDir.resolve("photo.pdf");
+
+    converter.convert(photo, destination, MemoryUsageSetting.setupMainMemoryOnly());
+
+    assertThat(imageSize(Files.readAllBytes(destination))).isEqualTo(new Dimension(825, 1100));
+  }
+
+  @Test
+  void embedsJpegsImageIoCannotDecodeAsTheyAre() throws Exception {
+    when(featureFlags.get("recompress-images")).thenReturn(FeatureFlag.ON);
+    byte[] cmyk = undecodableCmykJpeg(40, 30);
+    assertThatThrownBy(() -> ImageIO.read(new ByteArrayInputStream(cmyk)))
+        .isInstanceOf(IIOException.class);
+
+    byte[] pdf = converter.convert(cmyk, "photo.jpg");
+
+    assertThat(imageSize(pdf)).isEqualTo(new Dimension(40, 30));
+  }
+
+  private static Dimension imageSize(byte[] pdf) throws IOException {
+    try (PDDocument doc = PDDocument.load(pdf)) {
+      assertThat(doc.getNumberOfPages()).isEqualTo(1);
+      PDPage page = doc.getPage(0);
+      PDImageXObject image = (PDImageXObject) page.getResources()
+          .getXObject(page.getResources().getXObjectNames().iterator().next());
+      return new Dimension(image.getWidth(), image.getHeight());
+    }
+  }
+
+  private static byte[] image(int width, int height, String format) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format,
+        outputStream);
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * A four-component JPEG with an Adobe segment saying it was color transformed, the way some
+   * scanners write CMYK, which ImageIO won't decode.
+   */
+  private static byte[] undecodableCmykJpeg(int width, int height) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ByteArrayOutputStream plain = new ByteArrayOutputStream();
+    try (ImageOutputStream outputStream = ImageIO.createImageOutputStream(plain)) {
+      writer.setOutput(outputStream);
+      writer.write(null, new IIOImage(
+          Raster.createBandedRaster(DataBuffer.TYPE_BYTE, width, height, 4, null), null, null),
+          null);
+    } finally {
+      writer.dispose();
+    }
+    byte[] jpeg = plain.toByteArray();
+    byte[] adobe = {(byte) 0xff, (byte) 0xee, 0, 14, 'A', 'd', 'o', 'b', 'e', 0, 100, 0, 0, 0, 0,
+        1};
+    ByteArrayOutputStream transformed = new ByteArrayOutputStream();
+    // Right after the start of image marker
+    transformed.write(jpeg, 0, 2);
+    transformed.write(adobe);
+    transformed.write(jpeg, 2, jpeg.length - 2);
+    return transformed.toByteArray();
+  }
+
+  private static byte[] noisyImage(int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(0);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt(0xffffff));
+      }
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", outputStream);
+    return outputStream.toByteArray();
+  }
+}
@@ -40,6 +40,16 @@ class PDFBoxFieldFillerTest {
     assertThat(acroForm.getField("TEXT_FIELD").getValueAsString()).isEqualTo(expectedFieldValue);
   }
 
+  @Test
+  void shouldNotCarryFieldValuesOverBetweenFills() throws IOException {
+    PDFBoxFieldFiller.fill(List.of(new SimplePdfField("TEXT_FIELD", "Michael")), "", "");
+
+    ApplicationFile applicationFile = PDFBoxFieldFiller.fill(emptyList(), "", "");
+
+    PDAcroForm acroForm = getPdAcroForm(applicationFile);
+    assertThat(acroForm.getField("TEXT_FIELD").getValueAsString()).isEqualTo("");
+  }
+
   @Test
   void shouldSetTheAppropriateNonValueForTheFieldType() throws IOException {
     Collection<PdfField> fields = List.of(
@@ -5,9 +5,13 @@ import static org.codeforamerica.shiba.output.Recipient.CASEWORKER;
 import static org.codeforamerica.shiba.output.Recipient.CLIENT;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import org.codeforamerica.shiba.application.Application;
@@ -20,6 +24,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.util.unit.DataSize;
 
 class PdfGeneratorTest {
 
@@ -31,6 +36,7 @@ class PdfGeneratorTest {
   private DocumentFieldPreparers preparers;
   private FilenameGenerator fileNameGenerator;
   private Map<Recipient, Map<Document, PdfFieldFiller>> pdfFieldFillers;
+  private ApplicationRepository applicationRepository;
 
   @BeforeEach
   void setUp() {
@@ -39,7 +45,7 @@ class PdfGeneratorTest {
     PdfFieldFiller clientFiller = mock(PdfFieldFiller.class);
     PdfFieldFiller ccapFiller = mock(PdfFieldFiller.class);
     preparers = mock(DocumentFieldPreparers.class);
-    ApplicationRepository applicationRepository = mock(ApplicationRepository.class);
+    applicationRepository = mock(ApplicationRepository.class);
     fileNameGenerator = mock(FilenameGenerator.class);
 
     pdfFieldFillers = Map.of(
@@ -60,7 +66,11 @@ class PdfGeneratorTest {
         applicationRepository,
         null,
         preparers,
-        fileNameGenerator);
+        fileNameGenerator,
+        new GeneratedDocumentCache(null, DataSize.ofMegabytes(1), false, 0, Duration.ofHours(1),
+            Clock.systemUTC(), new SimpleMeterRegistry()),
+        null,
+        null);
     when(applicationRepository.find(applicationId)).thenReturn(application);
   }
 
@@ -93,4 +103,19 @@ class PdfGeneratorTest {
     pdfGenerator.generate(applicationId, Document.CAF, recipient);
     verify(pdfFieldFillers.get(recipient).get(Document.CAF)).fill(any(), any(), any());
   }
+
+  @Test
+  void shouldReuseTheDocumentUntilTheApplicationIsSaved() {
+    when(caseworkerFiller.fill(any(), any(), any()))
+        .thenReturn(new ApplicationFile("someContent".getBytes(), "someFileName"));
+    when(applicationRepository.findDataVersion(applicationId)).thenReturn(1L);
+
+    pdfGenerator.generate(applicationId, Document.CAF, CASEWORKER);
+    pdfGenerator.generate(applicationId, Document.CAF, CASEWORKER);
+    verify(caseworkerFiller, times(1)).fill(any(), any(), any());
+
+    when(applicationRepository.findDataVersion(applicationId)).thenReturn(2L);
+    pdfGenerator.generate(applicationId, Document.CAF, CASEWORKER);
+    verify(caseworkerFiller, times(2)).fill(any(), any(), any());
+  }
 }
@@ -0,0 +1,134 @@
+package org.codeforamerica.shiba.output.pdf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.codeforamerica.shiba.DocumentRepositoryTestConfig.LocalFilesystemDocumentRepository;
+import org.codeforamerica.shiba.documents.DocumentRepository;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
+import org.codeforamerica.shiba.pages.data.UploadedDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UploadedDocumentNormalizerTest {
+
+  private final FeatureFlagConfiguration featureFlags = mock(FeatureFlagConfiguration.class);
+  private LocalFilesystemDocumentRepository documentRepository;
+  private UploadedDocumentNormalizer normalizer;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    documentRepository = new LocalFilesystemDocumentRepository();
+    normalizer = new UploadedDocumentNormalizer(documentRepository, featureFlags,
+        new ImageToPdfConverter(featureFlags, 100, 0.8f));
+    when(featureFlags.get("normalize-uploads")).thenReturn(FeatureFlag.ON);
+  }
+
+  @Test
+  void storesOversizedPhotosAsAScaledDownPdf() throws Exception {
+    UploadedDocument photo = upload("photo.jpg", image(3000, 4000, "jpg"));
+
+    normalizer.normalize(photo);
+
+    byte[] normalized = normalizer.getNormalized(photo);
+    assertThat(normalized).isNotNull();
+    try (PDDocument pdf = PDDocument.load(normalized)) {
+      assertThat(pdf.getNumberOfPages()).isEqualTo(1);
+      PDImageXObject image = (PDImageXObject) pdf.getPage(0).getResources().getXObject(
+          pdf.getPage(0).getResources().getXObjectNames().iterator().next());
+      // A letter page at 100 DPI is 850 by 1100 pixels
+      assertThat(image.getWidth()).isEqualTo(825);
+      assertThat(image.getHeight()).isEqualTo(1100);
+    }
+  }
+
+  @Test
+  void keepsSmallImagesAtTheirSize() throws Exception {
+    UploadedDocument image = upload("image.png", image(200, 100, "png"));
+
+    normalizer.normalize(image);
+
+    try (PDDocument pdf = PDDocument.load(normalizer.getNormalized(image))) {
+      PDImageXObject pdfImage = (PDImageXObject) pdf.getPage(0).getResources().getXObject(
+          pdf.getPage(0).getResources().getXObjectNames().iterator().next());
+      assertThat(pdfImage.getWidth()).isEqualTo(200);
+    }
+  }
+
+  @Test
+  void leavesUploadsAloneWhenTurnedOff() throws Exception {
+    when(featureFlags.get("normalize-uploads")).thenReturn(FeatureFlag.OFF);
+    UploadedDocument photo = upload("photo.jpg", image(300, 400, "jpg"));
+
+    normalizer.normalize(photo);
+
+    assertThat(documentRepository.get(UploadedDocumentNormalizer.normalizedFilepath(photo)))
+        .isEmpty();
+    assertThat(normalizer.getNormalized(photo)).isNull();
+  }
+
+  @Test
+  void doesNotReadThePdfUntilItHasBeenStored() {
+    DocumentRepository repository = mock(DocumentRepository.class);
+    UploadedDocumentNormalizer normalizer = new UploadedDocumentNormalizer(repository,
+        featureFlags, new ImageToPdfConverter(featureFlags, 100, 0.8f));
+    UploadedDocument photo = new UploadedDocument("photo.jpg", "someId/photo.jpg", null, "", 10);
+
+    assertThat(normalizer.getNormalized(photo)).isNull();
+    assertThat(normalizer.downloadNormalized(photo, Path.of("photo.pdf"))).isFalse();
+    verify(repository, never()).get(anyString());
+    verify(repository, never()).download(anyString(), any(Path.class));
+  }
+
+  @Test
+  void deletesThePdfOfAnUploadRemovedWhileItWasConverted() throws Exception {
+    DocumentRepository repository = mock(DocumentRepository.class);
+    UploadedDocumentNormalizer normalizer = new UploadedDocumentNormalizer(repository,
+        featureFlags, new ImageToPdfConverter(featureFlags, 100, 0.8f));
+    UploadedDocument photo = new UploadedDocument("photo.jpg", "someId/photo.jpg", null, "", 10);
+    when(repository.get("someId/photo.jpg")).thenReturn(image(300, 400, "jpg"));
+    when(repository.exists("someId/photo.jpg")).thenReturn(false);
+
+    normalizer.normalize(photo);
+
+    verify(repository).upload(eq(UploadedDocumentNormalizer.normalizedFilepath(photo)),
+        any(byte[].class));
+    verify(repository).delete(UploadedDocumentNormalizer.normalizedFilepath(photo));
+  }
+
+  @Test
+  void leavesPdfsAlone() throws Exception {
+    UploadedDocument pdf = upload("document.pdf", "%PDF-1.4".getBytes());
+
+    normalizer.normalize(pdf);
+
+    assertThat(documentRepository.get(UploadedDocumentNormalizer.normalizedFilepath(pdf)))
+        .isEmpty();
+  }
+
+  private UploadedDocument upload(String filename, byte[] contents) throws Exception {
+    documentRepository.upload("someId/" + filename, contents);
+    return new UploadedDocument(filename, "someId/" + filename, null, "", contents.length);
+  }
+
+  private static byte[] image(int width, int height, String format) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format,
+        outputStream);
+    return outputStream.toByteArray();
+  }
+}
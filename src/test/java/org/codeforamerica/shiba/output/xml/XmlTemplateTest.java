@@ -0,0 +1,49 @@
+package org.codeforamerica.shiba.output.xml;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class XmlTemplateTest {
+
+  private final XmlTemplate template = XmlTemplate.parse("""
+      <ns:Root>
+          <ns:Name>{{FIRST_NAME}}</ns:Name>
+          <ns:Line>{{STREET}} {{APARTMENT}}</ns:Line>
+          <ns:Ssn>{{SSN}}</ns:Ssn>
+      </ns:Root>""");
+
+  @Test
+  void fillsTokensWithTheirValues() {
+    byte[] xml = template.render(Map.of(
+        "FIRST_NAME", "Jane",
+        "STREET", "123 Main St",
+        "APARTMENT", "2B",
+        "SSN", "123-45-6789"));
+
+    assertThat(new String(xml)).isEqualTo("""
+        <ns:Root>
+            <ns:Name>Jane</ns:Name>
+            <ns:Line>123 Main St 2B</ns:Line>
+            <ns:Ssn>123-45-6789</ns:Ssn>
+        </ns:Root>""");
+  }
+
+  @Test
+  void leavesOutElementsWhoseOnlyTokenHasNoValue() {
+    byte[] xml = template.render(Map.of("STREET", "123 Main St", "APARTMENT", "2B"));
+
+    assertThat(new String(xml)).isEqualTo("""
+        <ns:Root>
+            <ns:Line>123 Main St 2B</ns:Line>
+        </ns:Root>""");
+  }
+
+  @Test
+  void writesValuesLiterally() {
+    byte[] xml = template.render(Map.of("FIRST_NAME", "$1 {{SSN}} \\"));
+
+    assertThat(new String(xml)).contains("<ns:Name>$1 {{SSN}} \\</ns:Name>");
+  }
+}
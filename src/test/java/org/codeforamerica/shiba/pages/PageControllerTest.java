@@ -19,7 +19,9 @@ import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.MOCK;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -29,8 +31,11 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.codeforamerica.shiba.DocumentRepositoryTestConfig;
 import org.codeforamerica.shiba.TribalNationRoutingDestination;
 import org.codeforamerica.shiba.application.Application;
@@ -42,7 +47,9 @@ import org.codeforamerica.shiba.mnit.CountyRoutingDestination;
 import org.codeforamerica.shiba.pages.config.FeatureFlag;
 import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
+import org.codeforamerica.shiba.pages.data.InputData;
 import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.enrichment.DeferrableEnrichment;
 import org.codeforamerica.shiba.pages.events.ApplicationSubmittedEvent;
 import org.codeforamerica.shiba.pages.events.PageEventPublisher;
 import org.codeforamerica.shiba.pages.events.UploadedDocumentsSubmittedEvent;
@@ -57,12 +64,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -70,7 +79,8 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 @ActiveProfiles("test")
 @SpringBootTest(
     webEnvironment = MOCK,
-    properties = {"pagesConfig=pages-config/test-pages-controller.yaml"})
+    properties = {"pagesConfig=pages-config/test-pages-controller.yaml",
+        "enrichment.deadline=200ms"})
 @ContextConfiguration(classes = {NonSessionScopedApplicationData.class,
     DocumentRepositoryTestConfig.class})
 class PageControllerTest {
@@ -93,6 +103,8 @@ class PageControllerTest {
   private RoutingDecisionService routingDecisionService;
   @SpyBean
   private DocumentRepository documentRepository;
+  @MockBean(name = "testDeferrableEnrichment")
+  private DeferrableEnrichment deferrableEnrichment;
 
   @Autowired
   private PageController pageController;
@@ -255,7 +267,7 @@ class PageControllerTest {
         .param("foo[]", "some value")
         .contentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE));
 
-    verify(applicationRepository).save(application);
+    verify(applicationRepository).saveInProgress(application);
     assertThat(applicationData.getId()).isEqualTo(applicationId);
   }
 
@@ -480,6 +492,53 @@ class PageControllerTest {
     mockMvc.perform(get("/pages/uploadDocuments")).andExpect(status().isOk());
   }
 
+  @Test
+  void shouldStoreThumbnailsAsImagesAndServeThemByPath() throws Exception {
+    applicationData.setId("someId");
+    MockHttpSession session = new MockHttpSession(null, "someSessionId");
+
+    mockMvc.perform(
+            MockMvcRequestBuilders.multipart("/document-upload")
+                .file(new MockMultipartFile("file", "someImage.jpg", MediaType.IMAGE_JPEG_VALUE,
+                    "something".getBytes()))
+                .param("dataURL", "data:image/png;base64,AAEC")
+                .param("type", "image/jpeg")
+                .session(session))
+        .andExpect(status().is(200));
+    String thumbnailFilepath = applicationData.getUploadedDocs().get(0).getThumbnailFilepath();
+    verify(documentRepository).upload(thumbnailFilepath, new byte[]{0, 1, 2});
+
+    MvcResult result = mockMvc.perform(get("/document-thumbnail")
+            .param("path", thumbnailFilepath)
+            .session(session))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType("image/png"))
+        .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+        .andReturn();
+    assertThat(result.getResponse().getContentAsByteArray()).containsExactly(0, 1, 2);
+
+    mockMvc.perform(get("/document-thumbnail")
+            .param("path", thumbnailFilepath)
+            .header(HttpHeaders.IF_NONE_MATCH, result.getResponse().getHeader(HttpHeaders.ETAG))
+            .session(session))
+        .andExpect(status().isNotModified());
+  }
+
+  @Test
+  void shouldReturnNotFoundForMissingThumbnails() throws Exception {
+    applicationData.setId("someId");
+    applicationData.addUploadedDoc(new MockMultipartFile("image", "someImage.jpg",
+            MediaType.IMAGE_JPEG_VALUE, "test".getBytes()), "someS3FilePath",
+        "someThumbnailFilepath", "image/jpeg");
+    when(documentRepository.get(any())).thenThrow(RuntimeException.class);
+
+    mockMvc.perform(get("/document-thumbnail").param("path", "someThumbnailFilepath"))
+        .andExpect(status().isNotFound());
+    mockMvc.perform(get("/document-thumbnail").param("path", "someOtherThumbnailFilepath"))
+        .andExpect(status().isNotFound());
+    verify(documentRepository, never()).get("someOtherThumbnailFilepath");
+  }
+
   /**
    * If an applicant completes and application and wants to submit a second application from the
    * same device then they should be able to navigate back to the beginning of the application and
@@ -519,4 +578,71 @@ class PageControllerTest {
 
     mockMvc.perform(get("/pages/doesNotExist")).andExpect(redirectedUrl("/error"));
   }
+
+  @Test
+  void startsDeferrableEnrichmentsAndWaitsForThemWhenTheNextPageIsPosted() throws Exception {
+    when(featureFlags.get("async-address-enrichment")).thenReturn(FeatureFlag.ON);
+    when(deferrableEnrichment.processAsync(any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(enriched("validated")));
+    when(deferrableEnrichment.fallback(any())).thenReturn(enriched("fallback"));
+    MockHttpSession session = new MockHttpSession();
+
+    postPage(session, "addressPage", "street", "123 Main St");
+
+    assertThat(session.getAttribute("pendingEnrichments"))
+        .isEqualTo(Map.of("addressPage", "testDeferrableEnrichment"));
+    assertThat(applicationData.getPagesData().getPage("addressPage").get("enrichedStreet"))
+        .isNull();
+
+    postPage(session, "nextPage", "foo", "bar");
+
+    assertThat(session.getAttribute("pendingEnrichments")).isEqualTo(Map.of());
+    assertThat(applicationData.getPagesData().getPage("addressPage").get("enrichedStreet")
+        .getValue()).containsExactly("validated");
+    verify(deferrableEnrichment, never()).process(any());
+  }
+
+  @Test
+  void usesTheFallbackOfEnrichmentsThatDoNotFinishInTime() throws Exception {
+    when(featureFlags.get("async-address-enrichment")).thenReturn(FeatureFlag.ON);
+    when(deferrableEnrichment.processAsync(any(), any())).thenReturn(new CompletableFuture<>());
+    when(deferrableEnrichment.fallback(any())).thenReturn(enriched("fallback"));
+    MockHttpSession session = new MockHttpSession();
+
+    postPage(session, "addressPage", "street", "123 Main St");
+    postPage(session, "nextPage", "foo", "bar");
+
+    assertThat(session.getAttribute("pendingEnrichments")).isEqualTo(Map.of());
+    assertThat(applicationData.getPagesData().getPage("addressPage").get("enrichedStreet")
+        .getValue()).containsExactly("fallback");
+  }
+
+  @Test
+  void enrichesPagesWhoseEnrichmentWasStartedOnAnotherInstance() throws Exception {
+    when(deferrableEnrichment.process(any())).thenReturn(enriched("validated"));
+    applicationData.getPagesData().putPage("addressPage", new PageData(
+        Map.of("street", new InputData(List.of("123 Main St")))));
+    MockHttpSession session = new MockHttpSession();
+    session.setAttribute("pendingEnrichments",
+        new HashMap<>(Map.of("addressPage", "testDeferrableEnrichment")));
+
+    postPage(session, "nextPage", "foo", "bar");
+
+    assertThat(session.getAttribute("pendingEnrichments")).isEqualTo(Map.of());
+    assertThat(applicationData.getPagesData().getPage("addressPage").get("enrichedStreet")
+        .getValue()).containsExactly("validated");
+  }
+
+  private void postPage(MockHttpSession session, String pageName, String inputName,
+      String value) throws Exception {
+    mockMvc.perform(post("/pages/" + pageName)
+            .session(session)
+            .param(inputName + "[]", value)
+            .contentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE))
+        .andExpect(redirectedUrl("/pages/" + pageName + "/navigation"));
+  }
+
+  private static PageData enriched(String street) {
+    return new PageData(Map.of("enrichedStreet", new InputData(List.of(street))));
+  }
 }
@@ -0,0 +1,36 @@
+package org.codeforamerica.shiba.pages.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ApplicationConfigurationTest {
+
+  @Test
+  void indexesPagesAndInputsByName() {
+    FormInput followUp = new FormInput();
+    followUp.setName("followUp");
+    FormInput input = new FormInput();
+    input.setName("input");
+    input.setType(FormInputType.RADIO);
+    input.setFollowUps(List.of(followUp));
+    PageConfiguration page = new PageConfiguration();
+    page.setName("page");
+    page.setInputs(List.of(input));
+    PageConfiguration duplicatePage = new PageConfiguration();
+    duplicatePage.setName("page");
+
+    ApplicationConfiguration applicationConfiguration = new ApplicationConfiguration();
+    applicationConfiguration.setPageDefinitions(List.of(page, duplicatePage));
+
+    assertThat(applicationConfiguration.getPageDefinition("page")).isSameAs(page);
+    assertThat(applicationConfiguration.getPageDefinition("otherPage")).isNull();
+    assertThat(applicationConfiguration.getFormInput("page", "input")).isSameAs(input);
+    assertThat(applicationConfiguration.getFormInput("page", "followUp")).isNull();
+    assertThat(applicationConfiguration.getFormInput("otherPage", "input")).isNull();
+    assertThat(applicationConfiguration.getFlattenedInputsByPageName())
+        .containsOnlyKeys("page")
+        .containsEntry("page", List.of(input, followUp));
+  }
+}
@@ -0,0 +1,92 @@
+package org.codeforamerica.shiba.pages.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.function.Consumer;
+import org.codeforamerica.shiba.pages.data.ChangeTracker.PendingChanges;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ChangeTrackerTest {
+
+  private ApplicationData applicationData;
+  private PageData existingPage;
+  private Subworkflow existingGroup;
+
+  @BeforeEach
+  void setUp() {
+    applicationData = new ApplicationData();
+    existingPage = new PageData();
+    existingGroup = new Subworkflow();
+    applicationData.getPagesData().put("existingPage", existingPage);
+    applicationData.getSubworkflows().put("existingGroup", existingGroup);
+    applicationData.trackChanges().snapshot().flushed();
+  }
+
+  @Test
+  void tracksEveryWayOfChangingAPage() {
+    assertPageChanged(pages -> pages.put("existingPage", new PageData()));
+    assertPageChanged(pages -> pages.putIfAbsent("newPage", new PageData()));
+    assertPageChanged(pages -> pages.remove("existingPage"));
+    assertPageChanged(pages -> pages.remove("existingPage", existingPage));
+    assertPageChanged(pages -> pages.replace("existingPage", new PageData()));
+    assertPageChanged(pages -> pages.replace("existingPage", existingPage, new PageData()));
+    assertPageChanged(pages -> pages.replaceAll((name, page) -> new PageData()));
+    assertPageChanged(pages -> pages.computeIfAbsent("newPage", name -> new PageData()));
+    assertPageChanged(pages -> pages.computeIfPresent("existingPage", (name, page) -> null));
+    assertPageChanged(pages -> pages.compute("existingPage", (name, page) -> new PageData()));
+    assertPageChanged(pages -> pages.merge("existingPage", new PageData(), (page, other) -> other));
+    assertPageChanged(PagesData::clear);
+  }
+
+  @Test
+  void tracksEveryWayOfChangingASubworkflow() {
+    assertGroupChanged(groups -> groups.put("existingGroup", new Subworkflow()));
+    assertGroupChanged(groups -> groups.putIfAbsent("newGroup", new Subworkflow()));
+    assertGroupChanged(groups -> groups.remove("existingGroup"));
+    assertGroupChanged(groups -> groups.remove("existingGroup", existingGroup));
+    assertGroupChanged(groups -> groups.replace("existingGroup", new Subworkflow()));
+    assertGroupChanged(
+        groups -> groups.replace("existingGroup", existingGroup, new Subworkflow()));
+    assertGroupChanged(groups -> groups.replaceAll((name, group) -> new Subworkflow()));
+    assertGroupChanged(groups -> groups.computeIfAbsent("newGroup", name -> new Subworkflow()));
+    assertGroupChanged(groups -> groups.computeIfPresent("existingGroup", (name, group) -> null));
+    assertGroupChanged(
+        groups -> groups.compute("existingGroup", (name, group) -> new Subworkflow()));
+    assertGroupChanged(
+        groups -> groups.merge("existingGroup", new Subworkflow(), (group, other) -> other));
+    assertGroupChanged(Subworkflows::clear);
+  }
+
+  @Test
+  void doesNotAllowChangesThroughViews() {
+    PagesData pagesData = applicationData.getPagesData();
+    Subworkflows subworkflows = applicationData.getSubworkflows();
+
+    assertThatThrownBy(() -> pagesData.keySet().remove("existingPage"))
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(() -> pagesData.values().clear())
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(() -> pagesData.entrySet().iterator().next().setValue(new PageData()))
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(() -> subworkflows.entrySet().removeIf(entry -> true))
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThat(pagesData).containsKey("existingPage");
+    assertThat(subworkflows).containsKey("existingGroup");
+  }
+
+  private void assertPageChanged(Consumer<PagesData> change) {
+    setUp();
+    change.accept(applicationData.getPagesData());
+    PendingChanges pendingChanges = applicationData.trackChanges().snapshot();
+    assertThat(pendingChanges.getChangedPages()).isNotEmpty();
+  }
+
+  private void assertGroupChanged(Consumer<Subworkflows> change) {
+    setUp();
+    change.accept(applicationData.getSubworkflows());
+    PendingChanges pendingChanges = applicationData.trackChanges().snapshot();
+    assertThat(pendingChanges.getChangedSubworkflows()).isNotEmpty();
+  }
+}
@@ -0,0 +1,52 @@
+package org.codeforamerica.shiba.pages.emails;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.codeforamerica.shiba.output.ApplicationFile;
+import org.junit.jupiter.api.Test;
+
+class AttachmentPackerTest {
+
+  @Test
+  void sendsEverythingInOneEmailWhenItFits() {
+    List<ApplicationFile> files = List.of(file("a", 30), file("b", 30), file("c", 39));
+
+    assertThat(AttachmentPacker.pack(files, 100)).containsExactly(files);
+  }
+
+  @Test
+  void packsSmallFilesAroundLargeOnes() {
+    ApplicationFile small1 = file("small1", 10);
+    ApplicationFile small2 = file("small2", 10);
+    ApplicationFile large1 = file("large1", 75);
+    ApplicationFile large2 = file("large2", 85);
+    ApplicationFile small3 = file("small3", 10);
+
+    List<List<ApplicationFile>> emails = AttachmentPacker.pack(
+        List.of(small1, small2, large1, large2, small3), 100);
+
+    assertThat(emails).containsExactly(
+        List.of(small1, large2),
+        List.of(small2, large1, small3));
+  }
+
+  @Test
+  void givesFilesOverTheLimitAnEmailOfTheirOwn() {
+    ApplicationFile tooBig = file("tooBig", 150);
+    ApplicationFile small = file("small", 10);
+
+    assertThat(AttachmentPacker.pack(List.of(small, tooBig), 100)).containsExactly(
+        List.of(small),
+        List.of(tooBig));
+  }
+
+  @Test
+  void sendsNothingForNoFiles() {
+    assertThat(AttachmentPacker.pack(List.of(), 100)).isEmpty();
+  }
+
+  private static ApplicationFile file(String name, int size) {
+    return new ApplicationFile(new byte[size], name);
+  }
+}
@@ -0,0 +1,137 @@
+package org.codeforamerica.shiba.pages.emails;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.codeforamerica.shiba.output.ApplicationFile;
+import org.codeforamerica.shiba.pages.emails.EmailOutbox.OutboxEmail;
+import org.codeforamerica.shiba.testutilities.AbstractPostgresRepositoryTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+
+@ContextConfiguration(classes = EmailOutbox.class)
+@Sql(statements = "TRUNCATE TABLE email_outbox, email_outbox_attachments, email_outbox_files")
+class EmailOutboxTest extends AbstractPostgresRepositoryTest {
+
+  @Autowired
+  private EmailOutbox emailOutbox;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private final ApplicationFile first = new ApplicationFile("first".getBytes(), "first.pdf");
+  private final ApplicationFile second = new ApplicationFile("second".getBytes(), "second.pdf");
+
+  private long id;
+
+  @BeforeEach
+  void setUp() {
+    id = emailOutbox.enqueue("someId", "subject", "sender@example.com", "client@example.com",
+        "<p>hi</p>", List.of(first, second));
+  }
+
+  @Test
+  void handsOutEnqueuedEmailsOnce() {
+    assertThat(emailOutbox.claimDue(10)).singleElement().satisfies(claimed -> {
+      assertThat(claimed.id()).isEqualTo(id);
+      assertThat(claimed.subject()).isEqualTo("subject");
+      assertThat(claimed.senderEmail()).isEqualTo("sender@example.com");
+      assertThat(claimed.recipientEmail()).isEqualTo("client@example.com");
+      assertThat(claimed.emailBody()).isEqualTo("<p>hi</p>");
+      assertThat(claimed.attachments()).containsExactly(first, second);
+      assertThat(claimed.attempts()).isZero();
+    });
+    assertThat(emailOutbox.claimDue(10)).isEmpty();
+  }
+
+  @Test
+  void handsOutFailedEmailsOnceTheirNextAttemptIsDue() {
+    OutboxEmail claimed = emailOutbox.claimDue(10).get(0);
+    assertThat(emailOutbox.failed(claimed, new RuntimeException("timed out"))).isTrue();
+    assertThat(emailOutbox.claimDue(10)).isEmpty();
+
+    jdbcTemplate.update("UPDATE email_outbox SET next_attempt_at = next_attempt_at - INTERVAL '1' DAY");
+
+    assertThat(emailOutbox.claimDue(10)).singleElement()
+        .satisfies(retried -> assertThat(retried.attempts()).isEqualTo(1));
+  }
+
+  @Test
+  void handsOutEachDueEmailOnce() {
+    emailOutbox.enqueue("otherId", "subject", "sender@example.com", "other@example.com",
+        "<p>hi</p>", List.of());
+
+    assertThat(emailOutbox.claimDue(1)).hasSize(1);
+    assertThat(emailOutbox.claimDue(10)).hasSize(1);
+    assertThat(emailOutbox.claimDue(10)).isEmpty();
+  }
+
+  @Test
+  void stopsRetryingAfterMaxAttemptsAndDropsTheAttachments() {
+    OutboxEmail claimed = emailOutbox.claimDue(10).get(0);
+    OutboxEmail lastAttempt = new OutboxEmail(claimed.id(), claimed.subject(),
+        claimed.senderEmail(), claimed.recipientEmail(), claimed.emailBody(),
+        claimed.attachments(), 5);
+
+    assertThat(emailOutbox.failed(lastAttempt, new RuntimeException("timed out"))).isFalse();
+    assertThat(jdbcTemplate.queryForObject("SELECT status FROM email_outbox", String.class))
+        .isEqualTo("failed");
+    assertThat(countOf("email_outbox_attachments")).isZero();
+    assertThat(countOf("email_outbox_files")).isZero();
+  }
+
+  @Test
+  void storesTheFilesAttachedToEmailsAboutTheSameApplicationOnce() {
+    emailOutbox.enqueue("someId", "next steps", "sender@example.com", "client@example.com",
+        "<p>next</p>", List.of(first, second));
+    emailOutbox.enqueue("otherId", "subject", "sender@example.com", "other@example.com",
+        "<p>hi</p>", List.of(first));
+
+    assertThat(countOf("email_outbox_attachments")).isEqualTo(5);
+    assertThat(countOf("email_outbox_files")).isEqualTo(3);
+    assertThat(emailOutbox.claimDue(10)).hasSize(3).allSatisfy(claimed ->
+        assertThat(claimed.attachments()).startsWith(first));
+  }
+
+  @Test
+  void keepsSharedFilesUntilTheLastEmailAttachingThemIsSent() {
+    long nextStepsId = emailOutbox.enqueue("someId", "next steps", "sender@example.com",
+        "client@example.com", "<p>next</p>", List.of(first));
+    Map<Long, OutboxEmail> claimed = emailOutbox.claimDue(10).stream()
+        .collect(Collectors.toMap(OutboxEmail::id, Function.identity()));
+
+    emailOutbox.sent(claimed.get(id));
+    assertThat(countOf("email_outbox_files")).isEqualTo(1);
+    emailOutbox.sent(claimed.get(nextStepsId));
+    assertThat(countOf("email_outbox_files")).isZero();
+  }
+
+  @Test
+  void removesSentEmailsAndTheirAttachments() {
+    emailOutbox.sent(emailOutbox.claimDue(10).get(0));
+
+    assertThat(countOf("email_outbox")).isZero();
+    assertThat(countOf("email_outbox_attachments")).isZero();
+    assertThat(countOf("email_outbox_files")).isZero();
+  }
+
+  @Test
+  void backsOffExponentiallyUpToTheMaxDelay() {
+    assertThat(emailOutbox.backoff(1)).isEqualTo(Duration.ofMinutes(1));
+    assertThat(emailOutbox.backoff(2)).isEqualTo(Duration.ofMinutes(3));
+    assertThat(emailOutbox.backoff(5)).isEqualTo(Duration.ofMinutes(81));
+    assertThat(emailOutbox.backoff(6)).isEqualTo(Duration.ofHours(2));
+  }
+
+  private int countOf(String table) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+  }
+}
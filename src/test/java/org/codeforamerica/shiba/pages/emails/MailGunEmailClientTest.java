@@ -34,6 +34,8 @@ import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 import com.github.tomakehurst.wiremock.matching.MultipartValuePattern;
 import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +47,8 @@ import org.codeforamerica.shiba.output.ApplicationFile;
 import org.codeforamerica.shiba.output.caf.CcapExpeditedEligibility;
 import org.codeforamerica.shiba.output.caf.SnapExpeditedEligibility;
 import org.codeforamerica.shiba.output.pdf.PdfGenerator;
+import org.codeforamerica.shiba.pages.config.FeatureFlag;
+import org.codeforamerica.shiba.pages.config.FeatureFlagConfiguration;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.pages.data.UploadedDocument;
 import org.codeforamerica.shiba.testutilities.PagesDataBuilder;
@@ -84,6 +88,8 @@ class MailGunEmailClientTest {
   private ClientRegistrationRepository springSecurityFilterChain;
   PdfGenerator pdfGenerator = mock(PdfGenerator.class);
   ApplicationRepository applicationRepository;
+  FeatureFlagConfiguration featureFlagConfiguration = mock(FeatureFlagConfiguration.class);
+  EmailOutbox emailOutbox = mock(EmailOutbox.class);
   int port;
   BasicCredentials credentials;
   List<String> programs;
@@ -113,9 +119,16 @@ class MailGunEmailClientTest {
         emailContentCreator,
         false,
         MAX_ATTACHMENT_SIZE,
+        4,
+        Duration.ofSeconds(5),
+        Duration.ofSeconds(60),
+        16,
         activeProfile,
         applicationRepository,
-        messageSource);
+        messageSource,
+        featureFlagConfiguration,
+        emailOutbox,
+        new SimpleMeterRegistry());
     programs = List.of(Program.SNAP);
     credentials = new BasicCredentials("api", mailGunApiKey);
   }
@@ -196,6 +209,27 @@ class MailGunEmailClientTest {
     );
   }
 
+  @Test
+  void queuesEmailsToClientsWhenTheOutboxIsOn() {
+    when(featureFlagConfiguration.get("email-outbox")).thenReturn(FeatureFlag.ON);
+    when(emailContentCreator.createShortClientConfirmationEmail("someConfirmationId", ENGLISH))
+        .thenReturn("content");
+    List<ApplicationFile> attachments = List.of(
+        new ApplicationFile("someContent".getBytes(), "someFileName"));
+
+    mailGunEmailClient.sendShortConfirmationEmail(new ApplicationData(),
+        "someRecipient",
+        "someConfirmationId",
+        List.of(Program.SNAP),
+        ELIGIBLE,
+        CcapExpeditedEligibility.ELIGIBLE,
+        attachments, ENGLISH);
+
+    verify(emailOutbox).enqueue("someConfirmationId", "We received your MNbenefits application",
+        senderEmail, "someRecipient", "content", attachments);
+    wireMockServer.verify(0, postToMailgun());
+  }
+
   @Test
   void sendsHennepinConsolidatedSmallDocUploadsEmail() {
     wireMockServer.stubFor(post(anyUrl()).willReturn(aResponse().withStatus(200)));
@@ -304,6 +338,40 @@ class MailGunEmailClientTest {
         "email", email));
   }
 
+  @Test
+  void packsHennepinDocUploadsIntoAsFewEmailsAsFit() {
+    wireMockServer.stubFor(post(anyUrl()).willReturn(aResponse().withStatus(200)));
+    var applicationData = new TestApplicationDataBuilder()
+        .withPersonalInfo()
+        .withPageData("contactInfo", "phoneNumber", "(603) 879-1111")
+        .withPageData("contactInfo", "email", "jane@example.com")
+        .build();
+    Application application = Application.builder()
+        .id("someId")
+        .completedAt(ZonedDateTime.now())
+        .applicationData(applicationData)
+        .county(Hennepin)
+        .timeToComplete(null)
+        .build();
+    when(emailContentCreator.createHennepinDocUploadsHTML(anyMap())).thenReturn("content");
+
+    mailGunEmailClient.sendHennepinDocUploadsEmails(application, List.of(
+        new ApplicationFile(new byte[MAX_ATTACHMENT_SIZE / 2], "first"),
+        new ApplicationFile(new byte[MAX_ATTACHMENT_SIZE / 4], "second"),
+        new ApplicationFile(new byte[MAX_ATTACHMENT_SIZE / 4], "third")));
+
+    wireMockServer.verify(2, postToMailgun());
+    for (String part : List.of("(part 1 of 2)", "(part 2 of 2)")) {
+      wireMockServer.verify(1, postToMailgun()
+          .withRequestBodyPart(aMultipart()
+              .withName("subject")
+              .withBody(containing("Verification docs for Jane Doe " + part))
+              .matchingType(ANY)
+              .build()));
+    }
+    verify(applicationRepository).updateStatus("someId", UPLOADED_DOC, Status.DELIVERED);
+  }
+
   @Test
   void sendsHennepinDocUploadsEmailAsLaterDocs() {
     wireMockServer.stubFor(post(anyUrl()).willReturn(aResponse().withStatus(200)));
@@ -483,9 +551,16 @@ class MailGunEmailClientTest {
           emailContentCreator,
           false,
           MAX_ATTACHMENT_SIZE,
+          4,
+          Duration.ofSeconds(5),
+          Duration.ofSeconds(60),
+          16,
           "demo",
           applicationRepository,
-          messageSource);
+          messageSource,
+          featureFlagConfiguration,
+          emailOutbox,
+          new SimpleMeterRegistry());
     }
 
     @Test
@@ -5,10 +5,12 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.codeforamerica.shiba.County;
 import org.codeforamerica.shiba.pages.data.ApplicationData;
 import org.codeforamerica.shiba.pages.data.InputData;
@@ -87,4 +89,24 @@ class AddressEnrichmentTest {
 
     assertThat(enrichmentResult).isEmpty();
   }
+
+  @Test
+  void validatesTheAddressOnTheExecutor_andFallsBackToTheCountyFromMapping() {
+    ApplicationData applicationData = new TestApplicationDataBuilder().withHomeAddress().build();
+    countyZipCodeMap.put("02103", County.Olmsted);
+    Address address = new Address("street", "city", "CA", "02103", "", null);
+    when(locationClient.validateAddress(address)).thenReturn(
+        Optional.of(new Address("street", "city", "CA", "02103", "", "Hennepin")));
+    List<Runnable> submitted = new ArrayList<>();
+
+    CompletableFuture<PageData> enrichmentResult = homeAddressValidationQuery
+        .processAsync(applicationData.getPagesData(), submitted::add);
+
+    assertThat(enrichmentResult).isNotDone();
+    submitted.forEach(Runnable::run);
+    assertThat(enrichmentResult.join())
+        .containsEntry("enrichedCounty", new InputData(List.of("Hennepin")));
+    assertThat(homeAddressValidationQuery.fallback(applicationData.getPagesData()))
+        .containsOnly(Map.entry("enrichedCounty", new InputData(List.of("Olmsted"))));
+  }
 }
@@ -0,0 +1,92 @@
+package org.codeforamerica.shiba.pages.enrichment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import org.codeforamerica.shiba.pages.data.InputData;
+import org.codeforamerica.shiba.pages.data.PageData;
+import org.codeforamerica.shiba.pages.data.PagesData;
+import org.junit.jupiter.api.Test;
+
+class PendingEnrichmentsTest {
+
+  private final PendingEnrichments pendingEnrichments = new PendingEnrichments(
+      ForkJoinPool.commonPool(), Clock.systemUTC(), Duration.ofMillis(200), Duration.ofMinutes(30),
+      new SimpleMeterRegistry());
+
+  @Test
+  void returnsTheEnrichmentOnceItFinishes() {
+    pendingEnrichments.start("session", "homeAddress",
+        new StubEnrichment(CompletableFuture.completedFuture(pageData("enriched"))),
+        new PagesData());
+
+    assertThat(pendingEnrichments.await("session", "homeAddress"))
+        .isEqualTo(pageData("enriched"));
+    assertThat(pendingEnrichments.await("session", "homeAddress")).isNull();
+  }
+
+  @Test
+  void fallsBackWhenTheDeadlinePasses() {
+    CompletableFuture<PageData> neverFinishes = new CompletableFuture<>();
+    pendingEnrichments.start("session", "homeAddress", new StubEnrichment(neverFinishes),
+        new PagesData());
+
+    assertThat(pendingEnrichments.await("session", "homeAddress"))
+        .isEqualTo(pageData("fallback"));
+    assertThat(neverFinishes).isCancelled();
+  }
+
+  @Test
+  void fallsBackWhenTheEnrichmentFails() {
+    pendingEnrichments.start("session", "homeAddress",
+        new StubEnrichment(CompletableFuture.failedFuture(new RuntimeException("boom"))),
+        new PagesData());
+
+    assertThat(pendingEnrichments.await("session", "homeAddress"))
+        .isEqualTo(pageData("fallback"));
+  }
+
+  @Test
+  void replacesAnEnrichmentThatIsStillPending() {
+    CompletableFuture<PageData> first = new CompletableFuture<>();
+    pendingEnrichments.start("session", "homeAddress", new StubEnrichment(first),
+        new PagesData());
+    pendingEnrichments.start("session", "homeAddress",
+        new StubEnrichment(CompletableFuture.completedFuture(pageData("second"))),
+        new PagesData());
+
+    assertThat(first).isCancelled();
+    assertThat(pendingEnrichments.await("session", "homeAddress")).isEqualTo(pageData("second"));
+    assertThat(pendingEnrichments.await("otherSession", "homeAddress")).isNull();
+  }
+
+  private static PageData pageData(String county) {
+    return new PageData(Map.of("enrichedCounty", new InputData(List.of(county))));
+  }
+
+  private record StubEnrichment(CompletableFuture<PageData> result) implements
+      DeferrableEnrichment {
+
+    @Override
+    public CompletableFuture<PageData> processAsync(PagesData pagesData, Executor executor) {
+      return result;
+    }
+
+    @Override
+    public PageData fallback(PagesData pagesData) {
+      return pageData("fallback");
+    }
+
+    @Override
+    public PageData process(PagesData pagesData) {
+      return result.join();
+    }
+  }
+}
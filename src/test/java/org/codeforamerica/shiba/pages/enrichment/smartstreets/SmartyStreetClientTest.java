@@ -1,5 +1,6 @@
 package org.codeforamerica.shiba.pages.enrichment.smartstreets;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
@@ -13,6 +14,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Optional;
 import org.codeforamerica.shiba.pages.enrichment.Address;
 import org.codeforamerica.shiba.pages.enrichment.smartystreets.SmartyStreetClient;
@@ -39,7 +43,9 @@ class SmartyStreetClientTest {
     int port = wireMockServer.port();
     WireMock.configureFor(port);
 
-    smartyStreetClient = new SmartyStreetClient(authId, authToken, "http://localhost:" + port);
+    smartyStreetClient = new SmartyStreetClient(authId, authToken, "http://localhost:" + port,
+        Duration.ofSeconds(1), Duration.ofMillis(500), 4, Duration.ofHours(1),
+        Duration.ofMinutes(1), 100, Clock.systemUTC(), new SimpleMeterRegistry());
   }
 
   @AfterEach
@@ -162,4 +168,58 @@ class SmartyStreetClientTest {
     assertThat(resultAddress).isEqualTo(
         new Address("222 Merchandise Mart Plz", "Chicago", "IL", "60654-1103", "", "Cook"));
   }
+
+  @Test
+  void validatesTheSameAddressOnlyOnce() {
+    wireMockServer.stubFor(get(anyUrl()).willReturn(okJson("""
+        [
+          {
+            "metadata": {"county_name": "Cook"},
+            "components": {"city_name": "Chicago", "zipcode": "60654", "plus4_code": "1103"},
+            "delivery_line_1": "222 Merchandise Mart Plz"
+          }
+        ]""")));
+
+    Optional<Address> first = smartyStreetClient.validateAddress(
+        new Address(street, city, state, zipcode, null, null));
+    Optional<Address> second = smartyStreetClient.validateAddress(
+        new Address("  1725  slough avenue ", city.toUpperCase(), state, zipcode, "", null));
+
+    assertThat(first).isPresent();
+    assertThat(second).isEqualTo(first);
+    wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/")));
+  }
+
+  @Test
+  void remembersAddressesThatWereNotFound() {
+    Address address = new Address(street, city, state, zipcode, null, null);
+    wireMockServer.stubFor(get(anyUrl()).willReturn(okJson("[]")));
+
+    smartyStreetClient.validateAddress(address);
+    smartyStreetClient.validateAddress(address);
+
+    wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/")));
+  }
+
+  @Test
+  void triesAgainAfterAFailure() {
+    Address address = new Address(street, city, state, zipcode, null, null);
+    wireMockServer.stubFor(get(anyUrl()).willReturn(status(500)));
+
+    smartyStreetClient.validateAddress(address);
+    smartyStreetClient.validateAddress(address);
+
+    wireMockServer.verify(2, getRequestedFor(urlPathEqualTo("/")));
+  }
+
+  @Test
+  void returnEmptyOptional_whenTheResponseTakesTooLong() {
+    Address address = new Address(street, city, state, zipcode, null, null);
+    wireMockServer.stubFor(get(anyUrl()).willReturn(aResponse().withStatus(200)
+        .withHeader("Content-Type", "application/json")
+        .withBody("[]")
+        .withFixedDelay(2000)));
+
+    assertThat(smartyStreetClient.validateAddress(address)).isEmpty();
+  }
 }
@@ -0,0 +1,62 @@
+package org.codeforamerica.shiba.pages.enrichment.smartystreets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import org.codeforamerica.shiba.pages.enrichment.Address;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ValidatedAddressCacheTest {
+
+  private final Instant now = Instant.parse("2021-11-01T12:00:00Z");
+  private final Clock clock = mock(Clock.class);
+  private final ValidatedAddressCache cache = new ValidatedAddressCache(clock,
+      Duration.ofHours(1), Duration.ofMinutes(5), 2);
+  private final Address entered = new Address("123 Main St", "Minneapolis", "MN", "55401", "",
+      null);
+  private final Address validated = new Address("123 Main St", "Minneapolis", "MN",
+      "55401-1234", "", "Hennepin");
+
+  @BeforeEach
+  void setUp() {
+    when(clock.instant()).thenReturn(now);
+  }
+
+  @Test
+  void expiresFoundAddressesAfterTheTtl() {
+    cache.put(entered, Optional.of(validated));
+
+    when(clock.instant()).thenReturn(now.plus(Duration.ofMinutes(59)));
+    assertThat(cache.get(entered)).contains(validated);
+    when(clock.instant()).thenReturn(now.plus(Duration.ofHours(1)));
+    assertThat(cache.get(entered)).isNull();
+  }
+
+  @Test
+  void expiresAddressesThatWereNotFoundSooner() {
+    cache.put(entered, Optional.empty());
+
+    assertThat(cache.get(entered)).isEmpty();
+    when(clock.instant()).thenReturn(now.plus(Duration.ofMinutes(5)));
+    assertThat(cache.get(entered)).isNull();
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedAddress() {
+    Address second = new Address("1 Other Rd", "Duluth", "MN", "55802", "", null);
+    Address third = new Address("2 Third Ave", "Duluth", "MN", "55802", "", null);
+    cache.put(entered, Optional.of(validated));
+    cache.put(second, Optional.empty());
+    cache.get(entered);
+    cache.put(third, Optional.empty());
+
+    assertThat(cache.get(entered)).contains(validated);
+    assertThat(cache.get(second)).isNull();
+  }
+}
@@ -0,0 +1,34 @@
+package org.codeforamerica.shiba.pages.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileInteractionTrackerTest {
+
+  @Test
+  void writesOneJsonLinePerInteraction(@TempDir Path tempDir) throws Exception {
+    Path file = tempDir.resolve("interactions.jsonl");
+    FileInteractionTracker tracker = new FileInteractionTracker(file);
+
+    tracker.track("someSessionId", "PAGE_VIEWED", Map.of("page", "one"));
+    tracker.trackWithProfile("someSessionId", "APPLICATION_SUBMITTED", Map.of());
+
+    List<String> lines = Files.readAllLines(file);
+    assertThat(lines).hasSize(2);
+    JSONObject pageViewed = new JSONObject(lines.get(0));
+    assertThat(pageViewed.getString("sessionId")).isEqualTo("someSessionId");
+    assertThat(pageViewed.getString("event")).isEqualTo("PAGE_VIEWED");
+    assertThat(pageViewed.getJSONObject("properties").getString("page")).isEqualTo("one");
+    assertThat(pageViewed.getBoolean("withProfile")).isFalse();
+    JSONObject submitted = new JSONObject(lines.get(1));
+    assertThat(submitted.getString("event")).isEqualTo("APPLICATION_SUBMITTED");
+    assertThat(submitted.getBoolean("withProfile")).isTrue();
+  }
+}
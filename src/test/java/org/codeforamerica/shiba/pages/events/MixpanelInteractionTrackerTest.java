@@ -0,0 +1,78 @@
+package org.codeforamerica.shiba.pages.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.mixpanel.mixpanelapi.ClientDelivery;
+import com.mixpanel.mixpanelapi.MessageBuilder;
+import com.mixpanel.mixpanelapi.MixpanelAPI;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MixpanelInteractionTrackerTest {
+
+  private final MixpanelAPI mixpanelAPI = mock(MixpanelAPI.class);
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private MixpanelInteractionTracker tracker;
+
+  @AfterEach
+  void tearDown() {
+    tracker.shutdown();
+  }
+
+  @Test
+  void sendsEventsOnceFlushSizeOfThemAreBuffered() throws IOException {
+    tracker = tracker(10, 2);
+
+    tracker.track("someSessionId", "PAGE_VIEWED", Map.of("page", "one"));
+    verifyNoInteractions(mixpanelAPI);
+    tracker.trackWithProfile("someSessionId", "APPLICATION_SUBMITTED", Map.of());
+
+    // The third message may or may not make it into the first batch
+    verify(mixpanelAPI, timeout(1000).atLeastOnce()).deliver(any(ClientDelivery.class));
+    tracker.flush();
+    assertThat(count("flushed")).isEqualTo(3);
+  }
+
+  @Test
+  void dropsEventsWhenTheBufferIsFull() {
+    tracker = tracker(2, 10);
+
+    tracker.track("someSessionId", "PAGE_VIEWED", Map.of());
+    tracker.track("someSessionId", "PAGE_VIEWED", Map.of());
+    tracker.track("someSessionId", "PAGE_VIEWED", Map.of());
+
+    assertThat(count("dropped")).isEqualTo(1);
+  }
+
+  @Test
+  void countsEventsThatFailedToSend() throws IOException {
+    tracker = tracker(10, 10);
+    doThrow(new IOException("unavailable")).when(mixpanelAPI).deliver(any(ClientDelivery.class));
+
+    tracker.track("someSessionId", "PAGE_VIEWED", Map.of());
+    tracker.flush();
+
+    assertThat(count("failed")).isEqualTo(1);
+    assertThat(count("flushed")).isZero();
+  }
+
+  private MixpanelInteractionTracker tracker(int bufferSize, int flushSize) {
+    return new MixpanelInteractionTracker(new MessageBuilder("someToken"), mixpanelAPI,
+        bufferSize, flushSize, Duration.ofHours(1), meterRegistry);
+  }
+
+  private double count(String result) {
+    return meterRegistry.counter("interaction.tracker.events", "result", result).count();
+  }
+}
@@ -0,0 +1,49 @@
+package org.codeforamerica.shiba.testutilities;
+
+import static org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace.NONE;
+
+import org.codeforamerica.shiba.application.ApplicationDataEncryptor;
+import org.codeforamerica.shiba.application.ApplicationRepository;
+import org.codeforamerica.shiba.application.StringEncryptor;
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Like {@link AbstractRepositoryTest}, but against Postgres, for the SQL that H2 can't run (upserts,
+ * jsonb functions, SKIP LOCKED). Skipped where Docker isn't available.
+ */
+@ActiveProfiles("test")
+@Tag("db")
+@JdbcTest
+@AutoConfigureTestDatabase(replace = NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Sql(statements = {"ALTER SEQUENCE application_id RESTART WITH 12", "TRUNCATE TABLE applications"})
+@ContextConfiguration(classes = {
+    NonSessionScopedApplicationData.class,
+    ApplicationDataEncryptor.class,
+    StringEncryptor.class,
+    ApplicationRepository.class})
+@AutoConfigureJson
+public class AbstractPostgresRepositoryTest {
+
+  @Container
+  static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:12")
+      .withInitScript("postgres-schema-init.sql");
+
+  @DynamicPropertySource
+  static void postgresProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+    registry.add("spring.datasource.username", POSTGRES::getUsername);
+    registry.add("spring.datasource.password", POSTGRES::getPassword);
+  }
+}
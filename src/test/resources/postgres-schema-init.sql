@@ -0,0 +1,88 @@
+-- The tables the Postgres repository tests use, as the migrations leave them
+CREATE SEQUENCE application_id START 1 MAXVALUE 9999999;
+
+CREATE TABLE applications
+(
+    id                              VARCHAR NOT NULL PRIMARY KEY,
+    completed_at                    TIMESTAMP WITHOUT TIME ZONE,
+    county                          VARCHAR NOT NULL DEFAULT 'OTHER',
+    time_to_complete                INTEGER DEFAULT 0,
+    sentiment                       VARCHAR,
+    feedback                        TEXT,
+    flow                            VARCHAR,
+    application_data                JSONB,
+    updated_at                      TIMESTAMP,
+    caf_application_status          VARCHAR,
+    ccap_application_status         VARCHAR,
+    uploaded_documents_status       VARCHAR,
+    doc_upload_email_status         VARCHAR,
+    certain_pops_application_status VARCHAR,
+    data_version                    BIGINT  NOT NULL DEFAULT 0
+);
+
+CREATE OR REPLACE FUNCTION trigger_set_timestamp()
+    RETURNS TRIGGER AS
+$$
+BEGIN
+    NEW.updated_at = NOW();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER set_timestamp
+    BEFORE UPDATE
+    ON applications
+    FOR EACH ROW
+EXECUTE PROCEDURE trigger_set_timestamp();
+
+CREATE TABLE delivery_outbox
+(
+    id                  BIGSERIAL PRIMARY KEY,
+    application_id      VARCHAR                  NOT NULL,
+    document_type       VARCHAR                  NOT NULL,
+    flow                VARCHAR,
+    routing_destination VARCHAR                  NOT NULL,
+    file_name           VARCHAR                  NOT NULL,
+    file_bytes          BYTEA,
+    status              VARCHAR                  NOT NULL DEFAULT 'pending',
+    attempts            INTEGER                  NOT NULL DEFAULT 0,
+    next_attempt_at     TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    leased_by           VARCHAR,
+    lease_expires_at    TIMESTAMP WITH TIME ZONE,
+    last_error          TEXT,
+    created_at          TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE TABLE email_outbox
+(
+    id               BIGSERIAL PRIMARY KEY,
+    subject          VARCHAR                  NOT NULL,
+    sender           VARCHAR                  NOT NULL,
+    recipient        VARCHAR                  NOT NULL,
+    html             TEXT                     NOT NULL,
+    status           VARCHAR                  NOT NULL DEFAULT 'pending',
+    attempts         INTEGER                  NOT NULL DEFAULT 0,
+    next_attempt_at  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    leased_by        VARCHAR,
+    lease_expires_at TIMESTAMP WITH TIME ZONE,
+    last_error       TEXT,
+    created_at       TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE TABLE email_outbox_files
+(
+    id             BIGSERIAL PRIMARY KEY,
+    application_id VARCHAR,
+    digest         BYTEA NOT NULL,
+    file_bytes     BYTEA NOT NULL,
+    UNIQUE (application_id, digest)
+);
+
+CREATE TABLE email_outbox_attachments
+(
+    email_id  BIGINT  NOT NULL REFERENCES email_outbox (id) ON DELETE CASCADE,
+    position  INTEGER NOT NULL,
+    file_name VARCHAR NOT NULL,
+    file_id   BIGINT  NOT NULL REFERENCES email_outbox_files (id),
+    PRIMARY KEY (email_id, position)
+);
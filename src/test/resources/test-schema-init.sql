@@ -19,7 +19,8 @@ CREATE TABLE IF NOT EXISTS applications
     ccap_application_status         varchar,
     certain_pops_application_status varchar,
     uploaded_documents_status       varchar,
-    doc_upload_email_status         varchar
+    doc_upload_email_status         varchar,
+    data_version                    bigint DEFAULT 0 NOT NULL
 );
 
 CREATE INDEX IF NOT EXISTS idx_application_id
@@ -66,4 +67,21 @@ CREATE TABLE IF NOT EXISTS shedlock
     locked_at  TIMESTAMP(3) NULL,
     locked_by  VARCHAR(255),
     PRIMARY KEY (name)
-);
\ No newline at end of file
+);
+CREATE TABLE IF NOT EXISTS delivery_outbox
+(
+    id                  BIGSERIAL PRIMARY KEY,
+    application_id      VARCHAR                  NOT NULL,
+    document_type       VARCHAR                  NOT NULL,
+    flow                VARCHAR,
+    routing_destination VARCHAR                  NOT NULL,
+    file_name           VARCHAR                  NOT NULL,
+    file_bytes          BYTEA,
+    status              VARCHAR                  NOT NULL DEFAULT 'pending',
+    attempts            INTEGER                  NOT NULL DEFAULT 0,
+    next_attempt_at     TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    leased_by           VARCHAR,
+    lease_expires_at    TIMESTAMP WITH TIME ZONE,
+    last_error          TEXT,
+    created_at          TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);